@@ -0,0 +1,201 @@
+package com.p2p.algo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+// Parallel breadth-first search over a CsrGraph that switches direction per level, after Beamer et
+// al. Small frontiers are expanded top-down from a queue: each frontier vertex claims its unvisited
+// out-neighbours in a visited bitmap. Once the frontier's out-edges outnumber a fraction of the
+// edges still leading into unvisited vertices, levels run bottom-up instead: every unvisited vertex
+// scans its in-neighbours for one in the frontier bitmap and stops at the first, which on
+// small-world graphs skips most edges of the few huge middle levels. Bottom-up steps work on whole
+// 64-vertex bitmap words per task, so they need no atomics.
+public class Bfs {
+    // Go bottom-up when frontier edges exceed unexplored edges / ALPHA, back top-down when the
+    // frontier is shrinking and smaller than vertices / BETA
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    private static final int PARALLEL_FRONTIER = 1024;
+
+    private final CsrGraph graph;
+    private final CsrGraph in;
+    private final boolean directionOptimizing;
+    private int bottomUpLevels;
+
+    public Bfs(CsrGraph graph) {
+        this(graph, true);
+    }
+
+    // With directionOptimizing false every level runs top-down, for comparison
+    public Bfs(CsrGraph graph, boolean directionOptimizing) {
+        this.graph = graph;
+        this.in = graph.transpose();
+        this.directionOptimizing = directionOptimizing;
+    }
+
+    // Hops from source to every vertex, -1 where unreachable; source is a vertex index
+    public int[] distances(int source) {
+        int[] distance = new int[graph.numVertices()];
+        search(source, distance, null);
+        return distance;
+    }
+
+    // The vertex each one was reached from, -1 where unreachable and source for source itself
+    public int[] parents(int source) {
+        int n = graph.numVertices();
+        int[] parent = new int[n];
+        search(source, new int[n], parent);
+        return parent;
+    }
+
+    // Levels of the last search that ran bottom-up
+    public int getBottomUpLevels() {
+        return bottomUpLevels;
+    }
+
+    private synchronized void search(int source, int[] distance, int[] parent) {
+        int n = graph.numVertices();
+        if (source < 0 || source >= n) {
+            throw new IllegalArgumentException("No vertex " + source);
+        }
+        Arrays.fill(distance, -1);
+        if (parent != null) Arrays.fill(parent, -1);
+        AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+        distance[source] = 0;
+        if (parent != null) parent[source] = source;
+        visited.set(source >>> 6, 1L << source);
+
+        int[] queue = {source};
+        long[] bits = null;
+        int frontierSize = 1;
+        long frontierEdges = graph.outDegree(source);
+        long unexplored = graph.numEdges() - in.outDegree(source);
+        boolean bottomUp = false;
+        bottomUpLevels = 0;
+        int[] next = new int[n];
+        for (int level = 1; frontierSize > 0; level++) {
+            int previousSize = frontierSize;
+            if (!bottomUp && directionOptimizing && frontierEdges > unexplored / ALPHA) {
+                bottomUp = true;
+                bits = toBits(queue, n);
+            }
+            if (bottomUp) {
+                bits = bottomUpStep(bits, visited, distance, parent, level);
+                bottomUpLevels++;
+                long[] frontier = bits;
+                frontierSize = range(bits.length).map(w -> Long.bitCount(frontier[w])).sum();
+                frontierEdges = bitDegreeSum(graph, bits);
+                unexplored -= bitDegreeSum(in, bits);
+                if (frontierSize < previousSize && frontierSize < n / BETA) {
+                    bottomUp = false;
+                    queue = toQueue(bits, frontierSize);
+                }
+            } else {
+                queue = topDownStep(queue, visited, distance, parent, level, next);
+                frontierSize = queue.length;
+                frontierEdges = queueDegreeSum(graph, queue);
+                unexplored -= queueDegreeSum(in, queue);
+            }
+        }
+    }
+
+    private int[] topDownStep(int[] frontier, AtomicLongArray visited, int[] distance, int[] parent, int level,
+                              int[] next) {
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        AtomicInteger size = new AtomicInteger();
+        range(frontier.length).forEach(i -> {
+            int v = frontier[i];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int w = targets[e];
+                if (claim(visited, w)) {
+                    distance[w] = level;
+                    if (parent != null) parent[w] = v;
+                    next[size.getAndIncrement()] = w;
+                }
+            }
+        });
+        return Arrays.copyOf(next, size.get());
+    }
+
+    // Sets w's visited bit; false if it was already set
+    private static boolean claim(AtomicLongArray visited, int w) {
+        int word = w >>> 6;
+        long bit = 1L << w;
+        long old = visited.get(word);
+        while ((old & bit) == 0) {
+            if (visited.compareAndSet(word, old, old | bit)) return true;
+            old = visited.get(word);
+        }
+        return false;
+    }
+
+    private long[] bottomUpStep(long[] frontier, AtomicLongArray visited, int[] distance, int[] parent, int level) {
+        int n = graph.numVertices();
+        int[] offsets = in.getOffsets();
+        int[] sources = in.getTargets();
+        long[] next = new long[frontier.length];
+        range(frontier.length).forEach(word -> {
+            long seen = visited.get(word);
+            long found = 0;
+            int end = Math.min(n, (word + 1) << 6);
+            for (int v = word << 6; v < end; v++) {
+                if ((seen & (1L << v)) != 0) continue;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int u = sources[e];
+                    if ((frontier[u >>> 6] & (1L << u)) != 0) {
+                        distance[v] = level;
+                        if (parent != null) parent[v] = u;
+                        found |= 1L << v;
+                        break;
+                    }
+                }
+            }
+            if (found != 0) {
+                next[word] = found;
+                visited.set(word, seen | found);
+            }
+        });
+        return next;
+    }
+
+    private static long[] toBits(int[] queue, int n) {
+        long[] bits = new long[(n + 63) >>> 6];
+        for (int v : queue) {
+            bits[v >>> 6] |= 1L << v;
+        }
+        return bits;
+    }
+
+    private static int[] toQueue(long[] bits, int size) {
+        int[] queue = new int[size];
+        int count = 0;
+        for (int word = 0; word < bits.length; word++) {
+            for (long rest = bits[word]; rest != 0; rest &= rest - 1) {
+                queue[count++] = (word << 6) + Long.numberOfTrailingZeros(rest);
+            }
+        }
+        return queue;
+    }
+
+    private static long queueDegreeSum(CsrGraph side, int[] queue) {
+        return range(queue.length).mapToLong(i -> side.outDegree(queue[i])).sum();
+    }
+
+    private static long bitDegreeSum(CsrGraph side, long[] bits) {
+        return range(bits.length).mapToLong(word -> {
+            long sum = 0;
+            for (long rest = bits[word]; rest != 0; rest &= rest - 1) {
+                sum += side.outDegree((word << 6) + Long.numberOfTrailingZeros(rest));
+            }
+            return sum;
+        }).sum();
+    }
+
+    private static IntStream range(int n) {
+        IntStream stream = IntStream.range(0, n);
+        return n < PARALLEL_FRONTIER ? stream : stream.parallel();
+    }
+}
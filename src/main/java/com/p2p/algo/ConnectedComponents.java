@@ -0,0 +1,352 @@
+package com.p2p.algo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+// Weakly and strongly connected components of a CsrGraph, computed in parallel on the common
+// fork-join pool. Both label every vertex with the smallest vertex number in its component.
+//
+// Weak components use a concurrent union-find whose links only ever point from a higher vertex
+// number to a lower one and are made with compare-and-set, so no locks are needed. Following
+// Afforest, the first two out-edges of every vertex are linked first, a sample then finds the
+// component that has most likely already absorbed most of the graph, and the remaining edges are
+// only processed for vertices outside it.
+//
+// Strong components peel off trivial components (no remaining in- or out-edges) first, take the
+// component of a high-degree pivot as the intersection of a forward and a backward search, then
+// split the rest by colouring: every vertex gets a random priority, the largest priority reachable
+// backwards spreads forward as a colour, and each colour's root collects, by a backward search
+// within its colour, exactly its component. Random rather than vertex-number priorities keep the
+// number of colouring rounds logarithmic on long chains of components.
+public class ConnectedComponents {
+    private static final int NEIGHBOR_ROUNDS = 2;
+    private static final int SAMPLES = 1024;
+    // Frontiers smaller than this are walked on the calling thread
+    private static final int PARALLEL_FRONTIER = 1024;
+
+    private ConnectedComponents() {
+    }
+
+    public static int[] weak(CsrGraph graph) {
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        IntStream.range(0, n).parallel().forEach(v -> parent.set(v, v));
+
+        for (int round = 0; round < NEIGHBOR_ROUNDS; round++) {
+            int r = round;
+            IntStream.range(0, n).parallel().forEach(v -> {
+                if (offsets[v] + r < offsets[v + 1]) link(parent, v, targets[offsets[v] + r]);
+            });
+            compress(parent);
+        }
+
+        int largest = sampleFrequent(parent);
+        CsrGraph in = graph.transpose();
+        int[] inOffsets = in.getOffsets();
+        int[] sources = in.getTargets();
+        IntStream.range(0, n).parallel().forEach(v -> {
+            if (parent.get(v) == largest) return;
+            for (int e = offsets[v] + NEIGHBOR_ROUNDS; e < offsets[v + 1]; e++) {
+                link(parent, v, targets[e]);
+            }
+            // An edge into v from the largest component was skipped at its source
+            for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+                link(parent, v, sources[e]);
+            }
+        });
+        compress(parent);
+
+        int[] component = new int[n];
+        for (int v = 0; v < n; v++) {
+            component[v] = parent.get(v);
+        }
+        return component;
+    }
+
+    // Joins the trees of u and v, hooking the higher root under the lower
+    private static void link(AtomicIntegerArray parent, int u, int v) {
+        int p1 = parent.get(u);
+        int p2 = parent.get(v);
+        while (p1 != p2) {
+            int high = Math.max(p1, p2);
+            int low = Math.min(p1, p2);
+            int highParent = parent.get(high);
+            if (highParent == low || (highParent == high && parent.compareAndSet(high, high, low))) {
+                return;
+            }
+            p1 = parent.get(parent.get(high));
+            p2 = parent.get(low);
+        }
+    }
+
+    private static void compress(AtomicIntegerArray parent) {
+        IntStream.range(0, parent.length()).parallel().forEach(v -> {
+            while (parent.get(v) != parent.get(parent.get(v))) {
+                parent.set(v, parent.get(parent.get(v)));
+            }
+        });
+    }
+
+    private static int sampleFrequent(AtomicIntegerArray parent) {
+        int n = parent.length();
+        if (n == 0) return -1;
+        int[] samples = new int[Math.min(SAMPLES, n)];
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < samples.length; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            samples[i] = parent.get((int) Math.floorMod(seed >>> 16, (long) n));
+        }
+        Arrays.sort(samples);
+        int best = samples[0];
+        int bestCount = 0;
+        for (int i = 0, j; i < samples.length; i = j) {
+            for (j = i; j < samples.length && samples[j] == samples[i]; j++) ;
+            if (j - i > bestCount) {
+                best = samples[i];
+                bestCount = j - i;
+            }
+        }
+        return best;
+    }
+
+    public static int[] strong(CsrGraph graph) {
+        int n = graph.numVertices();
+        CsrGraph in = graph.transpose();
+        // -1 while unassigned
+        AtomicIntegerArray component = new AtomicIntegerArray(n);
+        IntStream.range(0, n).parallel().forEach(v -> component.set(v, -1));
+
+        trim(graph, in, component);
+
+        // The pivot with most in times out edges is almost always in the largest component
+        int pivot = -1;
+        long best = -1;
+        for (int v = 0; v < n; v++) {
+            long score = (long) graph.outDegree(v) * in.outDegree(v);
+            if (component.get(v) < 0 && score > best) {
+                pivot = v;
+                best = score;
+            }
+        }
+        if (pivot >= 0) {
+            AtomicIntegerArray forward = new AtomicIntegerArray(n);
+            AtomicIntegerArray backward = new AtomicIntegerArray(n);
+            search(graph, component, pivot, forward);
+            search(in, component, pivot, backward);
+            int[] members = IntStream.range(0, n).parallel()
+                    .filter(v -> forward.get(v) != 0 && backward.get(v) != 0).toArray();
+            assign(component, members);
+        }
+
+        int[] priority = shuffled(n);
+        AtomicIntegerArray color = new AtomicIntegerArray(n);
+        while (true) {
+            trim(graph, in, component);
+            int[] remaining = IntStream.range(0, n).parallel().filter(v -> component.get(v) < 0).toArray();
+            if (remaining.length == 0) break;
+            for (int v : remaining) {
+                color.set(v, priority[v]);
+            }
+            spreadColors(graph, component, color, remaining);
+            // Each root collects the vertices of its colour that reach it
+            int[] roots = IntStream.of(remaining).filter(v -> color.get(v) == priority[v]).toArray();
+            AtomicIntegerArray seen = new AtomicIntegerArray(n);
+            IntStream.of(roots).parallel().forEach(root -> {
+                int[] members = collect(in, component, color, root, priority[root], seen);
+                assign(component, members);
+            });
+        }
+
+        int[] result = new int[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = component.get(v);
+        }
+        return result;
+    }
+
+    // A fixed-seed random permutation of 0..n-1
+    private static int[] shuffled(int n) {
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutation[i] = i;
+        }
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = n - 1; i > 0; i--) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int j = (int) Math.floorMod(seed >>> 16, (long) i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+        return permutation;
+    }
+
+    private static IntStream range(int n) {
+        IntStream stream = IntStream.range(0, n);
+        return n < PARALLEL_FRONTIER ? stream : stream.parallel();
+    }
+
+    // Vertices with no remaining in-edges or no remaining out-edges are components of their own.
+    // Removing one lowers its neighbours' counts, which can make them trivial too, so this peels
+    // whole chains and trees in time linear in their edges.
+    private static void trim(CsrGraph graph, CsrGraph in, AtomicIntegerArray component) {
+        int n = graph.numVertices();
+        AtomicIntegerArray outCount = new AtomicIntegerArray(n);
+        AtomicIntegerArray inCount = new AtomicIntegerArray(n);
+        IntStream.range(0, n).parallel().forEach(v -> {
+            if (component.get(v) >= 0) return;
+            outCount.set(v, countRemaining(graph, component, v));
+            inCount.set(v, countRemaining(in, component, v));
+        });
+        int[] frontier = IntStream.range(0, n).parallel()
+                .filter(v -> component.get(v) < 0 && (outCount.get(v) == 0 || inCount.get(v) == 0))
+                .toArray();
+        for (int v : frontier) {
+            component.set(v, v);
+        }
+        int[] next = new int[n];
+        while (frontier.length > 0) {
+            int[] current = frontier;
+            AtomicInteger size = new AtomicInteger();
+            range(current.length).forEach(i -> {
+                int v = current[i];
+                release(graph, component, inCount, v, next, size);
+                release(in, component, outCount, v, next, size);
+            });
+            frontier = Arrays.copyOf(next, size.get());
+        }
+    }
+
+    // Edges of v to other unassigned vertices
+    private static int countRemaining(CsrGraph graph, AtomicIntegerArray component, int v) {
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int count = 0;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            int w = targets[e];
+            if (w != v && component.get(w) < 0) count++;
+        }
+        return count;
+    }
+
+    // v was just removed: every unassigned neighbour along graph's edges loses one from counts,
+    // and those that reach zero are claimed as trivial components and queued
+    private static void release(CsrGraph graph, AtomicIntegerArray component, AtomicIntegerArray counts, int v,
+                                int[] next, AtomicInteger size) {
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            int w = targets[e];
+            if (w == v || component.get(w) >= 0) continue;
+            if (counts.decrementAndGet(w) == 0 && component.compareAndSet(w, -1, w)) {
+                next[size.getAndIncrement()] = w;
+            }
+        }
+    }
+
+    // Level-synchronous parallel search from source over unassigned vertices, marking visited
+    // ones with 1
+    private static void search(CsrGraph graph, AtomicIntegerArray component, int source, AtomicIntegerArray visited) {
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] frontier = {source};
+        visited.set(source, 1);
+        int[] next = new int[graph.numVertices()];
+        while (frontier.length > 0) {
+            int[] current = frontier;
+            AtomicInteger size = new AtomicInteger();
+            range(current.length).forEach(i -> {
+                int v = current[i];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    if (component.get(w) < 0 && visited.get(w) == 0 && visited.compareAndSet(w, 0, 1)) {
+                        next[size.getAndIncrement()] = w;
+                    }
+                }
+            });
+            frontier = Arrays.copyOf(next, size.get());
+        }
+    }
+
+    // Pushes larger colours along forward edges until no colour changes
+    private static void spreadColors(CsrGraph graph, AtomicIntegerArray component, AtomicIntegerArray color,
+                                     int[] start) {
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        // Round in which each vertex was last queued, so it is queued at most once per round
+        AtomicIntegerArray queued = new AtomicIntegerArray(n);
+        int[] frontier = start;
+        int[] next = new int[n];
+        for (int round = 1; frontier.length > 0; round++) {
+            int[] current = frontier;
+            int thisRound = round;
+            AtomicInteger size = new AtomicInteger();
+            range(current.length).forEach(i -> {
+                int v = current[i];
+                int c = color.get(v);
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    if (component.get(w) >= 0) continue;
+                    int old = color.get(w);
+                    while (old < c && !color.compareAndSet(w, old, c)) {
+                        old = color.get(w);
+                    }
+                    if (old < c && queued.getAndSet(w, thisRound) != thisRound) {
+                        next[size.getAndIncrement()] = w;
+                    }
+                }
+            });
+            frontier = Arrays.copyOf(next, size.get());
+        }
+    }
+
+    // Backward search from root within its colour; these vertices are exactly root's component
+    private static int[] collect(CsrGraph in, AtomicIntegerArray component, AtomicIntegerArray color,
+                                 int root, int rootColor, AtomicIntegerArray seen) {
+        int[] offsets = in.getOffsets();
+        int[] sources = in.getTargets();
+        int[] members = new int[16];
+        int count = 0;
+        members[count++] = root;
+        seen.set(root, 1);
+        for (int head = 0; head < count; head++) {
+            int v = members[head];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int w = sources[e];
+                if (component.get(w) >= 0 || color.get(w) != rootColor || seen.get(w) != 0) continue;
+                seen.set(w, 1);
+                if (count == members.length) members = Arrays.copyOf(members, count * 2);
+                members[count++] = w;
+            }
+        }
+        return Arrays.copyOf(members, count);
+    }
+
+    // Labels the members with their smallest vertex number
+    private static void assign(AtomicIntegerArray component, int[] members) {
+        int label = Integer.MAX_VALUE;
+        for (int v : members) {
+            label = Math.min(label, v);
+        }
+        for (int v : members) {
+            component.set(v, label);
+        }
+    }
+
+    // Number of distinct labels and the size of the largest, as {count, largest}
+    public static int[] summarize(int[] component) {
+        int[] sizes = new int[component.length];
+        int count = 0;
+        int largest = 0;
+        for (int label : component) {
+            if (sizes[label]++ == 0) count++;
+            largest = Math.max(largest, sizes[label]);
+        }
+        return new int[]{count, largest};
+    }
+}
@@ -0,0 +1,328 @@
+package com.p2p.algo;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Directed graph in compressed sparse row form: vertex v's out-neighbours are
+// targets[offsets[v] .. offsets[v + 1]). Vertices are numbered 0..n-1 in order of their original
+// ids (or in the order given to reorder), so the whole graph is three int arrays instead of a map
+// of boxed lists. Reads the same edge-list files as the other algorithms; duplicate edges are kept.
+public class CsrGraph {
+    private final int[] ids;
+    private final int[] offsets;
+    private final int[] targets;
+    // Built on the first search by id, and published whole so any thread sees both arrays
+    private volatile IdIndex idIndex;
+
+    public CsrGraph(int[] ids, int[] offsets, int[] targets) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    // Parses the bytes directly rather than splitting lines into strings, which keeps loading
+    // large edge lists from dominating the algorithms run on them
+    public static CsrGraph load(String filename) throws IOException {
+        int[] sources = new int[1 << 16];
+        int[] dests = new int[1 << 16];
+        int edges = 0;
+        try (InputStream in = new FileInputStream(filename)) {
+            byte[] buffer = new byte[1 << 16];
+            int[] fields = new int[2];
+            int field = 0;
+            int value = 0;
+            boolean digits = false;
+            boolean negative = false;
+            boolean skipLine = false;
+            boolean lineStart = true;
+            long line = 1;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n' || b == '\r') {
+                        if (b == '\n') line++;
+                        if (digits && field < 2) fields[field++] = negative ? -value : value;
+                        // Lines with fewer than two numbers are skipped
+                        if (!skipLine && field == 2) {
+                            if (edges == sources.length) {
+                                sources = Arrays.copyOf(sources, edges * 2);
+                                dests = Arrays.copyOf(dests, edges * 2);
+                            }
+                            sources[edges] = fields[0];
+                            dests[edges] = fields[1];
+                            edges++;
+                        }
+                        field = 0;
+                        value = 0;
+                        digits = false;
+                        negative = false;
+                        skipLine = false;
+                        lineStart = true;
+                        continue;
+                    }
+                    if (skipLine) continue;
+                    if (b >= '0' && b <= '9') {
+                        // Columns after the two ids (weights, timestamps) are ignored, whatever their size
+                        if (field < 2) {
+                            if (value > (Integer.MAX_VALUE - (b - '0')) / 10) {
+                                throw new IOException("Node id out of int range on line " + line + " of " + filename);
+                            }
+                            value = value * 10 + (b - '0');
+                        }
+                        digits = true;
+                    } else if (b == ' ' || b == '\t' || b == ',') {
+                        if (digits && field < 2) fields[field++] = negative ? -value : value;
+                        value = 0;
+                        digits = false;
+                        negative = false;
+                    } else if (b == '-' && !digits) {
+                        negative = true;
+                    } else if (b == '#' && lineStart) {
+                        // Comment or header line
+                        skipLine = true;
+                    } else if (field < 2) {
+                        throw new IOException("Unreadable edge " + (edges + 1) + " in " + filename);
+                    }
+                    lineStart = false;
+                }
+            }
+            if (!skipLine && digits && field < 2) fields[field++] = negative ? -value : value;
+            if (!skipLine && field == 2) {
+                sources = Arrays.copyOf(sources, edges + 1);
+                dests = Arrays.copyOf(dests, edges + 1);
+                sources[edges] = fields[0];
+                dests[edges] = fields[1];
+                edges++;
+            }
+        }
+        return fromEdges(sources, dests, edges);
+    }
+
+    // Builds the graph from the first `edges` entries of two parallel arrays of original ids
+    public static CsrGraph fromEdges(int[] sources, int[] dests, int edges) {
+        if (edges == 0) {
+            return new CsrGraph(new int[0], new int[1], new int[0]);
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int e = 0; e < edges; e++) {
+            min = Math.min(min, Math.min(sources[e], dests[e]));
+            max = Math.max(max, Math.max(sources[e], dests[e]));
+        }
+
+        int[] ids;
+        int[] src = new int[edges];
+        int[] dst = new int[edges];
+        long range = (long) max - min + 1;
+        if (range <= 4L * edges + 1024) {
+            // Ids are dense enough for a direct lookup table instead of sorting and searching
+            int[] index = new int[(int) range];
+            for (int e = 0; e < edges; e++) {
+                index[sources[e] - min] = 1;
+                index[dests[e] - min] = 1;
+            }
+            int n = 0;
+            for (int i = 0; i < index.length; i++) {
+                n += index[i];
+            }
+            ids = new int[n];
+            n = 0;
+            for (int i = 0; i < index.length; i++) {
+                if (index[i] != 0) {
+                    ids[n] = min + i;
+                    index[i] = n++;
+                }
+            }
+            for (int e = 0; e < edges; e++) {
+                src[e] = index[sources[e] - min];
+                dst[e] = index[dests[e] - min];
+            }
+        } else {
+            int[] all = new int[edges * 2];
+            System.arraycopy(sources, 0, all, 0, edges);
+            System.arraycopy(dests, 0, all, edges, edges);
+            Arrays.sort(all);
+            int n = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (i == 0 || all[i] != all[i - 1]) all[n++] = all[i];
+            }
+            ids = Arrays.copyOf(all, n);
+            for (int e = 0; e < edges; e++) {
+                src[e] = Arrays.binarySearch(ids, sources[e]);
+                dst[e] = Arrays.binarySearch(ids, dests[e]);
+            }
+        }
+
+        int n = ids.length;
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < edges; e++) {
+            offsets[src[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] targets = new int[edges];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < edges; e++) {
+            // Stable, so each vertex keeps its edges in file order
+            targets[next[src[e]]++] = dst[e];
+        }
+        return new CsrGraph(ids, offsets, targets);
+    }
+
+    public int numVertices() {
+        return ids.length;
+    }
+
+    public int numEdges() {
+        return targets.length;
+    }
+
+    public int outDegree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    // Original id of vertex v
+    public int id(int v) {
+        return ids[v];
+    }
+
+    // Vertex number of an original id, or a negative number if it isn't in the graph
+    public int indexOf(int id) {
+        IdIndex index = idIndex;
+        if (index == null) {
+            index = buildIdIndex();
+        }
+        int i = Arrays.binarySearch(index.sortedIds, id);
+        return index.sortedIndex == null || i < 0 ? i : index.sortedIndex[i];
+    }
+
+    private synchronized IdIndex buildIdIndex() {
+        if (idIndex != null) return idIndex;
+        boolean sorted = true;
+        for (int v = 1; v < ids.length && sorted; v++) {
+            sorted = ids[v - 1] < ids[v];
+        }
+        if (!sorted) {
+            long[] pairs = new long[ids.length];
+            for (int v = 0; v < ids.length; v++) {
+                pairs[v] = ((long) ids[v] << 32) | v;
+            }
+            Arrays.sort(pairs);
+            int[] index = new int[ids.length];
+            int[] byId = new int[ids.length];
+            for (int i = 0; i < pairs.length; i++) {
+                byId[i] = (int) (pairs[i] >> 32);
+                index[i] = (int) pairs[i];
+            }
+            idIndex = new IdIndex(byId, index);
+        } else {
+            idIndex = new IdIndex(ids, null);
+        }
+        return idIndex;
+    }
+
+    // The same graph with vertex i being this graph's vertex order[i]. Ids move with their
+    // vertices and each vertex keeps its edges in the same order.
+    public CsrGraph reorder(int[] order) {
+        int n = ids.length;
+        if (order.length != n) {
+            throw new IllegalArgumentException("Order has " + order.length + " vertices, graph has " + n);
+        }
+        int[] newIndex = new int[n];
+        Arrays.fill(newIndex, -1);
+        for (int i = 0; i < n; i++) {
+            if (newIndex[order[i]] >= 0) {
+                throw new IllegalArgumentException("Vertex " + order[i] + " appears twice in the order");
+            }
+            newIndex[order[i]] = i;
+        }
+        int[] newIds = new int[n];
+        int[] newOffsets = new int[n + 1];
+        int[] newTargets = new int[targets.length];
+        for (int i = 0; i < n; i++) {
+            int v = order[i];
+            newIds[i] = ids[v];
+            int fill = newOffsets[i];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                newTargets[fill++] = newIndex[targets[e]];
+            }
+            newOffsets[i + 1] = fill;
+        }
+        return new CsrGraph(newIds, newOffsets, newTargets);
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getTargets() {
+        return targets;
+    }
+
+    // The same graph with every edge reversed, i.e. each vertex's in-neighbours
+    public CsrGraph transpose() {
+        int n = ids.length;
+        int[] inOffsets = new int[n + 1];
+        for (int target : targets) {
+            inOffsets[target + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] sources = new int[targets.length];
+        int[] next = Arrays.copyOf(inOffsets, n);
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                sources[next[targets[e]]++] = v;
+            }
+        }
+        return new CsrGraph(ids, inOffsets, sources);
+    }
+
+    // The same vertices with each out-neighbour list sorted and without duplicate edges, so
+    // neighbourhood checks can binary-search or merge rows
+    public CsrGraph withSortedNeighbours() {
+        int n = ids.length;
+        int[] sortedOffsets = new int[n + 1];
+        int[] sortedTargets = new int[targets.length];
+        int fill = 0;
+        for (int v = 0; v < n; v++) {
+            int start = fill;
+            System.arraycopy(targets, offsets[v], sortedTargets, start, offsets[v + 1] - offsets[v]);
+            Arrays.sort(sortedTargets, start, start + offsets[v + 1] - offsets[v]);
+            for (int i = start; i < start + offsets[v + 1] - offsets[v]; i++) {
+                if (fill == start || sortedTargets[i] != sortedTargets[fill - 1]) {
+                    sortedTargets[fill++] = sortedTargets[i];
+                }
+            }
+            sortedOffsets[v + 1] = fill;
+        }
+        return new CsrGraph(ids, sortedOffsets, Arrays.copyOf(sortedTargets, fill));
+    }
+
+    public String getGraphStats() {
+        return "Graph Statistics:\n" +
+                "- Nodes: " + ids.length + "\n" +
+                "- Edges: " + targets.length + "\n" +
+                "- Average out-degree: " + String.format("%.2f", ids.length == 0 ? 0.0 : (double) targets.length / ids.length);
+    }
+
+    // Ids in ascending order and each one's vertex; sortedIndex is null when the ids already are in order
+    private static final class IdIndex {
+        final int[] sortedIds;
+        final int[] sortedIndex;
+
+        IdIndex(int[] sortedIds, int[] sortedIndex) {
+            this.sortedIds = sortedIds;
+            this.sortedIndex = sortedIndex;
+        }
+    }
+}
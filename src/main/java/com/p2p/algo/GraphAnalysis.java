@@ -0,0 +1,397 @@
+package com.p2p.algo;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+// In-degree, PageRank, clustering coefficients, core numbers and connected components for one
+// graph from a single load. In-degrees are counted in the same pass over the edges as the first
+// PageRank iteration, and clustering and core numbers share one sorted, duplicate-free copy of the
+// adjacency. The graph can be relabeled by a VertexOrder first, for cache locality; results are
+// reported by original id either way.
+// Results match HighestIndegreeNode, PageRank, ClusteringCoefficient (up to floating-point
+// summation order) and KCore, including their graph statistics.
+public class GraphAnalysis {
+    private final CsrGraph graph;
+    private final long loadMillis;
+    private final VertexOrder order;
+    private final long reorderMillis;
+    private CsrGraph sortedGraph;
+
+    private double dampingFactor = 0.85;
+    private int iterations = 10;
+    private int[] inDegrees;
+    private double[] ranks;
+    private double[] coefficients;
+    private double globalCoefficient;
+    private long pageRankMillis;
+    private long clusteringMillis;
+    private KCore kCore;
+    private long coreMillis;
+    private int[] weakComponents;
+    private int[] strongComponents;
+    private long componentsMillis;
+
+    public GraphAnalysis(CsrGraph graph) {
+        this(graph, 0, VertexOrder.ORIGINAL, 0);
+    }
+
+    private GraphAnalysis(CsrGraph graph, long loadMillis, VertexOrder order, long reorderMillis) {
+        this.graph = graph;
+        this.loadMillis = loadMillis;
+        this.order = order;
+        this.reorderMillis = reorderMillis;
+    }
+
+    public static GraphAnalysis load(String graphFile) throws IOException {
+        return load(graphFile, VertexOrder.ORIGINAL);
+    }
+
+    public static GraphAnalysis load(String graphFile, VertexOrder order) throws IOException {
+        long start = System.currentTimeMillis();
+        CsrGraph graph = CsrGraph.load(graphFile);
+        System.out.println("Loaded graph with " + graph.numVertices() + " nodes and " + graph.numEdges() + " edges");
+        long loadMillis = System.currentTimeMillis() - start;
+        if (order == VertexOrder.ORIGINAL) {
+            return new GraphAnalysis(graph, loadMillis, order, 0);
+        }
+        start = System.currentTimeMillis();
+        graph = graph.reorder(order.order(graph));
+        return new GraphAnalysis(graph, loadMillis, order, System.currentTimeMillis() - start);
+    }
+
+    public void setDampingFactor(double dampingFactor) {
+        if (dampingFactor > 0 && dampingFactor < 1) {
+            this.dampingFactor = dampingFactor;
+        } else {
+            System.out.println("Warning: Damping factor must be between 0 and 1. Using default value: " + this.dampingFactor);
+        }
+    }
+
+    public void setIterations(int iterations) {
+        if (iterations > 0) {
+            this.iterations = iterations;
+        } else {
+            System.out.println("Warning: Iterations must be positive. Using default value: " + this.iterations);
+        }
+    }
+
+    // PageRank for the configured number of iterations, counting in-degrees along the way
+    public void computeDegreesAndPageRank() {
+        computeDegreesAndPageRank(0);
+    }
+
+    // With a tolerance > 0, iterates until the mean change per node drops to it (at most 100
+    // iterations), like PageRank.computeWithConvergence
+    public void computeDegreesAndPageRank(double tolerance) {
+        long start = System.currentTimeMillis();
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        double base = (1 - dampingFactor) / n;
+
+        inDegrees = new int[n];
+        ranks = new double[n];
+        Arrays.fill(ranks, 1.0 / n);
+        double[] next = new double[n];
+
+        int maxIterations = tolerance > 0 ? 100 : iterations;
+        for (int i = 0; i < maxIterations; i++) {
+            Arrays.fill(next, base);
+            for (int v = 0; v < n; v++) {
+                int degree = offsets[v + 1] - offsets[v];
+                double share = degree == 0 ? 0 : ranks[v] * dampingFactor / degree;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    next[targets[e]] += share;
+                    if (i == 0) inDegrees[targets[e]]++;
+                }
+            }
+            double change = 0;
+            for (int v = 0; v < n && tolerance > 0; v++) {
+                change += Math.abs(next[v] - ranks[v]);
+            }
+            double[] swap = ranks;
+            ranks = next;
+            next = swap;
+            if (tolerance > 0 && change / n <= tolerance) {
+                break;
+            }
+        }
+        pageRankMillis = System.currentTimeMillis() - start;
+    }
+
+    // Local coefficient of each vertex: of the pairs of its out-neighbours (in edge order), the
+    // share where the earlier one links to the later one
+    public void computeClustering() {
+        long start = System.currentTimeMillis();
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        CsrGraph sorted = getSortedGraph();
+        int[] sortedOffsets = sorted.getOffsets();
+        int[] sortedTargets = sorted.getTargets();
+
+        coefficients = new double[n];
+        double sum = 0;
+        for (int v = 0; v < n; v++) {
+            int from = offsets[v];
+            int to = offsets[v + 1];
+            long k = to - from;
+            if (k < 2) continue;
+            long triangles = 0;
+            for (int i = from; i < to - 1; i++) {
+                int a = targets[i];
+                int rowFrom = sortedOffsets[a];
+                int rowTo = sortedOffsets[a + 1];
+                if (rowFrom == rowTo) continue;
+                for (int j = i + 1; j < to; j++) {
+                    if (Arrays.binarySearch(sortedTargets, rowFrom, rowTo, targets[j]) >= 0) {
+                        triangles++;
+                    }
+                }
+            }
+            coefficients[v] = (double) triangles / (k * (k - 1) / 2);
+            sum += coefficients[v];
+        }
+        globalCoefficient = n == 0 ? 0 : sum / n;
+        clusteringMillis = System.currentTimeMillis() - start;
+    }
+
+    public void computeCores() {
+        long start = System.currentTimeMillis();
+        kCore = new KCore(graph, getSortedGraph());
+        kCore.compute();
+        coreMillis = System.currentTimeMillis() - start;
+    }
+
+    // Weakly and strongly connected components, labeled by ConnectedComponents
+    public void computeComponents() {
+        long start = System.currentTimeMillis();
+        weakComponents = ConnectedComponents.weak(graph);
+        strongComponents = ConnectedComponents.strong(graph);
+        componentsMillis = System.currentTimeMillis() - start;
+    }
+
+    public CsrGraph getGraph() {
+        return graph;
+    }
+
+    // Built on first use and kept for further neighbourhood passes
+    public synchronized CsrGraph getSortedGraph() {
+        if (sortedGraph == null) {
+            sortedGraph = graph.withSortedNeighbours();
+        }
+        return sortedGraph;
+    }
+
+    // Per vertex in CsrGraph order; null until computed
+    public int[] getInDegrees() {
+        return inDegrees;
+    }
+
+    public double[] getRanks() {
+        return ranks;
+    }
+
+    public double[] getCoefficients() {
+        return coefficients;
+    }
+
+    public double getGlobalCoefficient() {
+        return globalCoefficient;
+    }
+
+    public int[] getCores() {
+        return kCore == null ? null : kCore.getCores();
+    }
+
+    public int[] getWeakComponents() {
+        return weakComponents;
+    }
+
+    public int[] getStrongComponents() {
+        return strongComponents;
+    }
+
+    // Worded like HighestIndegreeNode.getGraphStats
+    public String getInDegreeStats() {
+        int max = 0;
+        int min = inDegrees.length == 0 ? 0 : Integer.MAX_VALUE;
+        for (int degree : inDegrees) {
+            max = Math.max(max, degree);
+            min = Math.min(min, degree);
+        }
+        return "Graph Statistics:\n" +
+                "- Nodes: " + graph.numVertices() + "\n" +
+                "- Edges: " + graph.numEdges() + "\n" +
+                "- Average in-degree: " + String.format("%.2f", (double) graph.numEdges() / graph.numVertices()) + "\n" +
+                "- Maximum in-degree: " + max + "\n" +
+                "- Minimum in-degree: " + min;
+    }
+
+    // Worded like PageRank.getGraphStats
+    public String getPageRankStats() {
+        return "Graph Statistics:\n" +
+                "- Nodes: " + graph.numVertices() + "\n" +
+                "- Edges: " + graph.numEdges() + "\n" +
+                "- Average outgoing edges: " + String.format("%.2f", (graph.numEdges() / (double) graph.numVertices())) + "\n" +
+                "- Damping factor: " + dampingFactor + "\n" +
+                "- Iterations: " + iterations;
+    }
+
+    // Worded like ClusteringCoefficient.getGraphStats
+    public String getClusteringStats() {
+        double max = Arrays.stream(coefficients).max().orElse(0.0);
+        double min = Arrays.stream(coefficients).min().orElse(0.0);
+        return "Graph Statistics:\n" +
+                "- Nodes: " + graph.numVertices() + "\n" +
+                "- Edges: " + graph.numEdges() + "\n" +
+                "- Global clustering coefficient: " + String.format("%.6f", globalCoefficient) + "\n" +
+                "- Maximum local clustering coefficient: " + String.format("%.6f", max) + "\n" +
+                "- Minimum local clustering coefficient: " + String.format("%.6f", min);
+    }
+
+    // Worded like KCore.getGraphStats
+    public String getCoreStats() {
+        return kCore.getGraphStats();
+    }
+
+    // One report covering every analysis computed so far, with the topN nodes of each
+    public String getReport(int topN) {
+        StringBuilder report = new StringBuilder();
+        report.append("Graph Statistics:\n")
+                .append("- Nodes: ").append(graph.numVertices()).append("\n")
+                .append("- Edges: ").append(graph.numEdges()).append("\n")
+                .append("- Average degree: ").append(String.format("%.2f", (double) graph.numEdges() / graph.numVertices())).append("\n");
+        if (inDegrees != null) {
+            int maxIn = Arrays.stream(inDegrees).max().orElse(0);
+            int maxOut = 0;
+            int sinks = 0;
+            for (int v = 0; v < graph.numVertices(); v++) {
+                maxOut = Math.max(maxOut, graph.outDegree(v));
+                if (graph.outDegree(v) == 0) sinks++;
+            }
+            report.append("- Maximum in-degree: ").append(maxIn).append("\n")
+                    .append("- Maximum out-degree: ").append(maxOut).append("\n")
+                    .append("- Sink nodes: ").append(sinks).append("\n")
+                    .append("- Damping factor: ").append(dampingFactor).append("\n");
+        }
+        if (coefficients != null) {
+            report.append("- Global clustering coefficient: ").append(String.format("%.6f", globalCoefficient)).append("\n");
+        }
+        if (kCore != null) {
+            report.append("- Degeneracy (maximum core number): ").append(kCore.getDegeneracy())
+                    .append(" (").append(kCore.getInnermostCoreSize()).append(" nodes in the innermost core)\n");
+        }
+        if (weakComponents != null) {
+            int[] weak = ConnectedComponents.summarize(weakComponents);
+            int[] strong = ConnectedComponents.summarize(strongComponents);
+            double share = graph.numVertices() == 0 ? 0 : 100.0 * weak[1] / graph.numVertices();
+            report.append("- Weakly connected components: ").append(weak[0])
+                    .append(String.format(" (largest %d nodes, %.1f%%)", weak[1], share)).append("\n")
+                    .append("- Strongly connected components: ").append(strong[0])
+                    .append(" (largest ").append(strong[1]).append(" nodes)\n");
+            // Scores are not comparable across components that no path joins
+            if (weak[0] > 1) {
+                report.append("- Note: the graph is not connected; PageRank and centrality scores only compare nodes within a component\n");
+            }
+        }
+
+        if (inDegrees != null) {
+            report.append("\nTop ").append(topN).append(" Nodes by In-degree:\n");
+            for (int v : top(Arrays.stream(inDegrees).asDoubleStream().toArray(), topN, graph)) {
+                report.append("Node ").append(graph.id(v)).append(": ").append(inDegrees[v]).append(" incoming links\n");
+            }
+            report.append("\nTop ").append(topN).append(" PageRank Results:\n");
+            for (int v : top(ranks, topN, graph)) {
+                report.append("Node ").append(graph.id(v)).append(": ").append(String.format("%.6f", ranks[v])).append("\n");
+            }
+        }
+        if (coefficients != null) {
+            report.append("\nTop ").append(topN).append(" Nodes by Clustering Coefficient:\n");
+            for (int v : top(coefficients, topN, graph)) {
+                report.append("Node ").append(graph.id(v)).append(": ").append(String.format("%.6f", coefficients[v])).append("\n");
+            }
+        }
+        if (kCore != null) {
+            int[] cores = kCore.getCores();
+            report.append("\nTop ").append(topN).append(" Nodes by Core Number:\n");
+            for (int v : top(Arrays.stream(cores).asDoubleStream().toArray(), topN, graph)) {
+                report.append("Node ").append(graph.id(v)).append(": core ").append(cores[v]).append("\n");
+            }
+        }
+        report.append(String.format("%nTimings: load %d ms, ", loadMillis));
+        if (order != VertexOrder.ORIGINAL) {
+            report.append(String.format("%s reordering %d ms, ", order.name().toLowerCase(), reorderMillis));
+        }
+        report.append(String.format("degrees + PageRank %d ms, clustering %d ms", pageRankMillis, clusteringMillis));
+        if (kCore != null) {
+            report.append(String.format(", k-cores %d ms", coreMillis));
+        }
+        if (weakComponents != null) {
+            report.append(String.format(", components %d ms", componentsMillis));
+        }
+        return report.toString();
+    }
+
+    // Vertices with the n highest scores, highest first, ties by original id
+    private static int[] top(double[] scores, int n, CsrGraph graph) {
+        n = Math.min(n, scores.length);
+        // Worst of the current top n at the head
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.max(1, n), (a, b) -> {
+            int byScore = Double.compare(scores[a], scores[b]);
+            return byScore != 0 ? byScore : Integer.compare(graph.id(b), graph.id(a));
+        });
+        for (int v = 0; v < scores.length && n > 0; v++) {
+            if (best.size() < n) {
+                best.add(v);
+            } else if (best.comparator().compare(v, best.peek()) > 0) {
+                best.poll();
+                best.add(v);
+            }
+        }
+        int[] result = new int[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll();
+        }
+        return result;
+    }
+
+    // Runs the fused analyses on a file and, with --compare, the three separate algorithms too
+    public static void main(String[] args) {
+        try {
+            if (args.length < 1) {
+                System.out.println("Usage: java GraphAnalysis <graph-file> [--compare]");
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            GraphAnalysis analysis = GraphAnalysis.load(args[0]);
+            analysis.computeDegreesAndPageRank();
+            analysis.computeClustering();
+            analysis.computeCores();
+            analysis.computeComponents();
+            long fused = System.currentTimeMillis() - start;
+            System.out.println("\n" + analysis.getReport(10));
+            System.out.println("Total: " + fused + " ms");
+
+            if (args.length > 1 && args[1].equals("--compare")) {
+                start = System.currentTimeMillis();
+                new HighestIndegreeNode(args[0]);
+                long indegree = System.currentTimeMillis() - start;
+                start = System.currentTimeMillis();
+                new PageRank(args[0]).compute();
+                long pageRank = System.currentTimeMillis() - start;
+                start = System.currentTimeMillis();
+                new ClusteringCoefficient(args[0]).compute();
+                long clustering = System.currentTimeMillis() - start;
+                System.out.println("\nSeparate runs: in-degree " + indegree + " ms, PageRank " + pageRank
+                        + " ms, clustering " + clustering + " ms, total " + (indegree + pageRank + clustering)
+                        + " ms; fused " + fused + " ms");
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.p2p.algo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+// Core numbers of a CsrGraph, taken as undirected: edge direction, duplicate edges and self-loops
+// are ignored. A vertex's core number is the largest k such that it belongs to a subgraph where
+// every vertex has at least k neighbours; the largest core number is the graph's degeneracy.
+//
+// Peeling is level-synchronous and parallel, after PKC: at level k every remaining vertex of degree
+// at most k is removed at once, and each removal decrements its neighbours' degrees atomically. A
+// neighbour whose degree drops from k + 1 to k joins the next sub-round of the same level, so it is
+// queued exactly once; decrements that would take a degree below k are undone, since those
+// vertices are already being removed. Empty levels are skipped, and the list of remaining vertices
+// is compacted as it shrinks, so the scans for each level stay proportional to what is left.
+public class KCore {
+    private static final int PARALLEL_FRONTIER = 1024;
+
+    private final CsrGraph graph;
+    private final CsrGraph sortedGraph;
+    private int[] offsets;
+    private int[] neighbours;
+    private int[] cores;
+    private int degeneracy;
+
+    public KCore(CsrGraph graph) {
+        this(graph, null);
+    }
+
+    // sortedGraph is graph.withSortedNeighbours(), when the caller already has it (GraphAnalysis shares
+    // one between its neighbourhood passes)
+    public KCore(CsrGraph graph, CsrGraph sortedGraph) {
+        this.graph = graph;
+        this.sortedGraph = sortedGraph;
+    }
+
+    public void compute() {
+        buildUndirected();
+        int n = graph.numVertices();
+        AtomicIntegerArray degree = new AtomicIntegerArray(n);
+        IntStream.range(0, n).parallel().forEach(v -> degree.set(v, offsets[v + 1] - offsets[v]));
+        cores = new int[n];
+        boolean[] removed = new boolean[n];
+
+        int[] remaining = IntStream.range(0, n).toArray();
+        int remainingCount = n;
+        int[] next = new int[n];
+        int k = 0;
+        degeneracy = 0;
+        while (remainingCount > 0) {
+            int[] alive = remaining;
+            int level = k;
+            int[] frontier = range(alive.length).map(i -> alive[i])
+                    .filter(v -> !removed[v] && degree.get(v) <= level).toArray();
+            while (frontier.length > 0) {
+                int[] current = frontier;
+                for (int v : current) {
+                    removed[v] = true;
+                    cores[v] = level;
+                }
+                AtomicInteger size = new AtomicInteger();
+                range(current.length).forEach(i -> {
+                    int v = current[i];
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        int w = neighbours[e];
+                        if (removed[w] || degree.get(w) <= level) continue;
+                        int old = degree.getAndDecrement(w);
+                        if (old == level + 1) {
+                            next[size.getAndIncrement()] = w;
+                        } else if (old <= level) {
+                            degree.getAndIncrement(w);
+                        }
+                    }
+                });
+                frontier = Arrays.copyOf(next, size.get());
+                remainingCount -= current.length;
+            }
+            if (remainingCount == 0) {
+                degeneracy = level;
+                break;
+            }
+            // Drop the removed vertices once they make up half the list
+            if (remainingCount * 2 < alive.length) {
+                remaining = IntStream.of(alive).parallel().filter(v -> !removed[v]).toArray();
+                int[] left = remaining;
+                k = range(left.length).map(i -> degree.get(left[i])).min().orElse(level + 1);
+            } else {
+                k = range(alive.length).filter(i -> !removed[alive[i]])
+                        .map(i -> degree.get(alive[i])).min().orElse(level + 1);
+            }
+        }
+        // The undirected copy is only needed while peeling
+        offsets = null;
+        neighbours = null;
+    }
+
+    // Core number per vertex in CsrGraph order; null until computed
+    public int[] getCores() {
+        return cores;
+    }
+
+    public int getDegeneracy() {
+        return degeneracy;
+    }
+
+    // Vertices in the degeneracy core, the densest layer
+    public int getInnermostCoreSize() {
+        int size = 0;
+        for (int core : cores) {
+            if (core == degeneracy) size++;
+        }
+        return size;
+    }
+
+    public String getGraphStats() {
+        return "Graph Statistics:\n" +
+                "- Nodes: " + graph.numVertices() + "\n" +
+                "- Edges: " + graph.numEdges() + "\n" +
+                "- Degeneracy (maximum core number): " + degeneracy + "\n" +
+                "- Nodes in the innermost core: " + getInnermostCoreSize();
+    }
+
+    // Out- and in-neighbours of every vertex merged, sorted and made unique, without self-loops. The
+    // rows of the sorted graph and of its transpose are already sorted and unique, so one merge does.
+    private void buildUndirected() {
+        int n = graph.numVertices();
+        CsrGraph out = sortedGraph != null ? sortedGraph : graph.withSortedNeighbours();
+        CsrGraph in = out.transpose();
+        int[] outOffsets = out.getOffsets();
+        int[] outTargets = out.getTargets();
+        int[] inOffsets = in.getOffsets();
+        int[] inSources = in.getTargets();
+        int[] merged = new int[2 * out.numEdges()];
+        int[] counts = new int[n];
+        IntStream.range(0, n).parallel().forEach(v -> {
+            int start = outOffsets[v] + inOffsets[v];
+            int count = 0;
+            int i = outOffsets[v];
+            int j = inOffsets[v];
+            while (i < outOffsets[v + 1] || j < inOffsets[v + 1]) {
+                int w;
+                if (j == inOffsets[v + 1] || (i < outOffsets[v + 1] && outTargets[i] < inSources[j])) {
+                    w = outTargets[i++];
+                } else if (i == outOffsets[v + 1] || inSources[j] < outTargets[i]) {
+                    w = inSources[j++];
+                } else {
+                    w = outTargets[i++];
+                    j++;
+                }
+                if (w != v) {
+                    merged[start + count++] = w;
+                }
+            }
+            counts[v] = count;
+        });
+        offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + counts[v];
+        }
+        // Rows only move towards the front, so they can be packed in place, in order
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(merged, outOffsets[v] + inOffsets[v], merged, offsets[v], counts[v]);
+        }
+        neighbours = merged;
+    }
+
+    private static IntStream range(int n) {
+        IntStream stream = IntStream.range(0, n);
+        return n < PARALLEL_FRONTIER ? stream : stream.parallel();
+    }
+}
@@ -0,0 +1,173 @@
+package com.p2p.algo;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Point-to-point hop distances and shortest paths by bidirectional breadth-first search: one search
+// forward from the source along out-edges, one backward from the target along in-edges, always
+// expanding whichever frontier has fewer edges to scan, until they meet. On small-world graphs that
+// touches a tiny fraction of what a full search from the source would. The per-vertex marks are
+// stamped with a query number instead of being cleared, so a query only costs what it touches.
+// Nodes are given by original id. Queries run concurrently, each on search state of its own taken
+// from a pool that grows to the number of queries at once; each one takes milliseconds.
+public class PathFinder {
+    private final CsrGraph graph;
+    private final CsrGraph in;
+    private final Queue<Search> idle = new ConcurrentLinkedQueue<>();
+    private volatile int lastVisited;
+
+    public PathFinder(CsrGraph graph) {
+        this.graph = graph;
+        this.in = graph.transpose();
+    }
+
+    public CsrGraph getGraph() {
+        return graph;
+    }
+
+    // Hops on a shortest path, -1 if toId can't be reached from fromId
+    public int distance(int fromId, int toId) {
+        int[] path = path(fromId, toId);
+        return path == null ? -1 : path.length - 1;
+    }
+
+    // The ids along a shortest path from fromId to toId, both included; null if there is none.
+    // Throws IllegalArgumentException for an id not in the graph.
+    public int[] path(int fromId, int toId) {
+        int source = vertex(fromId);
+        int target = vertex(toId);
+        if (source == target) {
+            lastVisited = 1;
+            return new int[]{fromId};
+        }
+        Search search = idle.poll();
+        if (search == null) {
+            search = new Search(graph.numVertices());
+        }
+        try {
+            return search.path(source, target);
+        } finally {
+            idle.add(search);
+        }
+    }
+
+    // Vertices reached by the last query to finish, a measure of its cost
+    public int getLastVisited() {
+        return lastVisited;
+    }
+
+    private int vertex(int id) {
+        int v = graph.indexOf(id);
+        if (v < 0) {
+            throw new IllegalArgumentException("Unknown node: " + id);
+        }
+        return v;
+    }
+
+    // The marks, parents and frontiers of one query at a time
+    private final class Search {
+        final int[] forwardStamp;
+        final int[] backwardStamp;
+        // Towards the source for forward-reached vertices, towards the target for backward-reached ones
+        final int[] forwardParent;
+        final int[] backwardParent;
+        final int[] forwardQueue;
+        final int[] backwardQueue;
+        int query;
+
+        Search(int n) {
+            forwardStamp = new int[n];
+            backwardStamp = new int[n];
+            forwardParent = new int[n];
+            backwardParent = new int[n];
+            forwardQueue = new int[n];
+            backwardQueue = new int[n];
+        }
+
+        int[] path(int source, int target) {
+            if (++query == Integer.MAX_VALUE) {
+                Arrays.fill(forwardStamp, 0);
+                Arrays.fill(backwardStamp, 0);
+                query = 1;
+            }
+            forwardStamp[source] = query;
+            forwardParent[source] = source;
+            backwardStamp[target] = query;
+            backwardParent[target] = target;
+            forwardQueue[0] = source;
+            backwardQueue[0] = target;
+            // Each frontier is queue[head, tail); its out-edge count picks the side to expand
+            int forwardHead = 0;
+            int forwardTail = 1;
+            int backwardHead = 0;
+            int backwardTail = 1;
+            long forwardEdges = graph.outDegree(source);
+            long backwardEdges = in.outDegree(target);
+            int visited = 2;
+
+            while (forwardHead < forwardTail && backwardHead < backwardTail) {
+                boolean forward = forwardEdges <= backwardEdges;
+                CsrGraph side = forward ? graph : in;
+                int[] queue = forward ? forwardQueue : backwardQueue;
+                int[] stamp = forward ? forwardStamp : backwardStamp;
+                int[] parent = forward ? forwardParent : backwardParent;
+                int[] otherStamp = forward ? backwardStamp : forwardStamp;
+                int[] offsets = side.getOffsets();
+                int[] targets = side.getTargets();
+                int head = forward ? forwardHead : backwardHead;
+                int end = forward ? forwardTail : backwardTail;
+                int tail = end;
+                long edges = 0;
+                // The first meeting is on a shortest path: the two searched balls were disjoint before
+                // this level, so no shorter path exists
+                for (; head < end; head++) {
+                    int v = queue[head];
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        int w = targets[e];
+                        if (stamp[w] == query) continue;
+                        stamp[w] = query;
+                        parent[w] = v;
+                        visited++;
+                        if (otherStamp[w] == query) {
+                            lastVisited = visited;
+                            return join(w);
+                        }
+                        queue[tail++] = w;
+                        edges += side.outDegree(w);
+                    }
+                }
+                if (forward) {
+                    forwardHead = head;
+                    forwardTail = tail;
+                    forwardEdges = edges;
+                } else {
+                    backwardHead = head;
+                    backwardTail = tail;
+                    backwardEdges = edges;
+                }
+            }
+            lastVisited = visited;
+            return null;
+        }
+
+        // Source to meet by forward parents, then meet to target by backward parents, as ids
+        private int[] join(int meet) {
+            int before = 0;
+            for (int v = meet; forwardParent[v] != v; v = forwardParent[v]) before++;
+            int after = 0;
+            for (int v = meet; backwardParent[v] != v; v = backwardParent[v]) after++;
+            int[] path = new int[before + 1 + after];
+            int i = before;
+            for (int v = meet; i >= 0; v = forwardParent[v]) {
+                path[i--] = graph.id(v);
+            }
+            i = before + 1;
+            for (int v = meet; backwardParent[v] != v; i++) {
+                v = backwardParent[v];
+                path[i] = graph.id(v);
+            }
+            return path;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.p2p.algo;
+
+import java.util.Arrays;
+
+// Relabelings that put vertices used together close together in memory, so the random neighbour
+// accesses of PageRank and BFS hit cache more often. Each returns order[newIndex] = old index, for
+// CsrGraph.reorder; the graph keeps every vertex's original id, so results still map back to it.
+// Neighbourhoods are taken in both directions.
+public enum VertexOrder {
+    // Vertices as loaded, i.e. by original id
+    ORIGINAL {
+        @Override
+        public int[] order(CsrGraph graph) {
+            int[] order = new int[graph.numVertices()];
+            for (int v = 0; v < order.length; v++) {
+                order[v] = v;
+            }
+            return order;
+        }
+    },
+    // Highest degree first, so the hubs most edges point at share a few cache lines
+    DEGREE {
+        @Override
+        public int[] order(CsrGraph graph) {
+            int n = graph.numVertices();
+            int[] degree = degrees(graph);
+            int maxDegree = 0;
+            for (int d : degree) {
+                maxDegree = Math.max(maxDegree, d);
+            }
+            // Counting sort, stable so equal degrees keep their id order
+            int[] start = new int[maxDegree + 2];
+            for (int d : degree) {
+                start[maxDegree - d + 1]++;
+            }
+            for (int i = 1; i < start.length; i++) {
+                start[i] += start[i - 1];
+            }
+            int[] order = new int[n];
+            for (int v = 0; v < n; v++) {
+                order[start[maxDegree - degree[v]]++] = v;
+            }
+            return order;
+        }
+    },
+    // Reverse Cuthill-McKee: breadth-first from a low-degree vertex of each component, visiting
+    // neighbours by increasing degree, then reversed. Keeps every edge's endpoints close.
+    RCM {
+        @Override
+        public int[] order(CsrGraph graph) {
+            int n = graph.numVertices();
+            CsrGraph in = graph.transpose();
+            int[] degree = degrees(graph);
+            int[] byDegree = DEGREE.order(graph);
+            boolean[] visited = new boolean[n];
+            int[] order = new int[n];
+            CsrGraph[] sides = {graph, in};
+            long[] batch = new long[16];
+            int head = 0;
+            int tail = 0;
+            for (int i = n - 1; i >= 0; i--) {
+                int root = byDegree[i];
+                if (visited[root]) continue;
+                visited[root] = true;
+                order[tail++] = root;
+                while (head < tail) {
+                    int v = order[head++];
+                    int count = 0;
+                    for (CsrGraph side : sides) {
+                        int[] offsets = side.getOffsets();
+                        int[] targets = side.getTargets();
+                        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                            int w = targets[e];
+                            if (visited[w]) continue;
+                            visited[w] = true;
+                            if (count == batch.length) batch = Arrays.copyOf(batch, count * 2);
+                            batch[count++] = ((long) degree[w] << 32) | w;
+                        }
+                    }
+                    Arrays.sort(batch, 0, count);
+                    for (int k = 0; k < count; k++) {
+                        order[tail++] = (int) batch[k];
+                    }
+                }
+            }
+            for (int i = 0, j = n - 1; i < j; i++, j--) {
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            return order;
+        }
+    },
+    // Greedy Gorder-style ordering: the next vertex is the one sharing the most with the last
+    // WINDOW vertices placed, counting edges to them and in-neighbours in common with them.
+    // Siblings through hubs (more than sqrt(n) out-edges) are not counted, which bounds the work.
+    GORDER {
+        private static final int WINDOW = 5;
+
+        @Override
+        public int[] order(CsrGraph graph) {
+            int n = graph.numVertices();
+            if (n == 0) return new int[0];
+            CsrGraph in = graph.transpose();
+            int hub = Math.max(64, (int) Math.sqrt(n));
+            UnitHeap heap = new UnitHeap(n);
+            int[] order = new int[n];
+
+            int first = 0;
+            for (int v = 1; v < n; v++) {
+                if (in.outDegree(v) > in.outDegree(first)) first = v;
+            }
+            heap.remove(first);
+            order[0] = first;
+            adjust(graph, in, first, hub, heap, 1);
+            for (int i = 1; i < n; i++) {
+                if (i > WINDOW) {
+                    adjust(graph, in, order[i - WINDOW - 1], hub, heap, -1);
+                }
+                int v = heap.pollMax();
+                order[i] = v;
+                adjust(graph, in, v, hub, heap, 1);
+            }
+            return order;
+        }
+
+        // Adds (delta 1) or removes (-1) v's share of every unplaced vertex's score
+        private void adjust(CsrGraph graph, CsrGraph in, int v, int hub, UnitHeap heap, int delta) {
+            int[] outOffsets = graph.getOffsets();
+            int[] outTargets = graph.getTargets();
+            int[] inOffsets = in.getOffsets();
+            int[] inSources = in.getTargets();
+            for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+                heap.add(outTargets[e], delta);
+            }
+            for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+                int x = inSources[e];
+                heap.add(x, delta);
+                if (outOffsets[x + 1] - outOffsets[x] > hub) continue;
+                for (int f = outOffsets[x]; f < outOffsets[x + 1]; f++) {
+                    if (outTargets[f] != v) heap.add(outTargets[f], delta);
+                }
+            }
+        }
+    };
+
+    // order[newIndex] is the old index of the vertex to put there
+    public abstract int[] order(CsrGraph graph);
+
+    // original, degree, rcm or gorder
+    public static VertexOrder named(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown vertex order: " + name);
+        }
+    }
+
+    // In- plus out-degree
+    static int[] degrees(CsrGraph graph) {
+        int[] degree = new int[graph.numVertices()];
+        for (int v = 0; v < degree.length; v++) {
+            degree[v] = graph.outDegree(v);
+        }
+        for (int target : graph.getTargets()) {
+            degree[target]++;
+        }
+        return degree;
+    }
+
+    // Unplaced vertices bucketed by score in doubly linked lists, so a score moves by one in
+    // constant time and the best vertex is found by walking down from the top bucket
+    private static final class UnitHeap {
+        private final int[] score;
+        private final int[] prev;
+        private final int[] next;
+        private final boolean[] removed;
+        private int[] head;
+        private int top;
+
+        UnitHeap(int n) {
+            score = new int[n];
+            prev = new int[n];
+            next = new int[n];
+            removed = new boolean[n];
+            head = new int[16];
+            Arrays.fill(head, -1);
+            // Bucket 0 holds everything, lowest index first
+            for (int v = n - 1; v >= 0; v--) {
+                link(v);
+            }
+        }
+
+        void add(int v, int delta) {
+            if (removed[v]) return;
+            unlink(v);
+            score[v] += delta;
+            link(v);
+        }
+
+        void remove(int v) {
+            unlink(v);
+            removed[v] = true;
+        }
+
+        int pollMax() {
+            while (top > 0 && head[top] < 0) {
+                top--;
+            }
+            int v = head[top];
+            remove(v);
+            return v;
+        }
+
+        private void link(int v) {
+            int s = score[v];
+            if (s >= head.length) {
+                int old = head.length;
+                head = Arrays.copyOf(head, Math.max(s + 1, old * 2));
+                Arrays.fill(head, old, head.length, -1);
+            }
+            prev[v] = -1;
+            next[v] = head[s];
+            if (head[s] >= 0) prev[head[s]] = v;
+            head[s] = v;
+            top = Math.max(top, s);
+        }
+
+        private void unlink(int v) {
+            if (prev[v] >= 0) {
+                next[prev[v]] = next[v];
+            } else {
+                head[score[v]] = next[v];
+            }
+            if (next[v] >= 0) prev[next[v]] = prev[v];
+        }
+    }
+}
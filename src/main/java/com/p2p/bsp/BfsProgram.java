@@ -0,0 +1,38 @@
+package com.p2p.bsp;
+
+import com.p2p.model.Vertex;
+import com.p2p.model.VertexProgram;
+
+// Breadth-first search: each vertex's value becomes its hop distance from the source, or
+// infinity if it can't be reached. Only the frontier is active in each superstep.
+public class BfsProgram implements VertexProgram {
+    private static final long serialVersionUID = 1L;
+
+    private final int source;
+
+    // source is a vertex index (CsrGraph.indexOf of the original id)
+    public BfsProgram(int source) {
+        this.source = source;
+    }
+
+    @Override
+    public double initialValue(Vertex vertex) {
+        return vertex.index() == source ? 0 : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public void compute(Vertex vertex, double message, boolean hasMessage) {
+        if (vertex.getSuperstep() == 0 && vertex.index() == source) {
+            vertex.sendToNeighbors(1);
+        } else if (hasMessage && message < vertex.getValue()) {
+            vertex.setValue(message);
+            vertex.sendToNeighbors(message + 1);
+        }
+        vertex.voteToHalt();
+    }
+
+    @Override
+    public double combine(double a, double b) {
+        return Math.min(a, b);
+    }
+}
@@ -0,0 +1,139 @@
+package com.p2p.bsp;
+
+import com.p2p.algo.CsrGraph;
+import com.p2p.model.BspPartition;
+import com.p2p.model.Peer;
+import com.p2p.model.StepReport;
+import com.p2p.model.VertexProgram;
+import com.p2p.partition.HashPartitioner;
+import com.p2p.partition.PartitionShards;
+import com.p2p.partition.Partitioner;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Drives a vertex program over a graph split across worker peers. The coordinator assigns each
+// vertex to a worker (by a Partitioner, hashing ids by default), ships every worker its partition,
+// then runs supersteps: all workers compute and exchange their message batches directly with each
+// other, and the next superstep starts only when every worker has finished (the barrier). There
+// is no checkpointing; if a worker fails, the run fails.
+public class BspCoordinator {
+    private final List<Peer> workers;
+
+    // Each peer gets one partition; the same peer may appear more than once
+    public BspCoordinator(List<Peer> workers) {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("No workers");
+        }
+        this.workers = new ArrayList<>(workers);
+    }
+
+    public BspResult run(CsrGraph graph, VertexProgram program) throws IOException {
+        return run(graph, program, new HashPartitioner());
+    }
+
+    public BspResult run(CsrGraph graph, VertexProgram program, Partitioner partitioner) throws IOException {
+        return run(graph, program, partitioner.partition(graph, workers.size()));
+    }
+
+    // owner[v] is the worker for vertex v
+    public BspResult run(CsrGraph graph, VertexProgram program, int[] owner) throws IOException {
+        return run(PartitionShards.split(graph, owner, workers.size()), program);
+    }
+
+    // Partitions prepared earlier, e.g. read back from shard files; partition i goes to worker i
+    public BspResult run(List<BspPartition> partitions, VertexProgram program) throws IOException {
+        if (partitions.size() != workers.size()) {
+            throw new IllegalArgumentException(partitions.size() + " partitions for " + workers.size() + " workers");
+        }
+        long start = System.currentTimeMillis();
+        String jobId = "bsp-" + UUID.randomUUID();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers.size(), r -> {
+            Thread thread = new Thread(r, "bsp-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            forEachWorker(pool, w -> {
+                workers.get(w).bspLoad(jobId, partitions.get(w), program, workers);
+                return null;
+            });
+
+            int superstep = 0;
+            long sent = 0;
+            long delivered = 0;
+            while (superstep < program.maxSupersteps()) {
+                int current = superstep;
+                List<StepReport> reports = forEachWorker(pool, w -> workers.get(w).bspSuperstep(jobId, w, current));
+                superstep++;
+
+                long active = 0;
+                long stepSent = 0;
+                long stepDelivered = 0;
+                for (StepReport report : reports) {
+                    active += report.getActiveVertices();
+                    stepSent += report.getMessagesSent();
+                    stepDelivered += report.getMessagesDelivered();
+                }
+                sent += stepSent;
+                delivered += stepDelivered;
+                if (active == 0 && stepDelivered == 0) {
+                    break;
+                }
+            }
+
+            List<double[]> parts = forEachWorker(pool, w -> workers.get(w).bspValues(jobId, w));
+            double[] values = new double[partitions.get(0).getNumVertices()];
+            for (int w = 0; w < parts.size(); w++) {
+                int[] vertices = partitions.get(w).getVertices();
+                double[] part = parts.get(w);
+                for (int i = 0; i < vertices.length; i++) {
+                    values[vertices[i]] = part[i];
+                }
+            }
+            return new BspResult(values, superstep, sent, delivered, System.currentTimeMillis() - start);
+        } finally {
+            for (Peer worker : workers) {
+                try {
+                    worker.bspRelease(jobId);
+                } catch (RemoteException e) {
+                    // Already gone; nothing to free
+                }
+            }
+            pool.shutdownNow();
+        }
+    }
+
+    private interface WorkerCall<T> {
+        T call(int worker) throws RemoteException;
+    }
+
+    // Calls every worker at once and waits for all of them
+    private <T> List<T> forEachWorker(ExecutorService pool, WorkerCall<T> call) throws IOException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (int w = 0; w < workers.size(); w++) {
+            int worker = w;
+            futures.add(pool.submit(() -> call.call(worker)));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Worker failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return results;
+    }
+}
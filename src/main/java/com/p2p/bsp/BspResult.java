@@ -0,0 +1,45 @@
+package com.p2p.bsp;
+
+// Outcome of a vertex-program run: one value per vertex, indexed like the CsrGraph it ran on
+public class BspResult {
+    private final double[] values;
+    private final int supersteps;
+    private final long messagesSent;
+    private final long messagesDelivered;
+    private final long elapsedMillis;
+
+    public BspResult(double[] values, int supersteps, long messagesSent, long messagesDelivered, long elapsedMillis) {
+        this.values = values;
+        this.supersteps = supersteps;
+        this.messagesSent = messagesSent;
+        this.messagesDelivered = messagesDelivered;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public int getSupersteps() {
+        return supersteps;
+    }
+
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    // After sender-side combining
+    public long getMessagesDelivered() {
+        return messagesDelivered;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return supersteps + " supersteps, " + messagesSent + " messages (" + messagesDelivered
+                + " after combining) in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,178 @@
+package com.p2p.bsp;
+
+import com.p2p.model.BspPartition;
+import com.p2p.model.MessageBatch;
+import com.p2p.model.Peer;
+import com.p2p.model.StepReport;
+import com.p2p.model.VertexProgram;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+
+// Runs a vertex program over one partition. Outgoing messages are combined per target as they are
+// sent, in one slot per entry of the partition's target table, and go out as one batch per worker
+// at the end of the superstep. Incoming messages are combined into the inbox of the superstep that
+// reads them; inboxes alternate by superstep parity, so a fast worker's messages for the next
+// superstep never mix with those still being read here.
+public class BspWorker {
+    // Larger batches are split so one RMI call never has to marshal an unbounded array
+    private static final int MAX_BATCH = 1 << 20;
+
+    private final String jobId;
+    private final int self;
+    private final VertexProgram program;
+    private final List<Peer> workers;
+    private final int[] targets;
+    private final int[] targetOwner;
+    private final int[] targetSlot;
+    private final LocalVertex vertex;
+    private final double[] values;
+    private final boolean[] halted;
+
+    private final double[][] inbox = new double[2][];
+    private final boolean[][] hasMessage = new boolean[2][];
+
+    // Combined message per target table entry and which entries are in use, then the entries in use
+    // listed per destination worker
+    private final double[] outbox;
+    private final boolean[] outboxUsed;
+    private final int[][] outboxTargets;
+    private final int[] outboxCount;
+    private long messagesSent;
+
+    public BspWorker(String jobId, BspPartition partition, VertexProgram program, List<Peer> workers) {
+        this.jobId = jobId;
+        this.self = partition.getPartitionId();
+        this.program = program;
+        this.workers = workers;
+        this.targets = partition.getTargets();
+        this.targetOwner = partition.getTargetOwner();
+        this.targetSlot = partition.getTargetSlot();
+
+        int size = partition.getVertices().length;
+        values = new double[size];
+        halted = new boolean[size];
+        for (int i = 0; i < 2; i++) {
+            inbox[i] = new double[size];
+            hasMessage[i] = new boolean[size];
+        }
+
+        int[] targetsPerWorker = new int[workers.size()];
+        for (int w : targetOwner) {
+            targetsPerWorker[w]++;
+        }
+        outbox = new double[targets.length];
+        outboxUsed = new boolean[targets.length];
+        outboxTargets = new int[workers.size()][];
+        outboxCount = new int[workers.size()];
+        for (int w = 0; w < workers.size(); w++) {
+            outboxTargets[w] = new int[targetsPerWorker[w]];
+        }
+
+        vertex = new LocalVertex(this, partition.getVertices(), partition.getOffsets(), partition.getEdges(),
+                partition.getNumVertices());
+        for (int i = 0; i < size; i++) {
+            vertex.moveTo(i, 0, 0);
+            values[i] = program.initialValue(vertex);
+        }
+    }
+
+    public StepReport superstep(int superstep) throws RemoteException {
+        long start = System.nanoTime();
+        double[] messages = inbox[superstep & 1];
+        boolean[] received = hasMessage[superstep & 1];
+        synchronized (inbox) {
+            // Supersteps and deliveries run on whatever RMI threads serve them; taking the lock at the
+            // start and end of each makes their writes visible to one another
+            messagesSent = 0;
+        }
+
+        int active = 0;
+        for (int i = 0; i < values.length; i++) {
+            boolean has = received[i];
+            if (halted[i] && !has) continue;
+            vertex.moveTo(i, superstep, values[i]);
+            program.compute(vertex, messages[i], has);
+            values[i] = vertex.getValue();
+            halted[i] = vertex.isHalted();
+            if (!halted[i]) active++;
+            received[i] = false;
+        }
+        long computeNanos = System.nanoTime() - start;
+
+        long delivered = 0;
+        for (int w = 0; w < workers.size(); w++) {
+            delivered += flush(w, superstep);
+        }
+        synchronized (inbox) {
+            return new StepReport(active, messagesSent, delivered, computeNanos);
+        }
+    }
+
+    // Messages sent to this worker in `batch.getSuperstep()`, read in the superstep after it
+    public void deliver(MessageBatch batch) {
+        int next = (batch.getSuperstep() + 1) & 1;
+        double[] messages = inbox[next];
+        boolean[] received = hasMessage[next];
+        int[] targets = batch.getTargets();
+        double[] batchValues = batch.getValues();
+        synchronized (inbox) {
+            for (int i = 0; i < targets.length; i++) {
+                int t = targets[i];
+                messages[t] = received[t] ? program.combine(messages[t], batchValues[i]) : batchValues[i];
+                received[t] = true;
+            }
+        }
+    }
+
+    // Vertex values in the order of the partition's vertices
+    public double[] getValues() {
+        return values.clone();
+    }
+
+    // Target is a position in the target table
+    void send(int target, double message) {
+        messagesSent++;
+        if (outboxUsed[target]) {
+            outbox[target] = program.combine(outbox[target], message);
+        } else {
+            outboxUsed[target] = true;
+            outbox[target] = message;
+            int w = targetOwner[target];
+            outboxTargets[w][outboxCount[w]++] = target;
+        }
+    }
+
+    // Position in the target table of a vertex this worker's edges point to
+    int targetOf(int vertexIndex) {
+        int target = Arrays.binarySearch(targets, vertexIndex);
+        if (target < 0) {
+            throw new IllegalArgumentException("Vertex " + vertexIndex + " is not a neighbour of partition " + self);
+        }
+        return target;
+    }
+
+    private int flush(int w, int superstep) throws RemoteException {
+        int count = outboxCount[w];
+        for (int from = 0; from < count; from += MAX_BATCH) {
+            int to = Math.min(count, from + MAX_BATCH);
+            int[] slots = new int[to - from];
+            double[] batchValues = new double[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                int target = outboxTargets[w][from + i];
+                slots[i] = targetSlot[target];
+                batchValues[i] = outbox[target];
+                outboxUsed[target] = false;
+            }
+            MessageBatch batch = new MessageBatch(superstep, slots, batchValues);
+            if (w == self) {
+                deliver(batch);
+            } else {
+                workers.get(w).bspDeliver(jobId, w, batch);
+            }
+        }
+        outboxCount[w] = 0;
+        return count;
+    }
+}
@@ -0,0 +1,29 @@
+package com.p2p.bsp;
+
+import com.p2p.model.Vertex;
+import com.p2p.model.VertexProgram;
+
+// In-degree: every vertex sends 1 along each out-edge and sums what it receives
+public class InDegreeProgram implements VertexProgram {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public double initialValue(Vertex vertex) {
+        return 0;
+    }
+
+    @Override
+    public void compute(Vertex vertex, double message, boolean hasMessage) {
+        if (vertex.getSuperstep() == 0) {
+            vertex.sendToNeighbors(1);
+        } else if (hasMessage) {
+            vertex.setValue(message);
+        }
+        vertex.voteToHalt();
+    }
+
+    @Override
+    public double combine(double a, double b) {
+        return a + b;
+    }
+}
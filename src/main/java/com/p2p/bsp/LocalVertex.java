@@ -0,0 +1,83 @@
+package com.p2p.bsp;
+
+import com.p2p.model.Vertex;
+
+// The Vertex a BspWorker hands its program. Edges are positions in the partition's target table,
+// so sending along one needs no lookup.
+final class LocalVertex implements Vertex {
+    private final BspWorker worker;
+    private final int[] vertices;
+    private final int[] offsets;
+    private final int[] edges;
+    private final long numVertices;
+    private int local;
+    private int superstep;
+    private double value;
+    private boolean halted;
+
+    LocalVertex(BspWorker worker, int[] vertices, int[] offsets, int[] edges, long numVertices) {
+        this.worker = worker;
+        this.vertices = vertices;
+        this.offsets = offsets;
+        this.edges = edges;
+        this.numVertices = numVertices;
+    }
+
+    void moveTo(int local, int superstep, double value) {
+        this.local = local;
+        this.superstep = superstep;
+        this.value = value;
+        this.halted = false;
+    }
+
+    boolean isHalted() {
+        return halted;
+    }
+
+    @Override
+    public int index() {
+        return vertices[local];
+    }
+
+    @Override
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public void setValue(double value) {
+        this.value = value;
+    }
+
+    @Override
+    public int getOutDegree() {
+        return offsets[local + 1] - offsets[local];
+    }
+
+    @Override
+    public int getSuperstep() {
+        return superstep;
+    }
+
+    @Override
+    public long getNumVertices() {
+        return numVertices;
+    }
+
+    @Override
+    public void sendTo(int target, double message) {
+        worker.send(worker.targetOf(target), message);
+    }
+
+    @Override
+    public void sendToNeighbors(double message) {
+        for (int e = offsets[local]; e < offsets[local + 1]; e++) {
+            worker.send(edges[e], message);
+        }
+    }
+
+    @Override
+    public void voteToHalt() {
+        halted = true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.p2p.bsp;
+
+import com.p2p.model.Vertex;
+import com.p2p.model.VertexProgram;
+
+// PageRank as a vertex program, with the same update as com.p2p.algo.PageRank: each iteration a
+// vertex's rank becomes (1 - d) / n plus d times the rank its in-neighbours spread over their out-links.
+public class PageRankProgram implements VertexProgram {
+    private static final long serialVersionUID = 1L;
+
+    private final double dampingFactor;
+    private final int iterations;
+
+    public PageRankProgram(double dampingFactor, int iterations) {
+        this.dampingFactor = dampingFactor;
+        this.iterations = iterations;
+    }
+
+    public PageRankProgram() {
+        this(0.85, 10);
+    }
+
+    @Override
+    public double initialValue(Vertex vertex) {
+        return 1.0 / vertex.getNumVertices();
+    }
+
+    @Override
+    public void compute(Vertex vertex, double message, boolean hasMessage) {
+        if (vertex.getSuperstep() > 0) {
+            vertex.setValue((1 - dampingFactor) / vertex.getNumVertices() + (hasMessage ? dampingFactor * message : 0));
+        }
+        if (vertex.getSuperstep() < iterations && vertex.getOutDegree() > 0) {
+            vertex.sendToNeighbors(vertex.getValue() / vertex.getOutDegree());
+        }
+        if (vertex.getSuperstep() >= iterations) {
+            vertex.voteToHalt();
+        }
+    }
+
+    @Override
+    public double combine(double a, double b) {
+        return a + b;
+    }
+
+    @Override
+    public int maxSupersteps() {
+        return iterations + 1;
+    }
+}
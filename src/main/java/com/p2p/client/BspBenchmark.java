@@ -0,0 +1,128 @@
+package com.p2p.client;
+
+import com.p2p.algo.CsrGraph;
+import com.p2p.algo.PageRank;
+import com.p2p.bsp.BfsProgram;
+import com.p2p.bsp.BspCoordinator;
+import com.p2p.bsp.BspResult;
+import com.p2p.bsp.InDegreeProgram;
+import com.p2p.bsp.PageRankProgram;
+import com.p2p.model.Peer;
+import com.p2p.model.VertexProgram;
+import com.p2p.partition.Partitioner;
+import com.p2p.registry.ShardedRegistry;
+
+import java.rmi.server.RemoteObject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+// Runs PageRank, in-degree and BFS as vertex programs on 1..k workers and checks them against a
+// single-machine computation. Workers are peers started in this JVM (called through RMI over
+// localhost) or, when registry addresses are given, the peers registered there. Vertices are
+// assigned by the partitioner named in -Dp2p.bsp.partitioner (hash by default; see Partitioner.named).
+// Usage: java com.p2p.client.BspBenchmark graphFile [workerCounts, e.g. 1,2,4] [registryAddresses]
+public class BspBenchmark {
+    // Holds the local workers, which stay exported only while referenced
+    private static final List<PeerClient> localWorkers = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java com.p2p.client.BspBenchmark graphFile [1,2,4] [registryAddresses]");
+            return;
+        }
+        String graphFile = args[0];
+        int[] counts = Arrays.stream((args.length > 1 ? args[1] : "1,2,4").split(",")).mapToInt(Integer::parseInt).toArray();
+        int maxWorkers = Arrays.stream(counts).max().getAsInt();
+        System.setProperty("java.rmi.server.hostname", System.getProperty("java.rmi.server.hostname", "127.0.0.1"));
+
+        List<Peer> peers = new ArrayList<>();
+        if (args.length > 2) {
+            ShardedRegistry registry = new ShardedRegistry(args[2]);
+            for (Peer peer : registry.getPeers(registry.getAvailablePeers()).values()) {
+                if (peers.size() == maxWorkers) break;
+                peers.add(peer);
+            }
+        } else {
+            for (int i = 1; i <= maxWorkers; i++) {
+                PeerClient worker = new PeerClient("BspWorker" + i);
+                localWorkers.add(worker);
+                peers.add((Peer) RemoteObject.toStub(worker));
+            }
+        }
+
+        CsrGraph graph = CsrGraph.load(graphFile);
+        System.out.println(graph.getGraphStats());
+        Partitioner partitioner = Partitioner.named(System.getProperty("p2p.bsp.partitioner", "hash"));
+
+        PageRank pageRank = new PageRank(graphFile);
+        pageRank.compute();
+        double[] expectedRanks = byIndex(graph, pageRank.getRanks());
+        double[] expectedInDegrees = new double[graph.numVertices()];
+        for (int target : graph.getTargets()) {
+            expectedInDegrees[target]++;
+        }
+        double[] expectedDistances = bfs(graph, 0);
+
+        System.out.printf("%n%-8s %-38s %-38s %-38s%n", "Workers", "PageRank (10 iterations)", "In-degree", "BFS from vertex " + graph.id(0));
+        for (int count : counts) {
+            if (count > peers.size()) {
+                System.out.println("Only " + peers.size() + " workers available");
+                break;
+            }
+            BspCoordinator coordinator = new BspCoordinator(peers.subList(0, count));
+            int[] owner = partitioner.partition(graph, count);
+            System.out.printf("%-8d %-38s %-38s %-38s%n", count,
+                    run(coordinator, graph, owner, new PageRankProgram(), expectedRanks),
+                    run(coordinator, graph, owner, new InDegreeProgram(), expectedInDegrees),
+                    run(coordinator, graph, owner, new BfsProgram(0), expectedDistances));
+        }
+        System.exit(0);
+    }
+
+    private static String run(BspCoordinator coordinator, CsrGraph graph, int[] owner, VertexProgram program, double[] expected) {
+        try {
+            BspResult result = coordinator.run(graph, program, owner);
+            double maxError = 0;
+            for (int v = 0; v < expected.length; v++) {
+                double a = result.getValues()[v];
+                double b = expected[v];
+                if (a != b) maxError = Math.max(maxError, Math.abs(a - b));
+            }
+            return String.format("%d ms, %d steps, %.0fk msgs, err %.1g", result.getElapsedMillis(),
+                    result.getSupersteps(), result.getMessagesDelivered() / 1000.0, maxError);
+        } catch (Exception e) {
+            return "failed: " + e.getMessage();
+        }
+    }
+
+    private static double[] byIndex(CsrGraph graph, Map<Integer, Double> values) {
+        double[] result = new double[graph.numVertices()];
+        for (int v = 0; v < result.length; v++) {
+            result[v] = values.get(graph.id(v));
+        }
+        return result;
+    }
+
+    private static double[] bfs(CsrGraph graph, int source) {
+        double[] distance = new double[graph.numVertices()];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        distance[source] = 0;
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            for (int e = graph.getOffsets()[v]; e < graph.getOffsets()[v + 1]; e++) {
+                int w = graph.getTargets()[e];
+                if (distance[w] == Double.POSITIVE_INFINITY) {
+                    distance[w] = distance[v] + 1;
+                    queue.add(w);
+                }
+            }
+        }
+        return distance;
+    }
+}
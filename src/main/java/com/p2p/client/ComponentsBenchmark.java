@@ -0,0 +1,158 @@
+package com.p2p.client;
+
+import com.p2p.algo.ConnectedComponents;
+import com.p2p.algo.CsrGraph;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Times the parallel weak and strong component searches and checks them against sequential
+// ones (breadth-first search over both edge directions, and Tarjan's algorithm). The graph is a
+// file or "gen:vertices:degree" (see PartitionBenchmark).
+// Usage: java com.p2p.client.ComponentsBenchmark graphFile|gen:vertices:degree
+public class ComponentsBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java com.p2p.client.ComponentsBenchmark graphFile|gen:vertices:degree");
+            return;
+        }
+        Path file;
+        boolean generated = args[0].startsWith("gen:");
+        if (generated) {
+            String[] spec = args[0].split(":");
+            file = Files.createTempFile("components-benchmark", ".txt");
+            PartitionBenchmark.generate(file, Integer.parseInt(spec[1]), Integer.parseInt(spec[2]));
+        } else {
+            file = Paths.get(args[0]);
+        }
+        CsrGraph graph;
+        try {
+            graph = CsrGraph.load(file.toString());
+        } finally {
+            if (generated) Files.deleteIfExists(file);
+        }
+        System.out.println(graph.getGraphStats());
+        System.out.println("Threads: " + Runtime.getRuntime().availableProcessors());
+
+        // Warm up once so neither side pays for JIT compilation in its timing
+        ConnectedComponents.weak(graph);
+        ConnectedComponents.strong(graph);
+
+        long start = System.nanoTime();
+        int[] weak = ConnectedComponents.weak(graph);
+        double weakMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        int[] expectedWeak = sequentialWeak(graph);
+        double sequentialWeakMillis = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        int[] strong = ConnectedComponents.strong(graph);
+        double strongMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        int[] expectedStrong = tarjan(graph);
+        double tarjanMillis = (System.nanoTime() - start) / 1e6;
+
+        int[] weakSummary = ConnectedComponents.summarize(weak);
+        int[] strongSummary = ConnectedComponents.summarize(strong);
+        System.out.printf("%nWeak:   %d components, largest %d; parallel %.0f ms, sequential BFS %.0f ms, %s%n",
+                weakSummary[0], weakSummary[1], weakMillis, sequentialWeakMillis,
+                Arrays.equals(weak, expectedWeak) ? "same labels" : "MISMATCH");
+        System.out.printf("Strong: %d components, largest %d; parallel %.0f ms, sequential Tarjan %.0f ms, %s%n",
+                strongSummary[0], strongSummary[1], strongMillis, tarjanMillis,
+                Arrays.equals(strong, expectedStrong) ? "same labels" : "MISMATCH");
+        System.out.printf("Edges per second: weak %.1fM, strong %.1fM%n",
+                graph.numEdges() / weakMillis / 1e3, graph.numEdges() / strongMillis / 1e3);
+    }
+
+    // Labels each vertex with the smallest vertex in its component, like ConnectedComponents
+    private static int[] sequentialWeak(CsrGraph graph) {
+        int n = graph.numVertices();
+        CsrGraph in = graph.transpose();
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        int[] queue = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (component[root] >= 0) continue;
+            component[root] = root;
+            int tail = 0;
+            queue[tail++] = root;
+            for (int head = 0; head < tail; head++) {
+                int v = queue[head];
+                for (CsrGraph side : new CsrGraph[]{graph, in}) {
+                    for (int e = side.getOffsets()[v]; e < side.getOffsets()[v + 1]; e++) {
+                        int w = side.getTargets()[e];
+                        if (component[w] < 0) {
+                            component[w] = root;
+                            queue[tail++] = w;
+                        }
+                    }
+                }
+            }
+        }
+        return component;
+    }
+
+    // Iterative Tarjan, relabeled with the smallest vertex of each component
+    private static int[] tarjan(CsrGraph graph) {
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] component = new int[n];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] callStack = new int[n];
+        int[] nextEdge = new int[n];
+        int top = 0;
+        int counter = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) continue;
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = low[root] = counter++;
+            nextEdge[root] = offsets[root];
+            stack[top++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                int v = callStack[depth - 1];
+                if (nextEdge[v] < offsets[v + 1]) {
+                    int w = targets[nextEdge[v]++];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        nextEdge[w] = offsets[w];
+                        stack[top++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] == index[v]) {
+                    int start = top;
+                    int smallest = Integer.MAX_VALUE;
+                    do {
+                        start--;
+                        smallest = Math.min(smallest, stack[start]);
+                    } while (stack[start] != v);
+                    for (int i = start; i < top; i++) {
+                        component[stack[i]] = smallest;
+                        onStack[stack[i]] = false;
+                    }
+                    top = start;
+                }
+            }
+        }
+        return component;
+    }
+}
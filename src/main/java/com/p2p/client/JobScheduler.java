@@ -0,0 +1,81 @@
+package com.p2p.client;
+
+import com.p2p.model.GraphAlgorithm;
+import com.p2p.model.JobRequest;
+import com.p2p.model.Peer;
+import com.p2p.model.Placement;
+import com.p2p.registry.RemoteCalls;
+import com.p2p.transfer.ManifestCache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Runs graph jobs on the least busy peer instead of always on the local one. The registry ranks
+// peers by the load they report in heartbeats and prefers those already holding the graph file;
+// if the chosen peer doesn't have it after all, the local copy is sent there first. Jobs can also be
+// sent to many peers at once, for one round trip in all.
+public class JobScheduler {
+    private static final int CANDIDATES = 3;
+
+    private final PeerDirectory peers;
+    private final Path graphDirectory;
+    private final ManifestCache manifests;
+
+    public JobScheduler(PeerDirectory peers, Path graphDirectory, ManifestCache manifests) {
+        this.peers = peers;
+        this.graphDirectory = graphDirectory;
+        this.manifests = manifests;
+    }
+
+    // Returns the name of the peer the job was started on
+    public String submit(GraphAlgorithm algorithm, String graphFile) throws IOException {
+        List<Placement> ranked = peers.rankPeersForJob(graphFile, CANDIDATES);
+        Path localCopy = graphDirectory.resolve(graphFile);
+        for (Placement placement : ranked) {
+            Peer peer = peers.getPeer(placement.getPeerName());
+            if (peer == null) continue;
+            try {
+                if (!hasFile(peer, graphFile)) {
+                    if (!Files.exists(localCopy)) continue;
+                    System.out.println("Staging " + graphFile + " on " + placement.getPeerName());
+                    PeerClient.uploadToPeer(peer, localCopy, manifests);
+                }
+                algorithm.run(peer, graphFile);
+                System.out.println(algorithm.getDisplayName() + " on " + graphFile + " placed on "
+                        + placement.getPeerName() + " (" + placement.getLoad() + ")");
+                return placement.getPeerName();
+            } catch (RemoteException e) {
+                System.out.println("Could not place job on " + placement.getPeerName() + ": " + e.getMessage());
+            }
+        }
+        throw new IOException("No peer available to run " + algorithm.getDisplayName() + " on " + graphFile);
+    }
+
+    // Like submit, without blocking the caller
+    public CompletableFuture<String> submitAsync(GraphAlgorithm algorithm, String graphFile) {
+        return RemoteCalls.async(() -> submit(algorithm, graphFile));
+    }
+
+    // The request on every named peer at once: one batched lookup, then all submissions in flight
+    // together. Completes with the job id per peer that took the job; peers that are unknown,
+    // unreachable or busy are left out.
+    public CompletableFuture<Map<String, String>> submitToPeers(List<String> peerNames, JobRequest request) {
+        return peers.getPeers(peerNames)
+                .thenCompose(found -> RemoteCalls.answered(RemoteCalls.fanOut(found, peer -> peer.submitJob(request))));
+    }
+
+    // The registry's answer comes from a Bloom filter, so confirm with the peer itself
+    private static boolean hasFile(Peer peer, String filename) {
+        try {
+            peer.getFileSize(filename);
+            return true;
+        } catch (RemoteException e) {
+            return false;
+        }
+    }
+}
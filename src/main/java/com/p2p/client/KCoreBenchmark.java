@@ -0,0 +1,114 @@
+package com.p2p.client;
+
+import com.p2p.algo.CsrGraph;
+import com.p2p.algo.KCore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Times the parallel k-core peel and checks its core numbers against the sequential bucket
+// algorithm of Batagelj and Zaversnik on the same undirected, duplicate-free graph. The graph is a
+// file or "gen:vertices:degree" (see PartitionBenchmark).
+// Usage: java com.p2p.client.KCoreBenchmark graphFile|gen:vertices:degree
+public class KCoreBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java com.p2p.client.KCoreBenchmark graphFile|gen:vertices:degree");
+            return;
+        }
+        Path file;
+        boolean generated = args[0].startsWith("gen:");
+        if (generated) {
+            String[] spec = args[0].split(":");
+            file = Files.createTempFile("kcore-benchmark", ".txt");
+            PartitionBenchmark.generate(file, Integer.parseInt(spec[1]), Integer.parseInt(spec[2]));
+        } else {
+            file = Paths.get(args[0]);
+        }
+        CsrGraph graph;
+        try {
+            graph = CsrGraph.load(file.toString());
+        } finally {
+            if (generated) Files.deleteIfExists(file);
+        }
+        System.out.println(graph.getGraphStats());
+        System.out.println("Threads: " + Runtime.getRuntime().availableProcessors());
+
+        // Warm up once so the timed run doesn't pay for JIT compilation
+        new KCore(graph).compute();
+        long start = System.nanoTime();
+        KCore kCore = new KCore(graph);
+        kCore.compute();
+        double parallelMillis = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        int[] expected = sequential(graph);
+        double sequentialMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("%nDegeneracy %d, %d nodes in the innermost core%n", kCore.getDegeneracy(),
+                kCore.getInnermostCoreSize());
+        System.out.printf("Parallel peel %.0f ms (%.1fM edges/s), sequential bucket peel %.0f ms, %s%n",
+                parallelMillis, graph.numEdges() / parallelMillis / 1e3, sequentialMillis,
+                Arrays.equals(kCore.getCores(), expected) ? "same core numbers" : "MISMATCH");
+    }
+
+    // Batagelj-Zaversnik: vertices bucketed by degree, always removing one of least degree
+    private static int[] sequential(CsrGraph graph) {
+        int n = graph.numVertices();
+        CsrGraph in = graph.transpose();
+        int[][] adjacency = new int[n][];
+        for (int v = 0; v < n; v++) {
+            int[] row = new int[graph.outDegree(v) + in.outDegree(v)];
+            System.arraycopy(graph.getTargets(), graph.getOffsets()[v], row, 0, graph.outDegree(v));
+            System.arraycopy(in.getTargets(), in.getOffsets()[v], row, graph.outDegree(v), in.outDegree(v));
+            int self = v;
+            adjacency[v] = Arrays.stream(row).filter(w -> w != self).sorted().distinct().toArray();
+        }
+        int[] degree = new int[n];
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            degree[v] = adjacency[v].length;
+            maxDegree = Math.max(maxDegree, degree[v]);
+        }
+        int[] bucketStart = new int[maxDegree + 1];
+        for (int v = 0; v < n; v++) {
+            bucketStart[degree[v]]++;
+        }
+        for (int d = 0, start = 0; d <= maxDegree; d++) {
+            int count = bucketStart[d];
+            bucketStart[d] = start;
+            start += count;
+        }
+        int[] order = new int[n];
+        int[] position = new int[n];
+        for (int v = 0; v < n; v++) {
+            position[v] = bucketStart[degree[v]]++;
+            order[position[v]] = v;
+        }
+        for (int d = maxDegree; d > 0; d--) {
+            bucketStart[d] = bucketStart[d - 1];
+        }
+        bucketStart[0] = 0;
+        for (int i = 0; i < n; i++) {
+            int v = order[i];
+            for (int w : adjacency[v]) {
+                if (degree[w] > degree[v]) {
+                    // Swap w to the front of its bucket, then shrink the bucket past it
+                    int dw = degree[w];
+                    int first = order[bucketStart[dw]];
+                    if (first != w) {
+                        order[position[w]] = first;
+                        position[first] = position[w];
+                        order[bucketStart[dw]] = w;
+                        position[w] = bucketStart[dw];
+                    }
+                    bucketStart[dw]++;
+                    degree[w]--;
+                }
+            }
+        }
+        return degree;
+    }
+}
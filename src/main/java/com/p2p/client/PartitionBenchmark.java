@@ -0,0 +1,126 @@
+package com.p2p.client;
+
+import com.p2p.algo.CsrGraph;
+import com.p2p.partition.PartitionShards;
+import com.p2p.partition.PartitionStats;
+import com.p2p.partition.Partitioner;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+// Measures how fast each partitioner splits a large edge list and how good the split is (edge cut,
+// remote message volume, balance). The graph is an edge-list file, or "gen:vertices:degree" for a
+// generated graph of 1000-vertex communities (80% of edges inside a community) with shuffled ids,
+// so neither hashing nor id ranges line up with its structure. With a shard directory, the
+// partitions from the last partitioner are also written out as shard files.
+// Usage: java com.p2p.client.PartitionBenchmark graphFile|gen:vertices:degree [2,4,8]
+//            [hash,range,ldg,fennel,fennel+lp] [shardDirectory]
+public class PartitionBenchmark {
+    private static final int COMMUNITY = 1000;
+    private static final double LOCAL_EDGES = 0.8;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java com.p2p.client.PartitionBenchmark graphFile|gen:vertices:degree [2,4,8] [hash,range,ldg,fennel,fennel+lp] [shardDirectory]");
+            return;
+        }
+        String[] parts = (args.length > 1 ? args[1] : "2,4,8").split(",");
+        String[] partitioners = (args.length > 2 ? args[2] : "hash,range,ldg,fennel,fennel+lp").split(",");
+
+        Path file;
+        boolean generated = args[0].startsWith("gen:");
+        if (generated) {
+            String[] spec = args[0].split(":");
+            file = Files.createTempFile("partition-benchmark", ".txt");
+            long start = System.nanoTime();
+            long edges = generate(file, Integer.parseInt(spec[1]), Integer.parseInt(spec[2]));
+            System.out.printf("Generated %d edges in %.2fs%n", edges, (System.nanoTime() - start) / 1e9);
+        } else {
+            file = Paths.get(args[0]);
+        }
+
+        try {
+            long start = System.nanoTime();
+            CsrGraph graph = CsrGraph.load(file.toString());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(graph.getGraphStats());
+            System.out.printf("Loaded in %.2fs (%.1fM edges/s)%n%n", seconds, graph.numEdges() / seconds / 1e6);
+
+            System.out.printf("%-6s %-11s %-22s %-9s %-14s %-10s %-10s%n",
+                    "Parts", "Partitioner", "Time", "Edge cut", "Remote volume", "Vertices", "Edges");
+            int[] owner = null;
+            int lastParts = 0;
+            for (String count : parts) {
+                int k = Integer.parseInt(count.trim());
+                for (String name : partitioners) {
+                    Partitioner partitioner = Partitioner.named(name.trim());
+                    start = System.nanoTime();
+                    owner = partitioner.partition(graph, k);
+                    seconds = (System.nanoTime() - start) / 1e9;
+                    lastParts = k;
+                    PartitionStats stats = PartitionStats.of(graph, owner, k);
+                    System.out.printf("%-6d %-11s %-22s %-9s %-14d %-10.3f %-10.3f%n", k, name.trim(),
+                            String.format("%.2fs (%.1fM edges/s)", seconds, graph.numEdges() / seconds / 1e6),
+                            String.format("%.1f%%", 100 * stats.getEdgeCutRatio()), stats.getRemoteVolume(),
+                            stats.getVertexBalance(), stats.getEdgeBalance());
+                }
+            }
+
+            if (args.length > 3 && owner != null) {
+                start = System.nanoTime();
+                List<Path> shards = PartitionShards.write(Paths.get(args[3]), PartitionShards.split(graph, owner, lastParts));
+                long bytes = 0;
+                for (Path shard : shards) {
+                    bytes += Files.size(shard);
+                }
+                System.out.printf("%nWrote %d shards (%.1f MB) to %s in %.2fs%n", shards.size(), bytes / 1e6,
+                        args[3], (System.nanoTime() - start) / 1e9);
+            }
+        } finally {
+            if (generated) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Returns the number of edges written
+    static long generate(Path file, int vertices, int degree) throws IOException {
+        Random random = new Random(42);
+        int[] ids = new int[vertices];
+        for (int v = 0; v < vertices; v++) {
+            ids[v] = v;
+        }
+        for (int v = vertices - 1; v > 0; v--) {
+            int j = random.nextInt(v + 1);
+            int swap = ids[v];
+            ids[v] = ids[j];
+            ids[j] = swap;
+        }
+
+        long edges = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            out.write("# FromNodeId\tToNodeId\n".getBytes(StandardCharsets.US_ASCII));
+            StringBuilder line = new StringBuilder();
+            for (int v = 0; v < vertices; v++) {
+                int base = v / COMMUNITY * COMMUNITY;
+                int size = Math.min(COMMUNITY, vertices - base);
+                for (int i = 0; i < degree; i++) {
+                    int w = random.nextDouble() < LOCAL_EDGES ? base + random.nextInt(size) : random.nextInt(vertices);
+                    if (w == v) continue;
+                    line.setLength(0);
+                    line.append(ids[v]).append('\t').append(ids[w]).append('\n');
+                    out.write(line.toString().getBytes(StandardCharsets.US_ASCII));
+                    edges++;
+                }
+            }
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,157 @@
+package com.p2p.client;
+
+import com.p2p.algo.Bfs;
+import com.p2p.algo.CsrGraph;
+import com.p2p.algo.PathFinder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+// Times full breadth-first searches with and without direction switching, and point-to-point path
+// queries by bidirectional search, checking both against a plain sequential BFS: distances must be
+// equal, parents one hop closer to the source, and every returned path a chain of real edges of the
+// right length. The graph is a file or "gen:vertices:degree" (see PartitionBenchmark).
+// Usage: java com.p2p.client.PathBenchmark graphFile|gen:vertices:degree [sources] [queries]
+public class PathBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java com.p2p.client.PathBenchmark graphFile|gen:vertices:degree [sources] [queries]");
+            return;
+        }
+        int sourceCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int queryCount = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        Path file;
+        boolean generated = args[0].startsWith("gen:");
+        if (generated) {
+            String[] spec = args[0].split(":");
+            file = Files.createTempFile("path-benchmark", ".txt");
+            PartitionBenchmark.generate(file, Integer.parseInt(spec[1]), Integer.parseInt(spec[2]));
+        } else {
+            file = Paths.get(args[0]);
+        }
+        CsrGraph graph;
+        try {
+            graph = CsrGraph.load(file.toString());
+        } finally {
+            if (generated) Files.deleteIfExists(file);
+        }
+        System.out.println(graph.getGraphStats());
+        int n = graph.numVertices();
+        Random random = new Random(42);
+
+        Bfs optimizing = new Bfs(graph);
+        Bfs topDown = new Bfs(graph, false);
+        int[] sources = random.ints(sourceCount, 0, n).toArray();
+        // Warm up so neither variant pays for JIT compilation in its timing
+        optimizing.parents(sources[0]);
+        topDown.parents(sources[0]);
+        sequential(graph, sources[0]);
+
+        double optimizingMillis = 0;
+        double topDownMillis = 0;
+        double sequentialMillis = 0;
+        int bottomUpLevels = 0;
+        boolean correct = true;
+        for (int source : sources) {
+            long start = System.nanoTime();
+            int[] expected = sequential(graph, source);
+            sequentialMillis += (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            int[] parents = optimizing.parents(source);
+            optimizingMillis += (System.nanoTime() - start) / 1e6;
+            bottomUpLevels += optimizing.getBottomUpLevels();
+            start = System.nanoTime();
+            int[] distances = topDown.distances(source);
+            topDownMillis += (System.nanoTime() - start) / 1e6;
+            correct &= Arrays.equals(distances, expected) && Arrays.equals(optimizing.distances(source), expected)
+                    && validParents(graph, source, parents, expected);
+        }
+        System.out.printf("%nFull BFS from %d sources, per search: sequential %.1f ms, parallel top-down %.1f ms, "
+                        + "direction-optimizing %.1f ms (%.1f bottom-up levels), %s%n",
+                sources.length, sequentialMillis / sources.length, topDownMillis / sources.length,
+                optimizingMillis / sources.length, bottomUpLevels / (double) sources.length,
+                correct ? "same distances" : "MISMATCH");
+
+        // Queries are checked against full searches from a few sources
+        PathFinder finder = new PathFinder(graph);
+        int[] querySources = random.ints(Math.min(queryCount, 20), 0, n).toArray();
+        double[] millis = new double[queryCount];
+        long visited = 0;
+        int unreachable = 0;
+        correct = true;
+        for (int q = 0; q < queryCount; q++) {
+            int from = querySources[q % querySources.length];
+            int to = random.nextInt(n);
+            long start = System.nanoTime();
+            int[] path = finder.path(graph.id(from), graph.id(to));
+            millis[q] = (System.nanoTime() - start) / 1e6;
+            visited += finder.getLastVisited();
+            if (path == null) unreachable++;
+            if (q < querySources.length * 50) {
+                int[] expected = sequential(graph, from);
+                correct &= validPath(graph, path, from, to, expected[to]);
+            }
+        }
+        Arrays.sort(millis);
+        System.out.printf("%d point-to-point queries (%d unreachable): median %.2f ms, p99 %.2f ms, max %.2f ms; "
+                        + "%.0f vertices visited per query of %d; %s%n",
+                queryCount, unreachable, millis[queryCount / 2], millis[queryCount * 99 / 100],
+                millis[queryCount - 1], visited / (double) queryCount, n, correct ? "shortest paths" : "MISMATCH");
+    }
+
+    private static int[] sequential(CsrGraph graph, int source) {
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] distance = new int[n];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[n];
+        int tail = 0;
+        distance[source] = 0;
+        queue[tail++] = source;
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int w = targets[e];
+                if (distance[w] < 0) {
+                    distance[w] = distance[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return distance;
+    }
+
+    private static boolean validParents(CsrGraph graph, int source, int[] parent, int[] distance) {
+        for (int v = 0; v < parent.length; v++) {
+            if (v == source) {
+                if (parent[v] != source) return false;
+            } else if (distance[v] < 0 ? parent[v] != -1
+                    : parent[v] < 0 || distance[parent[v]] != distance[v] - 1 || !hasEdge(graph, parent[v], v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean validPath(CsrGraph graph, int[] path, int from, int to, int expectedHops) {
+        if (path == null) return expectedHops < 0;
+        if (path.length - 1 != expectedHops || path[0] != graph.id(from) || path[path.length - 1] != graph.id(to)) {
+            return false;
+        }
+        for (int i = 1; i < path.length; i++) {
+            if (!hasEdge(graph, graph.indexOf(path[i - 1]), graph.indexOf(path[i]))) return false;
+        }
+        return true;
+    }
+
+    private static boolean hasEdge(CsrGraph graph, int u, int v) {
+        for (int e = graph.getOffsets()[u]; e < graph.getOffsets()[u + 1]; e++) {
+            if (graph.getTargets()[e] == v) return true;
+        }
+        return false;
+    }
+}
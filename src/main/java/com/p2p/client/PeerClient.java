@@ -1,15 +1,49 @@
 package com.p2p.client;
+import com.p2p.bsp.BspWorker;
+import com.p2p.model.BlockSignature;
+import com.p2p.model.BspPartition;
+import com.p2p.model.Chunk;
+import com.p2p.model.DeltaBatch;
+import com.p2p.model.FileManifest;
+import com.p2p.model.GraphAlgorithm;
+import com.p2p.model.JobListener;
+import com.p2p.model.JobRejectedException;
+import com.p2p.model.JobRequest;
+import com.p2p.model.JobResult;
+import com.p2p.model.JobStatus;
+import com.p2p.model.MessageBatch;
 import com.p2p.model.Peer;
-import com.p2p.server.PeerRegistryInterface;
-import com.p2p.algo.PageRank;
-import com.p2p.algo.HighestIndegreeNode;
-import com.p2p.algo.BetweennessCentrality;
-import com.p2p.algo.ClusteringCoefficient;
+import com.p2p.model.PeerLoad;
+import com.p2p.model.StepReport;
+import com.p2p.model.TransferTicket;
+import com.p2p.model.VertexProgram;
+import com.p2p.job.JobManager;
+import com.p2p.job.PathService;
+import com.p2p.job.ResultCache;
+import com.p2p.job.StreamService;
+import com.p2p.registry.RemoteCalls;
+import com.p2p.registry.ShardedRegistry;
+import com.p2p.transfer.Broadcast;
+import com.p2p.transfer.BroadcastRelay;
+import com.p2p.transfer.BulkTransferClient;
+import com.p2p.transfer.BulkTransferServer;
+import com.p2p.transfer.ChunkCodec;
+import com.p2p.transfer.ChunkStore;
+import com.p2p.transfer.ChunkedTransfer;
+import com.p2p.transfer.DeltaReceiver;
+import com.p2p.transfer.DeltaSync;
+import com.p2p.transfer.FileIndex;
+import com.p2p.transfer.ManifestCache;
+import com.p2p.transfer.SignatureCache;
+import com.p2p.transfer.SwarmDownloader;
+import com.p2p.transfer.TransferStats;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.net.InetAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -17,17 +51,33 @@ import java.nio.file.Paths;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 public class PeerClient extends UnicastRemoteObject implements Peer {
+    // No dialogs at all, e.g. in a container: -Dp2p.headless=true or a headless JVM
+    static final boolean HEADLESS = Boolean.getBoolean("p2p.headless") || GraphicsEnvironment.isHeadless();
+
     private final String name;
     private static final String directory = "uploads/";
     private static final String downloadDir = "downloads/";
-    private Map<Integer, Double> pageRankResults;
-    private Map<Integer, Integer> indegreeResults;
-    private Map<Integer, Double> betweennessResults;
-    private Map<Integer, Double> clusteringResults;
+    private static final String cacheDir = "cache/results/";
+    private final ChunkStore chunkStore = new ChunkStore(Paths.get(directory));
+    private final BulkTransferServer bulkServer;
+    private final ManifestCache manifestCache = new ManifestCache(chunkStore);
+    private final SignatureCache signatureCache = new SignatureCache(chunkStore);
+    private final DeltaReceiver deltaReceiver = new DeltaReceiver(chunkStore, signatureCache);
+    private final Map<String, BroadcastRelay> broadcasts = new ConcurrentHashMap<>();
+    private final FileIndex fileIndex;
+    private final JobManager jobs;
+    private final PathService paths;
+    private final StreamService streams;
+    private final Map<String, BspWorker> bspWorkers = new ConcurrentHashMap<>();
 
     protected PeerClient(String name) throws RemoteException {
         this.name = name;
@@ -36,6 +86,27 @@ public class PeerClient extends UnicastRemoteObject implements Peer {
         File downloadFolder = new File(downloadDir);
         if (!uploadFolder.exists()) uploadFolder.mkdirs();
         if (!downloadFolder.exists()) downloadFolder.mkdirs();
+
+        try {
+            String host = System.getProperty("java.rmi.server.hostname", getLocalIPAddress());
+            bulkServer = new BulkTransferServer(chunkStore, host, Integer.getInteger("p2p.bulk.port", 0));
+        } catch (IOException e) {
+            throw new RemoteException("Could not open bulk transfer channel", e);
+        }
+        try {
+            fileIndex = new FileIndex(Paths.get(directory));
+        } catch (IOException e) {
+            throw new RemoteException("Could not index " + directory, e);
+        }
+        try {
+            ResultCache results = new ResultCache(Paths.get(System.getProperty("p2p.cache.dir", cacheDir)),
+                    ResultCache.DEFAULT_MAX_BYTES);
+            jobs = new JobManager(name, Paths.get(directory), manifestCache, results);
+        } catch (IOException e) {
+            throw new RemoteException("Could not open result cache", e);
+        }
+        paths = new PathService(Paths.get(directory));
+        streams = new StreamService(Paths.get(directory));
     }
 
     public String getName() throws RemoteException {
@@ -55,336 +126,501 @@ public class PeerClient extends UnicastRemoteObject implements Peer {
         try {
             Path path = Paths.get(directory + filename);
             Files.write(path, data);
-            JOptionPane.showMessageDialog(null, "File " + filename + " uploaded successfully.");
+            if (HEADLESS) {
+                System.out.println("File " + filename + " uploaded successfully.");
+            } else {
+                JOptionPane.showMessageDialog(null, "File " + filename + " uploaded successfully.");
+            }
         } catch (IOException e) {
             throw new RemoteException("Error saving file: " + filename, e);
         }
     }
 
     @Override
-    public void runPageRank(String graphFile) throws RemoteException {
+    public long getFileSize(String filename) throws RemoteException {
         try {
-            long startTime = System.currentTimeMillis();
-
-            // Show a "processing" dialog
-            JDialog processingDialog = new JDialog();
-            processingDialog.setTitle("Processing");
-            JProgressBar progressBar = new JProgressBar();
-            progressBar.setIndeterminate(true);
-            JLabel statusLabel = new JLabel("Loading graph and computing PageRank...");
-            processingDialog.setLayout(new BorderLayout());
-            processingDialog.add(statusLabel, BorderLayout.NORTH);
-            processingDialog.add(progressBar, BorderLayout.CENTER);
-            processingDialog.setSize(300, 100);
-            processingDialog.setLocationRelativeTo(null);
-            processingDialog.setVisible(true);
-
-            // Create a worker thread to avoid freezing the UI
-            SwingWorker<Void, String> worker = new SwingWorker<Void, String>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    publish("Loading graph from file...");
-                    PageRank pageRank = new PageRank(directory + graphFile);
-
-                    publish("Computing PageRank (this may take a few minutes)...");
-                    pageRank.compute();
-
-                    pageRankResults = pageRank.getRanks();
-
-                    publish("Sorting results...");
-                    List<Map.Entry<Integer, Double>> topNodes = pageRank.getTopNodes(20);
-
-                    StringBuilder results = new StringBuilder();
-                    results.append(pageRank.getGraphStats()).append("\n\n");
-                    results.append("Top 20 PageRank Results:\n");
-                    for (Map.Entry<Integer, Double> entry : topNodes) {
-                        results.append("Node ").append(entry.getKey())
-                                .append(": ").append(String.format("%.6f", entry.getValue()))
-                                .append("\n");
-                    }
-
-                    // Add execution time
-                    long endTime = System.currentTimeMillis();
-                    results.append("\nExecution time: ").append((endTime - startTime) / 1000.0).append(" seconds");
+            return chunkStore.size(filename);
+        } catch (IOException e) {
+            throw new RemoteException("File not found: " + filename, e);
+        }
+    }
 
-                    final String resultText = results.toString();
+    @Override
+    public Chunk readChunk(String filename, long offset, int length, int compressionLevel) throws RemoteException {
+        try {
+            return ChunkCodec.encode(chunkStore.read(filename, offset, length), compressionLevel);
+        } catch (IOException e) {
+            throw new RemoteException("Error reading chunk of " + filename + " at " + offset, e);
+        }
+    }
 
-                    SwingUtilities.invokeLater(() -> {
-                        processingDialog.dispose();
-                        JTextArea textArea = new JTextArea(resultText);
-                        JScrollPane scrollPane = new JScrollPane(textArea);
-                        scrollPane.setPreferredSize(new Dimension(500, 400));
-                        JOptionPane.showMessageDialog(null, scrollPane, "PageRank Results", JOptionPane.INFORMATION_MESSAGE);
-                    });
+    @Override
+    public BitSet beginUpload(String filename, FileManifest manifest) throws RemoteException {
+        try {
+            return chunkStore.beginUpload(filename, manifest);
+        } catch (IOException e) {
+            throw new RemoteException("Error starting upload: " + filename, e);
+        }
+    }
 
-                    return null;
-                }
+    @Override
+    public void writeChunk(String filename, long offset, Chunk chunk) throws RemoteException {
+        try {
+            chunkStore.write(filename, offset, ChunkCodec.decode(chunk));
+        } catch (IOException e) {
+            throw new RemoteException("Error writing chunk of " + filename + " at " + offset, e);
+        }
+    }
 
-                @Override
-                protected void process(List<String> chunks) {
-                    if (!chunks.isEmpty()) {
-                        statusLabel.setText(chunks.get(chunks.size() - 1));
-                    }
-                }
-            };
+    @Override
+    public void finishUpload(String filename) throws RemoteException {
+        try {
+            chunkStore.finishUpload(filename);
+            System.out.println("Received file " + filename + " via chunked upload");
+        } catch (IOException e) {
+            throw new RemoteException("Error saving file: " + filename, e);
+        }
+    }
 
-            worker.execute();
+    @Override
+    public TransferTicket openDownload(String filename, long offset, long length) throws RemoteException {
+        try {
+            return bulkServer.openDownload(filename, offset, length);
+        } catch (IOException e) {
+            throw new RemoteException("File not found: " + filename, e);
+        }
+    }
 
-        } catch (Exception e) {
-            throw new RemoteException("Error running PageRank", e);
+    @Override
+    public TransferTicket openUpload(String filename, long offset, long length) throws RemoteException {
+        try {
+            return bulkServer.openUpload(filename, offset, length);
+        } catch (IOException e) {
+            throw new RemoteException("Error starting upload: " + filename, e);
         }
     }
 
     @Override
-    public void runHighestIndegree(String graphFile) throws RemoteException {
+    public FileManifest getManifest(String filename) throws RemoteException {
         try {
-            long startTime = System.currentTimeMillis();
-
-            // Show a "processing" dialog
-            JDialog processingDialog = new JDialog();
-            processingDialog.setTitle("Processing");
-            JProgressBar progressBar = new JProgressBar();
-            progressBar.setIndeterminate(true);
-            JLabel statusLabel = new JLabel("Loading graph and computing Highest Indegree...");
-            processingDialog.setLayout(new BorderLayout());
-            processingDialog.add(statusLabel, BorderLayout.NORTH);
-            processingDialog.add(progressBar, BorderLayout.CENTER);
-            processingDialog.setSize(300, 100);
-            processingDialog.setLocationRelativeTo(null);
-            processingDialog.setVisible(true);
-
-            // Create a worker thread to avoid freezing the UI
-            SwingWorker<Void, String> worker = new SwingWorker<Void, String>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    publish("Loading graph from file...");
-                    HighestIndegreeNode indegree = new HighestIndegreeNode(directory + graphFile);
-
-                    publish("Calculating in-degrees...");
-                    indegreeResults = indegree.getInDegrees();
-
-                    publish("Sorting results...");
-                    List<Map.Entry<Integer, Integer>> topNodes = indegree.getTopNodes(20);
-
-                    StringBuilder results = new StringBuilder();
-                    results.append(indegree.getGraphStats()).append("\n\n");
-                    results.append("Top 20 Nodes by In-degree:\n");
-                    for (Map.Entry<Integer, Integer> entry : topNodes) {
-                        results.append("Node ").append(entry.getKey())
-                                .append(": ").append(entry.getValue())
-                                .append(" incoming links\n");
-                    }
+            return manifestCache.getManifest(filename);
+        } catch (IOException e) {
+            throw new RemoteException("File not found: " + filename, e);
+        }
+    }
 
-                    // Add execution time
-                    long endTime = System.currentTimeMillis();
-                    results.append("\nExecution time: ").append((endTime - startTime) / 1000.0).append(" seconds");
+    @Override
+    public BlockSignature getBlockSignature(String filename, int blockSize) throws RemoteException {
+        try {
+            return signatureCache.getSignature(filename, blockSize);
+        } catch (IOException e) {
+            throw new RemoteException("Error computing signature of " + filename, e);
+        }
+    }
 
-                    final String resultText = results.toString();
+    @Override
+    public void beginDelta(String filename, int blockSize) throws RemoteException {
+        try {
+            deltaReceiver.begin(filename, blockSize);
+        } catch (IOException e) {
+            throw new RemoteException("Error starting delta transfer: " + filename, e);
+        }
+    }
 
-                    SwingUtilities.invokeLater(() -> {
-                        processingDialog.dispose();
-                        JTextArea textArea = new JTextArea(resultText);
-                        JScrollPane scrollPane = new JScrollPane(textArea);
-                        scrollPane.setPreferredSize(new Dimension(500, 400));
-                        JOptionPane.showMessageDialog(null, scrollPane, "Highest In-degree Results", JOptionPane.INFORMATION_MESSAGE);
-                    });
+    @Override
+    public void applyDelta(String filename, DeltaBatch batch) throws RemoteException {
+        try {
+            deltaReceiver.apply(filename, batch);
+        } catch (IOException e) {
+            throw new RemoteException("Error applying delta to " + filename, e);
+        }
+    }
 
-                    return null;
-                }
+    @Override
+    public void finishDelta(String filename, long size, byte[] sha256) throws RemoteException {
+        try {
+            deltaReceiver.finish(filename, size, sha256);
+            System.out.println("Updated file " + filename + " via delta sync");
+        } catch (IOException e) {
+            throw new RemoteException("Error saving file: " + filename, e);
+        }
+    }
 
-                @Override
-                protected void process(List<String> chunks) {
-                    if (!chunks.isEmpty()) {
-                        statusLabel.setText(chunks.get(chunks.size() - 1));
-                    }
-                }
-            };
+    @Override
+    public void beginBroadcast(String filename, FileManifest manifest, List<Peer> subtree, int fanout) throws RemoteException {
+        try {
+            chunkStore.beginUpload(filename, manifest);
+        } catch (IOException e) {
+            throw new RemoteException("Error starting broadcast: " + filename, e);
+        }
+        BroadcastRelay relay = new BroadcastRelay(manifest);
+        relay.start(subtree, fanout);
+        BroadcastRelay previous = broadcasts.put(filename, relay);
+        if (previous != null) {
+            previous.abort();
+        }
+    }
 
-            worker.execute();
+    @Override
+    public void broadcastChunk(String filename, int piece, Chunk chunk) throws RemoteException {
+        BroadcastRelay relay = broadcasts.get(filename);
+        if (relay == null) {
+            throw new RemoteException("No broadcast in progress for " + filename);
+        }
+        try {
+            chunkStore.write(filename, relay.getManifest().getPieceOffset(piece), ChunkCodec.decode(chunk));
+        } catch (IOException e) {
+            // Keep forwarding: a bad piece here only costs this peer its copy, not the whole subtree
+            System.out.println("Broadcast piece " + piece + " of " + filename + " not stored: " + e.getMessage());
+        }
+        try {
+            relay.forward(piece, chunk);
+        } catch (IOException e) {
+            throw new RemoteException("Error forwarding broadcast of " + filename, e);
+        }
+    }
 
-        } catch (Exception e) {
-            throw new RemoteException("Error calculating highest in-degree", e);
+    @Override
+    public List<String> finishBroadcast(String filename) throws RemoteException {
+        BroadcastRelay relay = broadcasts.remove(filename);
+        if (relay == null) {
+            throw new RemoteException("No broadcast in progress for " + filename);
         }
+        List<String> delivered = new ArrayList<>();
+        try {
+            chunkStore.finishUpload(filename);
+            delivered.add(name);
+            System.out.println("Received file " + filename + " via broadcast");
+        } catch (IOException e) {
+            System.out.println("Broadcast of " + filename + " failed here: " + e.getMessage());
+        }
+        try {
+            delivered.addAll(relay.finish());
+        } catch (IOException e) {
+            throw new RemoteException("Error finishing broadcast of " + filename, e);
+        }
+        return delivered;
+    }
+
+    // Reported to the registry with every heartbeat so jobs can be placed on the least busy peer
+    PeerLoad currentLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        int processors = os.getAvailableProcessors();
+        // Load average isn't available on every platform; count the machine as half busy then
+        double loadAverage = os.getSystemLoadAverage();
+        double cpuLoad = loadAverage < 0 ? 0.5 : Math.min(1.0, loadAverage / processors);
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return new PeerLoad(cpuLoad, processors, freeHeap, jobs.getPendingCount());
     }
 
     @Override
-    public void runBetweennessCentrality(String graphFile) throws RemoteException {
+    public String submitJob(JobRequest request) throws RemoteException, JobRejectedException {
         try {
-            long startTime = System.currentTimeMillis();
-
-            // Show a "processing" dialog
-            JDialog processingDialog = new JDialog();
-            processingDialog.setTitle("Processing");
-            JProgressBar progressBar = new JProgressBar();
-            progressBar.setIndeterminate(true);
-            JLabel statusLabel = new JLabel("Loading graph and computing Betweenness Centrality...");
-            processingDialog.setLayout(new BorderLayout());
-            processingDialog.add(statusLabel, BorderLayout.NORTH);
-            processingDialog.add(progressBar, BorderLayout.CENTER);
-            processingDialog.setSize(300, 100);
-            processingDialog.setLocationRelativeTo(null);
-            processingDialog.setVisible(true);
-
-            // Create a worker thread to avoid freezing the UI
-            SwingWorker<Void, String> worker = new SwingWorker<Void, String>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    publish("Loading graph from file...");
-                    BetweennessCentrality betweenness = new BetweennessCentrality(directory + graphFile);
-
-                    publish("Computing betweenness centrality (this may take a few minutes)...");
-                    betweenness.compute();
-
-                    betweennessResults = betweenness.getCentrality();
-
-                    publish("Sorting results...");
-                    List<Map.Entry<Integer, Double>> topNodes = betweenness.getTopNodes(20);
-
-                    StringBuilder results = new StringBuilder();
-                    results.append(betweenness.getGraphStats()).append("\n\n");
-                    results.append("Top 20 Nodes by Betweenness Centrality:\n");
-                    for (Map.Entry<Integer, Double> entry : topNodes) {
-                        results.append("Node ").append(entry.getKey())
-                                .append(": ").append(String.format("%.6f", entry.getValue()))
-                                .append("\n");
-                    }
+            return jobs.submit(request, null);
+        } catch (RejectedExecutionException e) {
+            throw new JobRejectedException("Peer " + name + " is busy: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
 
-                    // Add execution time
-                    long endTime = System.currentTimeMillis();
-                    results.append("\nExecution time: ").append((endTime - startTime) / 1000.0).append(" seconds");
+    @Override
+    public JobStatus getJobStatus(String jobId) throws RemoteException {
+        JobStatus status = jobs.getStatus(jobId);
+        if (status == null) {
+            throw new RemoteException("Unknown job: " + jobId);
+        }
+        return status;
+    }
 
-                    final String resultText = results.toString();
+    @Override
+    public JobResult getJobResult(String jobId, int topN) throws RemoteException {
+        try {
+            return jobs.getResult(jobId, topN);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
 
-                    SwingUtilities.invokeLater(() -> {
-                        processingDialog.dispose();
-                        JTextArea textArea = new JTextArea(resultText);
-                        JScrollPane scrollPane = new JScrollPane(textArea);
-                        scrollPane.setPreferredSize(new Dimension(500, 400));
-                        JOptionPane.showMessageDialog(null, scrollPane, "Betweenness Centrality Results", JOptionPane.INFORMATION_MESSAGE);
-                    });
+    @Override
+    public JobResult getJobResult(String jobId, int offset, int count) throws RemoteException {
+        try {
+            return jobs.getResult(jobId, offset, count);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
 
-                    return null;
-                }
+    @Override
+    public String exportJobResult(String jobId, String format) throws RemoteException {
+        try {
+            return jobs.export(jobId, format).toString();
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
 
-                @Override
-                protected void process(List<String> chunks) {
-                    if (!chunks.isEmpty()) {
-                        statusLabel.setText(chunks.get(chunks.size() - 1));
-                    }
-                }
-            };
+    @Override
+    public int[] findPath(String graphFile, int from, int to) throws RemoteException {
+        try {
+            return paths.findPath(graphFile, from, to);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
 
-            worker.execute();
+    @Override
+    public JobResult getLiveRanking(String graphFile, GraphAlgorithm algorithm, int topN) throws RemoteException {
+        try {
+            return streams.ranking(graphFile, algorithm, topN);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
 
-        } catch (Exception e) {
-            throw new RemoteException("Error calculating betweenness centrality", e);
+    @Override
+    public void subscribeJob(String jobId, JobListener listener) throws RemoteException {
+        try {
+            jobs.subscribe(jobId, listener);
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage(), e);
         }
     }
 
     @Override
-    public void runClusteringCoefficient(String graphFile) throws RemoteException {
+    public boolean cancelJob(String jobId) throws RemoteException {
         try {
-            long startTime = System.currentTimeMillis();
-
-            // Show a "processing" dialog
-            JDialog processingDialog = new JDialog();
-            processingDialog.setTitle("Processing");
-            JProgressBar progressBar = new JProgressBar();
-            progressBar.setIndeterminate(true);
-            JLabel statusLabel = new JLabel("Loading graph and computing Clustering Coefficients...");
-            processingDialog.setLayout(new BorderLayout());
-            processingDialog.add(statusLabel, BorderLayout.NORTH);
-            processingDialog.add(progressBar, BorderLayout.CENTER);
-            processingDialog.setSize(300, 100);
-            processingDialog.setLocationRelativeTo(null);
-            processingDialog.setVisible(true);
-
-            // Create a worker thread to avoid freezing the UI
-            SwingWorker<Void, String> worker = new SwingWorker<Void, String>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    publish("Loading graph from file...");
-                    ClusteringCoefficient clustering = new ClusteringCoefficient(directory + graphFile);
-
-                    publish("Computing clustering coefficients...");
-                    clustering.compute();
-
-                    clusteringResults = clustering.getCoefficients();
-
-                    publish("Sorting results...");
-                    List<Map.Entry<Integer, Double>> topNodes = clustering.getTopNodes(20);
-
-                    StringBuilder results = new StringBuilder();
-                    results.append(clustering.getGraphStats()).append("\n\n");
-                    results.append("Top 20 Nodes by Clustering Coefficient:\n");
-                    for (Map.Entry<Integer, Double> entry : topNodes) {
-                        results.append("Node ").append(entry.getKey())
-                                .append(": ").append(String.format("%.6f", entry.getValue()))
-                                .append("\n");
-                    }
+            return jobs.cancel(jobId);
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage(), e);
+        }
+    }
 
-                    // Add execution time
-                    long endTime = System.currentTimeMillis();
-                    results.append("\nExecution time: ").append((endTime - startTime) / 1000.0).append(" seconds");
+    @Override
+    public void bspLoad(String jobId, BspPartition partition, VertexProgram program, List<Peer> workers) {
+        bspWorkers.put(bspKey(jobId, partition.getPartitionId()), new BspWorker(jobId, partition, program, workers));
+        System.out.println("Loaded partition " + partition.getPartitionId() + " of " + jobId + ": "
+                + partition.getVertices().length + " vertices, " + partition.getEdges().length + " edges");
+    }
 
-                    final String resultText = results.toString();
+    @Override
+    public StepReport bspSuperstep(String jobId, int partition, int superstep) throws RemoteException {
+        return bspWorker(jobId, partition).superstep(superstep);
+    }
 
-                    SwingUtilities.invokeLater(() -> {
-                        processingDialog.dispose();
-                        JTextArea textArea = new JTextArea(resultText);
-                        JScrollPane scrollPane = new JScrollPane(textArea);
-                        scrollPane.setPreferredSize(new Dimension(500, 400));
-                        JOptionPane.showMessageDialog(null, scrollPane, "Clustering Coefficient Results", JOptionPane.INFORMATION_MESSAGE);
-                    });
+    @Override
+    public void bspDeliver(String jobId, int partition, MessageBatch batch) throws RemoteException {
+        bspWorker(jobId, partition).deliver(batch);
+    }
 
-                    return null;
-                }
+    @Override
+    public double[] bspValues(String jobId, int partition) throws RemoteException {
+        return bspWorker(jobId, partition).getValues();
+    }
 
-                @Override
-                protected void process(List<String> chunks) {
-                    if (!chunks.isEmpty()) {
-                        statusLabel.setText(chunks.get(chunks.size() - 1));
-                    }
+    @Override
+    public void bspRelease(String jobId) {
+        bspWorkers.keySet().removeIf(key -> key.startsWith(jobId + "/"));
+    }
+
+    private BspWorker bspWorker(String jobId, int partition) throws RemoteException {
+        BspWorker worker = bspWorkers.get(bspKey(jobId, partition));
+        if (worker == null) {
+            throw new RemoteException("Partition " + partition + " of " + jobId + " is not loaded here");
+        }
+        return worker;
+    }
+
+    private static String bspKey(String jobId, int partition) {
+        return jobId + "/" + partition;
+    }
+
+    @Override
+    public void runPageRank(String graphFile) throws RemoteException {
+        runWithDialog(GraphAlgorithm.PAGERANK, graphFile, "PageRank Results");
+    }
+
+    @Override
+    public void runHighestIndegree(String graphFile) throws RemoteException {
+        runWithDialog(GraphAlgorithm.HIGHEST_INDEGREE, graphFile, "Highest In-degree Results");
+    }
+
+    @Override
+    public void runBetweennessCentrality(String graphFile) throws RemoteException {
+        runWithDialog(GraphAlgorithm.BETWEENNESS_CENTRALITY, graphFile, "Betweenness Centrality Results");
+    }
+
+    @Override
+    public void runClusteringCoefficient(String graphFile) throws RemoteException {
+        runWithDialog(GraphAlgorithm.CLUSTERING_COEFFICIENT, graphFile, "Clustering Coefficient Results");
+    }
+
+    @Override
+    public void runKCore(String graphFile) throws RemoteException {
+        runWithDialog(GraphAlgorithm.K_CORE, graphFile, "K-Core Decomposition Results");
+    }
+
+    @Override
+    public void runAllAnalyses(String graphFile) throws RemoteException {
+        runWithDialog(GraphAlgorithm.ALL_ANALYSES, graphFile, "Graph Analysis Report");
+    }
+
+    // Runs the job through the job queue like any other, showing progress and then the top 20 nodes.
+    // A headless peer just logs the outcome.
+    private void runWithDialog(GraphAlgorithm algorithm, String graphFile, String resultTitle) throws RemoteException {
+        if (HEADLESS) {
+            try {
+                String jobId = submitJob(new JobRequest(algorithm, graphFile));
+                System.out.println("Started job " + jobId + ": " + algorithm.getDisplayName() + " on " + graphFile);
+            } catch (JobRejectedException e) {
+                throw new RemoteException(e.getMessage(), e);
+            }
+            return;
+        }
+
+        // Show a "processing" dialog
+        JDialog processingDialog = new JDialog();
+        processingDialog.setTitle("Processing");
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        JLabel statusLabel = new JLabel("Loading graph and computing " + algorithm.getDisplayName() + "...");
+        processingDialog.setLayout(new BorderLayout());
+        processingDialog.add(statusLabel, BorderLayout.NORTH);
+        processingDialog.add(progressBar, BorderLayout.CENTER);
+        processingDialog.setSize(300, 100);
+        processingDialog.setLocationRelativeTo(null);
+        SwingUtilities.invokeLater(() -> processingDialog.setVisible(true));
+
+        JobListener listener = status -> SwingUtilities.invokeLater(() -> {
+            statusLabel.setText(status.getMessage());
+            progressBar.setValue((int) (status.getProgress() * 100));
+            if (!status.isFinished()) return;
+
+            processingDialog.dispose();
+            if (status.getState() != JobStatus.State.SUCCEEDED) {
+                JOptionPane.showMessageDialog(null, algorithm.getDisplayName() + " " + status.getState()
+                        .toString().toLowerCase() + ": " + status.getMessage());
+                return;
+            }
+            try {
+                JTextArea textArea = new JTextArea(formatResults(jobs.getResult(status.getJobId(), 20)));
+                JScrollPane scrollPane = new JScrollPane(textArea);
+                scrollPane.setPreferredSize(new Dimension(500, 400));
+                // The dialog shows the top 20; the full result can be written out from here
+                String[] options = {"OK", "Export binary", "Export CSV"};
+                int choice = JOptionPane.showOptionDialog(null, scrollPane, resultTitle, JOptionPane.DEFAULT_OPTION,
+                        JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
+                if (choice > 0) {
+                    String format = choice == 1 ? "binary" : "csv";
+                    new Thread(() -> {
+                        try {
+                            Path file = jobs.export(status.getJobId(), format);
+                            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Exported to " + file));
+                        } catch (IOException | RuntimeException e) {
+                            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Export failed: " + e.getMessage()));
+                        }
+                    }, "export-" + status.getJobId()).start();
                 }
-            };
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                JOptionPane.showMessageDialog(null, "Error: " + e.getMessage());
+            }
+        });
 
-            worker.execute();
+        try {
+            jobs.submit(new JobRequest(algorithm, graphFile), listener);
+        } catch (RejectedExecutionException e) {
+            SwingUtilities.invokeLater(processingDialog::dispose);
+            throw new RemoteException("Peer " + name + " is busy: " + e.getMessage(), e);
+        }
+    }
 
-        } catch (Exception e) {
-            throw new RemoteException("Error calculating clustering coefficients", e);
+    private static String formatResults(JobResult result) {
+        StringBuilder results = new StringBuilder();
+        results.append(result.getGraphStats()).append("\n\n");
+        if (result.getAlgorithm() == GraphAlgorithm.ALL_ANALYSES) {
+            // The report already lists the top nodes of each analysis
+            return results.append("Execution time: ").append(result.getElapsedMillis() / 1000.0).append(" seconds").toString();
+        }
+        switch (result.getAlgorithm()) {
+            case PAGERANK:
+                results.append("Top 20 PageRank Results:\n");
+                break;
+            case HIGHEST_INDEGREE:
+                results.append("Top 20 Nodes by In-degree:\n");
+                break;
+            case BETWEENNESS_CENTRALITY:
+                results.append("Top 20 Nodes by Betweenness Centrality:\n");
+                break;
+            case K_CORE:
+                results.append("Top 20 Nodes by Core Number:\n");
+                break;
+            default:
+                results.append("Top 20 Nodes by Clustering Coefficient:\n");
         }
+        int[] nodes = result.getNodes();
+        double[] values = result.getValues();
+        for (int i = 0; i < nodes.length; i++) {
+            results.append("Node ").append(nodes[i]).append(": ");
+            if (result.getAlgorithm() == GraphAlgorithm.HIGHEST_INDEGREE) {
+                results.append((long) values[i]).append(" incoming links\n");
+            } else if (result.getAlgorithm() == GraphAlgorithm.K_CORE) {
+                results.append("core ").append((long) values[i]).append("\n");
+            } else {
+                results.append(String.format("%.6f", values[i])).append("\n");
+            }
+        }
+
+        // Add execution time
+        results.append("\nExecution time: ").append(result.getElapsedMillis() / 1000.0).append(" seconds");
+        return results.toString();
     }
 
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                // Set system properties for RMI
-                System.setProperty("java.rmi.server.hostname", getLocalIPAddress());
-                // Enable RMI client connection through firewall
-                System.setProperty("java.rmi.server.useCodebaseOnly", "false");
-
-                String peerName = args.length > 0 ? args[0] : "Peer1";
-                PeerClient peer = new PeerClient(peerName);
-
-                // Get server address from user or use default
-                String serverAddress = JOptionPane.showInputDialog(
-                        "Enter server IP address:",
-                        "localhost");
-                if (serverAddress == null || serverAddress.trim().isEmpty()) {
-                    serverAddress = "localhost";
-                }
+        if (HEADLESS) {
+            runHeadless(args);
+            return;
+        }
+        String peerName = args.length > 0 ? args[0] : "Peer1";
+        PeerClient peer;
+        PeerDirectory peers;
+        JobScheduler scheduler;
+        // Registry and peer calls stay off the event thread, which only runs the dialogs
+        try {
+            // Set system properties for RMI
+            System.setProperty("java.rmi.server.hostname", getLocalIPAddress());
+            // Enable RMI client connection through firewall
+            System.setProperty("java.rmi.server.useCodebaseOnly", "false");
+
+            peer = new PeerClient(peerName);
+
+            // Get server address(es) from user or use default; several servers share the registry by shards
+            String[] answer = new String[1];
+            SwingUtilities.invokeAndWait(() -> answer[0] = JOptionPane.showInputDialog(
+                    "Enter server IP address (comma-separate host:port for several servers):",
+                    "localhost"));
+            String serverAddress = answer[0];
+            if (serverAddress == null || serverAddress.trim().isEmpty()) {
+                serverAddress = "localhost";
+            }
 
-                // Bind this peer to RMI registry
-                String bindAddress = "rmi://" + getLocalIPAddress() + "/" + peerName;
-                Naming.rebind(bindAddress, peer);
-                System.out.println("Peer bound at: " + bindAddress);
+            // Bind this peer to RMI registry
+            String bindAddress = "rmi://" + getLocalIPAddress() + "/" + peerName;
+            Naming.rebind(bindAddress, peer);
+            System.out.println("Peer bound at: " + bindAddress);
 
-                // Look up the registry
-                String registryAddress = "rmi://" + serverAddress + "/PeerRegistry";
-                PeerRegistryInterface registry = (PeerRegistryInterface) Naming.lookup(registryAddress);
-                registry.registerPeer(peerName, peer);
-                System.out.println("Registered with server at: " + registryAddress);
+            // Look up the registry servers
+            ShardedRegistry registry = new ShardedRegistry(serverAddress);
+            peers = new PeerDirectory(registry, peerName, peer, peer.fileIndex, peer::currentLoad);
+            scheduler = new JobScheduler(peers, Paths.get(directory), peer.manifestCache);
+            System.out.println("Registered with registry servers: " + registry.getServerId());
+        } catch (Exception e) {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Error: " + e.getMessage()));
+            e.printStackTrace();
+            return;
+        }
 
+        SwingUtilities.invokeLater(() -> {
+            try {
                 // Create the main frame
                 JFrame frame = new JFrame(peerName + " - P2P File Sharing and Graph Analysis");
                 frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -394,30 +630,41 @@ public class PeerClient extends UnicastRemoteObject implements Peer {
                 JPanel mainPanel = new JPanel(new BorderLayout());
 
                 // File sharing panel
-                JPanel fileSharingPanel = new JPanel(new GridLayout(3, 1, 5, 5));
+                JPanel fileSharingPanel = new JPanel(new GridLayout(5, 1, 5, 5));
                 fileSharingPanel.setBorder(BorderFactory.createTitledBorder("File Sharing"));
 
                 JButton uploadButton = new JButton("Upload File to Peer");
                 JButton downloadButton = new JButton("Download File from Peer");
+                JButton swarmButton = new JButton("Swarm Download from All Peers");
+                JButton broadcastButton = new JButton("Broadcast File to All Peers");
                 JButton browseButton = new JButton("Browse Local Files");
 
                 fileSharingPanel.add(uploadButton);
                 fileSharingPanel.add(downloadButton);
+                fileSharingPanel.add(swarmButton);
+                fileSharingPanel.add(broadcastButton);
                 fileSharingPanel.add(browseButton);
 
                 // Graph analysis panel
-                JPanel graphAnalysisPanel = new JPanel(new GridLayout(4, 1, 5, 5));
+                JPanel graphAnalysisPanel = new JPanel(new GridLayout(7, 1, 5, 5));
                 graphAnalysisPanel.setBorder(BorderFactory.createTitledBorder("Graph Analysis"));
 
                 JButton pageRankButton = new JButton("Run PageRank");
                 JButton indegreeButton = new JButton("Run Highest Indegree");
                 JButton betweennessButton = new JButton("Run Betweenness Centrality");
                 JButton clusteringButton = new JButton("Run Clustering Coefficient");
+                JButton kCoreButton = new JButton("Run K-Core Decomposition");
+                JButton allAnalysesButton = new JButton("Run All Analyses");
 
                 graphAnalysisPanel.add(pageRankButton);
                 graphAnalysisPanel.add(indegreeButton);
                 graphAnalysisPanel.add(betweennessButton);
                 graphAnalysisPanel.add(clusteringButton);
+                graphAnalysisPanel.add(kCoreButton);
+                graphAnalysisPanel.add(allAnalysesButton);
+
+                JCheckBox autoPlaceBox = new JCheckBox("Run on least busy peer");
+                graphAnalysisPanel.add(autoPlaceBox);
 
                 // Control panel
                 JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -447,43 +694,61 @@ public class PeerClient extends UnicastRemoteObject implements Peer {
                     int result = fileChooser.showOpenDialog(frame);
 
                     if (result == JFileChooser.APPROVE_OPTION) {
-                        File selectedFile = fileChooser.getSelectedFile();
-                        try {
-                            Peer targetPeer = registry.getPeer(targetPeerName);
-                            if (targetPeer != null) {
-                                byte[] fileData = Files.readAllBytes(selectedFile.toPath());
-                                targetPeer.uploadFile(selectedFile.getName(), fileData);
-                                JOptionPane.showMessageDialog(frame, "File sent to " + targetPeerName);
-                            } else {
-                                JOptionPane.showMessageDialog(frame, "Peer not found: " + targetPeerName);
+                        Path selectedFile = fileChooser.getSelectedFile().toPath();
+                        inBackground(frame, () -> {
+                            Peer targetPeer = peers.getPeer(targetPeerName);
+                            if (targetPeer == null) {
+                                return "Peer not found: " + targetPeerName;
                             }
-                        } catch (Exception ex) {
-                            JOptionPane.showMessageDialog(frame, "Error: " + ex.getMessage());
-                            ex.printStackTrace();
-                        }
+                            String summary = uploadToPeer(targetPeer, selectedFile, peer.manifestCache);
+                            return "File sent to " + targetPeerName + "\n" + summary;
+                        });
                     }
                 });
 
                 downloadButton.addActionListener(e -> {
-                    String sourcePeerName = JOptionPane.showInputDialog("Enter peer name to download from:");
-                    if (sourcePeerName == null || sourcePeerName.trim().isEmpty()) return;
+                    String sourcePeerName = JOptionPane.showInputDialog("Enter peer name to download from (leave empty to locate the file):");
+                    if (sourcePeerName == null) return;
 
                     String filename = JOptionPane.showInputDialog("Enter filename:");
                     if (filename == null || filename.trim().isEmpty()) return;
 
-                    try {
-                        Peer sourcePeer = registry.getPeer(sourcePeerName);
-                        if (sourcePeer != null) {
-                            byte[] fileData = sourcePeer.downloadFile(filename);
-                            Files.write(Paths.get(downloadDir + filename), fileData);
-                            JOptionPane.showMessageDialog(frame, "File downloaded from " + sourcePeerName);
-                        } else {
-                            JOptionPane.showMessageDialog(frame, "Peer not found: " + sourcePeerName);
+                    inBackground(frame, () -> {
+                        if (sourcePeerName.trim().isEmpty()) {
+                            String holder = downloadFromAnyHolder(peers.locate(filename), filename, Paths.get(downloadDir + filename));
+                            return "File downloaded from " + holder;
                         }
-                    } catch (Exception ex) {
-                        JOptionPane.showMessageDialog(frame, "Error: " + ex.getMessage());
-                        ex.printStackTrace();
-                    }
+                        Peer sourcePeer = peers.getPeer(sourcePeerName);
+                        if (sourcePeer == null) {
+                            return "Peer not found: " + sourcePeerName;
+                        }
+                        downloadFromPeer(sourcePeer, filename, Paths.get(downloadDir + filename));
+                        return "File downloaded from " + sourcePeerName;
+                    });
+                });
+
+                swarmButton.addActionListener(e -> {
+                    String filename = JOptionPane.showInputDialog("Enter filename:");
+                    if (filename == null || filename.trim().isEmpty()) return;
+
+                    inBackground(frame, () -> {
+                        Map<String, Long> contributed = new SwarmDownloader()
+                                .download(peers.locate(filename), filename, Paths.get(downloadDir + filename));
+                        StringBuilder summary = new StringBuilder("File downloaded from " + contributed.size() + " peers:\n");
+                        for (Map.Entry<String, Long> entry : contributed.entrySet()) {
+                            summary.append(entry.getKey()).append(": ").append(entry.getValue() / 1024).append(" KB\n");
+                        }
+                        return summary.toString();
+                    });
+                });
+
+                broadcastButton.addActionListener(e -> {
+                    JFileChooser fileChooser = new JFileChooser();
+                    fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+                    if (fileChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+
+                    Path selectedFile = fileChooser.getSelectedFile().toPath();
+                    inBackground(frame, () -> broadcastToPeers(peers.getOtherPeers(), selectedFile, peer.manifestCache));
                 });
 
                 browseButton.addActionListener(e -> {
@@ -531,25 +796,39 @@ public class PeerClient extends UnicastRemoteObject implements Peer {
 
                 // Button action listeners for graph analysis
                 pageRankButton.addActionListener(e -> {
-                    promptForGraphFileAndRun(frame, peer::runPageRank, "PageRank");
+                    promptForGraphFileAndRun(frame, graphFile -> runGraphJob(frame, peer, autoPlaceBox.isSelected() ? scheduler : null,
+                            GraphAlgorithm.PAGERANK, graphFile), "PageRank");
                 });
 
                 indegreeButton.addActionListener(e -> {
-                    promptForGraphFileAndRun(frame, peer::runHighestIndegree, "Highest Indegree");
+                    promptForGraphFileAndRun(frame, graphFile -> runGraphJob(frame, peer, autoPlaceBox.isSelected() ? scheduler : null,
+                            GraphAlgorithm.HIGHEST_INDEGREE, graphFile), "Highest Indegree");
                 });
 
                 betweennessButton.addActionListener(e -> {
-                    promptForGraphFileAndRun(frame, peer::runBetweennessCentrality, "Betweenness Centrality");
+                    promptForGraphFileAndRun(frame, graphFile -> runGraphJob(frame, peer, autoPlaceBox.isSelected() ? scheduler : null,
+                            GraphAlgorithm.BETWEENNESS_CENTRALITY, graphFile), "Betweenness Centrality");
                 });
 
                 clusteringButton.addActionListener(e -> {
-                    promptForGraphFileAndRun(frame, peer::runClusteringCoefficient, "Clustering Coefficient");
+                    promptForGraphFileAndRun(frame, graphFile -> runGraphJob(frame, peer, autoPlaceBox.isSelected() ? scheduler : null,
+                            GraphAlgorithm.CLUSTERING_COEFFICIENT, graphFile), "Clustering Coefficient");
+                });
+
+                kCoreButton.addActionListener(e -> {
+                    promptForGraphFileAndRun(frame, graphFile -> runGraphJob(frame, peer, autoPlaceBox.isSelected() ? scheduler : null,
+                            GraphAlgorithm.K_CORE, graphFile), "K-Core Decomposition");
+                });
+
+                allAnalysesButton.addActionListener(e -> {
+                    promptForGraphFileAndRun(frame, graphFile -> runGraphJob(frame, peer, autoPlaceBox.isSelected() ? scheduler : null,
+                            GraphAlgorithm.ALL_ANALYSES, graphFile), "All Analyses");
                 });
 
                 exitButton.addActionListener(e -> {
                     try {
                         // Unregister before exiting
-                        registry.unregisterPeer(peerName);
+                        peers.close();
                         System.out.println("Unregistered peer: " + peerName);
                     } catch (Exception ex) {
                         ex.printStackTrace();
@@ -566,6 +845,121 @@ public class PeerClient extends UnicastRemoteObject implements Peer {
         });
     }
 
+    // Peer without a GUI, serving files and jobs to others: args are the peer name and the
+    // comma-separated server address(es). The RMI export keeps the JVM running.
+    private static void runHeadless(String[] args) {
+        try {
+            // An address given with -Djava.rmi.server.hostname wins, e.g. a container's published host
+            System.setProperty("java.rmi.server.hostname",
+                    System.getProperty("java.rmi.server.hostname", getLocalIPAddress()));
+            System.setProperty("java.rmi.server.useCodebaseOnly", "false");
+
+            String peerName = args.length > 0 ? args[0] : "Peer1";
+            String serverAddress = args.length > 1 ? args[1] : "localhost";
+            PeerClient peer = new PeerClient(peerName);
+
+            String bindAddress = "rmi://" + getLocalIPAddress() + "/" + peerName;
+            Naming.rebind(bindAddress, peer);
+            System.out.println("Peer bound at: " + bindAddress);
+
+            ShardedRegistry registry = new ShardedRegistry(serverAddress);
+            PeerDirectory peers = new PeerDirectory(registry, peerName, peer, peer.fileIndex, peer::currentLoad);
+            System.out.println("Registered with registry servers: " + registry.getServerId() + " (headless, "
+                    + JobManager.DEFAULT_THREADS + " job threads)");
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    peers.close();
+                    peer.jobs.shutdown();
+                    System.out.println("Unregistered peer: " + peerName);
+                } catch (RemoteException e) {
+                    System.out.println("Could not unregister " + peerName + ": " + e.getMessage());
+                }
+            }));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    // Prefer the zero-copy side channel and fall back to chunked RMI if the socket can't be reached
+    static void downloadFromPeer(Peer source, String filename, Path target) throws IOException {
+        try {
+            BulkTransferClient.download(source, filename, target);
+        } catch (RemoteException e) {
+            throw e;
+        } catch (IOException e) {
+            System.out.println("Bulk channel failed (" + e.getMessage() + "), falling back to chunked transfer");
+            TransferStats stats = new ChunkedTransfer().download(source, filename, target);
+            System.out.println("Download of " + filename + ": " + stats);
+        }
+    }
+
+    // Tries the located holders in turn; a Bloom filter false positive just fails over to the next one
+    static String downloadFromAnyHolder(Map<String, Peer> holders, String filename, Path target) throws IOException {
+        for (Map.Entry<String, Peer> holder : holders.entrySet()) {
+            try {
+                downloadFromPeer(holder.getValue(), filename, target);
+                return holder.getKey();
+            } catch (RemoteException e) {
+                System.out.println(holder.getKey() + " could not serve " + filename + ": " + e.getMessage());
+            }
+        }
+        throw new IOException("No peer has " + filename);
+    }
+
+    // Both paths are piece-verified and resume after a failure or a restart of the target; the
+    // manifest comes from the cache, so sending the same file again doesn't hash it again
+    static String uploadToPeer(Peer target, Path source, ManifestCache manifests) throws IOException {
+        // If the target already has a version of the file, send only what changed
+        DeltaSync.Result delta = DeltaSync.upload(target, source);
+        if (delta != null) {
+            System.out.println("Delta sync of " + source.getFileName() + ": " + delta);
+            return delta.toString();
+        }
+
+        FileManifest manifest = manifests.getManifest(source);
+        long start = System.nanoTime();
+        try {
+            BulkTransferClient.upload(target, source, manifest);
+        } catch (RemoteException e) {
+            throw e;
+        } catch (IOException e) {
+            System.out.println("Bulk channel failed (" + e.getMessage() + "), falling back to chunked transfer");
+            TransferStats stats = new ChunkedTransfer().upload(target, source, manifest);
+            System.out.println("Upload of " + source.getFileName() + ": " + stats);
+            return stats.toString();
+        }
+        String summary = String.format("%d bytes via bulk channel in %d ms", manifest.getSize(),
+                (System.nanoTime() - start) / 1_000_000);
+        System.out.println("Upload of " + source.getFileName() + ": " + summary);
+        return summary;
+    }
+
+    // Sends the file down a broadcast tree, then uploads directly to any peer the tree didn't reach
+    static String broadcastToPeers(Map<String, Peer> targets, Path source, ManifestCache manifests) throws IOException {
+        long start = System.currentTimeMillis();
+        List<String> delivered = new Broadcast().send(source, new ArrayList<>(targets.values()));
+        System.out.println("Broadcast of " + source.getFileName() + " reached " + delivered.size() + " of "
+                + targets.size() + " peers in " + (System.currentTimeMillis() - start) + " ms");
+
+        int direct = 0;
+        List<String> missed = new ArrayList<>();
+        for (Map.Entry<String, Peer> target : targets.entrySet()) {
+            if (delivered.contains(target.getKey())) continue;
+            try {
+                uploadToPeer(target.getValue(), source, manifests);
+                direct++;
+            } catch (IOException e) {
+                System.out.println("Direct upload to " + target.getKey() + " failed: " + e.getMessage());
+                missed.add(target.getKey());
+            }
+        }
+        return "Broadcast reached " + delivered.size() + " of " + targets.size() + " peers"
+                + (direct == 0 ? "" : "\nSent directly to " + direct + " more")
+                + (missed.isEmpty() ? "" : "\nFailed: " + missed);
+    }
+
     // Helper method to get file info for JList
     private static String[] getFileInfoList(File[] files) {
         String[] fileInfoList = new String[files.length];
@@ -618,10 +1012,38 @@ public class PeerClient extends UnicastRemoteObject implements Peer {
         }
     }
 
+    // Runs the job here, or on the least busy peer when a scheduler is given
+    private static void runGraphJob(JFrame parent, PeerClient peer, JobScheduler scheduler,
+                                    GraphAlgorithm algorithm, String graphFile) throws IOException {
+        if (scheduler == null) {
+            algorithm.run(peer, graphFile);
+            return;
+        }
+        report(parent, scheduler.submitAsync(algorithm, graphFile)
+                .thenApply(placedOn -> algorithm.getDisplayName() + " started on " + placedOn));
+    }
+
+    // Runs remote work off the event thread, then shows what it returned, or its error
+    private static void inBackground(JFrame parent, RemoteCalls.Call<String> work) {
+        report(parent, RemoteCalls.async(work));
+    }
+
+    private static void report(JFrame parent, CompletableFuture<String> work) {
+        work.whenComplete((message, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                Throwable cause = RemoteCalls.cause(error);
+                JOptionPane.showMessageDialog(parent, "Error: " + cause.getMessage());
+                cause.printStackTrace();
+            } else {
+                JOptionPane.showMessageDialog(parent, message);
+            }
+        }));
+    }
+
     // Functional interface for graph algorithm runners
     @FunctionalInterface
     private interface GraphAlgorithmRunner {
-        void run(String graphFile) throws RemoteException;
+        void run(String graphFile) throws IOException;
     }
 
     // Helper method to get the local IP address
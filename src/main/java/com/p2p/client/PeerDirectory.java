@@ -0,0 +1,176 @@
+package com.p2p.client;
+
+import com.p2p.model.MembershipUpdate;
+import com.p2p.model.Peer;
+import com.p2p.model.PeerLoad;
+import com.p2p.model.Placement;
+import com.p2p.registry.RemoteCalls;
+import com.p2p.server.PeerRegistryInterface;
+import com.p2p.transfer.FileIndex;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Local copy of the registry's membership. Peer stubs are cached here and refreshed by membership
+// version, so lookups don't cost a registry round trip and peers whose lease expired drop out on
+// the next refresh. The same background thread renews this peer's lease, and registers it again
+// if the registry has forgotten it (e.g. after the registry restarted). When this peer's shared
+// files change, it also publishes a fresh summary of them so others can locate files without asking
+// every peer. Each heartbeat carries this peer's current load, which the registry uses to place jobs.
+public class PeerDirectory {
+    private static final long REFRESH_MILLIS = 2000;
+
+    private final PeerRegistryInterface registry;
+    private final String selfName;
+    private final Peer self;
+    private final FileIndex files;
+    private final Supplier<PeerLoad> load;
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private long version;
+    private volatile long publishedVersion = -1;
+
+    public PeerDirectory(PeerRegistryInterface registry, String selfName, Peer self) throws RemoteException {
+        this(registry, selfName, self, null, () -> null);
+    }
+
+    public PeerDirectory(PeerRegistryInterface registry, String selfName, Peer self,
+                         FileIndex files, Supplier<PeerLoad> load) throws RemoteException {
+        this.registry = registry;
+        this.selfName = selfName;
+        this.self = self;
+        this.files = files;
+        this.load = load;
+        registry.registerPeer(selfName, self);
+        long leaseMillis = registry.heartbeat(selfName, load.get());
+        publishSummary();
+        refresh();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "peer-directory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Renew well within the lease so one lost heartbeat doesn't expire it
+        long period = Math.max(100, Math.min(REFRESH_MILLIS, leaseMillis / 3));
+        scheduler.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns null if no such peer is registered; a miss is re-checked with the registry in case the peer just joined
+    public Peer getPeer(String name) throws RemoteException {
+        Peer peer = peers.get(name);
+        if (peer == null) {
+            refresh();
+            peer = peers.get(name);
+        }
+        return peer;
+    }
+
+    public CompletableFuture<Peer> getPeerAsync(String name) {
+        Peer peer = peers.get(name);
+        return peer != null ? CompletableFuture.completedFuture(peer) : RemoteCalls.async(() -> getPeer(name));
+    }
+
+    // Known peers straight from the local copy, the rest in one batched registry call; names that
+    // aren't registered are left out
+    public CompletableFuture<Map<String, Peer>> getPeers(Collection<String> names) {
+        Map<String, Peer> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            Peer peer = peers.get(name);
+            if (peer != null) {
+                found.put(name, peer);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(found);
+        }
+        return RemoteCalls.async(() -> registry.getPeers(missing)).thenApply(looked -> {
+            peers.putAll(looked);
+            Map<String, Peer> ordered = new LinkedHashMap<>();
+            for (String name : names) {
+                Peer peer = found.containsKey(name) ? found.get(name) : looked.get(name);
+                if (peer != null) ordered.put(name, peer);
+            }
+            return ordered;
+        });
+    }
+
+    public List<String> getAvailablePeers() {
+        return new ArrayList<>(peers.keySet());
+    }
+
+    // Every registered peer except this one, keyed by name
+    public Map<String, Peer> getOtherPeers() {
+        Map<String, Peer> others = new LinkedHashMap<>(peers);
+        others.remove(selfName);
+        return others;
+    }
+
+    // Other peers that may have the file, per their published summaries; a few may not actually have it
+    public Map<String, Peer> locate(String filename) throws RemoteException {
+        List<String> names = new ArrayList<>(registry.locate(filename));
+        names.remove(selfName);
+        return RemoteCalls.await(getPeers(names));
+    }
+
+    public List<Placement> rankPeersForJob(String graphFile, int limit) throws RemoteException {
+        return registry.rankPeersForJob(graphFile, limit);
+    }
+
+    public String getSelfName() {
+        return selfName;
+    }
+
+    public synchronized void refresh() throws RemoteException {
+        MembershipUpdate update = registry.getChangesSince(version);
+        if (update.isSnapshot()) {
+            peers.keySet().retainAll(update.getJoined().keySet());
+        }
+        peers.putAll(update.getJoined());
+        for (String name : update.getLeft()) {
+            peers.remove(name);
+        }
+        version = update.getVersion();
+    }
+
+    public void close() throws RemoteException {
+        scheduler.shutdownNow();
+        registry.unregisterPeer(selfName);
+    }
+
+    private void publishSummary() throws RemoteException {
+        if (files == null || files.getVersion() == publishedVersion) {
+            return;
+        }
+        long current = files.getVersion();
+        registry.publishSummary(selfName, files.getSummary());
+        publishedVersion = current;
+    }
+
+    private void renew() {
+        try {
+            if (registry.heartbeat(selfName, load.get()) < 0) {
+                registry.registerPeer(selfName, self);
+                publishedVersion = -1;
+                System.out.println("Lease lost, registered again as " + selfName);
+            }
+            publishSummary();
+            refresh();
+        } catch (RemoteException e) {
+            System.out.println("Registry unreachable: " + e.getMessage());
+        }
+    }
+}
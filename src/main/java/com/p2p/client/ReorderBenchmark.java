@@ -0,0 +1,216 @@
+package com.p2p.client;
+
+import com.p2p.algo.CsrGraph;
+import com.p2p.algo.VertexOrder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Shows what each vertex ordering costs and what it buys: time to compute the order and relabel
+// the graph, then PageRank iterations and Brandes shortest-path passes (BFS forward, dependency
+// accumulation backward) from a fixed set of sources, against the original order. Cache misses
+// are estimated by replaying PageRank's scattered rank updates through a simulated 512 KB 8-way
+// cache, since hardware counters are not reachable from Java. Ranks are compared by original id
+// to check that reordering does not change results. The graph is a file or "gen:vertices:degree"
+// (see PartitionBenchmark).
+// Usage: java com.p2p.client.ReorderBenchmark graphFile|gen:vertices:degree [original,degree,rcm,gorder]
+public class ReorderBenchmark {
+    private static final int ITERATIONS = 10;
+    private static final int SOURCES = 16;
+    private static final int CACHE_SETS = 1024;
+    private static final int CACHE_WAYS = 8;
+    private static final int DOUBLES_PER_LINE = 8;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java com.p2p.client.ReorderBenchmark graphFile|gen:vertices:degree [original,degree,rcm,gorder]");
+            return;
+        }
+        String[] orders = (args.length > 1 ? args[1] : "original,degree,rcm,gorder").split(",");
+
+        Path file;
+        boolean generated = args[0].startsWith("gen:");
+        if (generated) {
+            String[] spec = args[0].split(":");
+            file = Files.createTempFile("reorder-benchmark", ".txt");
+            PartitionBenchmark.generate(file, Integer.parseInt(spec[1]), Integer.parseInt(spec[2]));
+        } else {
+            file = Paths.get(args[0]);
+        }
+
+        CsrGraph original;
+        try {
+            original = CsrGraph.load(file.toString());
+        } finally {
+            if (generated) Files.deleteIfExists(file);
+        }
+        System.out.println(original.getGraphStats());
+
+        // The same sources, by original id, for every order
+        int[] sourceIds = new int[Math.min(SOURCES, original.numVertices())];
+        for (int i = 0; i < sourceIds.length; i++) {
+            sourceIds[i] = original.id((int) ((long) i * original.numVertices() / sourceIds.length));
+        }
+
+        // One untimed round so the first order measured doesn't pay for JIT compilation
+        int[] warmupSources = new int[sourceIds.length];
+        for (int i = 0; i < warmupSources.length; i++) {
+            warmupSources[i] = original.indexOf(sourceIds[i]);
+        }
+        timePageRank(original, new double[original.numVertices()]);
+        timeBrandes(original, warmupSources);
+
+        System.out.printf("%n%-9s %-10s %-22s %-22s %-24s %-10s%n", "Order", "Reorder", "PageRank iteration",
+                "Brandes, " + sourceIds.length + " sources", "Est. cache misses/edge", "Rank diff");
+        double baseIteration = 0;
+        double baseBrandes = 0;
+        double baseMisses = 0;
+        double[] baseRanks = null;
+        for (String name : orders) {
+            VertexOrder order = VertexOrder.named(name);
+            long start = System.nanoTime();
+            CsrGraph graph = order == VertexOrder.ORIGINAL ? original : original.reorder(order.order(original));
+            double reorderMillis = (System.nanoTime() - start) / 1e6;
+
+            double[] ranks = new double[graph.numVertices()];
+            double iterationMillis = timePageRank(graph, ranks);
+            int[] sources = new int[sourceIds.length];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = graph.indexOf(sourceIds[i]);
+            }
+            double brandesMillis = timeBrandes(graph, sources);
+            double misses = simulateMisses(graph) / (double) Math.max(1, graph.numEdges());
+
+            // Back to original-id order to compare with the first ordering's ranks
+            double[] byId = new double[ranks.length];
+            for (int v = 0; v < ranks.length; v++) {
+                byId[original.indexOf(graph.id(v))] = ranks[v];
+            }
+            double maxDiff = 0;
+            if (baseRanks == null) {
+                baseIteration = iterationMillis;
+                baseBrandes = brandesMillis;
+                baseMisses = misses;
+                baseRanks = byId;
+            } else {
+                for (int v = 0; v < byId.length; v++) {
+                    maxDiff = Math.max(maxDiff, Math.abs(byId[v] - baseRanks[v]));
+                }
+            }
+            System.out.printf("%-9s %-10s %-22s %-22s %-24s %-10.1g%n", name.trim(),
+                    String.format("%.0f ms", reorderMillis),
+                    String.format("%.1f ms (%.2fx)", iterationMillis, baseIteration / iterationMillis),
+                    String.format("%.0f ms (%.2fx)", brandesMillis, baseBrandes / brandesMillis),
+                    String.format("%.3f (%+.0f%%)", misses, 100 * (misses - baseMisses) / baseMisses),
+                    maxDiff);
+        }
+    }
+
+    // Mean time of one push-style PageRank iteration, after two warm-up runs; leaves the ranks in ranks
+    private static double timePageRank(CsrGraph graph, double[] ranks) {
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            Arrays.fill(ranks, 1.0 / n);
+            double[] current = ranks;
+            double[] next = new double[n];
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Arrays.fill(next, 0.15 / n);
+                for (int v = 0; v < n; v++) {
+                    int degree = offsets[v + 1] - offsets[v];
+                    if (degree == 0) continue;
+                    double share = current[v] * 0.85 / degree;
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        next[targets[e]] += share;
+                    }
+                }
+                double[] swap = current;
+                current = next;
+                next = swap;
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e6 / ITERATIONS);
+            if (current != ranks) System.arraycopy(current, 0, ranks, 0, n);
+        }
+        return best;
+    }
+
+    // Brandes' single-source pass from each source, walking successors instead of predecessor lists
+    private static double timeBrandes(CsrGraph graph, int[] sources) {
+        long start = System.nanoTime();
+        brandes(graph, sources);
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    private static double[] brandes(CsrGraph graph, int[] sources) {
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] distance = new int[n];
+        double[] paths = new double[n];
+        double[] dependency = new double[n];
+        double[] centrality = new double[n];
+        int[] stack = new int[n];
+        for (int source : sources) {
+            Arrays.fill(distance, -1);
+            Arrays.fill(paths, 0);
+            Arrays.fill(dependency, 0);
+            distance[source] = 0;
+            paths[source] = 1;
+            int head = 0;
+            int tail = 0;
+            stack[tail++] = source;
+            while (head < tail) {
+                int v = stack[head++];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    if (distance[w] < 0) {
+                        distance[w] = distance[v] + 1;
+                        stack[tail++] = w;
+                    }
+                    if (distance[w] == distance[v] + 1) paths[w] += paths[v];
+                }
+            }
+            for (int i = tail - 1; i > 0; i--) {
+                int v = stack[i];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    if (distance[w] == distance[v] + 1) {
+                        dependency[v] += paths[v] / paths[w] * (1 + dependency[w]);
+                    }
+                }
+                centrality[v] += dependency[v];
+            }
+        }
+        return centrality;
+    }
+
+    // Misses of the rank updates next[target] in one PageRank iteration, through an LRU cache
+    private static long simulateMisses(CsrGraph graph) {
+        long[] tags = new long[CACHE_SETS * CACHE_WAYS];
+        Arrays.fill(tags, -1);
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        long misses = 0;
+        for (int v = 0; v < graph.numVertices(); v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                long line = targets[e] / DOUBLES_PER_LINE;
+                int base = (int) (line % CACHE_SETS) * CACHE_WAYS;
+                // Ways are kept most recently used first
+                int way = 0;
+                while (way < CACHE_WAYS && tags[base + way] != line) way++;
+                if (way == CACHE_WAYS) {
+                    misses++;
+                    way = CACHE_WAYS - 1;
+                }
+                System.arraycopy(tags, base, tags, base + 1, way);
+                tags[base] = line;
+            }
+        }
+        return misses;
+    }
+}
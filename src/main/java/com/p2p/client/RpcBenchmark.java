@@ -0,0 +1,126 @@
+package com.p2p.client;
+
+import com.p2p.model.GraphAlgorithm;
+import com.p2p.model.JobRequest;
+import com.p2p.model.Peer;
+import com.p2p.registry.RemoteCalls;
+import com.p2p.registry.ShardedRegistry;
+import com.p2p.server.PeerRegistry;
+
+import java.lang.reflect.Proxy;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Times lookups, calls and job dispatch to many peers one after the other and all at once (see
+// RemoteCalls), over real RMI on this machine. The registry runs as `servers` local shards; the
+// peers are stand-ins that take latencyMillis to answer each call, like a peer across the network.
+// Usage: java com.p2p.client.RpcBenchmark [peers] [latencyMillis] [servers]
+public class RpcBenchmark {
+    private static final int BASE_PORT = Integer.getInteger("p2p.bench.port", 21099);
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        int servers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        System.setProperty("java.rmi.server.hostname", System.getProperty("java.rmi.server.hostname", "127.0.0.1"));
+
+        // Kept referenced so the exported objects stay exported
+        List<Object> exported = new ArrayList<>();
+        StringBuilder addresses = new StringBuilder();
+        for (int i = 0; i < servers; i++) {
+            Registry rmi = LocateRegistry.createRegistry(BASE_PORT + i);
+            PeerRegistry server = new PeerRegistry("bench-" + i);
+            rmi.rebind("PeerRegistry", server);
+            exported.add(rmi);
+            exported.add(server);
+            addresses.append(i == 0 ? "" : ",").append("127.0.0.1:").append(BASE_PORT + i);
+        }
+        ShardedRegistry registry = new ShardedRegistry(addresses.toString());
+
+        Map<String, Peer> stubs = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Peer peer = standIn("Peer" + i, latency);
+            exported.add(peer);
+            stubs.put("Peer" + i, (Peer) UnicastRemoteObject.exportObject(peer, 0));
+        }
+        RemoteCalls.answered(RemoteCalls.fanOut(stubs, stub -> {
+            registry.registerPeer(stub.getName(), stub);
+            return true;
+        })).join();
+        List<String> names = new ArrayList<>(stubs.keySet());
+        JobRequest request = new JobRequest(GraphAlgorithm.PAGERANK, "graph.txt");
+        System.out.printf("%d peers answering in %d ms, %d registry servers%n%n", count, latency, servers);
+
+        // Warm up connections and JIT on both paths first
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1;
+
+            long start = System.nanoTime();
+            Map<String, Peer> serial = new LinkedHashMap<>();
+            for (String name : names) {
+                serial.put(name, registry.getPeer(name));
+            }
+            double serialMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            Map<String, Peer> batched = registry.getPeers(names);
+            double batchedMillis = (System.nanoTime() - start) / 1e6;
+            if (report) print("getPeer x" + count + " / getPeers", serialMillis, batchedMillis, serial.equals(batched));
+
+            start = System.nanoTime();
+            List<String> answers = new ArrayList<>();
+            for (Peer peer : batched.values()) {
+                answers.add(peer.getName());
+            }
+            serialMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            Map<String, String> fanned = RemoteCalls.answered(RemoteCalls.fanOut(batched, Peer::getName)).join();
+            double fannedMillis = (System.nanoTime() - start) / 1e6;
+            if (report) print("getName on each peer", serialMillis, fannedMillis, answers.equals(new ArrayList<>(fanned.values())));
+
+            start = System.nanoTime();
+            List<String> jobIds = new ArrayList<>();
+            for (Peer peer : batched.values()) {
+                jobIds.add(peer.submitJob(request));
+            }
+            serialMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            Map<String, String> dispatched = RemoteCalls.answered(
+                    RemoteCalls.fanOut(batched, peer -> peer.submitJob(request))).join();
+            fannedMillis = (System.nanoTime() - start) / 1e6;
+            if (report) print("submitJob on each peer", serialMillis, fannedMillis, jobIds.equals(new ArrayList<>(dispatched.values())));
+        }
+        System.exit(0);
+    }
+
+    private static void print(String what, double serialMillis, double asyncMillis, boolean same) {
+        System.out.printf("%-24s one by one %7.1f ms, at once %6.1f ms (%.0fx), %s%n", what, serialMillis, asyncMillis,
+                serialMillis / asyncMillis, same ? "same answers" : "MISMATCH");
+    }
+
+    // A peer that only knows its name and hands out job ids, after a delay
+    private static Peer standIn(String name, long latency) {
+        return (Peer) Proxy.newProxyInstance(Peer.class.getClassLoader(), new Class<?>[]{Peer.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    Thread.sleep(latency);
+                    return name;
+                case "submitJob":
+                    Thread.sleep(latency);
+                    return name + "-1";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return name;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
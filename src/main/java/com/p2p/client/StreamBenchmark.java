@@ -0,0 +1,257 @@
+package com.p2p.client;
+
+import com.p2p.algo.CsrGraph;
+import com.p2p.stream.DynamicGraph;
+import com.p2p.stream.EdgeStreamTailer;
+import com.p2p.stream.GraphSnapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Streams a graph's edges into a DynamicGraph in batches, then churns it with random deletes and
+// inserts, while a reader thread keeps taking snapshots and checking that each one is consistent
+// in itself. At the end the in-degrees, ranking and triangle counts are checked against a
+// recomputation from the final edge set. Last, a few batches are appended to a file, the last line
+// of each split across two writes, and followed with an EdgeStreamTailer. The graph is a file or
+// "gen:vertices:degree" (see PartitionBenchmark).
+// Usage: java com.p2p.client.StreamBenchmark graphFile|gen:vertices:degree [batchSize]
+public class StreamBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java com.p2p.client.StreamBenchmark graphFile|gen:vertices:degree [batchSize]");
+            return;
+        }
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        Path file;
+        boolean generated = args[0].startsWith("gen:");
+        if (generated) {
+            String[] spec = args[0].split(":");
+            file = Files.createTempFile("stream-benchmark", ".txt");
+            PartitionBenchmark.generate(file, Integer.parseInt(spec[1]), Integer.parseInt(spec[2]));
+        } else {
+            file = Paths.get(args[0]);
+        }
+        CsrGraph graph;
+        try {
+            graph = CsrGraph.load(file.toString());
+        } finally {
+            if (generated) Files.deleteIfExists(file);
+        }
+        System.out.println(graph.getGraphStats());
+
+        // The stream: every edge once, then as many random deletes and inserts again
+        int m = graph.numEdges();
+        int[] sources = new int[2 * m];
+        int[] targets = new int[2 * m];
+        boolean[] deletes = new boolean[2 * m];
+        for (int v = 0, e = 0; v < graph.numVertices(); v++) {
+            for (int i = graph.getOffsets()[v]; i < graph.getOffsets()[v + 1]; i++, e++) {
+                sources[e] = graph.id(v);
+                targets[e] = graph.id(graph.getTargets()[i]);
+            }
+        }
+        Random random = new Random(42);
+        for (int e = m; e < 2 * m; e++) {
+            int from = random.nextInt(e);
+            sources[e] = sources[from];
+            targets[e] = targets[from];
+            deletes[e] = random.nextBoolean();
+            if (!deletes[e] && random.nextInt(4) == 0) {
+                targets[e] = graph.id(random.nextInt(graph.numVertices()));
+            }
+        }
+
+        DynamicGraph dynamic = new DynamicGraph();
+        AtomicBoolean done = new AtomicBoolean();
+        long[] reads = new long[2];
+        String[] failure = new String[1];
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                long start = System.nanoTime();
+                GraphSnapshot snapshot = dynamic.snapshot();
+                int[] top = snapshot.topByInDegree(10);
+                reads[0]++;
+                reads[1] += System.nanoTime() - start;
+                String problem = check(snapshot);
+                if (problem == null && top.length > 1 && snapshot.inDegree(top[0]) < snapshot.inDegree(top[1])) {
+                    problem = "ranking out of order";
+                }
+                if (problem != null && failure[0] == null) failure[0] = "version " + snapshot.getVersion() + ": " + problem;
+            }
+        });
+        reader.start();
+        long start = System.nanoTime();
+        for (int e = 0; e < sources.length; e += batchSize) {
+            int count = Math.min(batchSize, sources.length - e);
+            dynamic.apply(Arrays.copyOfRange(sources, e, e + count), Arrays.copyOfRange(targets, e, e + count),
+                    Arrays.copyOfRange(deletes, e, e + count), count);
+        }
+        double ingestMillis = (System.nanoTime() - start) / 1e6;
+        done.set(true);
+        reader.join();
+
+        GraphSnapshot last = dynamic.snapshot();
+        System.out.printf("%nApplied %d updates in batches of %d: %.0f ms, %.0fk updates/s%n", sources.length,
+                batchSize, ingestMillis, sources.length / ingestMillis);
+        System.out.printf("Reader took %d snapshots, %.1f us each with the top 10, %s%n", reads[0],
+                reads[1] / 1e3 / Math.max(1, reads[0]), failure[0] == null ? "all consistent" : "INCONSISTENT at " + failure[0]);
+        System.out.println(last.getGraphStats());
+        System.out.println(recompute(sources, targets, deletes, last));
+
+        tail(batchSize);
+    }
+
+    // In-degrees summing to the edges, triangle counts to three per triangle
+    private static String check(GraphSnapshot snapshot) {
+        long inDegrees = 0;
+        long triangles = 0;
+        for (int v = 0; v < snapshot.numVertices(); v++) {
+            inDegrees += snapshot.inDegree(v);
+            triangles += snapshot.triangles(v);
+        }
+        if (inDegrees != snapshot.numEdges()) return "in-degrees sum to " + inDegrees + ", not " + snapshot.numEdges();
+        if (triangles != 3 * snapshot.getTriangles()) return "vertex triangles sum to " + triangles;
+        return null;
+    }
+
+    private static String recompute(int[] sources, int[] targets, boolean[] deletes, GraphSnapshot snapshot) {
+        long start = System.nanoTime();
+        Set<Long> edges = new HashSet<>();
+        for (int e = 0; e < sources.length; e++) {
+            long key = (long) snapshot.indexOf(sources[e]) << 32 | snapshot.indexOf(targets[e]);
+            if (deletes[e]) {
+                edges.remove(key);
+            } else {
+                edges.add(key);
+            }
+        }
+        int n = snapshot.numVertices();
+        int[] inDegree = new int[n];
+        int[][] neighbours = new int[n][];
+        int[] counts = new int[n];
+        for (long key : edges) {
+            int u = (int) (key >>> 32);
+            int v = (int) key;
+            inDegree[v]++;
+            if (u != v) {
+                counts[u]++;
+                counts[v]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            neighbours[v] = new int[counts[v]];
+            counts[v] = 0;
+        }
+        for (long key : edges) {
+            int u = (int) (key >>> 32);
+            int v = (int) key;
+            if (u != v) {
+                neighbours[u][counts[u]++] = v;
+                neighbours[v][counts[v]++] = u;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            neighbours[v] = Arrays.stream(neighbours[v]).sorted().distinct().toArray();
+        }
+        // Each triangle a < b < c once, from its lowest vertex
+        long[] triangles = new long[n];
+        long total = 0;
+        for (int a = 0; a < n; a++) {
+            for (int b : neighbours[a]) {
+                if (b <= a) continue;
+                int[] x = neighbours[a];
+                int[] y = neighbours[b];
+                for (int i = 0, j = 0; i < x.length && j < y.length; ) {
+                    if (x[i] < y[j]) {
+                        i++;
+                    } else if (x[i] > y[j]) {
+                        j++;
+                    } else {
+                        if (x[i] > b) {
+                            triangles[a]++;
+                            triangles[b]++;
+                            triangles[x[i]]++;
+                            total++;
+                        }
+                        i++;
+                        j++;
+                    }
+                }
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        boolean same = edges.size() == snapshot.numEdges() && total == snapshot.getTriangles();
+        for (int v = 0; v < n && same; v++) {
+            same = inDegree[v] == snapshot.inDegree(v) && triangles[v] == snapshot.triangles(v);
+        }
+        int[] top = snapshot.topByInDegree(DynamicGraph.RANKED);
+        Integer[] order = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            order[v] = v;
+        }
+        Arrays.sort(order, (a, b) -> inDegree[a] != inDegree[b] ? Integer.compare(inDegree[b], inDegree[a])
+                : Integer.compare(snapshot.id(a), snapshot.id(b)));
+        boolean sameRanking = true;
+        for (int i = 0; i < top.length; i++) {
+            sameRanking &= top[i] == order[i];
+        }
+        return String.format("Recomputed from scratch in %.0f ms: %s, %s", millis,
+                same ? "same degrees and triangles" : "MISMATCH in degrees or triangles",
+                sameRanking ? "same top " + top.length + " by in-degree" : "MISMATCH in ranking");
+    }
+
+    // Appends batches to a file, splitting a line across writes, and polls after each write
+    private static void tail(int batchSize) throws IOException {
+        Path file = Files.createTempFile("stream-tail", ".txt");
+        try {
+            EdgeStreamTailer tailer = new EdgeStreamTailer(file, batchSize);
+            Random random = new Random(7);
+            Set<Long> edges = new HashSet<>();
+            long start = System.nanoTime();
+            int lines = 0;
+            String carry = "";
+            for (int round = 0; round < 20; round++) {
+                StringBuilder text = new StringBuilder(carry);
+                text.append("# round ").append(round).append('\n');
+                for (int i = 0; i < 5000; i++) {
+                    int u = random.nextInt(2000);
+                    int v = random.nextInt(2000);
+                    boolean delete = random.nextInt(5) == 0;
+                    text.append(delete ? "- " : random.nextBoolean() ? "+ " : "").append(u).append(delete ? ' ' : '\t').append(v).append('\n');
+                    if (delete) {
+                        edges.remove((long) u << 32 | v);
+                    } else {
+                        edges.add((long) u << 32 | v);
+                    }
+                }
+                // Hold back half of the last line until the next write
+                int cut = text.length() - 3;
+                carry = text.substring(cut);
+                try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+                    out.write(text.substring(0, cut).getBytes(StandardCharsets.US_ASCII));
+                }
+                lines += tailer.poll();
+            }
+            Files.write(file, carry.getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            lines += tailer.poll();
+            double millis = (System.nanoTime() - start) / 1e6;
+            GraphSnapshot snapshot = tailer.snapshot();
+            System.out.printf("%nTailed %d lines in 21 writes, %.0f ms: %d edges, %s%n", lines, millis, snapshot.numEdges(),
+                    lines == 100000 && snapshot.numEdges() == edges.size() && check(snapshot) == null
+                            ? "as written" : "MISMATCH");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.p2p.client;
+
+import com.p2p.model.Peer;
+import com.p2p.transfer.BulkTransferClient;
+import com.p2p.transfer.ChunkedTransfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.rmi.server.RemoteObject;
+import java.util.Random;
+
+// Compares the whole-file downloadFile path with the chunked and bulk side-channel paths over
+// localhost RMI. Usage: java com.p2p.client.TransferBenchmark [sizeMB,sizeMB,...]
+public class TransferBenchmark {
+    private static final long MB = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        String sizes = args.length > 0 ? args[0] : "100,1000,10000";
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+
+        PeerClient server = new PeerClient("BenchmarkPeer");
+        Peer stub = (Peer) RemoteObject.toStub(server);
+
+        System.out.printf("%-10s %-22s %-22s %-22s%n", "Size", "downloadFile (byte[])", "Chunked RMI", "Bulk side channel");
+        for (String size : sizes.split(",")) {
+            long bytes = Long.parseLong(size.trim()) * MB;
+            String filename = "benchmark-" + size.trim() + "mb.bin";
+            Path source = Paths.get("uploads", filename);
+            Path target = Paths.get("downloads", filename);
+            writeTestFile(source, bytes);
+
+            try {
+                String whole = bytes > Integer.MAX_VALUE - 8
+                        ? "n/a (exceeds byte[])"
+                        : time(bytes, target, () -> Files.write(target, stub.downloadFile(filename)));
+                String chunked = time(bytes, target, () -> new ChunkedTransfer().download(stub, filename, target));
+                String bulk = time(bytes, target, () -> BulkTransferClient.download(stub, filename, target));
+                System.out.printf("%-10s %-22s %-22s %-22s%n", size.trim() + " MB", whole, chunked, bulk);
+            } finally {
+                Files.deleteIfExists(source);
+                clear(target);
+            }
+        }
+        System.exit(0);
+    }
+
+    // Each path starts from nothing, so none of them resumes from or overwrites the previous one's file
+    private static String time(long bytes, Path target, Transfer transfer) {
+        try {
+            clear(target);
+            long start = System.nanoTime();
+            transfer.run();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return String.format("%.2fs (%.0f MB/s)", seconds, bytes / (double) MB / seconds);
+        } catch (OutOfMemoryError e) {
+            return "OutOfMemoryError";
+        } catch (Exception e) {
+            return "failed: " + e.getClass().getSimpleName();
+        }
+    }
+
+    private static void clear(Path target) throws IOException {
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(target.resolveSibling(target.getFileName() + ".part"));
+        Files.deleteIfExists(target.resolveSibling(target.getFileName() + ".part.bitmap"));
+    }
+
+    private static void writeTestFile(Path path, long size) throws IOException {
+        // Random content so neither path benefits from sparse files or compression
+        byte[] block = new byte[(int) MB];
+        new Random(42).nextBytes(block);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = 0;
+            while (written < size) {
+                ByteBuffer buffer = ByteBuffer.wrap(block, 0, (int) Math.min(block.length, size - written));
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Transfer {
+        void run() throws Exception;
+    }
+}
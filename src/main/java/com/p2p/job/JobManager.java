@@ -0,0 +1,604 @@
+package com.p2p.job;
+
+import com.p2p.algo.BetweennessCentrality;
+import com.p2p.algo.ClusteringCoefficient;
+import com.p2p.algo.CsrGraph;
+import com.p2p.algo.GraphAnalysis;
+import com.p2p.algo.HighestIndegreeNode;
+import com.p2p.algo.KCore;
+import com.p2p.algo.PageRank;
+import com.p2p.algo.VertexOrder;
+import com.p2p.model.GraphAlgorithm;
+import com.p2p.model.JobListener;
+import com.p2p.model.JobRequest;
+import com.p2p.model.JobResult;
+import com.p2p.model.JobStatus;
+import com.p2p.model.JobStatus.State;
+import com.p2p.transfer.ManifestCache;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs graph jobs on a fixed pool with a bounded queue, so a peer takes on only as much work as it
+// was configured for and a full queue is refused up front instead of piling up. Results are kept as
+// primitive arrays sorted by score, for the last few finished jobs, until callers fetch them. With a
+// result cache, a rerun on an unchanged graph with the same parameters is served from disk.
+// Progress goes to subscribed listeners from a single notifier thread, so a slow or dead listener
+// never holds up a job. A finished job's full result can be exported as a ResultFile or CSV; a job
+// with the parameter export=binary or export=csv writes one itself, and for ALL_ANALYSES that file
+// holds every analysis as a column rather than just the PageRank ranking.
+public class JobManager {
+    public static final int DEFAULT_THREADS = Integer.getInteger("p2p.jobs.threads", Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_QUEUE = Integer.getInteger("p2p.jobs.queue", 16);
+    private static final int RETAINED_JOBS = Integer.getInteger("p2p.jobs.retain", 64);
+    public static final String DEFAULT_EXPORT_DIR = System.getProperty("p2p.export.dir", "exports/");
+
+    private final String idPrefix;
+    private final Path graphDirectory;
+    private final ManifestCache manifests;
+    private final ResultCache cache;
+    private final Path exportDirectory = Paths.get(DEFAULT_EXPORT_DIR);
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService notifier;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> finished = new ArrayDeque<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // Job ids start with idPrefix (the peer name) so they stay unique across peers. The manifests
+    // supply graph content hashes for the cache; cache may be null to always compute.
+    public JobManager(String idPrefix, Path graphDirectory, ManifestCache manifests, ResultCache cache,
+                      int threads, int queueCapacity) {
+        this.idPrefix = idPrefix;
+        this.graphDirectory = graphDirectory.toAbsolutePath().normalize();
+        this.manifests = manifests;
+        this.cache = cache;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "graph-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        notifier = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "job-notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public JobManager(String idPrefix, Path graphDirectory, ManifestCache manifests, ResultCache cache) {
+        this(idPrefix, graphDirectory, manifests, cache, DEFAULT_THREADS, DEFAULT_QUEUE);
+    }
+
+    // Throws RejectedExecutionException when every thread is busy and the queue is full, and
+    // IllegalArgumentException for an export format other than binary or csv
+    public String submit(JobRequest request, JobListener listener) {
+        String export = request.getParameter("export", null);
+        if (export != null) {
+            checkFormat(export);
+        }
+        Job job = new Job(idPrefix + "-" + nextId.incrementAndGet(), request);
+        if (listener != null) {
+            job.listeners.add(listener);
+        }
+        jobs.put(job.id, job);
+        pending.incrementAndGet();
+        try {
+            job.future = executor.submit(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Job queue full (" + executor.getQueue().size() + " waiting)", e);
+        }
+        publish(job);
+        return job.id;
+    }
+
+    // Null if the job is unknown or was finished long enough ago to be dropped
+    public JobStatus getStatus(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.status();
+    }
+
+    // The topN best-scoring nodes, or all of them when topN <= 0
+    public JobResult getResult(String jobId, int topN) {
+        return getResult(jobId, 0, topN <= 0 ? Integer.MAX_VALUE : topN);
+    }
+
+    // Up to count nodes by rank starting at offset, so large results can be fetched in pages
+    public JobResult getResult(String jobId, int offset, int count) {
+        Job job = job(jobId);
+        synchronized (job) {
+            if (job.state != State.SUCCEEDED) {
+                throw new IllegalStateException("Job " + jobId + " has no result: " + job.state
+                        + (job.message.isEmpty() ? "" : " (" + job.message + ")"));
+            }
+            RankedScores scores = job.scores;
+            int from = Math.max(0, Math.min(offset, scores.size()));
+            int to = (int) Math.min(scores.size(), (long) from + Math.max(0, count));
+            return new JobResult(jobId, job.request.getAlgorithm(), from, scores.nodes(from, to),
+                    scores.values(from, to), scores.size(), scores.getGraphStats(), job.elapsed());
+        }
+    }
+
+    // Writes a finished job's whole ranking to the export directory as "binary" (a ResultFile) or
+    // "csv", returning the file
+    public Path export(String jobId, String format) throws IOException {
+        Job job = job(jobId);
+        RankedScores scores;
+        synchronized (job) {
+            if (job.state != State.SUCCEEDED) {
+                throw new IllegalStateException("Job " + jobId + " has no result: " + job.state);
+            }
+            scores = job.scores;
+        }
+        return export(job, scores, format);
+    }
+
+    private Path export(Job job, RankedScores scores, String format) throws IOException {
+        // An all-analyses job keeps the PageRank ranking
+        GraphAlgorithm algorithm = job.request.getAlgorithm() == GraphAlgorithm.ALL_ANALYSES
+                ? GraphAlgorithm.PAGERANK : job.request.getAlgorithm();
+        return export(job.id, format, algorithm.name(), scores.getGraphStats(), scores.nodes(),
+                new String[]{column(algorithm)}, scores.values());
+    }
+
+    // The listener gets the current status straight away, then every change until the job finishes
+    public void subscribe(String jobId, JobListener listener) {
+        Job job = job(jobId);
+        job.listeners.add(listener);
+        JobStatus status = job.status();
+        notifier.execute(() -> deliver(job, listener, status));
+    }
+
+    // A queued job is dropped; a running one is marked cancelled and its result discarded. The
+    // algorithms don't check for interruption, so its thread stays busy until the computation ends.
+    public boolean cancel(String jobId) {
+        Job job = job(jobId);
+        boolean queued;
+        synchronized (job) {
+            queued = job.state == State.QUEUED;
+            if (!queued && job.state != State.RUNNING) {
+                return false;
+            }
+            job.state = State.CANCELLED;
+            job.message = "Cancelled";
+            job.finishedAt = System.currentTimeMillis();
+        }
+        if (job.future != null) {
+            job.future.cancel(true);
+        }
+        if (queued) {
+            // A running job is counted and retired by its own thread when the computation ends
+            pending.decrementAndGet();
+            retire(job);
+        }
+        publish(job);
+        return true;
+    }
+
+    // Jobs running or waiting here, reported as this peer's load
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        notifier.shutdown();
+    }
+
+    private Job job(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("Unknown job: " + jobId);
+        }
+        return job;
+    }
+
+    private void run(Job job) {
+        synchronized (job) {
+            if (job.state != State.QUEUED) {
+                return;
+            }
+            job.state = State.RUNNING;
+            job.startedAt = System.currentTimeMillis();
+        }
+        try {
+            compute(job);
+            synchronized (job) {
+                if (job.state == State.RUNNING) {
+                    job.state = State.SUCCEEDED;
+                    job.progress = 1.0;
+                    if (!job.message.startsWith("Done")) job.message = "Done";
+                }
+            }
+        } catch (Exception | OutOfMemoryError e) {
+            synchronized (job) {
+                if (job.state == State.RUNNING) {
+                    job.state = State.FAILED;
+                    job.message = e.getMessage() == null ? e.toString() : e.getMessage();
+                }
+            }
+            System.out.println("Job " + job.id + " (" + job.request + ") failed: " + job.message);
+        } finally {
+            synchronized (job) {
+                if (job.finishedAt == 0) {
+                    job.finishedAt = System.currentTimeMillis();
+                }
+            }
+            pending.decrementAndGet();
+            retire(job);
+            publish(job);
+        }
+    }
+
+    private void compute(Job job) throws IOException {
+        JobRequest request = job.request;
+        String graphFile = resolve(request.getGraphFile());
+        Map<Integer, ? extends Number> scores;
+        String graphStats;
+
+        // Where the result goes doesn't change it
+        Map<String, String> parameters = request.getParameters();
+        String export = parameters.remove("export");
+        String cacheKey = cacheKey(request.getGraphFile(), request.getAlgorithm(), parameters);
+        // A cached all-analyses result has only the PageRank column, not the table to export
+        boolean useCache = export == null || request.getAlgorithm() != GraphAlgorithm.ALL_ANALYSES;
+        RankedScores cached = cacheKey == null || !useCache ? null : cache.get(cacheKey);
+        if (cached != null) {
+            synchronized (job) {
+                job.scores = cached;
+                job.message = "Done (cached)";
+            }
+            exportResult(job, cached, export);
+            return;
+        }
+
+        stage(job, 0.05, "Loading graph from file...");
+        if (request.getAlgorithm() == GraphAlgorithm.ALL_ANALYSES) {
+            RankedScores ranked = computeAll(job, graphFile, export);
+            storeResult(job, cacheKey, ranked);
+            return;
+        }
+        switch (request.getAlgorithm()) {
+            case PAGERANK:
+                PageRank pageRank = new PageRank(graphFile);
+                String damping = request.getParameter("damping", null);
+                String iterations = request.getParameter("iterations", null);
+                String tolerance = request.getParameter("tolerance", null);
+                if (damping != null) pageRank.setDampingFactor(Double.parseDouble(damping));
+                if (iterations != null) pageRank.setIterations(Integer.parseInt(iterations));
+                stage(job, 0.3, "Computing PageRank...");
+                if (tolerance != null) {
+                    pageRank.computeWithConvergence(Double.parseDouble(tolerance));
+                } else {
+                    pageRank.compute();
+                }
+                scores = pageRank.getRanks();
+                graphStats = pageRank.getGraphStats();
+                break;
+            case HIGHEST_INDEGREE:
+                // Counted while the graph loads
+                HighestIndegreeNode indegree = new HighestIndegreeNode(graphFile);
+                scores = indegree.getInDegrees();
+                graphStats = indegree.getGraphStats();
+                break;
+            case BETWEENNESS_CENTRALITY:
+                BetweennessCentrality betweenness = new BetweennessCentrality(graphFile);
+                stage(job, 0.3, "Computing betweenness centrality...");
+                betweenness.compute();
+                scores = betweenness.getCentrality();
+                graphStats = betweenness.getGraphStats();
+                break;
+            case CLUSTERING_COEFFICIENT:
+                ClusteringCoefficient clustering = new ClusteringCoefficient(graphFile);
+                stage(job, 0.3, "Computing clustering coefficients...");
+                clustering.compute();
+                scores = clustering.getCoefficients();
+                graphStats = clustering.getGraphStats();
+                break;
+            case K_CORE:
+                // Core numbers come as an array by vertex, so this ranks them directly
+                CsrGraph graph = CsrGraph.load(graphFile);
+                stage(job, 0.3, "Peeling k-cores...");
+                KCore kCore = new KCore(graph);
+                kCore.compute();
+                stage(job, 0.9, "Sorting results...");
+                double[] cores = Arrays.stream(kCore.getCores()).asDoubleStream().toArray();
+                RankedScores coreRanking = rank(graph.getIds(), cores, kCore.getGraphStats());
+                storeResult(job, cacheKey, coreRanking);
+                exportResult(job, coreRanking, export);
+                return;
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm: " + request.getAlgorithm());
+        }
+
+        stage(job, 0.9, "Sorting results...");
+        int[] keys = new int[scores.size()];
+        double[] scoreValues = new double[scores.size()];
+        int i = 0;
+        for (Map.Entry<Integer, ? extends Number> entry : scores.entrySet()) {
+            keys[i] = entry.getKey();
+            scoreValues[i] = entry.getValue().doubleValue();
+            i++;
+        }
+        RankedScores ranked = rank(keys, scoreValues, graphStats);
+        storeResult(job, cacheKey, ranked);
+        exportResult(job, ranked, export);
+    }
+
+    // Every analysis from one load. Each one's ranking also goes into the cache under the key its
+    // own job would use, so asking for PageRank, in-degree, clustering or core numbers afterwards is
+    // a cache hit.
+    private RankedScores computeAll(Job job, String graphFile, String export) throws IOException {
+        JobRequest request = job.request;
+        GraphAnalysis analysis = GraphAnalysis.load(graphFile, VertexOrder.named(request.getParameter("order", "original")));
+        Map<String, String> pageRankParameters = new HashMap<>();
+        for (String name : new String[]{"damping", "iterations", "tolerance"}) {
+            String value = request.getParameter(name, null);
+            if (value != null) pageRankParameters.put(name, value);
+        }
+        String damping = pageRankParameters.get("damping");
+        String iterations = pageRankParameters.get("iterations");
+        String tolerance = pageRankParameters.get("tolerance");
+        if (damping != null) analysis.setDampingFactor(Double.parseDouble(damping));
+        if (iterations != null) analysis.setIterations(Integer.parseInt(iterations));
+
+        stage(job, 0.3, "Computing in-degrees and PageRank...");
+        analysis.computeDegreesAndPageRank(tolerance == null ? 0 : Double.parseDouble(tolerance));
+        stage(job, 0.6, "Computing clustering coefficients...");
+        analysis.computeClustering();
+        stage(job, 0.7, "Peeling k-cores...");
+        analysis.computeCores();
+        stage(job, 0.8, "Finding connected components...");
+        analysis.computeComponents();
+
+        stage(job, 0.9, "Sorting results...");
+        int[] ids = analysis.getGraph().getIds();
+        double[] inDegrees = Arrays.stream(analysis.getInDegrees()).asDoubleStream().toArray();
+        RankedScores pageRank = rank(ids, analysis.getRanks(), analysis.getPageRankStats());
+        storeCached(job, cacheKey(request.getGraphFile(), GraphAlgorithm.PAGERANK, pageRankParameters), pageRank);
+        storeCached(job, cacheKey(request.getGraphFile(), GraphAlgorithm.HIGHEST_INDEGREE, new HashMap<>()),
+                rank(ids, inDegrees, analysis.getInDegreeStats()));
+        storeCached(job, cacheKey(request.getGraphFile(), GraphAlgorithm.CLUSTERING_COEFFICIENT, new HashMap<>()),
+                rank(ids, analysis.getCoefficients(), analysis.getClusteringStats()));
+        storeCached(job, cacheKey(request.getGraphFile(), GraphAlgorithm.K_CORE, new HashMap<>()),
+                rank(ids, Arrays.stream(analysis.getCores()).asDoubleStream().toArray(), analysis.getCoreStats()));
+
+        String report = analysis.getReport(Integer.parseInt(request.getParameter("top", "20")));
+        if (export != null) {
+            // Every analysis as a column, in graph order; components are labeled by a member's node id
+            int[] weak = analysis.getWeakComponents();
+            int[] strong = analysis.getStrongComponents();
+            double[][] columns = {
+                    analysis.getRanks(),
+                    inDegrees,
+                    analysis.getCoefficients(),
+                    Arrays.stream(analysis.getCores()).asDoubleStream().toArray(),
+                    Arrays.stream(weak).mapToDouble(label -> ids[label]).toArray(),
+                    Arrays.stream(strong).mapToDouble(label -> ids[label]).toArray()};
+            DoubleBuffer[] buffers = Arrays.stream(columns).map(DoubleBuffer::wrap).toArray(DoubleBuffer[]::new);
+            try {
+                Path file = export(job.id, export, GraphAlgorithm.ALL_ANALYSES.name(), report, IntBuffer.wrap(ids),
+                        new String[]{"pagerank", "indegree", "clustering", "core", "weak_component", "strong_component"}, buffers);
+                exported(job, file);
+            } catch (IOException | RuntimeException e) {
+                exportFailed(job, e);
+            }
+        }
+        return new RankedScores(pageRank.nodes(), pageRank.values(), report);
+    }
+
+    // The result itself is done and cached by now, so a failed export only goes in the message
+    private void exportResult(Job job, RankedScores scores, String format) {
+        if (format != null) {
+            try {
+                exported(job, export(job, scores, format));
+            } catch (IOException | RuntimeException e) {
+                exportFailed(job, e);
+            }
+        }
+    }
+
+    private void exported(Job job, Path file) {
+        synchronized (job) {
+            job.message = "Done, exported to " + file;
+        }
+    }
+
+    private void exportFailed(Job job, Exception e) {
+        String reason = e.getMessage() == null ? e.toString() : e.getMessage();
+        synchronized (job) {
+            job.message = "Done, export failed: " + reason;
+        }
+        System.out.println("Export of " + job.id + " failed: " + reason);
+    }
+
+    private Path export(String jobId, String format, String algorithm, String graphStats, IntBuffer nodes,
+                        String[] columnNames, DoubleBuffer... columns) throws IOException {
+        boolean csv = checkFormat(format);
+        Path file = exportDirectory.resolve(jobId + (csv ? ".csv" : ".p2pc")).toAbsolutePath();
+        long start = System.currentTimeMillis();
+        if (csv) {
+            ResultFile.writeCsv(file, nodes, columnNames, columns);
+        } else {
+            ResultFile.write(file, algorithm, graphStats, nodes, columnNames, columns);
+        }
+        System.out.println("Exported " + nodes.remaining() + " results of " + jobId + " to " + file + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return file;
+    }
+
+    // True for csv; throws IllegalArgumentException for anything but binary or csv
+    public static boolean checkFormat(String format) {
+        if (!"binary".equalsIgnoreCase(format) && !"csv".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Export format must be binary or csv, not " + format);
+        }
+        return "csv".equalsIgnoreCase(format);
+    }
+
+    private static String column(GraphAlgorithm algorithm) {
+        switch (algorithm) {
+            case PAGERANK:
+                return "pagerank";
+            case HIGHEST_INDEGREE:
+                return "indegree";
+            case BETWEENNESS_CENTRALITY:
+                return "betweenness";
+            case CLUSTERING_COEFFICIENT:
+                return "clustering";
+            case K_CORE:
+                return "core";
+            default:
+                return algorithm.name().toLowerCase();
+        }
+    }
+
+    private void storeResult(Job job, String cacheKey, RankedScores ranked) {
+        storeCached(job, cacheKey, ranked);
+        synchronized (job) {
+            job.scores = ranked;
+        }
+    }
+
+    private void storeCached(Job job, String cacheKey, RankedScores ranked) {
+        if (cacheKey == null) {
+            return;
+        }
+        try {
+            cache.put(cacheKey, ranked);
+        } catch (IOException e) {
+            System.out.println("Could not cache result of " + job.id + ": " + e.getMessage());
+        }
+    }
+
+    // Null when there is no cache or the graph can't be hashed; the job then just computes
+    private String cacheKey(String graphFile, GraphAlgorithm algorithm, Map<String, String> parameters) {
+        if (cache == null || manifests == null) {
+            return null;
+        }
+        try {
+            // Hashed once per file version; later runs only check its size and modification time
+            byte[] contentHash = manifests.getManifest(graphFile).getContentHash();
+            return ResultCache.key(contentHash, algorithm, parameters);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Highest score first, ties by node id
+    private static RankedScores rank(int[] keys, double[] scores, String graphStats) {
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byScore = Double.compare(scores[b], scores[a]);
+            return byScore != 0 ? byScore : Integer.compare(keys[a], keys[b]);
+        });
+        int[] nodes = new int[keys.length];
+        double[] values = new double[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            nodes[i] = keys[order[i]];
+            values[i] = scores[order[i]];
+        }
+        return new RankedScores(nodes, values, graphStats);
+    }
+
+    // Graph files come from remote callers, so keep them inside the shared directory
+    private String resolve(String graphFile) throws IOException {
+        Path path = graphDirectory.resolve(graphFile).normalize();
+        if (!path.startsWith(graphDirectory)) {
+            throw new IOException("Graph file outside shared directory: " + graphFile);
+        }
+        return path.toString();
+    }
+
+    private void stage(Job job, double progress, String message) {
+        synchronized (job) {
+            if (job.state != State.RUNNING) return;
+            job.progress = progress;
+            job.message = message;
+        }
+        publish(job);
+    }
+
+    private void publish(Job job) {
+        if (job.listeners.isEmpty()) return;
+        JobStatus status = job.status();
+        for (JobListener listener : job.listeners) {
+            notifier.execute(() -> deliver(job, listener, status));
+        }
+    }
+
+    private static void deliver(Job job, JobListener listener, JobStatus status) {
+        try {
+            listener.onProgress(status);
+            if (status.isFinished()) {
+                job.listeners.remove(listener);
+            }
+        } catch (RemoteException | RuntimeException e) {
+            // Gone or broken; stop sending it updates
+            job.listeners.remove(listener);
+        }
+    }
+
+    private void retire(Job job) {
+        synchronized (finished) {
+            finished.add(job.id);
+            while (finished.size() > RETAINED_JOBS) {
+                jobs.remove(finished.poll());
+            }
+        }
+    }
+
+    private static class Job {
+        final String id;
+        final JobRequest request;
+        final long submittedAt = System.currentTimeMillis();
+        final List<JobListener> listeners = new CopyOnWriteArrayList<>();
+        volatile Future<?> future;
+        State state = State.QUEUED;
+        double progress;
+        String message = "Queued";
+        long startedAt;
+        long finishedAt;
+        RankedScores scores;
+
+        Job(String id, JobRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+
+        synchronized JobStatus status() {
+            return new JobStatus(id, state, progress, message, submittedAt, elapsed());
+        }
+
+        synchronized long elapsed() {
+            if (startedAt == 0) return 0;
+            return (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.p2p.job;
+
+import com.p2p.algo.CsrGraph;
+import com.p2p.algo.PathFinder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Answers shortest-path queries on the shared graphs. The first query on a graph loads it; the
+// loaded graphs stay in memory, least recently used dropped first, so later queries only pay for
+// the bidirectional search. A graph file that changed on disk is loaded again. A graph loads outside
+// the lock, so queries on the graphs already loaded go on meanwhile; queries on the graph being
+// loaded wait for that one load.
+public class PathService {
+    public static final int DEFAULT_GRAPHS = Integer.getInteger("p2p.paths.graphs", 2);
+
+    private final Path graphDirectory;
+    private final int maxGraphs;
+    private final Map<Path, CompletableFuture<Loaded>> graphs = new LinkedHashMap<>(16, 0.75f, true);
+
+    public PathService(Path graphDirectory, int maxGraphs) {
+        this.graphDirectory = graphDirectory.toAbsolutePath().normalize();
+        this.maxGraphs = maxGraphs;
+    }
+
+    public PathService(Path graphDirectory) {
+        this(graphDirectory, DEFAULT_GRAPHS);
+    }
+
+    // Node ids along a shortest path, both ends included; null if there is none.
+    // Throws IllegalArgumentException for a node not in the graph.
+    public int[] findPath(String graphFile, int from, int to) throws IOException {
+        return finder(graphFile).path(from, to);
+    }
+
+    private PathFinder finder(String graphFile) throws IOException {
+        Path path = graphDirectory.resolve(graphFile).normalize();
+        if (!path.startsWith(graphDirectory)) {
+            throw new IOException("Graph file outside shared directory: " + graphFile);
+        }
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+        CompletableFuture<Loaded> loaded;
+        CompletableFuture<Loaded> loading = null;
+        synchronized (graphs) {
+            loaded = graphs.get(path);
+            if (loaded == null || isStale(loaded, modified, size)) {
+                graphs.remove(path);
+                // Make room first so the old graphs can be collected while the new one loads
+                while (graphs.size() >= Math.max(1, maxGraphs)) {
+                    graphs.remove(graphs.keySet().iterator().next());
+                }
+                loaded = loading = new CompletableFuture<>();
+                graphs.put(path, loading);
+            }
+        }
+        if (loading != null) {
+            try {
+                long start = System.currentTimeMillis();
+                PathFinder finder = new PathFinder(CsrGraph.load(path.toString()));
+                System.out.println("Loaded " + graphFile + " for path queries in " + (System.currentTimeMillis() - start) + " ms");
+                loading.complete(new Loaded(finder, modified, size));
+            } catch (IOException | RuntimeException | Error e) {
+                synchronized (graphs) {
+                    graphs.remove(path, loading);
+                }
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return await(loaded).finder;
+    }
+
+    // A graph still loading is not stale; queries on it wait for it
+    private static boolean isStale(CompletableFuture<Loaded> loaded, long modified, long size) {
+        if (!loaded.isDone() || loaded.isCompletedExceptionally()) {
+            return false;
+        }
+        Loaded graph = loaded.join();
+        return graph.modified != modified || graph.size != size;
+    }
+
+    // Rethrows what the load threw, for the queries that waited on it
+    private static Loaded await(CompletableFuture<Loaded> loaded) throws IOException {
+        try {
+            return loaded.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private static final class Loaded {
+        final PathFinder finder;
+        final long modified;
+        final long size;
+
+        Loaded(PathFinder finder, long modified, long size) {
+            this.finder = finder;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.p2p.job;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+// A job's result: node ids and scores, highest score first. Backed either by the arrays a job just
+// computed or by a memory-mapped cache file, so a cached result is served without copying it in.
+class RankedScores {
+    private final IntBuffer nodes;
+    private final DoubleBuffer values;
+    private final String graphStats;
+
+    RankedScores(IntBuffer nodes, DoubleBuffer values, String graphStats) {
+        this.nodes = nodes;
+        this.values = values;
+        this.graphStats = graphStats;
+    }
+
+    RankedScores(int[] nodes, double[] values, String graphStats) {
+        this(IntBuffer.wrap(nodes), DoubleBuffer.wrap(values), graphStats);
+    }
+
+    int size() {
+        return nodes.limit();
+    }
+
+    String getGraphStats() {
+        return graphStats;
+    }
+
+    int[] nodes(int from, int to) {
+        int[] copy = new int[to - from];
+        nodes.duplicate().position(from).get(copy);
+        return copy;
+    }
+
+    double[] values(int from, int to) {
+        double[] copy = new double[to - from];
+        values.duplicate().position(from).get(copy);
+        return copy;
+    }
+
+    IntBuffer nodes() {
+        return nodes.duplicate();
+    }
+
+    DoubleBuffer values() {
+        return values.duplicate();
+    }
+}
@@ -0,0 +1,199 @@
+package com.p2p.job;
+
+import com.p2p.model.GraphAlgorithm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Job results on disk, keyed by the graph's content hash, the algorithm and its parameters, so a
+// rerun on an unchanged file is answered from the cache and a changed file never is. Each result is
+// one binary file (header, graph stats, node ids, scores) that is memory-mapped on a hit; as in
+// ResultFile, the node ids and the scores each start 8-byte aligned. The cache
+// is bounded by total size and evicts the least recently used results; file modification times
+// record use, so the order survives restarts.
+public class ResultCache {
+    public static final long DEFAULT_MAX_BYTES = Long.getLong("p2p.cache.maxMegabytes", 512) * 1024 * 1024;
+    private static final int MAGIC = 0x50325052; // "P2PR"
+    // Version 1 files, with unaligned columns, are dropped and recomputed
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final String SUFFIX = ".res";
+
+    private final Path directory;
+    private final long maxBytes;
+    // File sizes in least recently used first order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX)) {
+                    files.add(file);
+                } else if (name.endsWith(".tmp")) {
+                    // Left by a crash while storing
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(ResultCache::lastModified));
+        for (Path file : files) {
+            long size = Files.size(file);
+            entries.put(file.getFileName().toString(), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    // Parameters are compared as given, so "damping=0.85" and no damping at all are different keys
+    public static String key(byte[] contentHash, GraphAlgorithm algorithm, Map<String, String> parameters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contentHash);
+            digest.update(algorithm.name().getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, String> parameter : new TreeMap<>(parameters).entrySet()) {
+                digest.update(("\n" + parameter.getKey() + "=" + parameter.getValue()).getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Null on a miss
+    public synchronized RankedScores get(String key) throws IOException {
+        String name = key + SUFFIX;
+        if (entries.get(name) == null) {
+            return null;
+        }
+        Path file = directory.resolve(name);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt() != MAGIC || mapped.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a result file: " + file);
+            }
+            int count = mapped.getInt();
+            byte[] stats = new byte[mapped.getInt()];
+            mapped.get(stats);
+            long nodesAt = align(mapped.position());
+            long valuesAt = align(nodesAt + (long) count * Integer.BYTES);
+            if (count < 0 || valuesAt + (long) count * Double.BYTES != channel.size()) {
+                throw new IOException("Truncated result file: " + file);
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new RankedScores(
+                    mapped.duplicate().position((int) nodesAt).limit((int) nodesAt + count * Integer.BYTES)
+                            .slice().asIntBuffer(),
+                    mapped.duplicate().position((int) valuesAt).slice().asDoubleBuffer(),
+                    new String(stats, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // Damaged or deleted behind our back; forget it and recompute
+            remove(name);
+            System.out.println("Dropped cached result " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, RankedScores scores) throws IOException {
+        String name = key + SUFFIX;
+        byte[] stats = scores.getGraphStats().getBytes(StandardCharsets.UTF_8);
+        long nodesAt = align(HEADER_BYTES + stats.length);
+        long valuesAt = align(nodesAt + (long) scores.size() * Integer.BYTES);
+        long size = valuesAt + (long) scores.size() * Double.BYTES;
+        if (size > maxBytes || size > Integer.MAX_VALUE) {
+            return;
+        }
+
+        Path temp = directory.resolve(name + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapped.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(scores.size()).putInt(stats.length).put(stats);
+            // The padding is already zero in a freshly extended file
+            mapped.position((int) nodesAt);
+            mapped.asIntBuffer().put(scores.nodes());
+            mapped.position((int) valuesAt);
+            mapped.asDoubleBuffer().put(scores.values());
+        }
+        // Readers never see a partly written file
+        Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Long previous = entries.put(name, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+        evict();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            } catch (IOException e) {
+                System.out.println("Could not evict cached result " + entry.getKey() + ": " + e.getMessage());
+            }
+            totalBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private void remove(String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(name));
+        } catch (IOException e) {
+            // Gone already
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.p2p.job;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// A complete per-node result as columns, for downstream jobs to memory-map instead of parsing: a
+// node id column and one or more value columns, each contiguous. Big-endian, like the result cache:
+//   int magic "P2PC", int version, int rows, int value columns,
+//   long offset of the node column, long offset of the first value column, int metadata bytes, int 0,
+//   metadata (UTF-8: the algorithm, a line of comma-separated column names, then the graph stats),
+//   int[rows] node ids, then each value column as double[rows].
+// Both columns start 8-byte aligned. Rows are in whatever order they were written: by rank for a
+// single job's ranking, in graph order for a table of several analyses. The CSV form streams the
+// same rows under a "node,<column names>" header.
+public class ResultFile {
+    private static final int MAGIC = 0x50325043; // "P2PC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final String algorithm;
+    private final String[] columnNames;
+    private final String graphStats;
+    private final IntBuffer nodes;
+    private final DoubleBuffer[] columns;
+
+    private ResultFile(String algorithm, String[] columnNames, String graphStats, IntBuffer nodes, DoubleBuffer[] columns) {
+        this.algorithm = algorithm;
+        this.columnNames = columnNames;
+        this.graphStats = graphStats;
+        this.nodes = nodes;
+        this.columns = columns;
+    }
+
+    // Maps a file written by write; the columns are read from the page cache as they are used
+    public static ResultFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a result file: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a result file: " + file);
+            }
+            int rows = header.getInt();
+            int count = header.getInt();
+            long nodesAt = header.getLong();
+            long valuesAt = header.getLong();
+            byte[] text = new byte[header.getInt()];
+            if (valuesAt + (long) rows * Double.BYTES * count != channel.size()) {
+                throw new IOException("Truncated result file: " + file);
+            }
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, text.length).get(text);
+            String[] metadata = new String(text, StandardCharsets.UTF_8).split("\n", 3);
+            IntBuffer nodes = channel.map(FileChannel.MapMode.READ_ONLY, nodesAt, (long) rows * Integer.BYTES).asIntBuffer();
+            DoubleBuffer[] columns = new DoubleBuffer[count];
+            for (int c = 0; c < count; c++) {
+                columns[c] = channel.map(FileChannel.MapMode.READ_ONLY, valuesAt + (long) c * rows * Double.BYTES,
+                        (long) rows * Double.BYTES).asDoubleBuffer();
+            }
+            return new ResultFile(metadata[0], metadata[1].split(","), metadata.length > 2 ? metadata[2] : "", nodes, columns);
+        }
+    }
+
+    // Streams the columns through one buffer to a temporary file, then moves it into place
+    public static void write(Path file, String algorithm, String graphStats, IntBuffer nodes, String[] columnNames,
+                             DoubleBuffer... columns) throws IOException {
+        int rows = nodes.remaining();
+        byte[] metadata = (algorithm + "\n" + String.join(",", columnNames) + "\n" + graphStats).getBytes(StandardCharsets.UTF_8);
+        long nodesAt = align(HEADER_BYTES + metadata.length);
+        long valuesAt = align(nodesAt + (long) rows * Integer.BYTES);
+        Path temp = temporary(file);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rows).putInt(columns.length)
+                    .putLong(nodesAt).putLong(valuesAt).putInt(metadata.length).putInt(0);
+            for (int i = 0; i < metadata.length; ) {
+                int length = Math.min(buffer.remaining(), metadata.length - i);
+                buffer.put(metadata, i, length);
+                i += length;
+                if (!buffer.hasRemaining()) drain(channel, buffer);
+            }
+            pad(channel, buffer, nodesAt);
+            IntBuffer ids = nodes.duplicate();
+            while (ids.hasRemaining()) {
+                if (buffer.remaining() < Integer.BYTES) drain(channel, buffer);
+                int count = Math.min(buffer.remaining() / Integer.BYTES, ids.remaining());
+                IntBuffer part = ids.duplicate();
+                part.limit(part.position() + count);
+                buffer.asIntBuffer().put(part);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                ids.position(ids.position() + count);
+            }
+            pad(channel, buffer, valuesAt);
+            for (DoubleBuffer column : columns) {
+                DoubleBuffer values = column.duplicate();
+                if (values.remaining() != rows) {
+                    throw new IllegalArgumentException("Column of " + values.remaining() + " values for " + rows + " rows");
+                }
+                while (values.hasRemaining()) {
+                    if (buffer.remaining() < Double.BYTES) drain(channel, buffer);
+                    int count = Math.min(buffer.remaining() / Double.BYTES, values.remaining());
+                    DoubleBuffer part = values.duplicate();
+                    part.limit(part.position() + count);
+                    buffer.asDoubleBuffer().put(part);
+                    buffer.position(buffer.position() + count * Double.BYTES);
+                    values.position(values.position() + count);
+                }
+            }
+            drain(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        moveIntoPlace(temp, file);
+    }
+
+    // Values that are whole numbers, like in-degrees and core numbers, are written without a fraction
+    public static void writeCsv(Path file, IntBuffer nodes, String[] columnNames, DoubleBuffer... columns) throws IOException {
+        Path temp = temporary(file);
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("node," + String.join(",", columnNames) + "\n");
+            IntBuffer ids = nodes.duplicate();
+            DoubleBuffer[] values = new DoubleBuffer[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                values[c] = columns[c].duplicate();
+            }
+            StringBuilder line = new StringBuilder();
+            while (ids.hasRemaining()) {
+                line.setLength(0);
+                line.append(ids.get());
+                for (DoubleBuffer column : values) {
+                    double value = column.get();
+                    line.append(',');
+                    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                        line.append((long) value);
+                    } else {
+                        line.append(value);
+                    }
+                }
+                writer.append(line).append('\n');
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        moveIntoPlace(temp, file);
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    public String getGraphStats() {
+        return graphStats;
+    }
+
+    public int size() {
+        return nodes.limit();
+    }
+
+    public IntBuffer nodes() {
+        return nodes.duplicate();
+    }
+
+    public DoubleBuffer values(int column) {
+        return columns[column].duplicate();
+    }
+
+    public DoubleBuffer values(String columnName) {
+        for (int c = 0; c < columnNames.length; c++) {
+            if (columnNames[c].equals(columnName)) return values(c);
+        }
+        throw new IllegalArgumentException("No column " + columnName + " in " + String.join(",", columnNames));
+    }
+
+    // A name of its own for each writer, so two exports of one result can't write into each other
+    private static Path temporary(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        return Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    }
+
+    private static void moveIntoPlace(Path temp, Path file) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void pad(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        long position = channel.position() + buffer.position();
+        for (; position < offset; position++) {
+            if (!buffer.hasRemaining()) drain(channel, buffer);
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
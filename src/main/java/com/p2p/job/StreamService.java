@@ -0,0 +1,121 @@
+package com.p2p.job;
+
+import com.p2p.model.GraphAlgorithm;
+import com.p2p.model.JobResult;
+import com.p2p.stream.EdgeStreamTailer;
+import com.p2p.stream.GraphSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Live rankings of shared graphs that are still growing. The first query on a graph file starts
+// following it (see EdgeStreamTailer), after reading what it holds so far; from then on each batch
+// appended to the file updates the graph in place, and queries read the latest snapshot without
+// waiting for one. Followed files beyond the limit are dropped, least recently queried first.
+// The first read of a file happens outside the lock: only queries on that file wait for it.
+public class StreamService {
+    public static final int DEFAULT_GRAPHS = Integer.getInteger("p2p.stream.graphs", 4);
+
+    private final Path graphDirectory;
+    private final int maxGraphs;
+    private final Map<Path, CompletableFuture<EdgeStreamTailer>> tailers = new LinkedHashMap<>(16, 0.75f, true);
+
+    public StreamService(Path graphDirectory, int maxGraphs) {
+        this.graphDirectory = graphDirectory.toAbsolutePath().normalize();
+        this.maxGraphs = maxGraphs;
+    }
+
+    public StreamService(Path graphDirectory) {
+        this(graphDirectory, DEFAULT_GRAPHS);
+    }
+
+    public GraphSnapshot snapshot(String graphFile) throws IOException {
+        return tailer(graphFile).snapshot();
+    }
+
+    // The topN nodes (topN <= 0 for every node) by in-degree or clustering coefficient in the
+    // latest snapshot. The job id names the snapshot version.
+    public JobResult ranking(String graphFile, GraphAlgorithm algorithm, int topN) throws IOException {
+        GraphSnapshot snapshot = snapshot(graphFile);
+        int count = topN <= 0 ? snapshot.numVertices() : topN;
+        int[] top;
+        if (algorithm == GraphAlgorithm.HIGHEST_INDEGREE) {
+            top = snapshot.topByInDegree(count);
+        } else if (algorithm == GraphAlgorithm.CLUSTERING_COEFFICIENT) {
+            top = snapshot.topByClustering(count);
+        } else {
+            throw new IllegalArgumentException("No live ranking for " + algorithm.getDisplayName());
+        }
+        int[] nodes = new int[top.length];
+        double[] values = new double[top.length];
+        for (int i = 0; i < top.length; i++) {
+            nodes[i] = snapshot.id(top[i]);
+            values[i] = algorithm == GraphAlgorithm.HIGHEST_INDEGREE ? snapshot.inDegree(top[i]) : snapshot.clustering(top[i]);
+        }
+        return new JobResult("live-" + snapshot.getVersion(), algorithm, 0, nodes, values, snapshot.numVertices(),
+                snapshot.getGraphStats(), 0);
+    }
+
+    public void stopAll() {
+        synchronized (tailers) {
+            tailers.values().forEach(StreamService::stop);
+            tailers.clear();
+        }
+    }
+
+    private EdgeStreamTailer tailer(String graphFile) throws IOException {
+        Path path = graphDirectory.resolve(graphFile).normalize();
+        if (!path.startsWith(graphDirectory)) {
+            throw new IOException("Graph file outside shared directory: " + graphFile);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("No such graph file: " + graphFile);
+        }
+        CompletableFuture<EdgeStreamTailer> followed;
+        CompletableFuture<EdgeStreamTailer> starting = null;
+        synchronized (tailers) {
+            followed = tailers.get(path);
+            if (followed == null) {
+                while (tailers.size() >= Math.max(1, maxGraphs)) {
+                    stop(tailers.remove(tailers.keySet().iterator().next()));
+                }
+                followed = starting = new CompletableFuture<>();
+                tailers.put(path, starting);
+            }
+        }
+        if (starting != null) {
+            EdgeStreamTailer tailer = new EdgeStreamTailer(path);
+            try {
+                long start = System.currentTimeMillis();
+                int edges = tailer.poll();
+                System.out.println("Following " + graphFile + ": " + edges + " edges read in " + (System.currentTimeMillis() - start) + " ms");
+            } catch (IOException | RuntimeException | Error e) {
+                synchronized (tailers) {
+                    tailers.remove(path, starting);
+                }
+                starting.completeExceptionally(e);
+                throw e;
+            }
+            tailer.start();
+            starting.complete(tailer);
+        }
+        try {
+            return followed.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    // Also stops a tailer dropped while it was still reading the file
+    private static void stop(CompletableFuture<EdgeStreamTailer> followed) {
+        followed.thenAccept(EdgeStreamTailer::stop);
+    }
+}
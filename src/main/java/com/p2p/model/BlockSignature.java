@@ -0,0 +1,46 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// Rolling (weak) and MD5 (strong) checksums of every full block of a receiver's copy of a file
+public class BlockSignature implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String filename;
+    private final long fileSize;
+    private final int blockSize;
+    private final int[] weak;
+    private final byte[][] strong;
+
+    public BlockSignature(String filename, long fileSize, int blockSize, int[] weak, byte[][] strong) {
+        this.filename = filename;
+        this.fileSize = fileSize;
+        this.blockSize = blockSize;
+        this.weak = weak;
+        this.strong = strong;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlockCount() {
+        return weak.length;
+    }
+
+    public int getWeak(int block) {
+        return weak[block];
+    }
+
+    public byte[] getStrong(int block) {
+        return strong[block];
+    }
+}
@@ -0,0 +1,70 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// One worker's share of a graph for a vertex-program run. Vertices are numbered 0..n-1 across the
+// whole graph; this worker owns `vertices` (in ascending order), and their out-edges are in CSR form
+// over local positions: edges[offsets[i] .. offsets[i + 1]) are vertices[i]'s neighbours, each given
+// as a position in the target table. The table lists, once each and in ascending order, the vertices
+// this worker's edges point to, with the worker owning each and its position there. A worker so only
+// holds its own vertices, edges and neighbours, however large the whole graph is.
+public class BspPartition implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private final int partitionId;
+    private final int numVertices;
+    private final int[] vertices;
+    private final int[] offsets;
+    private final int[] edges;
+    private final int[] targets;
+    private final int[] targetOwner;
+    private final int[] targetSlot;
+
+    public BspPartition(int partitionId, int numVertices, int[] vertices, int[] offsets, int[] edges,
+                        int[] targets, int[] targetOwner, int[] targetSlot) {
+        this.partitionId = partitionId;
+        this.numVertices = numVertices;
+        this.vertices = vertices;
+        this.offsets = offsets;
+        this.edges = edges;
+        this.targets = targets;
+        this.targetOwner = targetOwner;
+        this.targetSlot = targetSlot;
+    }
+
+    public int getPartitionId() {
+        return partitionId;
+    }
+
+    public int[] getVertices() {
+        return vertices;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getEdges() {
+        return edges;
+    }
+
+    // Vertex number of each entry of the target table
+    public int[] getTargets() {
+        return targets;
+    }
+
+    // Worker owning each entry of the target table
+    public int[] getTargetOwner() {
+        return targetOwner;
+    }
+
+    // Position of each entry of the target table within its owner's vertices
+    public int[] getTargetSlot() {
+        return targetSlot;
+    }
+
+    // Vertices in the whole graph
+    public int getNumVertices() {
+        return numVertices;
+    }
+}
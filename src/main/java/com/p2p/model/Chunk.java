@@ -0,0 +1,45 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// One chunk on the wire, either raw or deflated. compressNanos is how long the sender spent
+// compressing it, which lets the other side judge whether compression is paying off.
+public class Chunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] data;
+    private final int rawLength;
+    private final boolean compressed;
+    private final long compressNanos;
+
+    public Chunk(byte[] data, int rawLength, boolean compressed, long compressNanos) {
+        this.data = data;
+        this.rawLength = rawLength;
+        this.compressed = compressed;
+        this.compressNanos = compressNanos;
+    }
+
+    public static Chunk raw(byte[] data) {
+        return new Chunk(data, data.length, false, 0);
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getRawLength() {
+        return rawLength;
+    }
+
+    public int getWireLength() {
+        return data.length;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+}
@@ -0,0 +1,25 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// A run of delta instructions. Each op is either a block reference (op >= 0, the index of a block
+// in the receiver's existing copy) or a literal run (op < 0, the next -op bytes of literals).
+public class DeltaBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] ops;
+    private final byte[] literals;
+
+    public DeltaBatch(int[] ops, byte[] literals) {
+        this.ops = ops;
+        this.literals = literals;
+    }
+
+    public int[] getOps() {
+        return ops;
+    }
+
+    public byte[] getLiterals() {
+        return literals;
+    }
+}
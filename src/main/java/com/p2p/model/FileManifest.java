@@ -0,0 +1,71 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// Describes a file as fixed-size pieces, each with its SHA-256 hash, so pieces can be
+// fetched from different peers and verified independently
+public class FileManifest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String filename;
+    private final long size;
+    private final int pieceSize;
+    private final byte[][] pieceHashes;
+
+    public FileManifest(String filename, long size, int pieceSize, byte[][] pieceHashes) {
+        this.filename = filename;
+        this.size = size;
+        this.pieceSize = pieceSize;
+        this.pieceHashes = pieceHashes;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getPieceSize() {
+        return pieceSize;
+    }
+
+    public int getPieceCount() {
+        return pieceHashes.length;
+    }
+
+    public byte[] getPieceHash(int piece) {
+        return pieceHashes[piece];
+    }
+
+    public long getPieceOffset(int piece) {
+        return (long) piece * pieceSize;
+    }
+
+    public int getPieceLength(int piece) {
+        return (int) Math.min(pieceSize, size - getPieceOffset(piece));
+    }
+
+    // SHA-256 over all piece hashes; identifies this exact file version end to end
+    public byte[] getContentHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] pieceHash : pieceHashes) {
+                digest.update(pieceHash);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Two peers serve the same content only if every piece hash matches
+    public boolean sameContentAs(FileManifest other) {
+        return other != null && size == other.size && pieceSize == other.pieceSize
+                && Arrays.deepEquals(pieceHashes, other.pieceHashes);
+    }
+}
@@ -0,0 +1,59 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+// Bloom filter over the names of the files a peer shares. A few KB stand in for the whole
+// listing: mightContain never misses a file the peer has, and wrongly says yes for about 1% of
+// names it doesn't have, which callers find out when they ask that peer for the file.
+public class FileSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long[] bits;
+    private final int numBits;
+    private final int numHashes;
+    private final int fileCount;
+
+    public FileSummary(long[] bits, int numBits, int numHashes, int fileCount) {
+        this.bits = bits;
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.fileCount = fileCount;
+    }
+
+    public boolean mightContain(String filename) {
+        for (int index : indexes(filename, numBits, numHashes)) {
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public int getSizeBytes() {
+        return bits.length * Long.BYTES;
+    }
+
+    // Bit positions for a name: k probes derived from two halves of one 64-bit hash
+    public static int[] indexes(String filename, int numBits, int numHashes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : filename.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        int[] indexes = new int[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            indexes[i] = Math.floorMod(h1 + i * h2, numBits);
+        }
+        return indexes;
+    }
+}
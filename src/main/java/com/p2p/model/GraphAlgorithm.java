@@ -0,0 +1,58 @@
+package com.p2p.model;
+
+import java.rmi.RemoteException;
+
+// The graph analyses a peer can run, so callers can pick one without naming the Peer method
+public enum GraphAlgorithm {
+    PAGERANK("PageRank") {
+        @Override
+        public void run(Peer peer, String graphFile) throws RemoteException {
+            peer.runPageRank(graphFile);
+        }
+    },
+    HIGHEST_INDEGREE("Highest Indegree") {
+        @Override
+        public void run(Peer peer, String graphFile) throws RemoteException {
+            peer.runHighestIndegree(graphFile);
+        }
+    },
+    BETWEENNESS_CENTRALITY("Betweenness Centrality") {
+        @Override
+        public void run(Peer peer, String graphFile) throws RemoteException {
+            peer.runBetweennessCentrality(graphFile);
+        }
+    },
+    CLUSTERING_COEFFICIENT("Clustering Coefficient") {
+        @Override
+        public void run(Peer peer, String graphFile) throws RemoteException {
+            peer.runClusteringCoefficient(graphFile);
+        }
+    },
+    // Core number of every node, treating edges as undirected
+    K_CORE("K-Core Decomposition") {
+        @Override
+        public void run(Peer peer, String graphFile) throws RemoteException {
+            peer.runKCore(graphFile);
+        }
+    },
+    // In-degree, PageRank, clustering, core numbers and components from one load; ranked by
+    // PageRank, with a report covering all of them in the result's graph statistics
+    ALL_ANALYSES("All Analyses") {
+        @Override
+        public void run(Peer peer, String graphFile) throws RemoteException {
+            peer.runAllAnalyses(graphFile);
+        }
+    };
+
+    private final String displayName;
+
+    GraphAlgorithm(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public abstract void run(Peer peer, String graphFile) throws RemoteException;
+}
@@ -0,0 +1,10 @@
+package com.p2p.model;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Callback for job progress. Remote callers export their listener; each stage change and the
+// final state are delivered once, in order.
+public interface JobListener extends Remote {
+    void onProgress(JobStatus status) throws RemoteException;
+}
@@ -0,0 +1,10 @@
+package com.p2p.model;
+
+// A peer's job queue is full; the job was not accepted and can be retried later or elsewhere
+public class JobRejectedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public JobRejectedException(String message) {
+        super(message);
+    }
+}
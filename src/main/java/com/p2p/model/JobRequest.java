@@ -0,0 +1,46 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+// A graph analysis to run on a peer. Parameters are algorithm specific, e.g. PageRank's
+// "damping", "iterations" and "tolerance"; unknown ones are ignored.
+public class JobRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final GraphAlgorithm algorithm;
+    private final String graphFile;
+    private final Map<String, String> parameters;
+
+    public JobRequest(GraphAlgorithm algorithm, String graphFile, Map<String, String> parameters) {
+        this.algorithm = algorithm;
+        this.graphFile = graphFile;
+        this.parameters = new HashMap<>(parameters);
+    }
+
+    public JobRequest(GraphAlgorithm algorithm, String graphFile) {
+        this(algorithm, graphFile, new HashMap<>());
+    }
+
+    public GraphAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getGraphFile() {
+        return graphFile;
+    }
+
+    public String getParameter(String name, String defaultValue) {
+        return parameters.getOrDefault(name, defaultValue);
+    }
+
+    public Map<String, String> getParameters() {
+        return new HashMap<>(parameters);
+    }
+
+    @Override
+    public String toString() {
+        return algorithm.getDisplayName() + " on " + graphFile + (parameters.isEmpty() ? "" : " " + parameters);
+    }
+}
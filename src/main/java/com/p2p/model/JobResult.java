@@ -0,0 +1,72 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// A job's per-node scores as two parallel primitive arrays, highest score first. Holds a run of
+// nodes by rank starting at getOffset(): the top N, a page of a larger result or, when
+// isComplete(), every node in the graph.
+public class JobResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String jobId;
+    private final GraphAlgorithm algorithm;
+    private final int offset;
+    private final int[] nodes;
+    private final double[] values;
+    private final int totalNodes;
+    private final String graphStats;
+    private final long elapsedMillis;
+
+    public JobResult(String jobId, GraphAlgorithm algorithm, int offset, int[] nodes, double[] values,
+                     int totalNodes, String graphStats, long elapsedMillis) {
+        this.jobId = jobId;
+        this.algorithm = algorithm;
+        this.offset = offset;
+        this.nodes = nodes;
+        this.values = values;
+        this.totalNodes = totalNodes;
+        this.graphStats = graphStats;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public GraphAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    // Rank of the first node held here, 0 being the highest score
+    public int getOffset() {
+        return offset;
+    }
+
+    public int[] getNodes() {
+        return nodes;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public int getTotalNodes() {
+        return totalNodes;
+    }
+
+    public boolean isComplete() {
+        return offset == 0 && nodes.length == totalNodes;
+    }
+
+    public String getGraphStats() {
+        return graphStats;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
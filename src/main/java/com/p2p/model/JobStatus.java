@@ -0,0 +1,61 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// Snapshot of a job's progress; progress runs from 0 to 1
+public class JobStatus implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum State { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final String jobId;
+    private final State state;
+    private final double progress;
+    private final String message;
+    private final long submittedAt;
+    private final long elapsedMillis;
+
+    public JobStatus(String jobId, State state, double progress, String message, long submittedAt, long elapsedMillis) {
+        this.jobId = jobId;
+        this.state = state;
+        this.progress = progress;
+        this.message = message;
+        this.submittedAt = submittedAt;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isFinished() {
+        return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    // Current stage while running, the error when failed
+    public String getMessage() {
+        return message;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    // Time spent running so far, or in total once finished
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return jobId + " " + state + " " + Math.round(progress * 100) + "% " + message;
+    }
+}
@@ -0,0 +1,39 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+// Membership changes between two registry versions. A snapshot replaces the caller's view
+// entirely; it is sent when the caller is too far behind for the registry's change log.
+public class MembershipUpdate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+    private final boolean snapshot;
+    private final Map<String, Peer> joined;
+    private final List<String> left;
+
+    public MembershipUpdate(long version, boolean snapshot, Map<String, Peer> joined, List<String> left) {
+        this.version = version;
+        this.snapshot = snapshot;
+        this.joined = joined;
+        this.left = left;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public Map<String, Peer> getJoined() {
+        return joined;
+    }
+
+    public List<String> getLeft() {
+        return left;
+    }
+}
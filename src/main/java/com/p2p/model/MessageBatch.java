@@ -0,0 +1,36 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// Messages from one worker to another for the next superstep, already combined so each target
+// appears once. Targets are positions in the receiving worker's partition.
+public class MessageBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int superstep;
+    private final int[] targets;
+    private final double[] values;
+
+    public MessageBatch(int superstep, int[] targets, double[] values) {
+        this.superstep = superstep;
+        this.targets = targets;
+        this.values = values;
+    }
+
+    // The superstep that sent these; they are read in the one after it
+    public int getSuperstep() {
+        return superstep;
+    }
+
+    public int[] getTargets() {
+        return targets;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public int size() {
+        return targets.length;
+    }
+}
@@ -1,14 +1,80 @@
 package com.p2p.model;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.BitSet;
+import java.util.List;
 
 public interface Peer extends Remote {
     String getName() throws RemoteException;
     byte[] downloadFile(String filename) throws RemoteException;
     void uploadFile(String filename, byte[] data) throws RemoteException;
 
+    // Chunked transfer: files move in bounded chunks so neither side buffers the whole file.
+    // beginUpload returns the pieces kept from an interrupted earlier upload of the same version.
+    // compressionLevel asks for a deflated chunk (0 = raw); incompressible chunks come back raw.
+    long getFileSize(String filename) throws RemoteException;
+    Chunk readChunk(String filename, long offset, int length, int compressionLevel) throws RemoteException;
+    BitSet beginUpload(String filename, FileManifest manifest) throws RemoteException;
+    void writeChunk(String filename, long offset, Chunk chunk) throws RemoteException;
+    void finishUpload(String filename) throws RemoteException;
+
+    // Bulk side channel: RMI negotiates a ticket, the bytes move over a dedicated socket
+    TransferTicket openDownload(String filename, long offset, long length) throws RemoteException;
+    // openUpload takes a run of whole pieces of an upload begun with beginUpload
+    TransferTicket openUpload(String filename, long offset, long length) throws RemoteException;
+
+    // Piece manifest used to download the same file from several peers at once
+    FileManifest getManifest(String filename) throws RemoteException;
+
+    // Delta sync: the receiver's block signatures let the sender ship only changed bytes
+    BlockSignature getBlockSignature(String filename, int blockSize) throws RemoteException;
+    void beginDelta(String filename, int blockSize) throws RemoteException;
+    void applyDelta(String filename, DeltaBatch batch) throws RemoteException;
+    void finishDelta(String filename, long size, byte[] sha256) throws RemoteException;
+
+    // Pipelined broadcast: each peer stores the pieces it receives and forwards them to the peers
+    // in its subtree. finishBroadcast returns the names of the peers in this subtree that stored the file.
+    void beginBroadcast(String filename, FileManifest manifest, List<Peer> subtree, int fanout) throws RemoteException;
+    void broadcastChunk(String filename, int piece, Chunk chunk) throws RemoteException;
+    List<String> finishBroadcast(String filename) throws RemoteException;
+
+    // Headless job API: submit returns a job id at once; poll the status or subscribe a listener, then
+    // fetch the topN best-scoring nodes (topN <= 0 for every node), or page through them by rank.
+    // Submit is refused when the peer's job queue is full; finished jobs are kept for a while, then dropped.
+    String submitJob(JobRequest request) throws RemoteException, JobRejectedException;
+    JobStatus getJobStatus(String jobId) throws RemoteException;
+    JobResult getJobResult(String jobId, int topN) throws RemoteException;
+    JobResult getJobResult(String jobId, int offset, int count) throws RemoteException;
+    void subscribeJob(String jobId, JobListener listener) throws RemoteException;
+    boolean cancelJob(String jobId) throws RemoteException;
+    // Writes a finished job's complete result on this peer as "binary" (a columnar file that can be
+    // memory-mapped with com.p2p.job.ResultFile) or "csv", returning the file's path there
+    String exportJobResult(String jobId, String format) throws RemoteException;
+
+    // Node ids along a shortest path between two nodes of a shared graph, both ends included, or
+    // null if to can't be reached from from. The graph is loaded on the first query and kept.
+    int[] findPath(String graphFile, int from, int to) throws RemoteException;
+
+    // HIGHEST_INDEGREE or CLUSTERING_COEFFICIENT ranking of a shared graph file that is still being
+    // appended to, as of the latest batch. The first call starts following the file.
+    JobResult getLiveRanking(String graphFile, GraphAlgorithm algorithm, int topN) throws RemoteException;
+
+    // Vertex-program worker: a coordinator loads a partition of the graph here, then calls
+    // bspSuperstep on every worker for each superstep. During a superstep workers send each other
+    // combined message batches through bspDeliver. A peer may hold several partitions of one job, so
+    // calls name the partition. bspRelease frees all of the job's partitions.
+    void bspLoad(String jobId, BspPartition partition, VertexProgram program, List<Peer> workers) throws RemoteException;
+    StepReport bspSuperstep(String jobId, int partition, int superstep) throws RemoteException;
+    void bspDeliver(String jobId, int partition, MessageBatch batch) throws RemoteException;
+    double[] bspValues(String jobId, int partition) throws RemoteException;
+    void bspRelease(String jobId) throws RemoteException;
+
+    // Run a job and show its results in a dialog on this peer
     void runPageRank(String graphFile) throws RemoteException;
     void runHighestIndegree(String graphFile) throws RemoteException;
     void runBetweennessCentrality(String graphFile) throws RemoteException;
     void runClusteringCoefficient(String graphFile) throws RemoteException;
+    void runKCore(String graphFile) throws RemoteException;
+    void runAllAnalyses(String graphFile) throws RemoteException;
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// Load report a peer sends with each registry heartbeat
+public class PeerLoad implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final double cpuLoad;
+    private final int processors;
+    private final long freeHeapBytes;
+    private final int runningJobs;
+
+    public PeerLoad(double cpuLoad, int processors, long freeHeapBytes, int runningJobs) {
+        this.cpuLoad = cpuLoad;
+        this.processors = processors;
+        this.freeHeapBytes = freeHeapBytes;
+        this.runningJobs = runningJobs;
+    }
+
+    // Whole-machine CPU use from 0 to 1
+    public double getCpuLoad() {
+        return cpuLoad;
+    }
+
+    public int getProcessors() {
+        return processors;
+    }
+
+    public long getFreeHeapBytes() {
+        return freeHeapBytes;
+    }
+
+    public int getRunningJobs() {
+        return runningJobs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cpu %.0f%% of %d cores, %d MB heap free, %d jobs running",
+                cpuLoad * 100, processors, freeHeapBytes / (1024 * 1024), runningJobs);
+    }
+}
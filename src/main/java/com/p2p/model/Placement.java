@@ -0,0 +1,36 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// A candidate peer for a graph job; lower scores are better
+public class Placement implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String peerName;
+    private final double score;
+    private final boolean holdsGraph;
+    private final PeerLoad load;
+
+    public Placement(String peerName, double score, boolean holdsGraph, PeerLoad load) {
+        this.peerName = peerName;
+        this.score = score;
+        this.holdsGraph = holdsGraph;
+        this.load = load;
+    }
+
+    public String getPeerName() {
+        return peerName;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public boolean holdsGraph() {
+        return holdsGraph;
+    }
+
+    public PeerLoad getLoad() {
+        return load;
+    }
+}
@@ -0,0 +1,40 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// What one worker did in a superstep. The run ends when no worker has an active vertex left and
+// none sent a message.
+public class StepReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int activeVertices;
+    private final long messagesSent;
+    private final long messagesDelivered;
+    private final long computeNanos;
+
+    public StepReport(int activeVertices, long messagesSent, long messagesDelivered, long computeNanos) {
+        this.activeVertices = activeVertices;
+        this.messagesSent = messagesSent;
+        this.messagesDelivered = messagesDelivered;
+        this.computeNanos = computeNanos;
+    }
+
+    // Vertices that did not vote to halt
+    public int getActiveVertices() {
+        return activeVertices;
+    }
+
+    // Messages the vertex programs sent
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    // Messages left after sender-side combining, i.e. what actually went to the workers
+    public long getMessagesDelivered() {
+        return messagesDelivered;
+    }
+
+    public long getComputeNanos() {
+        return computeNanos;
+    }
+}
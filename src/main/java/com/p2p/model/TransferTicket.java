@@ -0,0 +1,49 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// Negotiated over RMI; the bytes themselves move over a raw socket to host:port, authenticated by token
+public class TransferTicket implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final int port;
+    private final long token;
+    private final String filename;
+    private final long offset;
+    private final long size;
+
+    public TransferTicket(String host, int port, long token, String filename, long offset, long size) {
+        this.host = host;
+        this.port = port;
+        this.token = token;
+        this.filename = filename;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    // Byte range of the file covered by this ticket
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
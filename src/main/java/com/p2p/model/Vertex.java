@@ -0,0 +1,25 @@
+package com.p2p.model;
+
+// The vertex a VertexProgram is computing, with what it may do in this superstep. A worker moves
+// one instance across all of its vertices, so programs must not keep it beyond compute.
+public interface Vertex {
+    // Number of this vertex in the whole graph (0..n-1, in order of original id)
+    int index();
+
+    double getValue();
+
+    void setValue(double value);
+
+    int getOutDegree();
+
+    int getSuperstep();
+
+    long getNumVertices();
+
+    // Target is the index() of one of this vertex's out-neighbours
+    void sendTo(int target, double message);
+
+    void sendToNeighbors(double message);
+
+    void voteToHalt();
+}
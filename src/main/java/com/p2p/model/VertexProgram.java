@@ -0,0 +1,26 @@
+package com.p2p.model;
+
+import java.io.Serializable;
+
+// A graph algorithm written from the point of view of one vertex, run in supersteps (Pregel-style).
+// In each superstep every vertex that is active or has messages runs compute; messages it sends are
+// read by their targets in the next superstep. Messages are doubles and all messages to one vertex
+// are merged with combine, already on the sending worker, so combine must be commutative and
+// associative (a sum, a min, ...). A vertex that votes to halt sleeps until a message wakes it;
+// the run ends when every vertex is halted and no messages are in flight.
+// Programs are shipped to the worker peers, so they must be serializable; com.p2p.bsp runs them.
+public interface VertexProgram extends Serializable {
+    // Value of each vertex before superstep 0
+    double initialValue(Vertex vertex);
+
+    // message is every message sent to the vertex in the previous superstep, combined; only
+    // meaningful when hasMessage is true
+    void compute(Vertex vertex, double message, boolean hasMessage);
+
+    double combine(double a, double b);
+
+    // Hard stop for programs that might not converge
+    default int maxSupersteps() {
+        return 10000;
+    }
+}
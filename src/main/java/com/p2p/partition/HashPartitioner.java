@@ -0,0 +1,17 @@
+package com.p2p.partition;
+
+import com.p2p.algo.CsrGraph;
+
+// Spreads vertices evenly by a hash of their original id, ignoring the graph's structure: perfectly
+// balanced, but almost every edge crosses partitions
+public class HashPartitioner implements Partitioner {
+    @Override
+    public int[] partition(CsrGraph graph, int parts) {
+        int[] owner = new int[graph.numVertices()];
+        for (int v = 0; v < owner.length; v++) {
+            int h = graph.id(v) * 0x9E3779B9;
+            owner[v] = Math.floorMod(h ^ (h >>> 16), parts);
+        }
+        return owner;
+    }
+}
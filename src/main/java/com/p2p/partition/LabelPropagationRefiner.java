@@ -0,0 +1,81 @@
+package com.p2p.partition;
+
+import com.p2p.algo.CsrGraph;
+
+// Improves another partitioner's result by label propagation: each pass moves every vertex to the
+// partition where most of its neighbours (in or out) are, if that cuts more edges than it creates
+// and the partition has room. Stops after a few passes or once a pass moves almost nothing.
+public class LabelPropagationRefiner implements Partitioner {
+    private static final int PASSES = 10;
+    private static final double SLACK = 1.1;
+    private static final double MIN_MOVED = 0.001;
+
+    private final Partitioner initial;
+
+    public LabelPropagationRefiner(Partitioner initial) {
+        this.initial = initial;
+    }
+
+    @Override
+    public int[] partition(CsrGraph graph, int parts) {
+        int[] owner = initial.partition(graph, parts);
+        refine(graph, graph.transpose(), owner, parts);
+        return owner;
+    }
+
+    // Refines owner in place; returns the number of passes run
+    public static int refine(CsrGraph graph, CsrGraph in, int[] owner, int parts) {
+        int n = graph.numVertices();
+        int[] outOffsets = graph.getOffsets();
+        int[] outTargets = graph.getTargets();
+        int[] inOffsets = in.getOffsets();
+        int[] inSources = in.getTargets();
+
+        int[] sizes = new int[parts];
+        for (int p : owner) {
+            sizes[p]++;
+        }
+        int capacity = (int) Math.max(Math.ceil(SLACK * n / parts), max(sizes));
+        int[] neighbours = new int[parts];
+        int[] touched = new int[parts];
+
+        int pass = 0;
+        while (pass < PASSES) {
+            pass++;
+            int moved = 0;
+            for (int v = 0; v < n; v++) {
+                int count = 0;
+                count = StreamingPartitioner.countPlaced(owner, outTargets, outOffsets[v], outOffsets[v + 1], neighbours, touched, count);
+                count = StreamingPartitioner.countPlaced(owner, inSources, inOffsets[v], inOffsets[v + 1], neighbours, touched, count);
+
+                int current = owner[v];
+                int best = current;
+                for (int i = 0; i < count; i++) {
+                    int p = touched[i];
+                    if (neighbours[p] > neighbours[best] && sizes[p] < capacity) {
+                        best = p;
+                    }
+                }
+                if (best != current) {
+                    owner[v] = best;
+                    sizes[current]--;
+                    sizes[best]++;
+                    moved++;
+                }
+                for (int i = 0; i < count; i++) {
+                    neighbours[touched[i]] = 0;
+                }
+            }
+            if (moved < MIN_MOVED * n) break;
+        }
+        return pass;
+    }
+
+    private static int max(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,176 @@
+package com.p2p.partition;
+
+import com.p2p.algo.CsrGraph;
+import com.p2p.model.BspPartition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Splits a partitioned graph into one BspPartition per worker, and stores each as its own binary
+// shard file (part-<id>.shard) that can be copied to a peer and loaded without the edge list.
+// Layout, all big-endian ints: magic "P2PS", version, partition id, partition count, vertex count
+// of the whole graph, this shard's vertex count, its edge count, its target table size, then the
+// vertices, offsets and edges arrays, then the target table's vertices, owners and slots.
+public class PartitionShards {
+    private static final int MAGIC = 0x50325053;
+    private static final int VERSION = 2;
+    private static final int HEADER_INTS = 8;
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private PartitionShards() {
+    }
+
+    // owner[v] is the partition for vertex v
+    public static List<BspPartition> split(CsrGraph graph, int[] owner, int parts) {
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] sizes = new int[parts];
+        int[] edgeCounts = new int[parts];
+        int[] localIndex = new int[n];
+        for (int v = 0; v < n; v++) {
+            localIndex[v] = sizes[owner[v]]++;
+            edgeCounts[owner[v]] += graph.outDegree(v);
+        }
+
+        int[][] vertices = new int[parts][];
+        int[][] partOffsets = new int[parts][];
+        int[][] partEdges = new int[parts][];
+        for (int p = 0; p < parts; p++) {
+            vertices[p] = new int[sizes[p]];
+            partOffsets[p] = new int[sizes[p] + 1];
+            partEdges[p] = new int[edgeCounts[p]];
+        }
+        int[] edgeFill = new int[parts];
+        for (int v = 0; v < n; v++) {
+            int p = owner[v];
+            int i = localIndex[v];
+            vertices[p][i] = v;
+            int degree = offsets[v + 1] - offsets[v];
+            System.arraycopy(targets, offsets[v], partEdges[p], edgeFill[p], degree);
+            edgeFill[p] += degree;
+            partOffsets[p][i + 1] = edgeFill[p];
+        }
+
+        // Each partition's target table, with its edges rewritten as positions in it
+        int[] position = new int[n];
+        int[] stamp = new int[n];
+        Arrays.fill(stamp, -1);
+        List<BspPartition> partitions = new ArrayList<>(parts);
+        for (int p = 0; p < parts; p++) {
+            int[] edges = partEdges[p];
+            int[] table = new int[edges.length];
+            int count = 0;
+            for (int target : edges) {
+                if (stamp[target] != p) {
+                    stamp[target] = p;
+                    table[count++] = target;
+                }
+            }
+            table = Arrays.copyOf(table, count);
+            Arrays.sort(table);
+            int[] tableOwner = new int[count];
+            int[] tableSlot = new int[count];
+            for (int i = 0; i < count; i++) {
+                position[table[i]] = i;
+                tableOwner[i] = owner[table[i]];
+                tableSlot[i] = localIndex[table[i]];
+            }
+            for (int e = 0; e < edges.length; e++) {
+                edges[e] = position[edges[e]];
+            }
+            partitions.add(new BspPartition(p, n, vertices[p], partOffsets[p], edges, table, tableOwner, tableSlot));
+        }
+        return partitions;
+    }
+
+    // Writes every partition to directory/part-<id>.shard and returns the files in partition order
+    public static List<Path> write(Path directory, List<BspPartition> partitions) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>(partitions.size());
+        for (BspPartition partition : partitions) {
+            Path file = directory.resolve("part-" + partition.getPartitionId() + ".shard");
+            write(file, partition, partitions.size());
+            files.add(file);
+        }
+        return files;
+    }
+
+    public static void write(Path file, BspPartition partition, int parts) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int[] header = {MAGIC, VERSION, partition.getPartitionId(), parts, partition.getNumVertices(),
+                    partition.getVertices().length, partition.getEdges().length, partition.getTargets().length};
+            putAll(channel, buffer, header);
+            putAll(channel, buffer, partition.getVertices());
+            putAll(channel, buffer, partition.getOffsets());
+            putAll(channel, buffer, partition.getEdges());
+            putAll(channel, buffer, partition.getTargets());
+            putAll(channel, buffer, partition.getTargetOwner());
+            putAll(channel, buffer, partition.getTargetSlot());
+            flush(channel, buffer);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static BspPartition read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer ints = mapped.asIntBuffer();
+            if (ints.remaining() < HEADER_INTS || ints.get() != MAGIC || ints.get() != VERSION) {
+                throw new IOException("Not a partition shard: " + file);
+            }
+            int partitionId = ints.get();
+            ints.get(); // partition count
+            int numVertices = ints.get();
+            int vertexCount = ints.get();
+            int edgeCount = ints.get();
+            int targetCount = ints.get();
+            long expected = HEADER_INTS + 2L * vertexCount + 1 + edgeCount + 3L * targetCount;
+            if (ints.capacity() != expected) {
+                throw new IOException("Truncated partition shard: " + file);
+            }
+            int[] vertices = new int[vertexCount];
+            int[] offsets = new int[vertexCount + 1];
+            int[] edges = new int[edgeCount];
+            int[] targets = new int[targetCount];
+            int[] targetOwner = new int[targetCount];
+            int[] targetSlot = new int[targetCount];
+            ints.get(vertices).get(offsets).get(edges).get(targets).get(targetOwner).get(targetSlot);
+            return new BspPartition(partitionId, numVertices, vertices, offsets, edges, targets, targetOwner, targetSlot);
+        }
+    }
+
+    private static void putAll(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        int i = 0;
+        while (i < values.length) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer);
+            }
+            int count = Math.min(values.length - i, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, i, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            i += count;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
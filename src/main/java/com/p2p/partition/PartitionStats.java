@@ -0,0 +1,111 @@
+package com.p2p.partition;
+
+import com.p2p.algo.CsrGraph;
+
+import java.util.Arrays;
+
+// Quality of a partitioning. Edge-cut ratio is the share of edges whose endpoints sit on different
+// partitions; remote volume counts, for every vertex, the other partitions holding at least one of
+// its in-neighbours, which is how many combined messages it receives over the network per
+// superstep. Balance is the largest partition over the mean (1.0 is perfectly even), by vertices
+// and by edges.
+public class PartitionStats {
+    private final int parts;
+    private final int[] vertexCounts;
+    private final long[] edgeCounts;
+    private final long cutEdges;
+    private final long totalEdges;
+    private final long remoteVolume;
+
+    private PartitionStats(int parts, int[] vertexCounts, long[] edgeCounts, long cutEdges, long totalEdges, long remoteVolume) {
+        this.parts = parts;
+        this.vertexCounts = vertexCounts;
+        this.edgeCounts = edgeCounts;
+        this.cutEdges = cutEdges;
+        this.totalEdges = totalEdges;
+        this.remoteVolume = remoteVolume;
+    }
+
+    public static PartitionStats of(CsrGraph graph, int[] owner, int parts) {
+        int n = graph.numVertices();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] vertexCounts = new int[parts];
+        long[] edgeCounts = new long[parts];
+        long cut = 0;
+        for (int v = 0; v < n; v++) {
+            int p = owner[v];
+            vertexCounts[p]++;
+            edgeCounts[p] += offsets[v + 1] - offsets[v];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (owner[targets[e]] != p) cut++;
+            }
+        }
+
+        CsrGraph in = graph.transpose();
+        int[] inOffsets = in.getOffsets();
+        int[] sources = in.getTargets();
+        // Last vertex each partition was seen for, so each (vertex, partition) pair counts once
+        int[] seenFor = new int[parts];
+        Arrays.fill(seenFor, -1);
+        long volume = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+                int p = owner[sources[e]];
+                if (p != owner[v] && seenFor[p] != v) {
+                    seenFor[p] = v;
+                    volume++;
+                }
+            }
+        }
+        return new PartitionStats(parts, vertexCounts, edgeCounts, cut, targets.length, volume);
+    }
+
+    public int getParts() {
+        return parts;
+    }
+
+    public int[] getVertexCounts() {
+        return vertexCounts;
+    }
+
+    public long[] getEdgeCounts() {
+        return edgeCounts;
+    }
+
+    public long getCutEdges() {
+        return cutEdges;
+    }
+
+    public double getEdgeCutRatio() {
+        return totalEdges == 0 ? 0 : (double) cutEdges / totalEdges;
+    }
+
+    public long getRemoteVolume() {
+        return remoteVolume;
+    }
+
+    public double getVertexBalance() {
+        return imbalance(Arrays.stream(vertexCounts).asLongStream().toArray());
+    }
+
+    public double getEdgeBalance() {
+        return imbalance(edgeCounts);
+    }
+
+    private double imbalance(long[] counts) {
+        long max = 0;
+        long sum = 0;
+        for (long count : counts) {
+            max = Math.max(max, count);
+            sum += count;
+        }
+        return sum == 0 ? 1.0 : (double) max * parts / sum;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("edge cut %.1f%% (%d of %d), remote volume %d, balance %.3f vertices / %.3f edges",
+                100 * getEdgeCutRatio(), cutEdges, totalEdges, remoteVolume, getVertexBalance(), getEdgeBalance());
+    }
+}
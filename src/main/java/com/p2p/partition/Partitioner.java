@@ -0,0 +1,37 @@
+package com.p2p.partition;
+
+import com.p2p.algo.CsrGraph;
+
+// Assigns every vertex of a graph to one of `parts` partitions; the result is indexed by vertex
+public interface Partitioner {
+    int[] partition(CsrGraph graph, int parts);
+
+    // hash, range, ldg or fennel, optionally followed by "+lp" for label-propagation refinement
+    static Partitioner named(String name) {
+        String[] steps = name.toLowerCase().split("\\+");
+        Partitioner partitioner;
+        switch (steps[0]) {
+            case "hash":
+                partitioner = new HashPartitioner();
+                break;
+            case "range":
+                partitioner = new RangePartitioner();
+                break;
+            case "ldg":
+                partitioner = new StreamingPartitioner(StreamingPartitioner.Heuristic.LDG);
+                break;
+            case "fennel":
+                partitioner = new StreamingPartitioner(StreamingPartitioner.Heuristic.FENNEL);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown partitioner: " + steps[0]);
+        }
+        if (steps.length > 1) {
+            if (!steps[1].equals("lp")) {
+                throw new IllegalArgumentException("Unknown refinement: " + steps[1]);
+            }
+            partitioner = new LabelPropagationRefiner(partitioner);
+        }
+        return partitioner;
+    }
+}
@@ -0,0 +1,25 @@
+package com.p2p.partition;
+
+import com.p2p.algo.CsrGraph;
+
+// Contiguous runs of vertices in id order, each carrying about the same number of vertices plus
+// edges. Cheap, and keeps edges local when ids already follow the graph's locality (crawl order,
+// or after reordering).
+public class RangePartitioner implements Partitioner {
+    @Override
+    public int[] partition(CsrGraph graph, int parts) {
+        int n = graph.numVertices();
+        int[] owner = new int[n];
+        double target = ((double) n + graph.numEdges()) / parts;
+        long weight = 0;
+        int part = 0;
+        for (int v = 0; v < n; v++) {
+            if (weight >= target * (part + 1) && part < parts - 1) {
+                part++;
+            }
+            owner[v] = part;
+            weight += 1 + graph.outDegree(v);
+        }
+        return owner;
+    }
+}
@@ -0,0 +1,81 @@
+package com.p2p.partition;
+
+import com.p2p.algo.CsrGraph;
+
+import java.util.Arrays;
+
+// One-pass streaming partitioner: vertices are placed in order, each in the partition holding most
+// of its already-placed neighbours (in or out), discounted by how full that partition is.
+// LDG (linear deterministic greedy) weighs neighbours by the partition's free capacity; Fennel
+// subtracts a marginal size cost alpha * gamma * size^(gamma - 1) with gamma = 1.5. No partition
+// grows beyond 10% over an even share.
+public class StreamingPartitioner implements Partitioner {
+    public enum Heuristic { LDG, FENNEL }
+
+    private static final double SLACK = 1.1;
+    private static final double GAMMA = 1.5;
+
+    private final Heuristic heuristic;
+
+    public StreamingPartitioner(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public int[] partition(CsrGraph graph, int parts) {
+        int n = graph.numVertices();
+        CsrGraph in = graph.transpose();
+        int[] outOffsets = graph.getOffsets();
+        int[] outTargets = graph.getTargets();
+        int[] inOffsets = in.getOffsets();
+        int[] inSources = in.getTargets();
+
+        double capacity = Math.max(1, Math.ceil(SLACK * n / parts));
+        double alpha = graph.numEdges() * Math.pow(parts, GAMMA - 1) / Math.pow(Math.max(1, n), GAMMA);
+
+        int[] owner = new int[n];
+        Arrays.fill(owner, -1);
+        int[] sizes = new int[parts];
+        int[] neighbours = new int[parts];
+        int[] touched = new int[parts];
+
+        for (int v = 0; v < n; v++) {
+            int count = 0;
+            count = countPlaced(owner, outTargets, outOffsets[v], outOffsets[v + 1], neighbours, touched, count);
+            count = countPlaced(owner, inSources, inOffsets[v], inOffsets[v + 1], neighbours, touched, count);
+
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int p = 0; p < parts; p++) {
+                if (sizes[p] >= capacity) continue;
+                double score = heuristic == Heuristic.LDG
+                        ? neighbours[p] * (1 - sizes[p] / capacity)
+                        : neighbours[p] - alpha * GAMMA * Math.pow(sizes[p], GAMMA - 1);
+                // Ties (e.g. no placed neighbours) go to the emptiest partition
+                if (score > bestScore || (score == bestScore && sizes[p] < sizes[best])) {
+                    best = p;
+                    bestScore = score;
+                }
+            }
+            owner[v] = best;
+            sizes[best]++;
+            for (int i = 0; i < count; i++) {
+                neighbours[touched[i]] = 0;
+            }
+        }
+        return owner;
+    }
+
+    // Adds up the partitions of the placed vertices among neighbours[from..to); returns how many
+    // partitions have a non-zero count now
+    static int countPlaced(int[] owner, int[] adjacency, int from, int to, int[] neighbours, int[] touched, int count) {
+        for (int e = from; e < to; e++) {
+            int p = owner[adjacency[e]];
+            if (p < 0) continue;
+            if (neighbours[p]++ == 0) {
+                touched[count++] = p;
+            }
+        }
+        return count;
+    }
+}
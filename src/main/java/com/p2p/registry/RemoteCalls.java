@@ -0,0 +1,110 @@
+package com.p2p.registry;
+
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Peer and registry calls that don't block the caller. RMI itself only has blocking calls, so each
+// call waits on a thread of a shared pool; calls to one endpoint at the same time each take a
+// connection from RMI's per-endpoint pool, which keeps them open for the next calls. A fan-out to
+// N peers is so N calls in flight at once and costs about one round trip rather than N. The pool
+// grows with the calls in flight up to -Dp2p.remote.threads (default 64) threads, and idle threads
+// go away after a minute. Calls are never queued: beyond the limit a call runs on the caller's own
+// thread, which slows a large fan-out down to the limit instead of piling up blocked threads, and
+// means a call that waits on other calls (like the sharded registry's) can never starve them.
+public final class RemoteCalls {
+    public static final int MAX_THREADS = Integer.getInteger("p2p.remote.threads", 64);
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final ExecutorService pool = new ThreadPoolExecutor(0, MAX_THREADS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread thread = new Thread(r, "remote-call-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private RemoteCalls() {
+    }
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface TargetCall<P, T> {
+        T call(P target) throws Exception;
+    }
+
+    // Fails with the exception the call threw, e.g. a RemoteException
+    public static <T> CompletableFuture<T> async(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        pool.execute(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    // The same call on every target at once, keyed like the targets
+    public static <K, P, T> Map<K, CompletableFuture<T>> fanOut(Map<K, P> targets, TargetCall<P, T> call) {
+        Map<K, CompletableFuture<T>> calls = new LinkedHashMap<>();
+        for (Map.Entry<K, P> target : targets.entrySet()) {
+            P value = target.getValue();
+            calls.put(target.getKey(), async(() -> call.call(value)));
+        }
+        return calls;
+    }
+
+    // Completes once every call has, with the answers of those that succeeded in the calls' order;
+    // failures are logged and left out
+    public static <K, T> CompletableFuture<Map<K, T>> answered(Map<K, CompletableFuture<T>> calls) {
+        return CompletableFuture.allOf(calls.values().stream()
+                .map(call -> call.handle((answer, error) -> null)).toArray(CompletableFuture[]::new))
+                .thenApply(done -> {
+                    Map<K, T> answers = new LinkedHashMap<>();
+                    for (Map.Entry<K, CompletableFuture<T>> call : calls.entrySet()) {
+                        try {
+                            answers.put(call.getKey(), call.getValue().join());
+                        } catch (CompletionException e) {
+                            System.out.println("Call to " + call.getKey() + " failed: " + cause(e).getMessage());
+                        }
+                    }
+                    return answers;
+                });
+    }
+
+    // Waits for a call from code that has to block anyway, rethrowing what the call threw
+    public static <T> T await(CompletableFuture<T> call) throws RemoteException {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for a remote call", e);
+        } catch (ExecutionException e) {
+            Throwable cause = cause(e);
+            if (cause instanceof RemoteException) throw (RemoteException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RemoteException(cause.getMessage(), cause);
+        }
+    }
+
+    // What a call threw, without the wrapping of the future
+    public static Throwable cause(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -0,0 +1,422 @@
+package com.p2p.registry;
+
+import com.p2p.model.FileSummary;
+import com.p2p.model.MembershipUpdate;
+import com.p2p.model.Peer;
+import com.p2p.model.PeerLoad;
+import com.p2p.model.Placement;
+import com.p2p.server.PeerRegistryInterface;
+
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Client-side view of several registry servers as one registry. Peer names are placed on a
+// consistent-hash ring of the servers; each peer is registered on the `replicas` servers that follow
+// its hash, and lookups go straight to those owners, moving on to the next replica when one is down
+// or has lost the entry. Writes and lookups for a name touch only its owners, so throughput grows
+// with the number of servers. Membership is merged from every server: a peer is present while any
+// replica still holds its lease. Calls that go to several servers go to all of them at once (see
+// RemoteCalls), so they cost one round trip however many servers there are.
+// The ring is built from the configured addresses alone, so every client listing the same servers
+// places names the same way whichever of them were up when it started. A server is looked up on
+// first use and again after a call to it failed, which also picks up a restarted server.
+public class ShardedRegistry implements PeerRegistryInterface {
+    public static final int DEFAULT_REPLICAS = Integer.getInteger("p2p.registry.replicas", 2);
+    private static final int DEFAULT_PORT = 1099;
+    private static final int VIRTUAL_NODES = 64;
+
+    private final List<String> shardAddresses = new ArrayList<>();
+    // Null until a server has been reached, and again once a call to it failed
+    private final AtomicReferenceArray<PeerRegistryInterface> shards;
+    private final int replicas;
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+
+    private final List<Map<String, Peer>> views = new ArrayList<>();
+    private final long[] shardVersions;
+    private Map<String, Peer> merged = new HashMap<>();
+    private long version;
+
+    // addresses is a comma-separated list of host or host:port, the same on every client. Servers
+    // that are down keep their place on the ring; their names are served by the next replica.
+    public ShardedRegistry(String addresses, int replicas) throws RemoteException {
+        for (String address : addresses.split(",")) {
+            address = address.trim();
+            if (address.isEmpty()) continue;
+            if (!address.contains(":")) {
+                address = address + ":" + DEFAULT_PORT;
+            }
+            if (shardAddresses.contains(address)) continue;
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                ring.put(hash(address + "#" + v), shardAddresses.size());
+            }
+            shardAddresses.add(address);
+            views.add(new HashMap<>());
+        }
+        if (shardAddresses.isEmpty()) {
+            throw new RemoteException("No registry server address in " + addresses);
+        }
+        this.shards = new AtomicReferenceArray<>(shardAddresses.size());
+        this.replicas = Math.min(replicas, shardAddresses.size());
+        this.shardVersions = new long[shardAddresses.size()];
+    }
+
+    public ShardedRegistry(String addresses) throws RemoteException {
+        this(addresses, DEFAULT_REPLICAS);
+    }
+
+    @Override
+    public void registerPeer(String peerName, Peer peer) throws RemoteException {
+        RemoteException failure = null;
+        int stored = 0;
+        for (CompletableFuture<Void> call : this.<Void>onShards(owners(peerName), shard -> {
+            shard.registerPeer(peerName, peer);
+            return null;
+        }).values()) {
+            try {
+                RemoteCalls.await(call);
+                stored++;
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (stored == 0) {
+            throw new RemoteException("No registry server reachable for " + peerName, failure);
+        }
+    }
+
+    @Override
+    public void unregisterPeer(String peerName) throws RemoteException {
+        RemoteException failure = null;
+        int removed = 0;
+        for (CompletableFuture<Void> call : this.<Void>onShards(owners(peerName), shard -> {
+            shard.unregisterPeer(peerName);
+            return null;
+        }).values()) {
+            try {
+                RemoteCalls.await(call);
+                removed++;
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (removed == 0) {
+            throw new RemoteException("No registry server reachable for " + peerName, failure);
+        }
+    }
+
+    @Override
+    public Peer getPeer(String peerName) throws RemoteException {
+        RemoteException failure = null;
+        boolean answered = false;
+        for (int shard : owners(peerName)) {
+            try {
+                Peer peer = call(shard, registry -> registry.getPeer(peerName));
+                if (peer != null) {
+                    return peer;
+                }
+                answered = true;
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (!answered) {
+            throw new RemoteException("No registry server reachable for " + peerName, failure);
+        }
+        return null;
+    }
+
+    // Each round asks every name's next owner, one batch per server and all servers at once; a name
+    // goes on to its next replica if its owner was down or didn't have it, as in getPeer
+    @Override
+    public Map<String, Peer> getPeers(List<String> peerNames) throws RemoteException {
+        Map<String, Peer> found = new HashMap<>();
+        Set<String> answered = new LinkedHashSet<>();
+        List<String> pending = new ArrayList<>(new LinkedHashSet<>(peerNames));
+        RemoteException failure = null;
+        for (int round = 0; round < replicas && !pending.isEmpty(); round++) {
+            Map<Integer, List<String>> batches = new LinkedHashMap<>();
+            for (String name : pending) {
+                batches.computeIfAbsent(owners(name).get(round), shard -> new ArrayList<>()).add(name);
+            }
+            Map<Integer, CompletableFuture<Map<String, Peer>>> calls = new LinkedHashMap<>();
+            for (Map.Entry<Integer, List<String>> batch : batches.entrySet()) {
+                calls.put(batch.getKey(), RemoteCalls.async(() -> call(batch.getKey(), shard -> shard.getPeers(batch.getValue()))));
+            }
+            for (Map.Entry<Integer, CompletableFuture<Map<String, Peer>>> call : calls.entrySet()) {
+                try {
+                    found.putAll(RemoteCalls.await(call.getValue()));
+                    answered.addAll(batches.get(call.getKey()));
+                } catch (RemoteException e) {
+                    failure = e;
+                }
+            }
+            pending.removeIf(found::containsKey);
+        }
+        if (!peerNames.isEmpty() && answered.isEmpty()) {
+            throw new RemoteException("No registry server reachable", failure);
+        }
+        Map<String, Peer> ordered = new LinkedHashMap<>();
+        for (String name : peerNames) {
+            Peer peer = found.get(name);
+            if (peer != null) ordered.put(name, peer);
+        }
+        return ordered;
+    }
+
+    @Override
+    public List<String> getAvailablePeers() throws RemoteException {
+        Set<String> names = new LinkedHashSet<>();
+        RemoteException failure = null;
+        boolean answered = false;
+        for (CompletableFuture<List<String>> call : onShards(allShards(), PeerRegistryInterface::getAvailablePeers).values()) {
+            try {
+                names.addAll(RemoteCalls.await(call));
+                answered = true;
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (!answered) {
+            throw new RemoteException("No registry server reachable", failure);
+        }
+        return new ArrayList<>(names);
+    }
+
+    // -1 if any live owner has lost the lease, so the caller registers again on all owners
+    @Override
+    public long heartbeat(String peerName, PeerLoad load) throws RemoteException {
+        RemoteException failure = null;
+        long lease = -1;
+        boolean lost = false;
+        for (CompletableFuture<Long> call : onShards(owners(peerName), shard -> shard.heartbeat(peerName, load)).values()) {
+            try {
+                long renewed = RemoteCalls.await(call);
+                if (renewed < 0) {
+                    lost = true;
+                }
+                lease = Math.max(lease, renewed);
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (lease < 0 && !lost) {
+            throw new RemoteException("No registry server reachable for " + peerName, failure);
+        }
+        return lost ? -1 : lease;
+    }
+
+    @Override
+    public void publishSummary(String peerName, FileSummary summary) throws RemoteException {
+        RemoteException failure = null;
+        int stored = 0;
+        for (CompletableFuture<Void> call : this.<Void>onShards(owners(peerName), shard -> {
+            shard.publishSummary(peerName, summary);
+            return null;
+        }).values()) {
+            try {
+                RemoteCalls.await(call);
+                stored++;
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (stored == 0) {
+            throw new RemoteException("No registry server accepted the summary of " + peerName, failure);
+        }
+    }
+
+    // Each server only holds summaries of the peers it owns, so this asks every server (not every peer)
+    @Override
+    public List<String> locate(String filename) throws RemoteException {
+        Set<String> holders = new LinkedHashSet<>();
+        RemoteException failure = null;
+        boolean answered = false;
+        for (CompletableFuture<List<String>> call : onShards(allShards(), shard -> shard.locate(filename)).values()) {
+            try {
+                holders.addAll(RemoteCalls.await(call));
+                answered = true;
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (!answered) {
+            throw new RemoteException("No registry server reachable", failure);
+        }
+        return new ArrayList<>(holders);
+    }
+
+    // Every server ranks the peers it owns; the merged list keeps each peer's best entry
+    @Override
+    public List<Placement> rankPeersForJob(String graphFile, int limit) throws RemoteException {
+        List<Placement> all = new ArrayList<>();
+        RemoteException failure = null;
+        boolean answered = false;
+        for (CompletableFuture<List<Placement>> call
+                : onShards(allShards(), shard -> shard.rankPeersForJob(graphFile, limit)).values()) {
+            try {
+                all.addAll(RemoteCalls.await(call));
+                answered = true;
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (!answered) {
+            throw new RemoteException("No registry server reachable", failure);
+        }
+        all.sort(Comparator.comparingDouble(Placement::getScore));
+        Map<String, Placement> best = new LinkedHashMap<>();
+        for (Placement placement : all) {
+            if (best.size() == limit) break;
+            best.putIfAbsent(placement.getPeerName(), placement);
+        }
+        return new ArrayList<>(best.values());
+    }
+
+    // Pulls each server's changes incrementally and reports how the merged membership moved.
+    // Versions here are local to this client; a caller with any other version gets a snapshot.
+    @Override
+    public synchronized MembershipUpdate getChangesSince(long since) throws RemoteException {
+        Map<Integer, CompletableFuture<MembershipUpdate>> calls = new LinkedHashMap<>();
+        for (int i = 0; i < shardAddresses.size(); i++) {
+            int index = i;
+            long shardVersion = shardVersions[i];
+            calls.put(i, RemoteCalls.async(() -> call(index, shard -> shard.getChangesSince(shardVersion))));
+        }
+        for (int i = 0; i < shardAddresses.size(); i++) {
+            Map<String, Peer> view = views.get(i);
+            try {
+                MembershipUpdate update = RemoteCalls.await(calls.get(i));
+                if (update.isSnapshot()) {
+                    view.clear();
+                }
+                view.putAll(update.getJoined());
+                view.keySet().removeAll(update.getLeft());
+                shardVersions[i] = update.getVersion();
+            } catch (RemoteException e) {
+                // Its peers stay visible through their other replicas; resync fully once it is back
+                view.clear();
+                shardVersions[i] = 0;
+            }
+        }
+
+        Map<String, Peer> previous = merged;
+        merged = new HashMap<>();
+        for (Map<String, Peer> view : views) {
+            for (Map.Entry<String, Peer> entry : view.entrySet()) {
+                merged.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Map<String, Peer> joined = new LinkedHashMap<>();
+        for (Map.Entry<String, Peer> entry : merged.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                joined.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> left = new ArrayList<>();
+        for (String name : previous.keySet()) {
+            if (!merged.containsKey(name)) {
+                left.add(name);
+            }
+        }
+        boolean snapshot = since != version;
+        if (!joined.isEmpty() || !left.isEmpty()) {
+            version++;
+        }
+        if (snapshot) {
+            return new MembershipUpdate(version, true, new LinkedHashMap<>(merged), new ArrayList<>());
+        }
+        return new MembershipUpdate(version, false, joined, left);
+    }
+
+    @Override
+    public String getServerId() {
+        return String.join(",", shardAddresses);
+    }
+
+    // Looks the server up again after a failed call: a restarted server exports a new registry
+    // object under the same address, and one that is still down fails here like the call did
+    private <T> T call(int index, ShardCall<T> call) throws RemoteException {
+        PeerRegistryInterface shard = shards.get(index);
+        if (shard == null) {
+            shard = lookup(shardAddresses.get(index));
+            shards.set(index, shard);
+        }
+        try {
+            return call.call(shard);
+        } catch (RemoteException e) {
+            shards.compareAndSet(index, shard, null);
+            throw e;
+        }
+    }
+
+    private static PeerRegistryInterface lookup(String address) throws RemoteException {
+        try {
+            return (PeerRegistryInterface) Naming.lookup("rmi://" + address + "/PeerRegistry");
+        } catch (MalformedURLException | NotBoundException e) {
+            throw new RemoteException("No registry at " + address, e);
+        }
+    }
+
+    // The same call on each of the given servers at once, by server index
+    private <T> Map<Integer, CompletableFuture<T>> onShards(List<Integer> indexes, ShardCall<T> call) {
+        Map<Integer, CompletableFuture<T>> calls = new LinkedHashMap<>();
+        for (int index : indexes) {
+            calls.put(index, RemoteCalls.async(() -> call(index, call)));
+        }
+        return calls;
+    }
+
+    private List<Integer> allShards() {
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < shardAddresses.size(); i++) {
+            all.add(i);
+        }
+        return all;
+    }
+
+    // The distinct servers that follow the name's position on the ring, primary first
+    List<Integer> owners(String peerName) {
+        List<Integer> owners = new ArrayList<>(replicas);
+        Long position = ring.ceilingKey(hash(peerName));
+        for (Map.Entry<Long, Integer> entry : position == null ? ring.entrySet() : ring.tailMap(position).entrySet()) {
+            if (owners.size() == replicas) break;
+            if (!owners.contains(entry.getValue())) owners.add(entry.getValue());
+        }
+        for (Map.Entry<Long, Integer> entry : ring.entrySet()) {
+            if (owners.size() == replicas) break;
+            if (!owners.contains(entry.getValue())) owners.add(entry.getValue());
+        }
+        return owners;
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    private interface ShardCall<T> {
+        T call(PeerRegistryInterface shard) throws RemoteException;
+    }
+}
@@ -0,0 +1,268 @@
+package com.p2p.server;
+
+import com.p2p.job.JobManager;
+import com.p2p.model.GraphAlgorithm;
+import com.p2p.model.JobRejectedException;
+import com.p2p.model.JobRequest;
+import com.p2p.model.JobResult;
+import com.p2p.model.JobStatus;
+import com.p2p.model.Peer;
+import com.p2p.server.JobDispatcher.DispatchedJob;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// HTTP front end for graph jobs, for pipelines that can't drive the peer GUI:
+//   POST   /jobs              {"algorithm":"PAGERANK","graphFile":"web.txt","peer":null,"priority":0,"parameters":{}}
+//   GET    /jobs/{id}         status, including progress once a peer runs it
+//   GET    /jobs/{id}/result  ?top=N (default all) &format=ndjson|binary
+//   POST   /jobs/{id}/export  ?format=binary|csv, written on the peer that ran the job
+//   DELETE /jobs/{id}
+// Submissions get 429 while the dispatch queue is full. Results are streamed in pages fetched from
+// the peer as the response is written, so the server never holds a whole result vector.
+@RestController
+@RequestMapping("/jobs")
+public class JobController {
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int PAGE_SIZE = 65536;
+
+    private final JobDispatcher dispatcher;
+
+    public JobController(JobDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submit(@RequestBody JobSubmission submission) {
+        if (submission.getGraphFile() == null || submission.getGraphFile().trim().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "graphFile is required");
+        }
+        GraphAlgorithm algorithm;
+        try {
+            algorithm = GraphAlgorithm.valueOf(String.valueOf(submission.getAlgorithm()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown algorithm: " + submission.getAlgorithm());
+        }
+
+        String export = submission.getParameters().get("export");
+        if (export != null) {
+            try {
+                JobManager.checkFormat(export);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        }
+
+        JobRequest request = new JobRequest(algorithm, submission.getGraphFile(), submission.getParameters());
+        try {
+            DispatchedJob job = dispatcher.submit(request, submission.getPeer(), submission.getPriority());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(describe(job));
+        } catch (JobRejectedException e) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1").body(body);
+        }
+    }
+
+    @GetMapping("/{id}")
+    public Map<String, Object> status(@PathVariable String id) {
+        return describe(find(id));
+    }
+
+    @DeleteMapping("/{id}")
+    public Map<String, Object> cancel(@PathVariable String id) {
+        DispatchedJob job = find(id);
+        try {
+            if (!dispatcher.cancel(job)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Job " + id + " already finished");
+            }
+        } catch (RemoteException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Peer unreachable: " + e.getMessage(), e);
+        }
+        return describe(job);
+    }
+
+    // For jobs downstream on the same machine as the peer: they map the file instead of fetching
+    // the result over HTTP
+    @PostMapping("/{id}/export")
+    public Map<String, Object> export(@PathVariable String id, @RequestParam(defaultValue = "binary") String format) {
+        if (!"binary".equalsIgnoreCase(format) && !"csv".equalsIgnoreCase(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be binary or csv");
+        }
+        DispatchedJob job = find(id);
+        Peer peer = peerOf(job);
+        Map<String, Object> view = new LinkedHashMap<>();
+        try {
+            JobStatus status = peer.getJobStatus(job.getPeerJobId());
+            if (status.getState() != JobStatus.State.SUCCEEDED) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Job " + id + " is " + status.getState()
+                        + ": " + status.getMessage());
+            }
+            view.put("peer", job.getPeerName());
+            view.put("file", peer.exportJobResult(job.getPeerJobId(), format));
+        } catch (RemoteException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Export on " + job.getPeerName() + " failed: "
+                    + e.getMessage(), e);
+        }
+        view.put("format", format.toLowerCase());
+        return view;
+    }
+
+    // NDJSON is one {"node":..,"value":..} object per line. The binary form is big-endian: an int
+    // count, then count pairs of int node and double value. Either way highest score first.
+    @GetMapping("/{id}/result")
+    public ResponseEntity<StreamingResponseBody> result(@PathVariable String id,
+                                                        @RequestParam(defaultValue = "0") int top,
+                                                        @RequestParam(defaultValue = "ndjson") String format) {
+        boolean binary = "binary".equalsIgnoreCase(format);
+        if (!binary && !"ndjson".equalsIgnoreCase(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or binary");
+        }
+        DispatchedJob job = find(id);
+        Peer peer = peerOf(job);
+
+        // Fetch the first page up front so a job without a result is reported with a proper status code
+        JobResult first;
+        try {
+            JobStatus status = peer.getJobStatus(job.getPeerJobId());
+            if (status.getState() != JobStatus.State.SUCCEEDED) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Job " + id + " is " + status.getState()
+                        + ": " + status.getMessage());
+            }
+            first = peer.getJobResult(job.getPeerJobId(), 0, limit(top, 0));
+        } catch (RemoteException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Peer " + job.getPeerName() + " unreachable", e);
+        }
+        int total = top > 0 ? Math.min(top, first.getTotalNodes()) : first.getTotalNodes();
+
+        StreamingResponseBody body = out -> {
+            if (binary) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+                data.writeInt(total);
+                streamPages(peer, job, first, total, page -> {
+                    for (int i = 0; i < page.size(); i++) {
+                        data.writeInt(page.getNodes()[i]);
+                        data.writeDouble(page.getValues()[i]);
+                    }
+                });
+                data.flush();
+            } else {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+                streamPages(peer, job, first, total, page -> {
+                    for (int i = 0; i < page.size(); i++) {
+                        double value = page.getValues()[i];
+                        writer.write("{\"node\":" + page.getNodes()[i] + ",\"value\":"
+                                + (Double.isFinite(value) ? Double.toString(value) : "null") + "}\n");
+                    }
+                });
+                writer.flush();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(binary ? MediaType.APPLICATION_OCTET_STREAM : NDJSON)
+                .header("X-Total-Nodes", Integer.toString(first.getTotalNodes()))
+                .body(body);
+    }
+
+    private interface PageWriter {
+        void write(JobResult page) throws IOException;
+    }
+
+    private static void streamPages(Peer peer, DispatchedJob job, JobResult first, int total, PageWriter writer)
+            throws IOException {
+        JobResult page = first;
+        int written = 0;
+        while (true) {
+            writer.write(page);
+            written += page.size();
+            if (written >= total || page.size() == 0) return;
+            page = peer.getJobResult(job.getPeerJobId(), written, limit(total, written));
+        }
+    }
+
+    private static int limit(int top, int written) {
+        return top > 0 ? Math.min(PAGE_SIZE, top - written) : PAGE_SIZE;
+    }
+
+    private DispatchedJob find(String id) {
+        DispatchedJob job = dispatcher.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown job: " + id);
+        }
+        return job;
+    }
+
+    private Peer peerOf(DispatchedJob job) {
+        if (job.getState() != JobDispatcher.State.DISPATCHED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Job " + job.getId() + " is " + job.getState());
+        }
+        try {
+            Peer peer = dispatcher.peerOf(job);
+            if (peer != null) {
+                return peer;
+            }
+        } catch (RemoteException e) {
+            // Reported below
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Peer " + job.getPeerName() + " is no longer registered");
+    }
+
+    private Map<String, Object> describe(DispatchedJob job) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", job.getId());
+        view.put("algorithm", job.getRequest().getAlgorithm());
+        view.put("graphFile", job.getRequest().getGraphFile());
+        view.put("priority", job.getPriority());
+        view.put("state", job.getState());
+        view.put("message", job.getMessage());
+        if (job.getState() == JobDispatcher.State.QUEUED) {
+            view.put("queuePosition", dispatcher.positionOf(job));
+            return view;
+        }
+        if (job.getState() != JobDispatcher.State.DISPATCHED) {
+            return view;
+        }
+
+        // Once dispatched, the state is the peer's view of the job
+        view.put("peer", job.getPeerName());
+        view.put("peerJobId", job.getPeerJobId());
+        try {
+            Peer peer = dispatcher.peerOf(job);
+            if (peer == null) {
+                view.put("state", "UNKNOWN");
+                view.put("message", "Peer " + job.getPeerName() + " is no longer registered");
+                return view;
+            }
+            JobStatus status = peer.getJobStatus(job.getPeerJobId());
+            view.put("state", status.getState());
+            view.put("progress", status.getProgress());
+            view.put("message", status.getMessage());
+            view.put("elapsedMillis", status.getElapsedMillis());
+        } catch (RemoteException e) {
+            view.put("state", "UNKNOWN");
+            view.put("message", "Peer unreachable: " + e.getMessage());
+        }
+        return view;
+    }
+}
@@ -0,0 +1,382 @@
+package com.p2p.server;
+
+import com.p2p.model.JobRejectedException;
+import com.p2p.model.JobRequest;
+import com.p2p.model.Peer;
+import com.p2p.model.Placement;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Queue between HTTP clients and the peers' own job queues. Jobs wait here, highest priority first,
+// until a peer accepts them: the requested peer, or else the least busy peers holding the graph. A
+// job every candidate refuses stays queued and is retried with backoff, so when the peers are
+// saturated this queue fills up and new submissions are refused instead of overloading them.
+// Peers are looked up through the whole registry (see P2PServer.clusterRegistry), not only the
+// peers this server holds. Each placement runs on its own thread, up to PARALLEL at once, so a slow
+// or hung peer only holds up the jobs being handed to it; the rest wait here in priority order.
+public class JobDispatcher {
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("p2p.dispatch.queue", 64);
+    private static final int PARALLEL = Integer.getInteger("p2p.dispatch.parallel", 16);
+    private static final int RETAINED_JOBS = Integer.getInteger("p2p.dispatch.retain", 1024);
+    private static final int CANDIDATES = 3;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+
+    public enum State { QUEUED, DISPATCHED, FAILED, CANCELLED }
+
+    private final PeerRegistryInterface registry;
+    private final int capacity;
+    private final Map<String, DispatchedJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> retired = new ArrayDeque<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TreeSet<DispatchedJob> queue = new TreeSet<>(
+            Comparator.comparingInt((DispatchedJob job) -> -job.priority).thenComparingLong(job -> job.sequence));
+    private final Thread dispatcher;
+    private final ExecutorService placements = Executors.newFixedThreadPool(PARALLEL, r -> {
+        Thread thread = new Thread(r, "job-placement");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Jobs being handed to a peer; guarded by the lock
+    private int inFlight;
+    private final Counter rejections;
+    private volatile boolean stopped;
+
+    public JobDispatcher(PeerRegistryInterface registry, int capacity, MeterRegistry meters) {
+        this.registry = registry;
+        this.capacity = capacity;
+        rejections = Counter.builder("p2p.dispatch.rejections")
+                .description("Job submissions refused because the queue was full").register(meters);
+        Gauge.builder("p2p.dispatch.queued", this, JobDispatcher::getQueueLength)
+                .description("Jobs waiting for a peer to accept them").register(meters);
+
+        dispatcher = new Thread(this::dispatchLoop, "job-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    // peerName may be null to let the dispatcher place the job; higher priorities go first
+    public DispatchedJob submit(JobRequest request, String peerName, int priority) throws JobRejectedException {
+        lock.lock();
+        try {
+            if (queue.size() >= capacity) {
+                rejections.increment();
+                throw new JobRejectedException("Job queue full (" + capacity + " waiting)");
+            }
+            long sequence = nextId.incrementAndGet();
+            DispatchedJob job = new DispatchedJob("job-" + sequence, sequence, request, peerName, priority);
+            jobs.put(job.id, job);
+            queue.add(job);
+            changed.signalAll();
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Null if unknown or dropped after finishing
+    public DispatchedJob get(String id) {
+        return jobs.get(id);
+    }
+
+    // The peer the job was handed to, or null if it is not registered any more
+    public Peer peerOf(DispatchedJob job) throws RemoteException {
+        return job.peerName == null ? null : registry.getPeer(job.peerName);
+    }
+
+    // A job still queued here is dropped; one already on a peer is cancelled there. A job the
+    // dispatcher is handing out right now is marked, and dropped or cancelled once that is done.
+    public boolean cancel(DispatchedJob job) throws RemoteException {
+        lock.lock();
+        try {
+            if (queue.remove(job)) {
+                job.finish(State.CANCELLED, "Cancelled before dispatch");
+                retire(job);
+                return true;
+            }
+            if (job.getState() == State.QUEUED) {
+                job.cancelRequested = true;
+                job.message = "Cancelling";
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (job.getState() != State.DISPATCHED) {
+            return false;
+        }
+        Peer peer = peerOf(job);
+        return peer != null && peer.cancelJob(job.peerJobId);
+    }
+
+    // Position in the queue, 0 being next; -1 once the job has left it
+    public int positionOf(DispatchedJob job) {
+        lock.lock();
+        try {
+            return queue.contains(job) ? queue.headSet(job).size() : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        stopped = true;
+        dispatcher.interrupt();
+        placements.shutdownNow();
+    }
+
+    private void dispatchLoop() {
+        try {
+            while (!stopped) {
+                DispatchedJob job = takeReady();
+                placements.execute(() -> place(job));
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // Shut down
+        }
+    }
+
+    private void place(DispatchedJob job) {
+        boolean placed = false;
+        try {
+            placed = dispatch(job);
+        } finally {
+            lock.lock();
+            try {
+                inFlight--;
+                if (!placed && !dropIfCancelled(job)) {
+                    // Every candidate was busy; back off before offering it again
+                    job.attempts++;
+                    job.notBefore = System.currentTimeMillis()
+                            + Math.min(MAX_BACKOFF_MILLIS, 100L << Math.min(job.attempts, 5));
+                    queue.add(job);
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // The highest-priority job not backing off, waiting until there is one and a placement thread is free
+    private DispatchedJob takeReady() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                if (inFlight >= PARALLEL) {
+                    changed.await();
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                long wakeAt = Long.MAX_VALUE;
+                for (DispatchedJob job : queue) {
+                    if (job.notBefore <= now) {
+                        queue.remove(job);
+                        inFlight++;
+                        return job;
+                    }
+                    wakeAt = Math.min(wakeAt, job.notBefore);
+                }
+                if (wakeAt == Long.MAX_VALUE) {
+                    changed.await();
+                } else {
+                    changed.await(wakeAt - now, TimeUnit.MILLISECONDS);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // False if the job should be retried later because the candidates were busy
+    private boolean dispatch(DispatchedJob job) {
+        String graphFile = job.request.getGraphFile();
+        String error = job.requestedPeer != null ? "Peer not registered: " + job.requestedPeer
+                : "No registered peer has " + graphFile;
+        boolean busy = false;
+        try {
+            for (String peerName : candidates(job)) {
+                Peer peer = registry.getPeer(peerName);
+                if (peer == null) continue;
+                lock.lock();
+                try {
+                    if (dropIfCancelled(job)) return true;
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    String peerJobId = peer.submitJob(job.request);
+                    boolean cancelled;
+                    lock.lock();
+                    try {
+                        job.dispatched(peerName, peerJobId);
+                        cancelled = job.cancelRequested;
+                    } finally {
+                        lock.unlock();
+                    }
+                    retire(job);
+                    System.out.println("Dispatched " + job.id + " (" + job.request + ") to " + peerName + " as " + peerJobId);
+                    if (cancelled) {
+                        // Cancelled while it was being submitted
+                        try {
+                            peer.cancelJob(peerJobId);
+                        } catch (RemoteException e) {
+                            System.out.println("Could not cancel " + job.id + " on " + peerName + ": " + e.getMessage());
+                        }
+                    }
+                    return true;
+                } catch (JobRejectedException e) {
+                    busy = true;
+                } catch (RemoteException e) {
+                    error = "Could not reach " + peerName + ": " + e.getMessage();
+                }
+            }
+        } catch (RemoteException e) {
+            error = "Registry lookup failed: " + e.getMessage();
+        }
+        if (busy) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (dropIfCancelled(job)) return true;
+            job.finish(State.FAILED, error);
+        } finally {
+            lock.unlock();
+        }
+        retire(job);
+        System.out.println("Job " + job.id + " failed: " + error);
+        return true;
+    }
+
+    // Caller holds the lock
+    private boolean dropIfCancelled(DispatchedJob job) {
+        if (!job.cancelRequested) {
+            return false;
+        }
+        job.finish(State.CANCELLED, "Cancelled before dispatch");
+        retire(job);
+        return true;
+    }
+
+    private List<String> candidates(DispatchedJob job) throws RemoteException {
+        List<String> candidates = new ArrayList<>();
+        if (job.requestedPeer != null) {
+            candidates.add(job.requestedPeer);
+            return candidates;
+        }
+        // The server has no copy of the graph to stage, so only peers that hold it can run the job
+        for (Placement placement : registry.rankPeersForJob(job.request.getGraphFile(), CANDIDATES)) {
+            if (placement.holdsGraph()) candidates.add(placement.getPeerName());
+        }
+        return candidates;
+    }
+
+    // Keeps the last few jobs that left the queue so their status can still be asked for
+    private void retire(DispatchedJob job) {
+        synchronized (retired) {
+            retired.add(job.id);
+            while (retired.size() > RETAINED_JOBS) {
+                jobs.remove(retired.poll());
+            }
+        }
+    }
+
+    public static class DispatchedJob {
+        private final String id;
+        private final long sequence;
+        private final JobRequest request;
+        private final String requestedPeer;
+        private final int priority;
+        private final long submittedAt = System.currentTimeMillis();
+        // Guarded by the dispatcher's lock
+        private long notBefore;
+        private int attempts;
+        private boolean cancelRequested;
+        private volatile State state = State.QUEUED;
+        private volatile String peerName;
+        private volatile String peerJobId;
+        private volatile String message = "Waiting for a peer";
+
+        DispatchedJob(String id, long sequence, JobRequest request, String requestedPeer, int priority) {
+            this.id = id;
+            this.sequence = sequence;
+            this.request = request;
+            this.requestedPeer = requestedPeer;
+            this.priority = priority;
+        }
+
+        void dispatched(String peerName, String peerJobId) {
+            this.peerName = peerName;
+            this.peerJobId = peerJobId;
+            this.message = "Running on " + peerName;
+            this.state = State.DISPATCHED;
+        }
+
+        void finish(State state, String message) {
+            this.message = message;
+            this.state = state;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public JobRequest getRequest() {
+            return request;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public long getSubmittedAt() {
+            return submittedAt;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        // Set once dispatched
+        public String getPeerName() {
+            return peerName;
+        }
+
+        public String getPeerJobId() {
+            return peerJobId;
+        }
+    }
+}
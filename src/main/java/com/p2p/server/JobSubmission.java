@@ -0,0 +1,53 @@
+package com.p2p.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// JSON body of POST /jobs; peer is optional and priority defaults to 0 (higher runs first)
+public class JobSubmission {
+    private String algorithm;
+    private String graphFile;
+    private String peer;
+    private int priority;
+    private Map<String, String> parameters = new HashMap<>();
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getGraphFile() {
+        return graphFile;
+    }
+
+    public void setGraphFile(String graphFile) {
+        this.graphFile = graphFile;
+    }
+
+    public String getPeer() {
+        return peer;
+    }
+
+    public void setPeer(String peer) {
+        this.peer = peer;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(Map<String, String> parameters) {
+        this.parameters = parameters == null ? new HashMap<>() : parameters;
+    }
+}
@@ -1,11 +1,16 @@
-
 package com.p2p.server;
+import com.p2p.registry.ShardedRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
 import java.net.InetAddress;
+import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
 
 @SpringBootApplication
 public class P2PServer {
@@ -19,21 +24,44 @@ public class P2PServer {
             // Allow remote connections to download classes
             System.setProperty("java.rmi.server.useCodebaseOnly", "false");
 
-            // Create RMI registry
-            Registry registry = LocateRegistry.createRegistry(1099);
+            // Create RMI registry; several servers can share a host by using different ports
+            int port = Integer.getInteger("p2p.registry.port", 1099);
+            Registry registry = LocateRegistry.createRegistry(port);
+
+            // The id places this server on the clients' shard ring
+            String serverId = System.getProperty("p2p.registry.id", ipAddress + ":" + port);
+            System.setProperty("p2p.registry.id", serverId);
 
-            // Create and bind the PeerRegistry
-            PeerRegistry peerRegistry = new PeerRegistry();
-            registry.rebind("PeerRegistry", peerRegistry);
+            // Start Spring Boot application, which creates the PeerRegistry with its metrics
+            ConfigurableApplicationContext context = SpringApplication.run(P2PServer.class, args);
 
-            System.out.println("P2P Registry Server running at " + ipAddress + ":1099");
-            System.out.println("RMI URL: rmi://" + ipAddress + "/PeerRegistry");
+            // Bind the PeerRegistry
+            registry.rebind("PeerRegistry", context.getBean(PeerRegistry.class));
 
-            // Start Spring Boot application
-            SpringApplication.run(P2PServer.class, args);
+            System.out.println("P2P Registry Server " + serverId + " running at " + ipAddress + ":" + port);
+            System.out.println("RMI URL: rmi://" + ipAddress + ":" + port + "/PeerRegistry");
         } catch (Exception e) {
             System.err.println("Server startup error:");
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    @Bean
+    @Primary
+    public PeerRegistry peerRegistry(MeterRegistry meters) throws RemoteException {
+        return new PeerRegistry(System.getProperty("p2p.registry.id"), meters);
+    }
+
+    // Each server only holds the peers hashed onto it, so jobs and path queries look peers up across
+    // all the servers listed in p2p.registry.servers (written as the clients write them)
+    @Bean
+    public PeerRegistryInterface clusterRegistry(PeerRegistry local) throws RemoteException {
+        String servers = System.getProperty("p2p.registry.servers", "");
+        return servers.trim().isEmpty() ? local : new ShardedRegistry(servers);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public JobDispatcher jobDispatcher(@Qualifier("clusterRegistry") PeerRegistryInterface registry, MeterRegistry meters) {
+        return new JobDispatcher(registry, JobDispatcher.DEFAULT_CAPACITY, meters);
+    }
+}
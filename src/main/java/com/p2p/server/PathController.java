@@ -0,0 +1,92 @@
+package com.p2p.server;
+
+import com.p2p.model.Peer;
+import com.p2p.model.Placement;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Interactive hop-distance queries on a shared graph:
+//   GET /paths?graphFile=web.txt&from=1&to=2[&peer=Peer1]
+// answers {"from":1,"to":2,"hops":3,"path":[1,7,9,2],"peer":"Peer1","millis":4}, with hops -1 and
+// path null when there is no path. Queries on a graph keep going to the peer that answered the
+// last one, since it already has the graph in memory. Peers are looked up across all registry
+// servers, like the job dispatcher does.
+@RestController
+@RequestMapping("/paths")
+public class PathController {
+    private static final int CANDIDATES = 4;
+
+    private final PeerRegistryInterface registry;
+    private final Map<String, String> lastPeer = new ConcurrentHashMap<>();
+
+    public PathController(@Qualifier("clusterRegistry") PeerRegistryInterface registry) {
+        this.registry = registry;
+    }
+
+    @GetMapping
+    public Map<String, Object> path(@RequestParam String graphFile, @RequestParam int from, @RequestParam int to,
+                                    @RequestParam(required = false) String peer) {
+        String error = peer != null ? "Peer not registered: " + peer : "No registered peer has " + graphFile;
+        try {
+            for (String peerName : candidates(graphFile, peer)) {
+                Peer candidate = registry.getPeer(peerName);
+                if (candidate == null) continue;
+                long start = System.currentTimeMillis();
+                int[] path;
+                try {
+                    path = candidate.findPath(graphFile, from, to);
+                } catch (RemoteException e) {
+                    // An unknown node arrives wrapped in the peer's and RMI's exceptions
+                    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                        if (cause instanceof IllegalArgumentException) {
+                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, cause.getMessage());
+                        }
+                    }
+                    // Most likely a false positive of the peer's file summary; try the next one
+                    error = "Could not query " + peerName + ": " + e.getMessage();
+                    continue;
+                }
+                lastPeer.put(graphFile, peerName);
+                Map<String, Object> view = new LinkedHashMap<>();
+                view.put("from", from);
+                view.put("to", to);
+                view.put("hops", path == null ? -1 : path.length - 1);
+                view.put("path", path);
+                view.put("peer", peerName);
+                view.put("millis", System.currentTimeMillis() - start);
+                return view;
+            }
+        } catch (RemoteException e) {
+            error = "Registry lookup failed: " + e.getMessage();
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, error);
+    }
+
+    private List<String> candidates(String graphFile, String peer) throws RemoteException {
+        List<String> candidates = new ArrayList<>();
+        if (peer != null) {
+            candidates.add(peer);
+            return candidates;
+        }
+        String last = lastPeer.get(graphFile);
+        if (last != null) candidates.add(last);
+        for (Placement placement : registry.rankPeersForJob(graphFile, CANDIDATES)) {
+            if (placement.holdsGraph() && !placement.getPeerName().equals(last)) {
+                candidates.add(placement.getPeerName());
+            }
+        }
+        return candidates;
+    }
+}
@@ -1,38 +1,316 @@
-
 package com.p2p.server;
+import com.p2p.model.FileSummary;
+import com.p2p.model.MembershipUpdate;
 import com.p2p.model.Peer;
+import com.p2p.model.PeerLoad;
+import com.p2p.model.Placement;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+// Peers hold a lease that heartbeats renew; a peer that crashes without unregistering is dropped
+// once its lease runs out. Lookups and heartbeats are lock-free. Joins and leaves are serialized so
+// each one gets the next membership version and lands in a bounded change log, which lets clients
+// keep a local copy of the membership up to date incrementally.
+// Call rates, latencies and membership are reported to a Micrometer registry; meters are resolved
+// once up front so the lookup path only pays for a clock read and a few counter updates.
 public class PeerRegistry extends UnicastRemoteObject implements PeerRegistryInterface {
-    private final Map<String, Peer> peers = new HashMap<>();
+    public static final long LEASE_MILLIS = Long.getLong("p2p.registry.lease", 15000);
+    private static final int CHANGE_LOG_SIZE = 1024;
+    // Placement score penalties, in units of "one more job per core"
+    private static final double TRANSFER_PENALTY = 0.5;
+    private static final double LOW_HEAP_PENALTY = 2.0;
+    private static final long LOW_HEAP_BYTES = 256L * 1024 * 1024;
+
+    private final String serverId;
+    private final long leaseMillis;
+    private final Map<String, Lease> peers = new ConcurrentHashMap<>();
+    private final Map<String, FileSummary> summaries = new ConcurrentHashMap<>();
+    private final Deque<Change> changes = new ArrayDeque<>();
+    // Seeded from the clock so a restarted registry never reuses versions a client has already seen
+    private long version = System.currentTimeMillis() * 1000;
+
+    private final Timer registerTimer;
+    private final Timer getPeerTimer;
+    // Batches apart from single lookups, so a batch doesn't count as one slow lookup
+    private final Timer getPeersTimer;
+    private final Timer availablePeersTimer;
+    private final Counter registrations;
+    private final Counter unregistrations;
+    private final Counter expiries;
+
+    public PeerRegistry(String serverId) throws RemoteException {
+        this(serverId, LEASE_MILLIS, new SimpleMeterRegistry());
+    }
+
+    public PeerRegistry(String serverId, MeterRegistry meters) throws RemoteException {
+        this(serverId, LEASE_MILLIS, meters);
+    }
+
+    public PeerRegistry(String serverId, long leaseMillis, MeterRegistry meters) throws RemoteException {
+        this.serverId = serverId;
+        this.leaseMillis = leaseMillis;
 
-    public PeerRegistry() throws RemoteException {}
+        registerTimer = Timer.builder("p2p.registry.calls").tag("method", "registerPeer").register(meters);
+        getPeerTimer = Timer.builder("p2p.registry.calls").tag("method", "getPeer").register(meters);
+        getPeersTimer = Timer.builder("p2p.registry.calls").tag("method", "getPeers").register(meters);
+        availablePeersTimer = Timer.builder("p2p.registry.calls").tag("method", "getAvailablePeers").register(meters);
+        registrations = Counter.builder("p2p.registry.registrations")
+                .description("Peer registrations, including re-registrations").register(meters);
+        unregistrations = Counter.builder("p2p.registry.unregistrations")
+                .description("Peers that unregistered themselves").register(meters);
+        expiries = Counter.builder("p2p.registry.lease.expiries")
+                .description("Peers dropped because their lease ran out").register(meters);
+        Gauge.builder("p2p.registry.peers", this, PeerRegistry::countLivePeers)
+                .description("Peers holding an unexpired lease").register(meters);
+        Gauge.builder("p2p.registry.summaries", summaries, Map::size)
+                .description("Peers with a published file summary").register(meters);
+
+        ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lease-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::expireLeases, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+    }
 
     @Override
     public void registerPeer(String name, Peer peer) throws RemoteException {
-        peers.put(name, peer);
+        long start = System.nanoTime();
+        synchronized (this) {
+            peers.put(name, new Lease(peer, System.currentTimeMillis() + leaseMillis, null));
+            // A new registration starts without a file summary until the peer publishes one
+            summaries.remove(name);
+            record(name, peer);
+        }
+        registerTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        registrations.increment();
         System.out.println("Registered peer: " + name);
     }
 
     @Override
     public void unregisterPeer(String name) throws RemoteException {
-        if (peers.remove(name) != null) {
-            System.out.println("Unregistered peer: " + name);
+        synchronized (this) {
+            if (peers.remove(name) == null) {
+                return;
+            }
+            summaries.remove(name);
+            record(name, null);
         }
+        unregistrations.increment();
+        System.out.println("Unregistered peer: " + name);
     }
 
     @Override
     public Peer getPeer(String name) throws RemoteException {
-        return peers.get(name);
+        long start = System.nanoTime();
+        Lease lease = peers.get(name);
+        Peer peer = lease == null || lease.isExpired(System.currentTimeMillis()) ? null : lease.peer;
+        getPeerTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return peer;
+    }
+
+    @Override
+    public Map<String, Peer> getPeers(List<String> names) throws RemoteException {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        Map<String, Peer> found = new LinkedHashMap<>();
+        for (String name : names) {
+            Lease lease = peers.get(name);
+            if (lease != null && !lease.isExpired(now)) {
+                found.put(name, lease.peer);
+            }
+        }
+        getPeersTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return found;
     }
 
     @Override
     public List<String> getAvailablePeers() throws RemoteException {
-        return new ArrayList<>(peers.keySet());
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        List<String> available = new ArrayList<>();
+        for (Map.Entry<String, Lease> entry : peers.entrySet()) {
+            if (!entry.getValue().isExpired(now)) {
+                available.add(entry.getKey());
+            }
+        }
+        availablePeersTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return available;
+    }
+
+    @Override
+    public long heartbeat(String name, PeerLoad load) throws RemoteException {
+        while (true) {
+            Lease lease = peers.get(name);
+            if (lease == null) {
+                return -1;
+            }
+            // Leases are replaced rather than mutated, so the reaper can't drop a freshly renewed one
+            Lease renewed = new Lease(lease.peer, System.currentTimeMillis() + leaseMillis, load != null ? load : lease.load);
+            if (peers.replace(name, lease, renewed)) {
+                return leaseMillis;
+            }
+        }
+    }
+
+    @Override
+    public synchronized MembershipUpdate getChangesSince(long since) throws RemoteException {
+        if (since == version) {
+            return new MembershipUpdate(version, false, new LinkedHashMap<>(), new ArrayList<>());
+        }
+        if (since <= 0 || since > version || changes.isEmpty() || changes.peekFirst().version > since + 1) {
+            // Too far behind the change log (or from an earlier registry instance): send everything
+            long now = System.currentTimeMillis();
+            Map<String, Peer> all = new LinkedHashMap<>();
+            for (Map.Entry<String, Lease> entry : peers.entrySet()) {
+                if (!entry.getValue().isExpired(now)) {
+                    all.put(entry.getKey(), entry.getValue().peer);
+                }
+            }
+            return new MembershipUpdate(version, true, all, new ArrayList<>());
+        }
+
+        Map<String, Peer> joined = new LinkedHashMap<>();
+        List<String> left = new ArrayList<>();
+        for (Change change : changes) {
+            if (change.version <= since) continue;
+            if (change.peer != null) {
+                joined.put(change.name, change.peer);
+                left.remove(change.name);
+            } else {
+                joined.remove(change.name);
+                left.add(change.name);
+            }
+        }
+        return new MembershipUpdate(version, false, joined, left);
+    }
+
+    @Override
+    public void publishSummary(String name, FileSummary summary) throws RemoteException {
+        synchronized (this) {
+            if (!peers.containsKey(name)) {
+                throw new RemoteException("Peer not registered: " + name);
+            }
+            summaries.put(name, summary);
+        }
+    }
+
+    @Override
+    public List<String> locate(String filename) throws RemoteException {
+        long now = System.currentTimeMillis();
+        List<String> holders = new ArrayList<>();
+        for (Map.Entry<String, FileSummary> entry : summaries.entrySet()) {
+            Lease lease = peers.get(entry.getKey());
+            if (lease != null && !lease.isExpired(now) && entry.getValue().mightContain(filename)) {
+                holders.add(entry.getKey());
+            }
+        }
+        return holders;
+    }
+
+    @Override
+    public List<Placement> rankPeersForJob(String graphFile, int limit) throws RemoteException {
+        long now = System.currentTimeMillis();
+        List<Placement> candidates = new ArrayList<>();
+        for (Map.Entry<String, Lease> entry : peers.entrySet()) {
+            Lease lease = entry.getValue();
+            if (lease.isExpired(now)) continue;
+            FileSummary summary = summaries.get(entry.getKey());
+            boolean holdsGraph = summary != null && summary.mightContain(graphFile);
+            candidates.add(new Placement(entry.getKey(), score(lease.load, holdsGraph), holdsGraph, lease.load));
+        }
+        candidates.sort(Comparator.comparingDouble(Placement::getScore));
+        return new ArrayList<>(candidates.subList(0, Math.min(limit, candidates.size())));
+    }
+
+    // Expected queueing per core, plus whatever else keeps the machine busy, plus the cost of
+    // moving the graph there. Peers that haven't reported yet are assumed half busy on one core.
+    private static double score(PeerLoad load, boolean holdsGraph) {
+        double score = load == null ? 1.5
+                : (load.getRunningJobs() + 1.0) / Math.max(1, load.getProcessors()) + load.getCpuLoad();
+        if (!holdsGraph) {
+            score += TRANSFER_PENALTY;
+        }
+        if (load != null && load.getFreeHeapBytes() < LOW_HEAP_BYTES) {
+            score += LOW_HEAP_PENALTY;
+        }
+        return score;
+    }
+
+    @Override
+    public String getServerId() throws RemoteException {
+        return serverId;
+    }
+
+    private void expireLeases() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Lease> entry : peers.entrySet()) {
+            if (!entry.getValue().isExpired(now)) continue;
+            synchronized (this) {
+                if (!peers.remove(entry.getKey(), entry.getValue())) continue;
+                summaries.remove(entry.getKey());
+                record(entry.getKey(), null);
+            }
+            expiries.increment();
+            System.out.println("Lease expired for peer: " + entry.getKey());
+        }
+    }
+
+    // Like getAvailablePeers, so the gauge doesn't count leases that ran out but aren't reaped yet
+    private double countLivePeers() {
+        long now = System.currentTimeMillis();
+        return peers.values().stream().filter(lease -> !lease.isExpired(now)).count();
+    }
+
+    // Caller holds the lock; peer is null for a leave
+    private void record(String name, Peer peer) {
+        changes.addLast(new Change(++version, name, peer));
+        if (changes.size() > CHANGE_LOG_SIZE) {
+            changes.removeFirst();
+        }
+    }
+
+    private static class Lease {
+        final Peer peer;
+        final long expiresAt;
+        final PeerLoad load;
+
+        Lease(Peer peer, long expiresAt, PeerLoad load) {
+            this.peer = peer;
+            this.expiresAt = expiresAt;
+            this.load = load;
+        }
+
+        boolean isExpired(long now) {
+            return now > expiresAt;
+        }
+    }
+
+    private static class Change {
+        final long version;
+        final String name;
+        final Peer peer;
+
+        Change(long version, String name, Peer peer) {
+            this.version = version;
+            this.name = name;
+            this.peer = peer;
+        }
     }
-}
\ No newline at end of file
+}
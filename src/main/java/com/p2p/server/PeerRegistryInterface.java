@@ -1,14 +1,39 @@
-
 package com.p2p.server;
+import com.p2p.model.FileSummary;
+import com.p2p.model.MembershipUpdate;
 import com.p2p.model.Peer;
+import com.p2p.model.PeerLoad;
+import com.p2p.model.Placement;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
+import java.util.Map;
 
 public interface PeerRegistryInterface extends Remote {
     void registerPeer(String peerName, Peer peer) throws RemoteException;
     void unregisterPeer(String peerName) throws RemoteException;
     Peer getPeer(String peerName) throws RemoteException;
+    // Several lookups in one round trip; names not registered are left out
+    Map<String, Peer> getPeers(List<String> peerNames) throws RemoteException;
     List<String> getAvailablePeers() throws RemoteException;
-}
\ No newline at end of file
+
+    // Renews the peer's lease and records its current load (may be null); returns the lease length
+    // in milliseconds, or -1 if the peer is not registered (its lease already expired) and must register again
+    long heartbeat(String peerName, PeerLoad load) throws RemoteException;
+
+    // Joins and leaves after the given membership version; version 0 returns a full snapshot
+    MembershipUpdate getChangesSince(long version) throws RemoteException;
+
+    // Bloom filter of the files a peer shares, replacing its previous one; dropped with the peer's lease
+    void publishSummary(String peerName, FileSummary summary) throws RemoteException;
+
+    // Peers whose summary says they may have the file; about 1% of answers turn out not to
+    List<String> locate(String filename) throws RemoteException;
+
+    // Best peers to run a job on graphFile, best first: least loaded, preferring those holding the file
+    List<Placement> rankPeersForJob(String graphFile, int limit) throws RemoteException;
+
+    // Stable name of this registry server, used to place it on the clients' hash ring
+    String getServerId() throws RemoteException;
+}
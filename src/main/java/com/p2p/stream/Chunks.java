@@ -0,0 +1,57 @@
+package com.p2p.stream;
+
+import java.util.Arrays;
+
+// Per-vertex counters in fixed-size chunks, shared copy-on-write with published snapshots: freeze
+// hands out the current chunk table and marks every chunk shared, and the first later write to a
+// shared chunk copies it. Publishing a snapshot so costs one pointer per chunk plus the chunks a
+// batch actually touched, instead of a copy of every array.
+final class Chunks {
+    static final int SHIFT = 12;
+    static final int SIZE = 1 << SHIFT;
+    private static final int MASK = SIZE - 1;
+
+    private long[][] chunks = new long[0][];
+    private boolean[] shared = new boolean[0];
+
+    long get(int index) {
+        return chunks[index >>> SHIFT][index & MASK];
+    }
+
+    void set(int index, long value) {
+        writable(index >>> SHIFT)[index & MASK] = value;
+    }
+
+    void add(int index, long delta) {
+        writable(index >>> SHIFT)[index & MASK] += delta;
+    }
+
+    // Makes room for indexes below capacity, new ones being 0
+    void ensureCapacity(int capacity) {
+        int needed = (capacity + MASK) >>> SHIFT;
+        if (needed <= chunks.length) return;
+        int old = chunks.length;
+        chunks = Arrays.copyOf(chunks, Math.max(needed, old * 2));
+        shared = Arrays.copyOf(shared, chunks.length);
+        for (int c = old; c < chunks.length; c++) {
+            chunks[c] = new long[SIZE];
+        }
+    }
+
+    long[][] freeze() {
+        Arrays.fill(shared, true);
+        return chunks.clone();
+    }
+
+    static long get(long[][] frozen, int index) {
+        return frozen[index >>> SHIFT][index & MASK];
+    }
+
+    private long[] writable(int chunk) {
+        if (shared[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            shared[chunk] = false;
+        }
+        return chunks[chunk];
+    }
+}
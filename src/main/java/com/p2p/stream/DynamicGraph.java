@@ -0,0 +1,188 @@
+package com.p2p.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A graph that changes by batches of edge inserts and deletes, keeping in-degrees, the in-degree
+// ranking and triangle counts up to date as it goes instead of recomputing them. Edges are a set:
+// inserting an edge that exists, or deleting one that doesn't, changes nothing.
+//
+// A new undirected neighbour pair u-v closes one triangle with every common neighbour w, so an
+// insert costs one intersection of the smaller neighbour set with the larger, adding to the counts
+// of u, v and each w; a delete subtracts the same. The in-degree ranking of the top RANKED nodes is
+// carried from batch to batch: if none of them lost in-degree, the new ranking is among them and
+// the nodes whose in-degree changed, and only otherwise is every node scanned.
+//
+// One writer applies batches; after each it publishes an immutable GraphSnapshot, which readers
+// take without locking and which later batches never change (see Chunks).
+public class DynamicGraph {
+    public static final int RANKED = Integer.getInteger("p2p.stream.ranked", 1000);
+
+    private final Map<Integer, Integer> index = new ConcurrentHashMap<>();
+    private final List<IntSet> out = new ArrayList<>();
+    private final List<IntSet> in = new ArrayList<>();
+    private final Chunks ids = new Chunks();
+    private final Chunks inDegrees = new Chunks();
+    private final Chunks degrees = new Chunks();
+    private final Chunks triangles = new Chunks();
+    private long numEdges;
+    private long triangleCount;
+    private long version;
+    private int[] topByInDegree = new int[0];
+    private volatile GraphSnapshot snapshot;
+
+    // Nodes whose in-degree changed in the current batch, and whether a ranked one dropped
+    private final IntSet changed = new IntSet();
+    private final IntSet ranked = new IntSet();
+    private boolean rankedDropped;
+
+    public DynamicGraph() {
+        snapshot = publish();
+    }
+
+    // The state after the last batch; never blocks
+    public GraphSnapshot snapshot() {
+        return snapshot;
+    }
+
+    // Applies count edges: sources[i] -> targets[i], deleted where deletes[i] is true. Returns the
+    // snapshot that includes them.
+    public synchronized GraphSnapshot apply(int[] sources, int[] targets, boolean[] deletes, int count) {
+        for (int i = 0; i < count; i++) {
+            int u = vertex(sources[i]);
+            int v = vertex(targets[i]);
+            if (deletes != null && deletes[i]) {
+                delete(u, v);
+            } else {
+                insert(u, v);
+            }
+        }
+        updateRanking();
+        return snapshot = publish();
+    }
+
+    private int vertex(int id) {
+        Integer v = index.get(id);
+        if (v != null) return v;
+        int created = out.size();
+        out.add(new IntSet());
+        in.add(new IntSet());
+        ids.ensureCapacity(created + 1);
+        inDegrees.ensureCapacity(created + 1);
+        degrees.ensureCapacity(created + 1);
+        triangles.ensureCapacity(created + 1);
+        ids.set(created, id);
+        index.put(id, created);
+        // A new node may belong in a ranking that isn't full yet
+        changed.add(created);
+        return created;
+    }
+
+    private void insert(int u, int v) {
+        if (!out.get(u).add(v)) return;
+        in.get(v).add(u);
+        numEdges++;
+        inDegrees.add(v, 1);
+        changed.add(v);
+        // The pair was already neighbours through v -> u, or it's a self-loop
+        if (u == v || out.get(v).contains(u)) return;
+        long closed = closeTriangles(u, v, 1);
+        triangles.add(u, closed);
+        triangles.add(v, closed);
+        triangleCount += closed;
+        degrees.add(u, 1);
+        degrees.add(v, 1);
+    }
+
+    private void delete(int u, int v) {
+        if (!out.get(u).remove(v)) return;
+        in.get(v).remove(u);
+        numEdges--;
+        inDegrees.add(v, -1);
+        changed.add(v);
+        if (ranked.contains(v)) rankedDropped = true;
+        if (u == v || out.get(v).contains(u)) return;
+        long opened = closeTriangles(u, v, -1);
+        triangles.add(u, -opened);
+        triangles.add(v, -opened);
+        triangleCount -= opened;
+        degrees.add(u, -1);
+        degrees.add(v, -1);
+    }
+
+    // Adds delta to the triangle count of every common neighbour of u and v, returning how many
+    // there are. The edge between u and v themselves is skipped.
+    private long closeTriangles(int u, int v, int delta) {
+        if (out.get(u).size() + in.get(u).size() > out.get(v).size() + in.get(v).size()) {
+            int swap = u;
+            u = v;
+            v = swap;
+        }
+        long common = 0;
+        IntSet uOut = out.get(u);
+        for (int w : uOut.slots()) {
+            if (w >= 0 && w != u && w != v && adjacent(v, w)) {
+                triangles.add(w, delta);
+                common++;
+            }
+        }
+        for (int w : in.get(u).slots()) {
+            if (w >= 0 && w != u && w != v && !uOut.contains(w) && adjacent(v, w)) {
+                triangles.add(w, delta);
+                common++;
+            }
+        }
+        return common;
+    }
+
+    private boolean adjacent(int a, int b) {
+        return out.get(a).contains(b) || in.get(a).contains(b);
+    }
+
+    private void updateRanking() {
+        if (changed.size() == 0) return;
+        int n = out.size();
+        int limit = Math.min(RANKED, n);
+        if (rankedDropped) {
+            topByInDegree = GraphSnapshot.top(inDegrees::get, ids::get, limit, n);
+        } else {
+            int[] candidates = Arrays.copyOf(topByInDegree, topByInDegree.length + changed.size());
+            int count = topByInDegree.length;
+            for (int v : changed.slots()) {
+                if (v >= 0 && !ranked.contains(v)) candidates[count++] = v;
+            }
+            topByInDegree = rankAmong(Arrays.copyOf(candidates, count), limit);
+        }
+        ranked.clear();
+        for (int v : topByInDegree) {
+            ranked.add(v);
+        }
+        changed.clear();
+        rankedDropped = false;
+    }
+
+    // Highest in-degree first, ties by id
+    private int[] rankAmong(int[] candidates, int limit) {
+        Integer[] order = new Integer[candidates.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = candidates[i];
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byDegree = Long.compare(inDegrees.get(b), inDegrees.get(a));
+            return byDegree != 0 ? byDegree : Long.compare(ids.get(a), ids.get(b));
+        });
+        int[] top = new int[Math.min(limit, order.length)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = order[i];
+        }
+        return top;
+    }
+
+    private GraphSnapshot publish() {
+        return new GraphSnapshot(version++, out.size(), numEdges, triangleCount, ids.freeze(), inDegrees.freeze(),
+                degrees.freeze(), triangles.freeze(), topByInDegree, index);
+    }
+}
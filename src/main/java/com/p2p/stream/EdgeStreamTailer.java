@@ -0,0 +1,184 @@
+package com.p2p.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Follows an append-only edge file into a DynamicGraph. Each line is an edge "u v" or "+ u v", or a
+// deletion "- u v"; fields may be separated by spaces, tabs or commas, and lines starting with #
+// are comments. Only complete lines are read, so a writer may be halfway through one. Lines read
+// in one poll are applied in batches of up to batchSize edges. A file that shrank was rewritten,
+// and is followed again from the start into a new graph.
+public class EdgeStreamTailer {
+    public static final long POLL_MILLIS = Long.getLong("p2p.stream.pollMillis", 200);
+    public static final int DEFAULT_BATCH = Integer.getInteger("p2p.stream.batch", 65536);
+
+    private final Path file;
+    private final int batchSize;
+    private volatile DynamicGraph graph = new DynamicGraph();
+    private long offset;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private int[] sources;
+    private int[] targets;
+    private boolean[] deletes;
+    private int pending;
+    private volatile Thread thread;
+
+    public EdgeStreamTailer(Path file, int batchSize) {
+        this.file = file;
+        this.batchSize = Math.max(1, batchSize);
+        sources = new int[Math.min(this.batchSize, 1024)];
+        targets = new int[sources.length];
+        deletes = new boolean[sources.length];
+    }
+
+    public EdgeStreamTailer(Path file) {
+        this(file, DEFAULT_BATCH);
+    }
+
+    // The graph as of the last batch applied
+    public GraphSnapshot snapshot() {
+        return graph.snapshot();
+    }
+
+    // Bytes of the file read so far
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    // Polls the file in the background every POLL_MILLIS until stopped
+    public synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(() -> {
+            while (thread == Thread.currentThread()) {
+                try {
+                    poll();
+                } catch (IOException e) {
+                    // E.g. the file is being replaced; try again next time
+                    System.out.println("Could not read " + file + ": " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "stream-" + file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        Thread running = thread;
+        thread = null;
+        if (running != null) running.interrupt();
+    }
+
+    // Reads and applies whatever complete lines were appended since the last poll. Returns the
+    // number of edge lines read.
+    public synchronized int poll() throws IOException {
+        long size = Files.size(file);
+        if (size < offset) {
+            System.out.println(file + " shrank from " + offset + " to " + size + " bytes; reading it again");
+            graph = new DynamicGraph();
+            offset = 0;
+        }
+        if (size == offset) return 0;
+        int lines = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(offset);
+            buffer.clear();
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                int end = buffer.limit();
+                while (end > 0 && buffer.get(end - 1) != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    // One line longer than the buffer: nothing sensible to read from it
+                    if (buffer.limit() == buffer.capacity()) {
+                        throw new IOException("Line too long at byte " + offset);
+                    }
+                    break;
+                }
+                lines += parse(buffer.array(), end);
+                offset += end;
+                // Keep the partial line at the front for the next read
+                buffer.position(end);
+                buffer.compact();
+            }
+        }
+        flush();
+        return lines;
+    }
+
+    private int parse(byte[] bytes, int end) {
+        int lines = 0;
+        int start = 0;
+        while (start < end) {
+            int stop = start;
+            while (bytes[stop] != '\n') {
+                stop++;
+            }
+            if (parseLine(bytes, start, stop)) lines++;
+            start = stop + 1;
+        }
+        return lines;
+    }
+
+    // Reads "[+|-] u v" from bytes[start, stop); false for comments and malformed lines
+    private boolean parseLine(byte[] bytes, int start, int stop) {
+        int i = skipSeparators(bytes, start, stop);
+        if (i == stop || bytes[i] == '#') return false;
+        boolean delete = false;
+        if ((bytes[i] == '+' || bytes[i] == '-') && (i + 1 == stop || isSeparator(bytes[i + 1]))) {
+            delete = bytes[i] == '-';
+            i = skipSeparators(bytes, i + 1, stop);
+        }
+        long[] fields = new long[2];
+        for (int field = 0; field < 2; field++) {
+            boolean negative = i < stop && bytes[i] == '-';
+            if (negative) i++;
+            int digits = i;
+            long value = 0;
+            while (i < stop && bytes[i] >= '0' && bytes[i] <= '9') {
+                value = value * 10 + (bytes[i++] - '0');
+            }
+            if (i == digits || value > Integer.MAX_VALUE) return false;
+            fields[field] = negative ? -value : value;
+            i = skipSeparators(bytes, i, stop);
+        }
+        if (pending == sources.length) {
+            int grown = Math.min(batchSize, sources.length * 2);
+            sources = Arrays.copyOf(sources, grown);
+            targets = Arrays.copyOf(targets, grown);
+            deletes = Arrays.copyOf(deletes, grown);
+        }
+        sources[pending] = (int) fields[0];
+        targets[pending] = (int) fields[1];
+        deletes[pending] = delete;
+        if (++pending == batchSize) flush();
+        return true;
+    }
+
+    private void flush() {
+        if (pending == 0) return;
+        graph.apply(sources, targets, deletes, pending);
+        pending = 0;
+    }
+
+    private static int skipSeparators(byte[] bytes, int i, int stop) {
+        while (i < stop && isSeparator(bytes[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == ',' || b == '\r';
+    }
+}
@@ -0,0 +1,145 @@
+package com.p2p.stream;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+
+// The state of a DynamicGraph after one batch, unchanged by later batches. In-degrees count
+// distinct sources. Triangles and clustering treat the graph as undirected: two nodes are
+// neighbours if an edge joins them either way, self-loops aside, and a node's clustering
+// coefficient is the share of its neighbour pairs that are neighbours themselves.
+public class GraphSnapshot {
+    private final long version;
+    private final int numVertices;
+    private final long numEdges;
+    private final long triangles;
+    private final long[][] ids;
+    private final long[][] inDegrees;
+    private final long[][] degrees;
+    private final long[][] vertexTriangles;
+    // Vertex indexes, highest in-degree first
+    private final int[] topByInDegree;
+    private final Map<Integer, Integer> index;
+    private final long createdAt = System.currentTimeMillis();
+    private double averageClustering = -1;
+
+    GraphSnapshot(long version, int numVertices, long numEdges, long triangles, long[][] ids, long[][] inDegrees,
+                  long[][] degrees, long[][] vertexTriangles, int[] topByInDegree, Map<Integer, Integer> index) {
+        this.version = version;
+        this.numVertices = numVertices;
+        this.numEdges = numEdges;
+        this.triangles = triangles;
+        this.ids = ids;
+        this.inDegrees = inDegrees;
+        this.degrees = degrees;
+        this.vertexTriangles = vertexTriangles;
+        this.topByInDegree = topByInDegree;
+        this.index = index;
+    }
+
+    // Number of batches applied
+    public long getVersion() {
+        return version;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int numVertices() {
+        return numVertices;
+    }
+
+    public long numEdges() {
+        return numEdges;
+    }
+
+    public long getTriangles() {
+        return triangles;
+    }
+
+    public int id(int v) {
+        return (int) Chunks.get(ids, v);
+    }
+
+    public int inDegree(int v) {
+        return (int) Chunks.get(inDegrees, v);
+    }
+
+    public long triangles(int v) {
+        return Chunks.get(vertexTriangles, v);
+    }
+
+    public double clustering(int v) {
+        long degree = Chunks.get(degrees, v);
+        return degree < 2 ? 0 : triangles(v) / (degree * (degree - 1) / 2.0);
+    }
+
+    // Vertex index of a node id in this snapshot, -1 if it had not appeared yet. The shared index
+    // only ever grows, so entries added after this snapshot are told apart by their index.
+    public int indexOf(int id) {
+        Integer v = index.get(id);
+        return v == null || v >= numVertices ? -1 : v;
+    }
+
+    // Mean of the local coefficients, worked out on first use
+    public synchronized double getAverageClustering() {
+        if (averageClustering < 0) {
+            double sum = 0;
+            for (int v = 0; v < numVertices; v++) {
+                sum += clustering(v);
+            }
+            averageClustering = numVertices == 0 ? 0 : sum / numVertices;
+        }
+        return averageClustering;
+    }
+
+    // Vertex indexes of the n highest in-degrees, ties by id; kept up to date batch by batch for
+    // up to DynamicGraph.RANKED nodes, beyond that found by a scan
+    public int[] topByInDegree(int n) {
+        if (Math.min(n, numVertices) <= topByInDegree.length) {
+            return Arrays.copyOf(topByInDegree, Math.min(n, numVertices));
+        }
+        return top(this::inDegree, this::id, n, numVertices);
+    }
+
+    // Vertex indexes of the n highest clustering coefficients, ties by id, by a scan
+    public int[] topByClustering(int n) {
+        return top(this::clustering, this::id, n, numVertices);
+    }
+
+    // The n of vertices 0..numVertices-1 with the highest scores, highest first, ties by id
+    static int[] top(IntToDoubleFunction score, IntToLongFunction id, int n, int numVertices) {
+        n = Math.min(n, numVertices);
+        // Worst of the current top n at the head
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.max(1, n), (a, b) -> {
+            int byScore = Double.compare(score.applyAsDouble(a), score.applyAsDouble(b));
+            return byScore != 0 ? byScore : Long.compare(id.applyAsLong(b), id.applyAsLong(a));
+        });
+        for (int v = 0; v < numVertices && n > 0; v++) {
+            if (best.size() < n) {
+                best.add(v);
+            } else if (best.comparator().compare(v, best.peek()) > 0) {
+                best.poll();
+                best.add(v);
+            }
+        }
+        int[] result = new int[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll();
+        }
+        return result;
+    }
+
+    public String getGraphStats() {
+        int maxInDegree = topByInDegree.length == 0 ? 0 : inDegree(topByInDegree[0]);
+        return "Live Graph Statistics (version " + version + "):\n" +
+                "- Nodes: " + numVertices + "\n" +
+                "- Edges: " + numEdges + "\n" +
+                "- Maximum in-degree: " + maxInDegree + "\n" +
+                "- Triangles: " + triangles + "\n" +
+                "- Average clustering coefficient: " + String.format("%.6f", getAverageClustering());
+    }
+}
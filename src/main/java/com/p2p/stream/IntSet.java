@@ -0,0 +1,91 @@
+package com.p2p.stream;
+
+import java.util.Arrays;
+
+// Set of non-negative ints by open addressing with linear probing, sized for the small neighbour
+// sets of most vertices. Removed slots are marked rather than emptied, and cleaned up on growth.
+final class IntSet {
+    private static final int EMPTY = -1;
+    private static final int REMOVED = -2;
+
+    private int[] slots = {EMPTY, EMPTY, EMPTY, EMPTY};
+    private int size;
+    // Occupied plus removed slots, which both lengthen probes
+    private int used;
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int value) {
+        int mask = slots.length - 1;
+        for (int i = hash(value) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == value) return true;
+            if (slot == EMPTY) return false;
+        }
+    }
+
+    // False if already present
+    boolean add(int value) {
+        if (contains(value)) return false;
+        if ((used + 1) * 2 > slots.length) {
+            rehash(size + 1 > slots.length / 4 ? slots.length * 2 : slots.length);
+        }
+        int mask = slots.length - 1;
+        int i = hash(value) & mask;
+        while (slots[i] >= 0) {
+            i = (i + 1) & mask;
+        }
+        if (slots[i] == EMPTY) used++;
+        slots[i] = value;
+        size++;
+        return true;
+    }
+
+    // False if absent
+    boolean remove(int value) {
+        int mask = slots.length - 1;
+        for (int i = hash(value) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == value) {
+                slots[i] = REMOVED;
+                size--;
+                return true;
+            }
+            if (slot == EMPTY) return false;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+        used = 0;
+    }
+
+    // The backing slots; members are the non-negative entries
+    int[] slots() {
+        return slots;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        int mask = capacity - 1;
+        for (int value : old) {
+            if (value < 0) continue;
+            int i = hash(value) & mask;
+            while (slots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = value;
+        }
+        used = size;
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
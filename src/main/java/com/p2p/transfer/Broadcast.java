@@ -0,0 +1,51 @@
+package com.p2p.transfer;
+
+import com.p2p.model.Chunk;
+import com.p2p.model.FileManifest;
+import com.p2p.model.Peer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Sends one local file to many peers through a distribution tree rooted at this node. The sender
+// feeds only its direct children; every peer stores each piece and forwards it down its own subtree,
+// so no single uplink carries the file more than fanout times. Fanout 1 builds a chain, which keeps
+// total time close to one transfer however many peers there are.
+public class Broadcast {
+    private final int fanout;
+    private final int pieceSize;
+
+    public Broadcast() {
+        this(BroadcastRelay.DEFAULT_FANOUT, ManifestCache.DEFAULT_PIECE_SIZE);
+    }
+
+    public Broadcast(int fanout, int pieceSize) {
+        this.fanout = fanout;
+        this.pieceSize = pieceSize;
+    }
+
+    // Returns the names of the peers that stored and verified the file
+    public List<String> send(Path source, List<Peer> peers) throws IOException {
+        String filename = source.getFileName().toString();
+        FileManifest manifest = ManifestCache.build(source, filename, Files.size(source), pieceSize);
+        BroadcastRelay relay = new BroadcastRelay(manifest);
+        relay.start(peers, fanout);
+
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            for (int piece = 0; piece < manifest.getPieceCount(); piece++) {
+                byte[] data = new byte[manifest.getPieceLength(piece)];
+                ChunkStore.readFully(channel, ByteBuffer.wrap(data), manifest.getPieceOffset(piece));
+                relay.forward(piece, Chunk.raw(data));
+            }
+        } catch (IOException e) {
+            relay.abort();
+            throw e;
+        }
+        return relay.finish();
+    }
+}
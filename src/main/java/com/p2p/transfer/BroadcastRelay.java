@@ -0,0 +1,171 @@
+package com.p2p.transfer;
+
+import com.p2p.model.Chunk;
+import com.p2p.model.FileManifest;
+import com.p2p.model.Peer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Forwarding half of a pipelined broadcast. Every piece a node receives is handed to its children
+// while the rest is still arriving, so a file reaches N peers in about one transfer time plus one
+// piece delay per tree level. Each child has a bounded queue drained by its own sender threads: a
+// slow child pushes back up the tree instead of letting pieces pile up in memory.
+public class BroadcastRelay {
+    public static final int DEFAULT_FANOUT = Integer.getInteger("p2p.broadcast.fanout", 1);
+    private static final int QUEUE_PIECES = 8;
+    private static final int SENDERS_PER_CHILD = 2;
+    private static final long STALL_TIMEOUT_SECONDS = 60;
+    private static final Piece END = new Piece(-1, null);
+
+    private final FileManifest manifest;
+    private final List<Child> children = new ArrayList<>();
+
+    public BroadcastRelay(FileManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    public FileManifest getManifest() {
+        return manifest;
+    }
+
+    // Splits the subtree into up to fanout groups; the head of each group becomes a child and relays
+    // to the rest of its group. A peer that can't be reached is skipped and the next one takes its place.
+    public void start(List<Peer> subtree, int fanout) {
+        int groups = Math.max(1, Math.min(fanout, subtree.size()));
+        for (int g = 0; g < groups; g++) {
+            List<Peer> group = new ArrayList<>(subtree.subList(
+                    g * subtree.size() / groups, (g + 1) * subtree.size() / groups));
+            while (!group.isEmpty()) {
+                Peer head = group.remove(0);
+                try {
+                    head.beginBroadcast(manifest.getFilename(), manifest, group, fanout);
+                    children.add(new Child(head));
+                    break;
+                } catch (RemoteException e) {
+                    System.out.println("Skipping unreachable peer in broadcast of "
+                            + manifest.getFilename() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void forward(int piece, Chunk chunk) throws IOException {
+        for (Child child : children) {
+            child.offer(new Piece(piece, chunk));
+        }
+    }
+
+    // Waits for every child to drain, then finishes their subtrees; returns the names of the peers
+    // below this node that stored the file
+    public List<String> finish() throws IOException {
+        for (Child child : children) {
+            child.offer(END);
+        }
+        List<String> delivered = new ArrayList<>();
+        for (Child child : children) {
+            child.join();
+            if (child.failure != null) {
+                System.out.println("Broadcast of " + manifest.getFilename() + " lost a subtree: " + child.failure.getMessage());
+                continue;
+            }
+            try {
+                delivered.addAll(child.peer.finishBroadcast(manifest.getFilename()));
+            } catch (RemoteException e) {
+                System.out.println("Broadcast of " + manifest.getFilename() + " lost a subtree: " + e.getMessage());
+            }
+        }
+        return delivered;
+    }
+
+    public void abort() {
+        for (Child child : children) {
+            child.fail(new IOException("Broadcast aborted"));
+        }
+    }
+
+    private static class Piece {
+        final int index;
+        final Chunk chunk;
+
+        Piece(int index, Chunk chunk) {
+            this.index = index;
+            this.chunk = chunk;
+        }
+    }
+
+    private class Child {
+        final Peer peer;
+        final BlockingQueue<Piece> queue = new ArrayBlockingQueue<>(QUEUE_PIECES);
+        final List<Thread> senders = new ArrayList<>();
+        volatile IOException failure;
+
+        Child(Peer peer) {
+            this.peer = peer;
+            for (int i = 0; i < SENDERS_PER_CHILD; i++) {
+                Thread sender = new Thread(this::send, "broadcast-" + manifest.getFilename());
+                sender.setDaemon(true);
+                sender.start();
+                senders.add(sender);
+            }
+        }
+
+        void offer(Piece piece) throws IOException {
+            try {
+                if (failure == null && !queue.offer(piece, STALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    fail(new IOException("Child stalled for " + STALL_TIMEOUT_SECONDS + "s"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while forwarding " + manifest.getFilename());
+            }
+        }
+
+        void send() {
+            try {
+                while (true) {
+                    Piece piece = queue.take();
+                    if (piece == END) {
+                        // Leave the marker for the other senders of this child
+                        queue.put(END);
+                        return;
+                    }
+                    if (failure == null) {
+                        try {
+                            peer.broadcastChunk(manifest.getFilename(), piece.index, piece.chunk);
+                        } catch (RemoteException e) {
+                            fail(e);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // A failed child drops its whole subtree; its queue is emptied so the parent never blocks on it
+        void fail(IOException e) {
+            failure = e;
+            do {
+                queue.clear();
+            } while (!queue.offer(END));
+        }
+
+        void join() throws InterruptedIOException {
+            try {
+                for (Thread sender : senders) {
+                    sender.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while finishing " + manifest.getFilename());
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.p2p.transfer;
+
+import com.p2p.model.FileManifest;
+import com.p2p.model.Peer;
+import com.p2p.model.TransferTicket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+// Client half of the bulk side channel: negotiates a ticket over RMI, then streams over NIO
+public class BulkTransferClient {
+
+    private BulkTransferClient() {}
+
+    // Fetches each run of missing pieces over the side channel into a resumable PieceFile, then
+    // lets ChunkedTransfer verify the whole file and re-request any piece that arrived damaged
+    public static long download(Peer source, String filename, Path target) throws IOException {
+        FileManifest manifest = source.getManifest(filename);
+        try (PieceFile pieces = PieceFile.open(target, manifest)) {
+            int[] missing = pieces.getMissingPieces();
+            int start = 0;
+            while (start < missing.length) {
+                int end = start + 1;
+                while (end < missing.length && missing[end] == missing[end - 1] + 1) {
+                    end++;
+                }
+                receiveRun(source, pieces, missing[start], missing[end - 1]);
+                start = end;
+            }
+            new ChunkedTransfer(manifest.getPieceSize(), ChunkedTransfer.DEFAULT_WINDOW).complete(source, pieces);
+        }
+        return manifest.getSize();
+    }
+
+    private static void receiveRun(Peer source, PieceFile pieces, int first, int last) throws IOException {
+        FileManifest manifest = pieces.getManifest();
+        long offset = manifest.getPieceOffset(first);
+        long length = manifest.getPieceOffset(last) + manifest.getPieceLength(last) - offset;
+        TransferTicket ticket = source.openDownload(manifest.getFilename(), offset, length);
+
+        try (SocketChannel channel = connect(ticket)) {
+            for (int piece = first; piece <= last; piece++) {
+                BulkTransferServer.receiveFile(channel, pieces.getChannel(),
+                        manifest.getPieceOffset(piece), manifest.getPieceLength(piece));
+                pieces.markReceived(piece);
+            }
+        }
+    }
+
+    // The mirror of download: sends each run of pieces the target is missing over the side channel
+    // into its resumable upload session, then lets ChunkedTransfer commit it, resending any piece
+    // the target's end-to-end check rejects
+    public static long upload(Peer target, Path source, FileManifest manifest) throws IOException {
+        BitSet missing = new BitSet(manifest.getPieceCount());
+        missing.set(0, manifest.getPieceCount());
+        missing.andNot(target.beginUpload(manifest.getFilename(), manifest));
+        try (FileChannel file = FileChannel.open(source, StandardOpenOption.READ)) {
+            int first = missing.nextSetBit(0);
+            while (first >= 0) {
+                int end = missing.nextClearBit(first);
+                sendRun(target, file, manifest, first, end - 1);
+                first = missing.nextSetBit(end);
+            }
+        }
+        new ChunkedTransfer(manifest.getPieceSize(), ChunkedTransfer.DEFAULT_WINDOW).upload(target, source, manifest);
+        return manifest.getSize();
+    }
+
+    private static void sendRun(Peer target, FileChannel file, FileManifest manifest, int first, int last) throws IOException {
+        long offset = manifest.getPieceOffset(first);
+        long length = manifest.getPieceOffset(last) + manifest.getPieceLength(last) - offset;
+        TransferTicket ticket = target.openUpload(manifest.getFilename(), offset, length);
+
+        try (SocketChannel channel = connect(ticket)) {
+            BulkTransferServer.sendFile(file, channel, offset, length);
+
+            // Wait for the receiver to confirm the pieces were stored
+            ByteBuffer ack = ByteBuffer.allocate(1);
+            if (channel.read(ack) != 1) {
+                throw new IOException("Receiver closed the bulk channel before acknowledging " + ticket.getFilename());
+            }
+        }
+    }
+
+    private static SocketChannel connect(TransferTicket ticket) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(ticket.getHost(), ticket.getPort()));
+        ByteBuffer header = ByteBuffer.allocate(Long.BYTES).putLong(ticket.getToken());
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,190 @@
+package com.p2p.transfer;
+
+import com.p2p.model.FileManifest;
+import com.p2p.model.TransferTicket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Side channel for bulk transfers. RMI only negotiates a ticket; the file then moves over a plain
+// SocketChannel with FileChannel.transferTo/transferFrom, so the kernel copies it (sendfile) and
+// nothing passes through Java serialization or the heap.
+public class BulkTransferServer {
+    private static final long TICKET_TTL_MS = 60_000;
+
+    private final ChunkStore store;
+    private final String host;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService handlers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "bulk-transfer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public BulkTransferServer(ChunkStore store, String host, int port) throws IOException {
+        this.store = store;
+        this.host = host;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+
+        Thread acceptor = new Thread(this::acceptLoop, "bulk-transfer-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Bulk transfer channel listening on port " + getPort());
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // Serves a byte range so interrupted downloads can resume with only the missing pieces
+    public TransferTicket openDownload(String filename, long offset, long length) throws IOException {
+        long size = store.size(filename);
+        if (offset < 0 || offset > size) {
+            throw new IOException("Offset " + offset + " outside of " + filename);
+        }
+        return register(new Pending(filename, offset, Math.min(length, size - offset), false));
+    }
+
+    // Receives a run of whole pieces into the upload session begun with ChunkStore.beginUpload, so
+    // an interrupted bulk upload resumes with only the missing pieces
+    public TransferTicket openUpload(String filename, long offset, long length) throws IOException {
+        FileManifest manifest = store.upload(filename).getManifest();
+        long end = offset + length;
+        if (offset < 0 || length <= 0 || end > manifest.getSize() || offset % manifest.getPieceSize() != 0
+                || (end % manifest.getPieceSize() != 0 && end != manifest.getSize())) {
+            throw new IOException("Range " + offset + "+" + length + " is not a run of pieces of " + filename);
+        }
+        return register(new Pending(filename, offset, length, true));
+    }
+
+    public void close() throws IOException {
+        serverChannel.close();
+        handlers.shutdownNow();
+    }
+
+    private TransferTicket register(Pending transfer) {
+        long token;
+        do {
+            token = random.nextLong();
+        } while (pending.putIfAbsent(token, transfer) != null);
+
+        // Drop tickets that were never redeemed
+        long now = System.currentTimeMillis();
+        pending.values().removeIf(p -> now - p.created > TICKET_TTL_MS);
+        return new TransferTicket(host, getPort(), token, transfer.filename, transfer.offset, transfer.size);
+    }
+
+    private void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel socket = serverChannel.accept();
+                handlers.execute(() -> handle(socket));
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void handle(SocketChannel socket) {
+        try (SocketChannel channel = socket) {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return;
+            }
+            header.flip();
+            Pending transfer = pending.remove(header.getLong());
+            if (transfer == null) {
+                System.out.println("Rejected bulk transfer with unknown token");
+                return;
+            }
+
+            if (transfer.upload) {
+                receive(channel, transfer);
+            } else {
+                send(channel, transfer);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void send(SocketChannel channel, Pending transfer) throws IOException {
+        try (FileChannel file = FileChannel.open(store.resolve(transfer.filename), StandardOpenOption.READ)) {
+            sendFile(file, channel, transfer.offset, transfer.size);
+        }
+    }
+
+    // Pieces are only marked received here; finishUpload verifies them all before the file is committed
+    private void receive(SocketChannel channel, Pending transfer) throws IOException {
+        PieceFile pieces = store.upload(transfer.filename);
+        FileManifest manifest = pieces.getManifest();
+        int first = (int) (transfer.offset / manifest.getPieceSize());
+        long end = transfer.offset + transfer.size;
+        for (int piece = first; piece < manifest.getPieceCount() && manifest.getPieceOffset(piece) < end; piece++) {
+            receiveFile(channel, pieces.getChannel(), manifest.getPieceOffset(piece), manifest.getPieceLength(piece));
+            pieces.markReceived(piece);
+        }
+        pieces.checkpoint();
+
+        // Acknowledge so the sender knows the pieces are durable before it returns
+        channel.write(ByteBuffer.wrap(new byte[]{1}));
+        System.out.println("Received " + transfer.size + " bytes of " + transfer.filename + " via bulk channel");
+    }
+
+    static void sendFile(FileChannel file, SocketChannel channel, long offset, long length) throws IOException {
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            long sent = file.transferTo(position, end - position, channel);
+            if (sent <= 0 && position < file.size()) continue;
+            if (sent <= 0) throw new IOException("File shrank during transfer at " + position);
+            position += sent;
+        }
+    }
+
+    static void receiveFile(SocketChannel channel, FileChannel file, long offset, long length) throws IOException {
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            long received = file.transferFrom(channel, position, end - position);
+            if (received <= 0) {
+                throw new IOException("Connection closed after " + (position - offset) + " of " + length + " bytes");
+            }
+            position += received;
+        }
+    }
+
+    private static class Pending {
+        final String filename;
+        final long offset;
+        final long size;
+        final boolean upload;
+        final long created = System.currentTimeMillis();
+
+        Pending(String filename, long offset, long size, boolean upload) {
+            this.filename = filename;
+            this.offset = offset;
+            this.size = size;
+            this.upload = upload;
+        }
+    }
+}
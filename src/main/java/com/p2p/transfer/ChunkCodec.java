@@ -0,0 +1,100 @@
+package com.p2p.transfer;
+
+import com.p2p.model.Chunk;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Per-chunk Deflate. Chunks that don't shrink by at least 10% (already-gzipped data, random
+// bytes) are sent raw. Each chunk is compressed on the thread that sends it, so compression runs
+// as parallel as the window of in-flight chunks (see CompressionPolicy).
+public class ChunkCodec {
+    private static final double MAX_USEFUL_RATIO = 0.9;
+    private static final int SAMPLE_SIZE = 16 * 1024;
+
+    private ChunkCodec() {}
+
+    public static Chunk encode(byte[] raw, int level) {
+        if (level <= 0 || raw.length == 0) {
+            return Chunk.raw(raw);
+        }
+        return deflate(raw, level);
+    }
+
+    public static byte[] decode(Chunk chunk) throws IOException {
+        if (!chunk.isCompressed()) {
+            return chunk.getData();
+        }
+        // The length comes from the sender; check it before allocating for it
+        if (chunk.getRawLength() < 0 || chunk.getRawLength() > ChunkStore.MAX_CHUNK_SIZE) {
+            throw new IOException("Compressed chunk claims " + chunk.getRawLength() + " bytes");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(chunk.getData());
+            byte[] raw = new byte[chunk.getRawLength()];
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += n;
+            }
+            if (length != raw.length) {
+                throw new IOException("Chunk inflated to " + length + " bytes, expected " + raw.length);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed chunk", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static Chunk deflate(byte[] raw, int level) {
+        long start = System.nanoTime();
+        // Try a small sample first so incompressible chunks cost almost nothing
+        if (raw.length > 4 * SAMPLE_SIZE && deflatedLength(raw, SAMPLE_SIZE, level) < 0) {
+            return new Chunk(raw, raw.length, false, System.nanoTime() - start);
+        }
+
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            // Output is capped below the raw size; if it doesn't fit, the chunk isn't worth compressing
+            byte[] out = new byte[(int) (raw.length * MAX_USEFUL_RATIO)];
+            int length = 0;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (!deflater.finished()) {
+                return new Chunk(raw, raw.length, false, elapsed);
+            }
+            byte[] data = new byte[length];
+            System.arraycopy(out, 0, data, 0, length);
+            return new Chunk(data, raw.length, true, elapsed);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Compressed size of the first length bytes, or -1 if they don't shrink enough
+    private static int deflatedLength(byte[] raw, int length, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            byte[] out = new byte[(int) (length * MAX_USEFUL_RATIO)];
+            int written = 0;
+            while (!deflater.finished() && written < out.length) {
+                written += deflater.deflate(out, written, out.length - written);
+            }
+            return deflater.finished() ? written : -1;
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.p2p.transfer;
+
+import com.p2p.model.FileManifest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serves and receives fixed-size chunks of files in a peer directory.
+// Only the requested chunk is ever held in memory, so heap use does not depend on file size.
+// Incoming uploads land in a PieceFile, so an upload interrupted by a network failure or a restart
+// of this peer resumes with only the missing pieces.
+public class ChunkStore {
+    public static final int MAX_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final Path directory;
+    private final Map<String, PieceFile> uploads = new ConcurrentHashMap<>();
+
+    public ChunkStore(Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    public long size(String filename) throws IOException {
+        return Files.size(resolve(filename));
+    }
+
+    public byte[] read(String filename, long offset, int length) throws IOException {
+        if (length <= 0 || length > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk length: " + length);
+        }
+        try (FileChannel channel = FileChannel.open(resolve(filename), StandardOpenOption.READ)) {
+            long remaining = channel.size() - offset;
+            if (offset < 0 || remaining < 0) {
+                throw new IOException("Offset " + offset + " outside of " + filename);
+            }
+            byte[] data = new byte[(int) Math.min(length, remaining)];
+            readFully(channel, ByteBuffer.wrap(data), offset);
+            return data;
+        }
+    }
+
+    // Returns the pieces already present from an earlier attempt at the same file version
+    public BitSet beginUpload(String filename, FileManifest manifest) throws IOException {
+        if (manifest.getPieceSize() > MAX_CHUNK_SIZE) {
+            throw new IOException("Piece size too large: " + manifest.getPieceSize());
+        }
+        // Decided under the map's lock for this name, so concurrent begins (a reconnect racing a
+        // broadcast) share one session instead of both opening the .part file
+        IOException[] failure = new IOException[1];
+        PieceFile pieces = uploads.compute(filename, (name, previous) -> {
+            if (previous != null && previous.getManifest().sameContentAs(manifest)) {
+                // The sender reconnected after a network failure; keep the live session
+                return previous;
+            }
+            try {
+                if (previous != null) {
+                    previous.close();
+                }
+                return PieceFile.open(resolve(name), manifest);
+            } catch (IOException e) {
+                failure[0] = e;
+                return null;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return pieces.getCompleted();
+    }
+
+    public void write(String filename, long offset, byte[] data) throws IOException {
+        PieceFile pieces = upload(filename);
+        int pieceSize = pieces.getManifest().getPieceSize();
+        if (offset % pieceSize != 0) {
+            throw new IOException("Chunk at " + offset + " is not aligned to a piece of " + filename);
+        }
+        if (!pieces.writePiece((int) (offset / pieceSize), data)) {
+            throw new IOException("Chunk at " + offset + " of " + filename + " failed verification");
+        }
+    }
+
+    public void finishUpload(String filename) throws IOException {
+        PieceFile pieces = upload(filename);
+        if (!pieces.commit()) {
+            throw new IOException("Upload of " + filename + " is incomplete or failed verification");
+        }
+        uploads.remove(filename, pieces);
+    }
+
+    // The live upload session that bulk-channel pieces are written into
+    PieceFile upload(String filename) throws IOException {
+        PieceFile pieces = uploads.get(filename);
+        if (pieces == null) {
+            throw new IOException("No upload in progress for " + filename);
+        }
+        return pieces;
+    }
+
+    public Path resolve(String filename) throws IOException {
+        Path path = directory.resolve(filename).normalize();
+        if (!path.getParent().equals(directory)) {
+            throw new IOException("Invalid filename: " + filename);
+        }
+        return path;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += read;
+        }
+    }
+}
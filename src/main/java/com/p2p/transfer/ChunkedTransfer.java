@@ -0,0 +1,174 @@
+package com.p2p.transfer;
+
+import com.p2p.model.Chunk;
+import com.p2p.model.FileManifest;
+import com.p2p.model.Peer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Streams a file between peers as fixed-size chunks with a sliding window of in-flight requests.
+// Each window slot is one worker thread that pulls the next chunk index, so at most
+// window * chunkSize bytes are buffered regardless of the file size.
+// Chunks are the pieces of the file's manifest and land in a PieceFile, so an interrupted
+// transfer resumes by requesting only the pieces that are still missing.
+// Each chunk is compressed or not as the CompressionPolicy decides from the observed ratio,
+// compressor speed and link speed.
+public class ChunkedTransfer {
+    public static final int DEFAULT_CHUNK_SIZE = ManifestCache.DEFAULT_PIECE_SIZE;
+    public static final int DEFAULT_WINDOW = 8;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final int chunkSize;
+    private final int window;
+    private final int compressionLevel;
+
+    public ChunkedTransfer() {
+        this(DEFAULT_CHUNK_SIZE, DEFAULT_WINDOW);
+    }
+
+    public ChunkedTransfer(int chunkSize, int window) {
+        this(chunkSize, window, CompressionPolicy.DEFAULT_LEVEL);
+    }
+
+    // compressionLevel is a java.util.zip.Deflater level; 0 disables compression
+    public ChunkedTransfer(int chunkSize, int window, int compressionLevel) {
+        if (chunkSize <= 0 || chunkSize > ChunkStore.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + ChunkStore.MAX_CHUNK_SIZE);
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.window = window;
+        this.compressionLevel = compressionLevel;
+    }
+
+    // Downloads (or resumes downloading) a file from the source peer into target
+    public TransferStats download(Peer source, String filename, Path target) throws IOException {
+        FileManifest manifest = source.getManifest(filename);
+        try (PieceFile pieces = PieceFile.open(target, manifest)) {
+            return complete(source, pieces);
+        }
+    }
+
+    // Fetches whatever is missing until the file passes its end-to-end check, then moves it into place
+    public TransferStats complete(Peer source, PieceFile pieces) throws IOException {
+        TransferStats stats = new TransferStats();
+        CompressionPolicy policy = new CompressionPolicy(compressionLevel, window);
+        for (int attempt = 1; ; attempt++) {
+            fetchMissing(source, pieces, policy, stats);
+            if (pieces.commit()) {
+                stats.finish();
+                return stats;
+            }
+            if (attempt == MAX_ATTEMPTS) {
+                throw new IOException("Giving up on " + pieces.getManifest().getFilename() + " after " + attempt + " attempts");
+            }
+        }
+    }
+
+    private void fetchMissing(Peer source, PieceFile pieces, CompressionPolicy policy, TransferStats stats)
+            throws IOException {
+        FileManifest manifest = pieces.getManifest();
+        runWindowed(pieces.getMissingPieces(), piece -> {
+            long start = System.nanoTime();
+            Chunk chunk = source.readChunk(manifest.getFilename(),
+                    manifest.getPieceOffset(piece), manifest.getPieceLength(piece), policy.nextLevel());
+            policy.record(chunk, System.nanoTime() - start);
+            stats.record(chunk);
+            pieces.writePiece(piece, ChunkCodec.decode(chunk));
+        });
+        pieces.checkpoint();
+    }
+
+    // Uploads a local file, described by its manifest (see ManifestCache), to the target peer's
+    // uploads directory. Pieces the target already holds from an earlier interrupted attempt, or
+    // from the bulk channel, are skipped; pieces that fail the target's end-to-end check are sent again.
+    public TransferStats upload(Peer target, Path source, FileManifest manifest) throws IOException {
+        String filename = manifest.getFilename();
+        TransferStats stats = new TransferStats();
+        CompressionPolicy policy = new CompressionPolicy(compressionLevel, window);
+        for (int attempt = 1; ; attempt++) {
+            BitSet missing = new BitSet(manifest.getPieceCount());
+            missing.set(0, manifest.getPieceCount());
+            missing.andNot(target.beginUpload(filename, manifest));
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                runWindowed(missing.stream().toArray(), piece -> {
+                    byte[] data = new byte[manifest.getPieceLength(piece)];
+                    ChunkStore.readFully(channel, ByteBuffer.wrap(data), manifest.getPieceOffset(piece));
+                    long start = System.nanoTime();
+                    Chunk chunk = ChunkCodec.encode(data, policy.nextLevel());
+                    target.writeChunk(filename, manifest.getPieceOffset(piece), chunk);
+                    policy.record(chunk, System.nanoTime() - start);
+                    stats.record(chunk);
+                });
+            }
+            try {
+                target.finishUpload(filename);
+                stats.finish();
+                return stats;
+            } catch (RemoteException e) {
+                // The failed pieces are missing again on the target; the next round resends them
+                if (attempt == MAX_ATTEMPTS) throw e;
+            }
+        }
+    }
+
+    private void runWindowed(int[] pieces, ChunkAction action) throws IOException {
+        if (pieces.length == 0) {
+            return;
+        }
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(window, pieces.length);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(() -> {
+                int index;
+                try {
+                    while ((index = next.getAndIncrement()) < pieces.length) {
+                        action.apply(pieces[index]);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Stop the other workers from pulling new chunks
+                    next.set(pieces.length);
+                    throw e;
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Chunk transfer failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Chunk transfer interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void apply(int piece) throws IOException;
+    }
+}
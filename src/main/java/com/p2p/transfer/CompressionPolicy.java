@@ -0,0 +1,65 @@
+package com.p2p.transfer;
+
+import com.p2p.model.Chunk;
+
+// Decides per chunk whether to ask for compression. Compression only pays off when the data
+// shrinks and the compressors outrun the link. Each in-flight chunk is compressed on its own sending
+// thread, so up to min(concurrency, cores) compress at once and a chunk costs
+// max(raw / compressRate, ratio * raw / linkRate) instead of raw / linkRate.
+// Until both rates are known chunks go raw, except that every PROBE_INTERVAL-th chunk is compressed
+// regardless, so the estimates follow changes in the data and in the link.
+public class CompressionPolicy {
+    public static final int DEFAULT_LEVEL = Integer.getInteger("p2p.compression.level", 1);
+    private static final int PROBE_INTERVAL = 16;
+    private static final double MAX_USEFUL_RATIO = 0.9;
+    private static final double SMOOTHING = 0.2;
+
+    private final int level;
+    private final int compressorThreads;
+    private final int concurrency;
+    private double ratio = 0.5;
+    private double compressRate = Double.NaN; // raw bytes per second on one compressor thread
+    private double linkRate = Double.NaN;     // wire bytes per second across all in-flight chunks
+    private long chunks;
+
+    public CompressionPolicy(int level, int concurrency) {
+        this(level, Math.min(concurrency, Runtime.getRuntime().availableProcessors()), concurrency);
+    }
+
+    public CompressionPolicy(int level, int compressorThreads, int concurrency) {
+        this.level = level;
+        this.compressorThreads = compressorThreads;
+        this.concurrency = concurrency;
+    }
+
+    public synchronized int nextLevel() {
+        if (level <= 0) {
+            return 0;
+        }
+        if (chunks++ % PROBE_INTERVAL == 1) {
+            return level;
+        }
+        return worthCompressing() ? level : 0;
+    }
+
+    // elapsedNanos covers the whole request, including the sender's compression time
+    public synchronized void record(Chunk chunk, long elapsedNanos) {
+        if (chunk.getCompressNanos() > 0) {
+            ratio = smooth(ratio, chunk.getWireLength() / (double) Math.max(1, chunk.getRawLength()));
+            compressRate = smooth(compressRate, chunk.getRawLength() * 1e9 / chunk.getCompressNanos());
+        }
+        long networkNanos = Math.max(1, elapsedNanos - chunk.getCompressNanos());
+        linkRate = smooth(linkRate, chunk.getWireLength() * 1e9 * concurrency / networkNanos);
+    }
+
+    public synchronized boolean worthCompressing() {
+        if (Double.isNaN(compressRate) || Double.isNaN(linkRate)) {
+            return false;
+        }
+        return ratio < MAX_USEFUL_RATIO && compressRate * compressorThreads > linkRate;
+    }
+
+    private static double smooth(double current, double sample) {
+        return Double.isNaN(current) ? sample : current + SMOOTHING * (sample - current);
+    }
+}
@@ -0,0 +1,137 @@
+package com.p2p.transfer;
+
+import com.p2p.model.DeltaBatch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Receiver side of the delta protocol: rebuilds the new version from blocks of the existing copy
+// plus literals, verifies the whole-file hash and then replaces the old copy atomically
+public class DeltaReceiver {
+    private final ChunkStore store;
+    private final SignatureCache signatures;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public DeltaReceiver(ChunkStore store, SignatureCache signatures) {
+        this.store = store;
+        this.signatures = signatures;
+    }
+
+    public void begin(String filename, int blockSize) throws IOException {
+        if (blockSize < DeltaSync.MIN_BLOCK_SIZE || blockSize > DeltaSync.MAX_BLOCK_SIZE) {
+            throw new IOException("Unsupported delta block size " + blockSize);
+        }
+        Path base = store.resolve(filename);
+        Path partial = store.resolve(filename + ".delta");
+        Session session = new Session(blockSize,
+                FileChannel.open(base, StandardOpenOption.READ),
+                FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING));
+        Session previous = sessions.put(filename, session);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public void apply(String filename, DeltaBatch batch) throws IOException {
+        Session session = session(filename);
+        synchronized (session) {
+            byte[] literals = batch.getLiterals();
+            int literalOffset = 0;
+            for (int op : batch.getOps()) {
+                if (op >= 0) {
+                    // Only full blocks of the base are matched; a tail shorter than a block goes as literals
+                    if (op >= session.baseBlocks) {
+                        throw new IOException("Delta refers to block " + op + " of " + filename
+                                + ", which has " + session.baseBlocks);
+                    }
+                    session.block.clear();
+                    ChunkStore.readFully(session.base, session.block, (long) op * session.blockSize);
+                    session.block.flip();
+                    session.sha256.update(session.block.array(), 0, session.blockSize);
+                    session.write(session.block);
+                } else {
+                    int length = -op;
+                    if (length <= 0 || length > literals.length - literalOffset) {
+                        throw new IOException("Delta literal of " + length + " bytes overruns its batch for " + filename);
+                    }
+                    session.sha256.update(literals, literalOffset, length);
+                    session.write(ByteBuffer.wrap(literals, literalOffset, length));
+                    literalOffset += length;
+                }
+            }
+        }
+    }
+
+    public void finish(String filename, long size, byte[] sha256) throws IOException {
+        Session session = sessions.remove(filename);
+        if (session == null) {
+            throw new IOException("No delta transfer in progress for " + filename);
+        }
+        Path partial = store.resolve(filename + ".delta");
+        boolean valid;
+        synchronized (session) {
+            valid = session.position == size && Arrays.equals(session.sha256.digest(), sha256);
+            session.output.force(false);
+            session.close();
+        }
+        if (!valid) {
+            Files.deleteIfExists(partial);
+            throw new IOException("Delta reconstruction of " + filename + " failed verification");
+        }
+        Files.move(partial, store.resolve(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        signatures.invalidate(filename);
+    }
+
+    private Session session(String filename) throws IOException {
+        Session session = sessions.get(filename);
+        if (session == null) {
+            throw new IOException("No delta transfer in progress for " + filename);
+        }
+        return session;
+    }
+
+    private static class Session {
+        final int blockSize;
+        final FileChannel base;
+        final FileChannel output;
+        final long baseBlocks;
+        final ByteBuffer block;
+        final MessageDigest sha256;
+        long position;
+
+        Session(int blockSize, FileChannel base, FileChannel output) throws IOException {
+            this.blockSize = blockSize;
+            this.base = base;
+            this.baseBlocks = base.size() / blockSize;
+            this.output = output;
+            this.block = ByteBuffer.allocate(blockSize);
+            try {
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += output.write(buffer, position);
+            }
+        }
+
+        void close() throws IOException {
+            base.close();
+            output.close();
+        }
+    }
+}
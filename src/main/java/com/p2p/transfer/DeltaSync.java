@@ -0,0 +1,241 @@
+package com.p2p.transfer;
+
+import com.p2p.model.BlockSignature;
+import com.p2p.model.DeltaBatch;
+import com.p2p.model.Peer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// Sender side of the rsync-style delta protocol. The receiver sends block signatures of its
+// existing copy; we slide a rolling checksum over our version and transmit only block
+// references plus the literal bytes that don't match any block.
+public class DeltaSync {
+    public static final int MIN_BLOCK_SIZE = 2 * 1024;
+    public static final int MAX_BLOCK_SIZE = 128 * 1024;
+    private static final int BATCH_LITERAL_BYTES = 1024 * 1024;
+    private static final int BATCH_OPS = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private DeltaSync() {}
+
+    // Roughly sqrt(size), as rsync does, rounded to a power of two
+    public static int chooseBlockSize(long size) {
+        int root = (int) Math.min(MAX_BLOCK_SIZE, Math.sqrt((double) size));
+        return Math.max(MIN_BLOCK_SIZE, Integer.highestOneBit(Math.max(1, root)));
+    }
+
+    // Returns null if the target has no copy of the file to diff against
+    public static Result upload(Peer target, Path source) throws IOException {
+        String filename = source.getFileName().toString();
+        long size = Files.size(source);
+        BlockSignature signature = target.getBlockSignature(filename, chooseBlockSize(size));
+        if (signature == null) {
+            return null;
+        }
+
+        target.beginDelta(filename, signature.getBlockSize());
+        Result result = encode(source, signature, batch -> target.applyDelta(filename, batch));
+        target.finishDelta(filename, size, result.sha256);
+        return result;
+    }
+
+    public static Result encode(Path source, BlockSignature signature, BatchSink sink) throws IOException {
+        int blockSize = signature.getBlockSize();
+        BlockIndex index = new BlockIndex(signature);
+        Encoder out = new Encoder(sink, blockSize);
+        byte[] buf = new byte[Math.max(READ_BUFFER_SIZE, 4 * blockSize)];
+        RollingChecksum checksum = new RollingChecksum(blockSize);
+        MessageDigest md5 = SignatureCache.md5();
+
+        try (InputStream in = Files.newInputStream(source)) {
+            int len = 0;
+            int pos = 0;
+            int literalStart = 0;
+            boolean eof = false;
+            boolean rolling = false;
+
+            while (true) {
+                // Need one byte past the window to roll; compact and refill when we run out
+                if (!eof && pos + blockSize >= len) {
+                    out.literal(buf, literalStart, pos - literalStart);
+                    System.arraycopy(buf, pos, buf, 0, len - pos);
+                    len -= pos;
+                    pos = 0;
+                    literalStart = 0;
+                    while (len < buf.length) {
+                        int read = in.read(buf, len, buf.length - len);
+                        if (read < 0) {
+                            eof = true;
+                            break;
+                        }
+                        len += read;
+                    }
+                    continue;
+                }
+                if (pos + blockSize > len) break;
+
+                if (!rolling) {
+                    checksum.reset(buf, pos);
+                    rolling = true;
+                }
+                int block = index.find(checksum.value(), buf, pos, md5);
+                if (block >= 0) {
+                    out.literal(buf, literalStart, pos - literalStart);
+                    out.block(block, buf, pos);
+                    pos += blockSize;
+                    literalStart = pos;
+                    rolling = false;
+                    continue;
+                }
+
+                if (pos + blockSize == len) break;
+                checksum.roll(buf[pos], buf[pos + blockSize]);
+                pos++;
+            }
+            out.literal(buf, literalStart, len - literalStart);
+        }
+        return out.finish();
+    }
+
+    @FunctionalInterface
+    public interface BatchSink {
+        void send(DeltaBatch batch) throws IOException;
+    }
+
+    public static class Result {
+        private final long literalBytes;
+        private final long matchedBytes;
+        private final byte[] sha256;
+
+        Result(long literalBytes, long matchedBytes, byte[] sha256) {
+            this.literalBytes = literalBytes;
+            this.matchedBytes = matchedBytes;
+            this.sha256 = sha256;
+        }
+
+        public long getLiteralBytes() {
+            return literalBytes;
+        }
+
+        public long getMatchedBytes() {
+            return matchedBytes;
+        }
+
+        public byte[] getSha256() {
+            return sha256;
+        }
+
+        @Override
+        public String toString() {
+            long total = literalBytes + matchedBytes;
+            return String.format("%d of %d bytes sent as literals (%.1f%%), %d bytes reused",
+                    literalBytes, total, total == 0 ? 0.0 : 100.0 * literalBytes / total, matchedBytes);
+        }
+    }
+
+    // Weak checksum -> block chains in flat arrays, so each rolled byte costs one array probe
+    private static class BlockIndex {
+        final BlockSignature signature;
+        final int[] heads;
+        final int[] next;
+        final int mask;
+
+        BlockIndex(BlockSignature signature) {
+            this.signature = signature;
+            int blocks = signature.getBlockCount();
+            int capacity = Integer.highestOneBit(Math.max(16, blocks * 2 - 1)) << 1;
+            heads = new int[capacity];
+            next = new int[blocks];
+            mask = capacity - 1;
+            Arrays.fill(heads, -1);
+            // Insert in reverse so chains list lower block indexes first
+            for (int block = blocks - 1; block >= 0; block--) {
+                int slot = mix(signature.getWeak(block)) & mask;
+                next[block] = heads[slot];
+                heads[slot] = block;
+            }
+        }
+
+        int find(int weak, byte[] data, int offset, MessageDigest md5) {
+            byte[] strong = null;
+            for (int block = heads[mix(weak) & mask]; block >= 0; block = next[block]) {
+                if (signature.getWeak(block) != weak) continue;
+                if (strong == null) {
+                    md5.update(data, offset, signature.getBlockSize());
+                    strong = md5.digest();
+                }
+                if (Arrays.equals(strong, signature.getStrong(block))) {
+                    return block;
+                }
+            }
+            return -1;
+        }
+
+        static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // Accumulates ops and literals into bounded batches and hashes the reconstructed stream
+    private static class Encoder {
+        final BatchSink sink;
+        final int blockSize;
+        final MessageDigest sha256;
+        int[] ops = new int[BATCH_OPS];
+        int opCount;
+        byte[] literals = new byte[BATCH_LITERAL_BYTES];
+        int literalCount;
+        long literalBytes;
+        long matchedBytes;
+
+        Encoder(BatchSink sink, int blockSize) {
+            this.sink = sink;
+            this.blockSize = blockSize;
+            try {
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        void literal(byte[] data, int offset, int length) throws IOException {
+            sha256.update(data, offset, length);
+            literalBytes += length;
+            while (length > 0) {
+                if (literalCount == literals.length || opCount == ops.length) flush();
+                int n = Math.min(length, literals.length - literalCount);
+                System.arraycopy(data, offset, literals, literalCount, n);
+                literalCount += n;
+                ops[opCount++] = -n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void block(int block, byte[] data, int offset) throws IOException {
+            sha256.update(data, offset, blockSize);
+            matchedBytes += blockSize;
+            if (opCount == ops.length) flush();
+            ops[opCount++] = block;
+        }
+
+        void flush() throws IOException {
+            if (opCount == 0) return;
+            sink.send(new DeltaBatch(Arrays.copyOf(ops, opCount), Arrays.copyOf(literals, literalCount)));
+            opCount = 0;
+            literalCount = 0;
+        }
+
+        Result finish() throws IOException {
+            flush();
+            return new Result(literalBytes, matchedBytes, sha256.digest());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.p2p.transfer;
+
+import com.p2p.model.FileSummary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+// Bloom filter summary of the files shared from a peer directory. The directory is scanned once;
+// after that a WatchService feeds each create and delete into a counting filter, so the summary
+// follows the directory without rescanning it. Transfer temp files are never listed.
+public class FileIndex implements Closeable {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_CAPACITY = 1024;
+    private static final String[] TEMP_SUFFIXES = {".part", ".bitmap", ".bulk", ".delta", ".tmp"};
+
+    private final Path directory;
+    private final WatchService watcher;
+    private final Set<String> names = new HashSet<>();
+    private byte[] counters;
+    private int numHashes;
+    private int capacity;
+    private long version;
+
+    public FileIndex(Path directory) throws IOException {
+        this.directory = directory;
+        this.watcher = directory.getFileSystem().newWatchService();
+        // Watch before scanning so a file created in between is not missed
+        directory.register(watcher, ENTRY_CREATE, ENTRY_DELETE);
+        rescan();
+
+        Thread thread = new Thread(this::watch, "file-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Changes whenever the set of files changes, so callers can tell when to publish again
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized FileSummary getSummary() {
+        long[] bits = new long[(counters.length + 63) / 64];
+        for (int i = 0; i < counters.length; i++) {
+            if (counters[i] != 0) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+        return new FileSummary(bits, counters.length, numHashes, names.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        rescan();
+                    } else if (event.kind() == ENTRY_CREATE) {
+                        add(event.context().toString());
+                    } else {
+                        remove(event.context().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    System.out.println("Stopped watching " + directory + ": directory no longer accessible");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        } catch (IOException e) {
+            System.out.println("Stopped watching " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void add(String name) {
+        if (isTempFile(name) || !Files.isRegularFile(directory.resolve(name)) || !names.add(name)) {
+            return;
+        }
+        if (names.size() > capacity) {
+            resize();
+        } else {
+            for (int index : FileSummary.indexes(name, counters.length, numHashes)) {
+                // Counters stick at 255 rather than wrap, so a saturated slot is never cleared wrongly
+                if (counters[index] != (byte) 0xff) counters[index]++;
+            }
+        }
+        version++;
+    }
+
+    private synchronized void remove(String name) {
+        if (!names.remove(name)) {
+            return;
+        }
+        for (int index : FileSummary.indexes(name, counters.length, numHashes)) {
+            if (counters[index] != (byte) 0xff && counters[index] != 0) counters[index]--;
+        }
+        version++;
+    }
+
+    private synchronized void rescan() throws IOException {
+        names.clear();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!isTempFile(name) && Files.isRegularFile(file)) {
+                    names.add(name);
+                }
+            }
+        }
+        resize();
+        version++;
+    }
+
+    // Sizes the filter for twice the current file count at the target false-positive rate
+    private void resize() {
+        capacity = Math.max(MIN_CAPACITY, names.size() * 2);
+        int numBits = (int) Math.ceil(-capacity * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+        numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+        counters = new byte[numBits];
+        for (String name : names) {
+            for (int index : FileSummary.indexes(name, numBits, numHashes)) {
+                if (counters[index] != (byte) 0xff) counters[index]++;
+            }
+        }
+    }
+
+    private static boolean isTempFile(String name) {
+        for (String suffix : TEMP_SUFFIXES) {
+            if (name.endsWith(suffix)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,93 @@
+package com.p2p.transfer;
+
+import com.p2p.model.FileManifest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// Builds piece manifests for files in a peer directory, or for any local file about to be sent,
+// hashing pieces in parallel. Manifests are cached per file version (size + modification time) so
+// seeding and repeated uploads are cheap.
+public class ManifestCache {
+    public static final int DEFAULT_PIECE_SIZE = 1024 * 1024;
+
+    private final ChunkStore store;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    public ManifestCache(ChunkStore store) {
+        this.store = store;
+    }
+
+    public FileManifest getManifest(String filename) throws IOException {
+        return getManifest(store.resolve(filename));
+    }
+
+    // Named by the file's own name, as the receiver will store it
+    public FileManifest getManifest(Path path) throws IOException {
+        String key = path.toAbsolutePath().normalize().toString();
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+
+        Entry entry = cache.get(key);
+        if (entry != null && entry.size == size && entry.modified == modified) {
+            return entry.manifest;
+        }
+
+        FileManifest manifest = build(path, path.getFileName().toString(), size, DEFAULT_PIECE_SIZE);
+        cache.put(key, new Entry(size, modified, manifest));
+        return manifest;
+    }
+
+    public static FileManifest build(Path path, String filename, long size, int pieceSize) throws IOException {
+        int pieces = (int) ((size + pieceSize - 1) / pieceSize);
+        byte[][] hashes = new byte[pieces][];
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            IntStream.range(0, pieces).parallel().forEach(piece -> {
+                long offset = (long) piece * pieceSize;
+                byte[] data = new byte[(int) Math.min(pieceSize, size - offset)];
+                try {
+                    ChunkStore.readFully(channel, ByteBuffer.wrap(data), offset);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                hashes[piece] = sha256(data, data.length);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new FileManifest(filename, size, pieceSize, hashes);
+    }
+
+    public static byte[] sha256(byte[] data, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, 0, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final FileManifest manifest;
+
+        Entry(long size, long modified, FileManifest manifest) {
+            this.size = size;
+            this.modified = modified;
+            this.manifest = manifest;
+        }
+    }
+}
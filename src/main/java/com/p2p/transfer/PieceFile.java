@@ -0,0 +1,219 @@
+package com.p2p.transfer;
+
+import com.p2p.model.FileManifest;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+// A transfer in progress: pieces are written straight into a preallocated sparse <file>.part and a
+// completion bitmap is persisted next to it in <file>.part.bitmap. Reopening the same target for the
+// same manifest resumes where the previous attempt stopped, even after a crash or restart.
+public class PieceFile implements Closeable {
+    private static final int MAGIC = 0x50325042; // "P2PB"
+    private static final int CHECKPOINT_PIECES = 16;
+    private static final long CHECKPOINT_INTERVAL_MS = 2000;
+
+    private final Path target;
+    private final Path partial;
+    private final Path bitmapPath;
+    private final FileManifest manifest;
+    private final FileChannel channel;
+    private final BitSet completed;
+    private final Object checkpointLock = new Object();
+    private int sinceCheckpoint;
+    private long lastCheckpoint = System.currentTimeMillis();
+
+    private PieceFile(Path target, FileManifest manifest, FileChannel channel, BitSet completed) {
+        this.target = target;
+        this.partial = partialPath(target);
+        this.bitmapPath = bitmapPath(target);
+        this.manifest = manifest;
+        this.channel = channel;
+        this.completed = completed;
+    }
+
+    public static PieceFile open(Path target, FileManifest manifest) throws IOException {
+        Path partial = partialPath(target);
+        BitSet completed = Files.exists(partial) ? loadBitmap(bitmapPath(target), manifest) : null;
+        FileChannel channel = FileChannel.open(partial,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (completed == null || channel.size() != manifest.getSize()) {
+            // Nothing usable to resume from: start over with a sparse file of the final size
+            completed = new BitSet(manifest.getPieceCount());
+            channel.truncate(0);
+            if (manifest.getSize() > 0) {
+                channel.write(ByteBuffer.allocate(1), manifest.getSize() - 1);
+            }
+        } else {
+            System.out.println("Resuming " + manifest.getFilename() + ": " + completed.cardinality()
+                    + " of " + manifest.getPieceCount() + " pieces already present");
+        }
+
+        PieceFile file = new PieceFile(target, manifest, channel, completed);
+        file.checkpoint();
+        return file;
+    }
+
+    public FileManifest getManifest() {
+        return manifest;
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    public synchronized BitSet getCompleted() {
+        return (BitSet) completed.clone();
+    }
+
+    public synchronized int[] getMissingPieces() {
+        BitSet missing = new BitSet(manifest.getPieceCount());
+        missing.set(0, manifest.getPieceCount());
+        missing.andNot(completed);
+        return missing.stream().toArray();
+    }
+
+    public synchronized boolean isComplete() {
+        return completed.cardinality() == manifest.getPieceCount();
+    }
+
+    // Verifies the piece against the manifest before writing it; returns false if it doesn't match
+    public boolean writePiece(int piece, byte[] data) throws IOException {
+        if (data.length != manifest.getPieceLength(piece)
+                || !Arrays.equals(ManifestCache.sha256(data, data.length), manifest.getPieceHash(piece))) {
+            System.out.println("Piece " + piece + " of " + manifest.getFilename() + " failed verification");
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = manifest.getPieceOffset(piece);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        markReceived(piece);
+        return true;
+    }
+
+    // For writers that fill the channel directly (zero-copy); such pieces are checked by verify()
+    public void markReceived(int piece) throws IOException {
+        boolean checkpoint;
+        synchronized (this) {
+            completed.set(piece);
+            sinceCheckpoint++;
+            checkpoint = sinceCheckpoint >= CHECKPOINT_PIECES
+                    || System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MS;
+        }
+        if (checkpoint) {
+            checkpoint();
+        }
+    }
+
+    // Data is forced to disk before the bitmap that claims it, so a persisted bit is never ahead of its piece
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            BitSet snapshot;
+            synchronized (this) {
+                snapshot = (BitSet) completed.clone();
+                sinceCheckpoint = 0;
+                lastCheckpoint = System.currentTimeMillis();
+            }
+            channel.force(false);
+
+            Path temp = bitmapPath.resolveSibling(bitmapPath.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(manifest.getSize());
+                out.writeInt(manifest.getPieceSize());
+                out.write(manifest.getContentHash());
+                byte[] bits = snapshot.toByteArray();
+                out.writeInt(bits.length);
+                out.write(bits);
+            }
+            Files.move(temp, bitmapPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // End-to-end check: re-hashes every present piece in parallel and clears the ones that don't match.
+    // Returns the number of pieces that failed.
+    public int verify() throws IOException {
+        int[] present = getCompleted().stream().toArray();
+        int[] bad = IntStream.of(present).parallel().filter(piece -> {
+            byte[] data = new byte[manifest.getPieceLength(piece)];
+            try {
+                ChunkStore.readFully(channel, ByteBuffer.wrap(data), manifest.getPieceOffset(piece));
+            } catch (IOException e) {
+                return true;
+            }
+            return !Arrays.equals(ManifestCache.sha256(data, data.length), manifest.getPieceHash(piece));
+        }).toArray();
+
+        if (bad.length > 0) {
+            synchronized (this) {
+                for (int piece : bad) {
+                    completed.clear(piece);
+                }
+            }
+            checkpoint();
+            System.out.println(bad.length + " pieces of " + manifest.getFilename() + " failed verification");
+        }
+        return bad.length;
+    }
+
+    // Atomically moves the finished file into place once every piece is present and passes the
+    // end-to-end check. Returns false (with failed pieces marked missing again) otherwise.
+    public boolean commit() throws IOException {
+        if (!isComplete() || verify() > 0) {
+            return false;
+        }
+        channel.force(true);
+        channel.close();
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(bitmapPath);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            checkpoint();
+            channel.close();
+        }
+    }
+
+    private static BitSet loadBitmap(Path path, FileManifest manifest) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            byte[] hash = new byte[manifest.getContentHash().length];
+            if (in.readInt() != MAGIC || in.readLong() != manifest.getSize() || in.readInt() != manifest.getPieceSize()) {
+                return null;
+            }
+            in.readFully(hash);
+            if (!Arrays.equals(hash, manifest.getContentHash())) {
+                return null; // The source file changed since the last attempt
+            }
+            byte[] bits = new byte[in.readInt()];
+            in.readFully(bits);
+            return BitSet.valueOf(bits);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Path partialPath(Path target) {
+        return target.resolveSibling(target.getFileName() + ".part");
+    }
+
+    private static Path bitmapPath(Path target) {
+        return target.resolveSibling(target.getFileName() + ".part.bitmap");
+    }
+}
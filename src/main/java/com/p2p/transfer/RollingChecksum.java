@@ -0,0 +1,40 @@
+package com.p2p.transfer;
+
+// rsync's weak checksum: two 16-bit sums that can be slid one byte at a time in O(1)
+public class RollingChecksum {
+    private final int length;
+    private int a;
+    private int b;
+
+    public RollingChecksum(int length) {
+        this.length = length;
+    }
+
+    public void reset(byte[] data, int offset) {
+        a = 0;
+        b = 0;
+        for (int i = 0; i < length; i++) {
+            int x = data[offset + i] & 0xff;
+            a += x;
+            b += (length - i) * x;
+        }
+        a &= 0xffff;
+        b &= 0xffff;
+    }
+
+    public void roll(byte out, byte in) {
+        int x = out & 0xff;
+        a = (a - x + (in & 0xff)) & 0xffff;
+        b = (b - length * x + a) & 0xffff;
+    }
+
+    public int value() {
+        return a | (b << 16);
+    }
+
+    public static int of(byte[] data, int offset, int length) {
+        RollingChecksum checksum = new RollingChecksum(length);
+        checksum.reset(data, offset);
+        return checksum.value();
+    }
+}
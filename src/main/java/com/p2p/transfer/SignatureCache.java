@@ -0,0 +1,106 @@
+package com.p2p.transfer;
+
+import com.p2p.model.BlockSignature;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// Block signatures of files in a peer directory, computed in parallel and cached per file version
+public class SignatureCache {
+    private static final int BLOCKS_PER_TASK = 256;
+
+    private final ChunkStore store;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    public SignatureCache(ChunkStore store) {
+        this.store = store;
+    }
+
+    // Returns null if there is no existing copy to diff against
+    public BlockSignature getSignature(String filename, int blockSize) throws IOException {
+        if (blockSize < DeltaSync.MIN_BLOCK_SIZE || blockSize > DeltaSync.MAX_BLOCK_SIZE) {
+            throw new IOException("Unsupported delta block size " + blockSize);
+        }
+        Path path = store.resolve(filename);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+
+        String key = filename + "@" + blockSize;
+        Entry entry = cache.get(key);
+        if (entry != null && entry.size == size && entry.modified == modified) {
+            return entry.signature;
+        }
+
+        BlockSignature signature = compute(path, filename, size, blockSize);
+        cache.put(key, new Entry(size, modified, signature));
+        return signature;
+    }
+
+    public void invalidate(String filename) {
+        cache.keySet().removeIf(key -> key.startsWith(filename + "@"));
+    }
+
+    static BlockSignature compute(Path path, String filename, long size, int blockSize) throws IOException {
+        // Only full blocks are matched; a trailing partial block is always sent as literals
+        int blocks = (int) (size / blockSize);
+        int[] weak = new int[blocks];
+        byte[][] strong = new byte[blocks][];
+        int tasks = (blocks + BLOCKS_PER_TASK - 1) / BLOCKS_PER_TASK;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            IntStream.range(0, tasks).parallel().forEach(task -> {
+                int first = task * BLOCKS_PER_TASK;
+                int last = Math.min(blocks, first + BLOCKS_PER_TASK);
+                byte[] data = new byte[(last - first) * blockSize];
+                try {
+                    ChunkStore.readFully(channel, ByteBuffer.wrap(data), (long) first * blockSize);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                MessageDigest md5 = md5();
+                for (int block = first; block < last; block++) {
+                    int offset = (block - first) * blockSize;
+                    weak[block] = RollingChecksum.of(data, offset, blockSize);
+                    md5.update(data, offset, blockSize);
+                    strong[block] = md5.digest();
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new BlockSignature(filename, size, blockSize, weak, strong);
+    }
+
+    static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final BlockSignature signature;
+
+        Entry(long size, long modified, BlockSignature signature) {
+            this.size = size;
+            this.modified = modified;
+            this.signature = signature;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.p2p.transfer;
+
+import com.p2p.model.Chunk;
+import com.p2p.model.FileManifest;
+import com.p2p.model.Peer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Downloads one file from every peer that has it. Pieces are pulled from a shared queue by
+// per-peer workers, so faster peers naturally serve more of them; once the queue drains, idle
+// workers re-request pieces still in flight on slower peers (endgame) and the first verified copy wins.
+// Pieces land in a PieceFile, so an interrupted swarm download resumes with only the missing pieces.
+public class SwarmDownloader {
+    private static final int MAX_FAILURES_PER_PEER = 3;
+    private static final int PIECE_MISSING = 0;
+    private static final int PIECE_IN_FLIGHT = 1;
+    private static final int PIECE_DONE = 2;
+
+    private final int connectionsPerPeer;
+
+    public SwarmDownloader() {
+        this(2);
+    }
+
+    public SwarmDownloader(int connectionsPerPeer) {
+        this.connectionsPerPeer = connectionsPerPeer;
+    }
+
+    // Returns the number of bytes each peer contributed, keyed by peer name
+    public Map<String, Long> download(Map<String, Peer> candidates, String filename, Path target) throws IOException {
+        Map<String, Peer> seeders = new LinkedHashMap<>();
+        FileManifest manifest = collectSeeders(candidates, filename, seeders);
+        if (manifest == null) {
+            throw new IOException("No peer has " + filename);
+        }
+        System.out.println("Swarm downloading " + filename + " (" + manifest.getPieceCount()
+                + " pieces) from " + seeders.keySet());
+
+        Map<String, Long> contributed = new ConcurrentHashMap<>();
+        try (PieceFile pieces = PieceFile.open(target, manifest)) {
+            new Swarm(pieces).run(seeders, contributed);
+            if (!pieces.commit()) {
+                throw new IOException("Swarm download of " + filename + " failed its end-to-end check");
+            }
+        }
+        return contributed;
+    }
+
+    // Keeps only peers whose manifest matches the first one found
+    private FileManifest collectSeeders(Map<String, Peer> candidates, String filename, Map<String, Peer> seeders) {
+        FileManifest manifest = null;
+        for (Map.Entry<String, Peer> candidate : candidates.entrySet()) {
+            try {
+                FileManifest theirs = candidate.getValue().getManifest(filename);
+                if (manifest == null) {
+                    manifest = theirs;
+                }
+                if (manifest.sameContentAs(theirs)) {
+                    seeders.put(candidate.getKey(), candidate.getValue());
+                } else {
+                    System.out.println("Skipping " + candidate.getKey() + ": different version of " + filename);
+                }
+            } catch (RemoteException e) {
+                // Peer doesn't have the file or is unreachable
+            }
+        }
+        return manifest;
+    }
+
+    private class Swarm {
+        final FileManifest manifest;
+        final PieceFile pieces;
+        final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        final AtomicIntegerArray state;
+        final AtomicLong remaining;
+
+        // Only pieces missing from an earlier interrupted attempt are requested
+        Swarm(PieceFile pieces) {
+            this.manifest = pieces.getManifest();
+            this.pieces = pieces;
+            this.state = new AtomicIntegerArray(manifest.getPieceCount());
+            int[] missing = pieces.getMissingPieces();
+            this.remaining = new AtomicLong(missing.length);
+            for (int piece = 0; piece < manifest.getPieceCount(); piece++) {
+                state.set(piece, PIECE_DONE);
+            }
+            for (int piece : missing) {
+                state.set(piece, PIECE_MISSING);
+                pending.add(piece);
+            }
+        }
+
+        void run(Map<String, Peer> seeders, Map<String, Long> contributed) throws IOException {
+            if (remaining.get() == 0) {
+                return;
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(seeders.size() * connectionsPerPeer);
+            List<Future<?>> workers = new ArrayList<>();
+            for (Map.Entry<String, Peer> seeder : seeders.entrySet()) {
+                PeerState peer = new PeerState(seeder.getKey(), seeder.getValue());
+                for (int i = 0; i < connectionsPerPeer; i++) {
+                    workers.add(executor.submit(() -> work(peer, contributed)));
+                }
+            }
+
+            try {
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IOException("Swarm download failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Swarm download interrupted", e);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            if (remaining.get() > 0) {
+                throw new IOException(remaining.get() + " pieces could not be downloaded from any peer");
+            }
+        }
+
+        void work(PeerState peer, Map<String, Long> contributed) {
+            Random random = new Random();
+            while (remaining.get() > 0 && !peer.isBanned()) {
+                Integer piece = pending.poll();
+                if (piece == null) {
+                    piece = pickEndgamePiece(random);
+                    if (piece == null) return;
+                }
+                state.compareAndSet(piece, PIECE_MISSING, PIECE_IN_FLIGHT);
+
+                try {
+                    long start = System.nanoTime();
+                    Chunk chunk = peer.peer.readChunk(manifest.getFilename(),
+                            manifest.getPieceOffset(piece), manifest.getPieceLength(piece), peer.compression.nextLevel());
+                    peer.compression.record(chunk, System.nanoTime() - start);
+                    byte[] data = ChunkCodec.decode(chunk);
+                    if (state.get(piece) == PIECE_DONE) {
+                        continue;
+                    }
+                    if (!pieces.writePiece(piece, data)) {
+                        System.out.println("Piece " + piece + " from " + peer.name + " failed verification");
+                        peer.failures.incrementAndGet();
+                        requeue(piece);
+                        continue;
+                    }
+                    if (state.getAndSet(piece, PIECE_DONE) != PIECE_DONE) {
+                        remaining.decrementAndGet();
+                        contributed.merge(peer.name, (long) data.length, Long::sum);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Piece " + piece + " from " + peer.name + " failed: " + e.getMessage());
+                    peer.failures.incrementAndGet();
+                    requeue(piece);
+                }
+            }
+        }
+
+        // Endgame: duplicate a piece some slower peer is still working on
+        Integer pickEndgamePiece(Random random) {
+            int count = manifest.getPieceCount();
+            int start = random.nextInt(count);
+            for (int i = 0; i < count; i++) {
+                int piece = (start + i) % count;
+                if (state.get(piece) != PIECE_DONE) {
+                    return piece;
+                }
+            }
+            return null;
+        }
+
+        void requeue(int piece) {
+            if (state.compareAndSet(piece, PIECE_IN_FLIGHT, PIECE_MISSING)) {
+                pending.add(piece);
+            }
+        }
+    }
+
+    private class PeerState {
+        final String name;
+        final Peer peer;
+        final AtomicInteger failures = new AtomicInteger();
+        final CompressionPolicy compression;
+
+        PeerState(String name, Peer peer) {
+            this.name = name;
+            this.peer = peer;
+            this.compression = new CompressionPolicy(CompressionPolicy.DEFAULT_LEVEL, connectionsPerPeer);
+        }
+
+        boolean isBanned() {
+            return failures.get() >= MAX_FAILURES_PER_PEER;
+        }
+    }
+}
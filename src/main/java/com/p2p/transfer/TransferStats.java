@@ -0,0 +1,59 @@
+package com.p2p.transfer;
+
+import com.p2p.model.Chunk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Raw vs. on-the-wire byte counts for one transfer, for reporting bytes saved and effective throughput
+public class TransferStats {
+    private final long start = System.nanoTime();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+    private final AtomicLong compressedChunks = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private volatile long end;
+
+    public void record(Chunk chunk) {
+        rawBytes.addAndGet(chunk.getRawLength());
+        wireBytes.addAndGet(chunk.getWireLength());
+        chunks.incrementAndGet();
+        if (chunk.isCompressed()) {
+            compressedChunks.incrementAndGet();
+        }
+    }
+
+    public void finish() {
+        end = System.nanoTime();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    public long getBytesSaved() {
+        return rawBytes.get() - wireBytes.get();
+    }
+
+    public double getSeconds() {
+        return ((end == 0 ? System.nanoTime() : end) - start) / 1e9;
+    }
+
+    // Raw bytes delivered per second, i.e. the throughput the user actually sees
+    public double getEffectiveThroughput() {
+        return rawBytes.get() / Math.max(1e-9, getSeconds());
+    }
+
+    @Override
+    public String toString() {
+        double mb = 1024.0 * 1024.0;
+        long raw = rawBytes.get();
+        return String.format("%.1f MB in %.2fs (%.1f MB/s effective), %.1f MB on the wire, saved %.1f MB (%.0f%%), %d of %d chunks compressed",
+                raw / mb, getSeconds(), getEffectiveThroughput() / mb, wireBytes.get() / mb,
+                getBytesSaved() / mb, raw == 0 ? 0.0 : 100.0 * getBytesSaved() / raw,
+                compressedChunks.get(), chunks.get());
+    }
+}